@@ -13,6 +13,11 @@ import javax.ejb.Startup;
 @Startup
 public class Context{
 
+    /**
+     * Extension of artifacts stored as ZIP archive.
+     */
+    public static final String ARTIFACTS_ARCHIVE_EXTENSION = ".zip";
+
     /**
      * Directories on file system.
      */
@@ -20,6 +25,7 @@ public class Context{
         BASE_DIR(new File(System.getProperty("user.home"), "whipper-web-ui")),
         RESULTS_DIR(new File(BASE_DIR.f, "results")),
         ARTIFACTS_DIR(new File(BASE_DIR.f, "artifacts")),
+        BLOBS_DIR(new File(BASE_DIR.f, "blobs")),
         SCENARIOS_DIR(new File(BASE_DIR.f, "scenarios")),
         TMP_DIR(new File(BASE_DIR.f, "tmp"));
 
@@ -88,6 +94,33 @@ public class Context{
         return getDir(Directory.ARTIFACTS_DIR, id);
     }
 
+    /**
+     * Returns artifacts with specified name. Artifacts are stored either as a directory
+     * or as a ZIP archive {@code <name>.zip} which is read without extraction.
+     *
+     * @param name optional name of the artifacts
+     * @return artifacts directory, artifacts archive or artifacts directory if {@code name} is {@code null}
+     */
+    public File getArtifacts(String name){
+        File dir = getArtifactDir(name);
+        if(name == null || dir.exists()){
+            return dir;
+        }
+        File zip = getArtifactDir(name + ARTIFACTS_ARCHIVE_EXTENSION);
+        return zip.isFile() ? zip : dir;
+    }
+
+    /**
+     * Returns directory where content-addressed files of artifacts are stored.
+     * Files of artifacts directories are hard links to these files.
+     *
+     * @param id optional name of the file (or directory) in blobs directory
+     * @return blobs directory or file/directory in it
+     */
+    public File getBlobDir(String id){
+        return getDir(Directory.BLOBS_DIR, id);
+    }
+
     /**
      * Returns directory where scenarios are stored.
      *
@@ -98,6 +131,15 @@ public class Context{
         return getDir(Directory.SCENARIOS_DIR, id);
     }
 
+    /**
+     * Returns file with index of finished jobs.
+     *
+     * @return job index file
+     */
+    public File getJobIndexFile(){
+        return getDir(Directory.BASE_DIR, "jobs-index.jsonl");
+    }
+
     /**
      * Returns directory where temporary files are stored.
      *
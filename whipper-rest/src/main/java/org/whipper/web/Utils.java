@@ -6,6 +6,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -49,25 +51,41 @@ public class Utils{
      * @throws IOException in case of I/O error
      */
     public static void zip(File f, File out) throws IOException{
-        try(FileOutputStream fos = new FileOutputStream(out);
-                BufferedOutputStream bos = new BufferedOutputStream(fos);
-                ZipOutputStream zos = new ZipOutputStream(bos)){
-            addToZip(f, f.getAbsolutePath().length(), zos, new byte[4096]);
+        try(FileOutputStream fos = new FileOutputStream(out)){
+            zip(f, fos, Deflater.DEFAULT_COMPRESSION);
         }
     }
 
     /**
-     * Adds file or directory to the ZIP output stream.
+     * Writes ZIP of the file to the output stream. Output stream is flushed but not closed.
+     *
+     * @param f file or directory to be zipped
+     * @param out output stream
+     * @param level compression level (0-9 or -1 for default level)
+     * @throws IOException in case of I/O error
+     */
+    public static void zip(File f, OutputStream out, int level) throws IOException{
+        BufferedOutputStream bos = new BufferedOutputStream(out, 64 * 1024);
+        ZipOutputStream zos = new ZipOutputStream(bos);
+        zos.setLevel(level);
+        addToZip(f, f.isDirectory() ? "" : f.getName(), zos, new byte[64 * 1024]);
+        zos.finish();
+        bos.flush();
+    }
+
+    /**
+     * Adds file or directory to the ZIP output stream. Names of the entries are relative
+     * to the zipped directory and they use '/' as a separator.
      *
      * @param f file or directory to be added
-     * @param truncate truncate name of the file
+     * @param name name of the entry of the file (empty for zipped directory)
      * @param os output stream
      * @param buff buffer to use in I/O operations
      * @throws IOException in case of I/O error
      */
-    private static void addToZip(File f, int truncate, ZipOutputStream os, byte[] buff) throws IOException{
+    private static void addToZip(File f, String name, ZipOutputStream os, byte[] buff) throws IOException{
         if(f.isFile()){
-            os.putNextEntry(new ZipEntry(f.getAbsolutePath().substring(truncate)));
+            os.putNextEntry(new ZipEntry(name));
             try(FileInputStream fis = new FileInputStream(f);
                     BufferedInputStream bis = new BufferedInputStream(fis)){
                 int read;
@@ -78,7 +96,7 @@ public class Utils{
             os.closeEntry();
         } else {
             for(File sub : f.listFiles()){
-                addToZip(sub, truncate, os, buff);
+                addToZip(sub, name.isEmpty() ? sub.getName() : name + "/" + sub.getName(), os, buff);
             }
         }
     }
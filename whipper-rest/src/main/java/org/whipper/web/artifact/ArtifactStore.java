@@ -0,0 +1,230 @@
+package org.whipper.web.artifact;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+import org.whipper.web.Utils;
+
+/**
+ * Content-addressed store of files of artifacts.
+ * <p>
+ * Every file is stored once under its SHA-256 hash ({@code <blobs>/<first two characters>/<hash>})
+ * and it is hard-linked to all artifacts which contain it. Stored files are read-only. File which
+ * is not linked to any artifacts (i.e. it has only one link) is deleted by {@link #collectGarbage()}.
+ * <p>
+ * If hard link cannot be created (e.g. target is on other file system), the file is copied
+ * to the artifact. This is decided for every file, thus one failure does not disable
+ * deduplication and garbage collection.
+ */
+class ArtifactStore{
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+    private static final String ALGORITHM = "SHA-256";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Path dir;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Creates new store.
+     *
+     * @param dir directory of the store
+     */
+    ArtifactStore(File dir){
+        this.dir = dir.toPath();
+    }
+
+    /**
+     * Marks beginning of the upload. Garbage is not collected until the upload ends,
+     * thus files stored during the upload are not deleted before they are linked.
+     */
+    void beginUpload(){
+        lock.readLock().lock();
+    }
+
+    /**
+     * Marks end of the upload.
+     */
+    void endUpload(){
+        lock.readLock().unlock();
+    }
+
+    /**
+     * Stores content of the stream and links it to the target. Stream is not closed.
+     *
+     * @param in content of the file
+     * @param target target file (must not exist)
+     * @return {@code true} if content has not been stored yet, {@code false} if it has been deduplicated
+     * @throws IOException if an I/O error occurs
+     */
+    boolean store(InputStream in, Path target) throws IOException{
+        Path tmp = Files.createTempFile(dir, "upload_", ".part");
+        try{
+            DigestInputStream dis = new DigestInputStream(in, digest());
+            Files.copy(dis, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Path blob = blob(toHex(dis.getMessageDigest().digest()));
+            boolean stored = false;
+            if(!Files.exists(blob)){
+                Files.createDirectories(blob.getParent());
+                try{
+                    Files.move(tmp, blob, StandardCopyOption.ATOMIC_MOVE);
+                    blob.toFile().setReadOnly();
+                    stored = true;
+                } catch (FileAlreadyExistsException ex){
+                    // stored concurrently
+                }
+            }
+            link(blob, target);
+            return stored;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Links already stored file to the target.
+     *
+     * @param hash SHA-256 hash of the file (lower-case hex)
+     * @param target target file (must not exist)
+     * @throws IllegalArgumentException if file with specified hash is not stored
+     * @throws IOException if an I/O error occurs
+     */
+    void link(String hash, Path target) throws IllegalArgumentException, IOException{
+        if(!contains(hash)){
+            throw new IllegalArgumentException("Unknown file " + hash);
+        }
+        link(blob(hash), target);
+    }
+
+    /**
+     * Links stored file to the target. File is copied if hard links are not supported.
+     *
+     * @param blob stored file
+     * @param target target file
+     * @throws IOException if an I/O error occurs
+     */
+    private void link(Path blob, Path target) throws IOException{
+        try{
+            Files.createLink(target, blob);
+            return;
+        } catch (UnsupportedOperationException | FileSystemException ex){
+            if(ex instanceof FileAlreadyExistsException){
+                throw ex;
+            }
+            Utils.LOG.warn("Cannot create hard link {}, file will be copied - {}", target, ex.getMessage());
+        }
+        Files.copy(blob, target);
+    }
+
+    /**
+     * Returns {@code true} if file with specified hash is stored.
+     *
+     * @param hash SHA-256 hash of the file
+     * @return whether file is stored
+     */
+    boolean contains(String hash){
+        return hash != null && HASH.matcher(hash).matches() && Files.isRegularFile(blob(hash));
+    }
+
+    /**
+     * Returns hashes of files which are not stored.
+     *
+     * @param hashes SHA-256 hashes of files
+     * @return hashes of files which are not stored
+     */
+    List<String> missing(Collection<String> hashes){
+        List<String> out = new ArrayList<>();
+        for(String h : hashes){
+            if(!contains(h)){
+                out.add(h);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Deletes files which are not linked to any artifacts. Garbage is not collected
+     * if files are being stored.
+     *
+     * @return number of deleted files
+     */
+    int collectGarbage(){
+        if(!lock.writeLock().tryLock()){
+            return 0;
+        }
+        int deleted = 0;
+        try(DirectoryStream<Path> prefixes = Files.newDirectoryStream(dir, Files::isDirectory)){
+            for(Path prefix : prefixes){
+                try(DirectoryStream<Path> blobs = Files.newDirectoryStream(prefix)){
+                    for(Path blob : blobs){
+                        if(((Number)Files.getAttribute(blob, "unix:nlink")).intValue() <= 1){
+                            Files.delete(blob);
+                            deleted++;
+                        }
+                    }
+                }
+            }
+        } catch (UnsupportedOperationException ex){
+            Utils.LOG.debug("Number of links is not supported, garbage is not collected.");
+        } catch (IOException ex){
+            Utils.LOG.error("Cannot collect garbage of artifacts store.", ex);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return deleted;
+    }
+
+    /**
+     * Returns path of stored file.
+     *
+     * @param hash hash of the file
+     * @return path of the file
+     */
+    private Path blob(String hash){
+        return dir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    /**
+     * Creates new message digest.
+     *
+     * @return message digest
+     */
+    private static MessageDigest digest(){
+        try{
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException ex){
+            throw new IllegalStateException(ALGORITHM + " is not supported.", ex);
+        }
+    }
+
+    /**
+     * Converts bytes to lower-case hexadecimal string.
+     *
+     * @param bytes bytes
+     * @return hexadecimal string
+     */
+    private static String toHex(byte[] bytes){
+        char[] out = new char[bytes.length * 2];
+        for(int i = 0; i < bytes.length; i++){
+            out[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+            out[2 * i + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(out);
+    }
+}
@@ -1,5 +1,6 @@
 package org.whipper.web.artifact;
 
+import javax.annotation.PostConstruct;
 import javax.ejb.Lock;
 import javax.ejb.LockType;
 import javax.ejb.Singleton;
@@ -7,10 +8,33 @@ import javax.ejb.Startup;
 import javax.inject.Inject;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.whipper.utils.ArtifactSource;
+import org.whipper.utils.Compression;
 import org.whipper.web.Context;
 import org.whipper.web.Utils;
 
@@ -25,13 +49,46 @@ import org.whipper.web.Utils;
  *         |_expected_results
  *           |_...
  * </pre>
+ * Artifacts are stored either as a directory or as a ZIP archive {@code <artifact-name>.zip}
+ * with the same structure. Archives are never extracted, their entries are read directly.
+ * <p>
+ * Uploaded artifacts (see {@link #uploadArtifacts(String, InputStream)}) are stored as a directory.
+ * Files of such artifacts are stored once in content-addressed store and hard-linked
+ * to all artifacts which contain them. Uploaded artifacts are staged in hidden directory
+ * of artifacts directory, thus they are on the same file system as existing artifacts.
  */
 @Singleton
 @Startup
 public class WhipperArtifactsService{
 
+    private static final String QUERIES_DIR = "queries";
+    /**
+     * Name of the optional manifest entry of uploaded archive. Manifest is a JSON object
+     * which maps path of the file to SHA-256 hash of already stored file.
+     */
+    public static final String MANIFEST = ".manifest.json";
+    private static final String STAGING_PREFIX = ".staging_";
+    private static final String OLD_PREFIX = ".old_";
+
     @Inject
     private Context context;
+    private ArtifactStore store;
+    private final Object commitLock = new Object();
+
+    /**
+     * Initializes store of artifact files and deletes leftovers of interrupted uploads.
+     */
+    @PostConstruct
+    public void init(){
+        store = new ArtifactStore(context.getBlobDir(null));
+        File[] leftovers = context.getArtifactDir(null).listFiles(f -> f.getName().startsWith(STAGING_PREFIX)
+                || f.getName().startsWith(OLD_PREFIX));
+        if(leftovers != null){
+            for(File f : leftovers){
+                Utils.delete(f);
+            }
+        }
+    }
 
     /**
      * Deletes artifacts.
@@ -44,19 +101,200 @@ public class WhipperArtifactsService{
             return;
         }
         Utils.delete(context.getArtifactDir(name));
+        Utils.delete(context.getArtifactDir(name + Context.ARTIFACTS_ARCHIVE_EXTENSION));
+        store.collectGarbage();
     }
 
     /**
      * Creates artifacts from a ZIP archive.
      * <p>
      * The entries in archive must have structure defined in documentation of this class.
+     * The archive is moved to artifacts directory as is, it is not extracted. Existing
+     * artifacts with the same name are replaced.
      *
      * @param name artifacts name
      * @param zip path to ZIP archive
+     * @throws IOException if archive is not valid or cannot be stored
      */
     @Lock(LockType.WRITE)
-    public void createArtifacts(String name, File zip){
-        // TODO
+    public void createArtifacts(String name, File zip) throws IOException{
+        checkName(name);
+        if(zip == null || !zip.isFile()){
+            throw new IllegalArgumentException("Archive " + zip + " does not exist.");
+        }
+        try(ArtifactSource as = ArtifactSource.open(zip)){
+            if(!Files.isDirectory(as.resolve(QUERIES_DIR))){
+                throw new IOException("Archive " + zip + " does not contain directory " + QUERIES_DIR);
+            }
+        }
+        Path target = context.getArtifactDir(name + Context.ARTIFACTS_ARCHIVE_EXTENSION).toPath();
+        try{
+            Files.move(zip.toPath(), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex){
+            Files.move(zip.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Utils.delete(context.getArtifactDir(name));
+        store.collectGarbage();
+        Utils.LOG.info("Artifacts {} stored in {}.", name, target);
+    }
+
+    /**
+     * Creates artifacts from a stream of ZIP archive.
+     * <p>
+     * The entries in archive must have structure defined in documentation of this class.
+     * The archive is extracted while it is being read. Content of each file is stored only once
+     * (see {@link ArtifactStore}), unchanged files of new version of artifacts are not stored again.
+     * Archive can contain {@link #MANIFEST} which lists files not included in the archive
+     * which are already stored (e.g. unchanged files of the previous version). Existing artifacts
+     * with the same name are replaced once the whole archive has been read.
+     *
+     * @param name artifacts name
+     * @param zip stream of ZIP archive
+     * @return summary of the upload (number of files, number of newly stored files and number
+     *      of files linked from the manifest)
+     * @throws IllegalArgumentException if name or archive is not valid
+     * @throws IOException if archive cannot be read or artifacts cannot be stored
+     */
+    @Lock(LockType.READ)
+    public JSONObject uploadArtifacts(String name, InputStream zip) throws IllegalArgumentException, IOException{
+        checkName(name);
+        Path staging = Files.createTempDirectory(context.getArtifactDir(null).toPath(), STAGING_PREFIX);
+        int files = 0;
+        int stored = 0;
+        int linked = 0;
+        store.beginUpload();
+        try{
+            Map<String, String> manifest = Collections.emptyMap();
+            ZipInputStream zis = new ZipInputStream(zip);
+            ZipEntry e;
+            while((e = zis.getNextEntry()) != null){
+                if(e.isDirectory()){
+                    continue;
+                }
+                if(MANIFEST.equals(e.getName())){
+                    manifest = readManifest(zis);
+                    continue;
+                }
+                Path target = resolve(staging, e.getName());
+                Files.createDirectories(target.getParent());
+                if(Files.exists(target)){
+                    throw new IllegalArgumentException("Duplicate entry " + e.getName());
+                }
+                if(store.store(zis, target)){
+                    stored++;
+                }
+                files++;
+            }
+            // files in archive take precedence over the manifest
+            for(Entry<String, String> m : manifest.entrySet()){
+                Path target = resolve(staging, m.getKey());
+                if(!Files.exists(target)){
+                    Files.createDirectories(target.getParent());
+                    store.link(m.getValue(), target);
+                    files++;
+                    linked++;
+                }
+            }
+            if(!Files.isDirectory(staging.resolve(QUERIES_DIR))){
+                throw new IllegalArgumentException("Archive does not contain directory " + QUERIES_DIR);
+            }
+            commit(name, staging);
+        } catch (ZipException ex){
+            throw new IllegalArgumentException("Invalid archive - " + ex.getMessage(), ex);
+        } finally {
+            store.endUpload();
+            Utils.delete(staging.toFile());
+        }
+        store.collectGarbage();
+        Utils.LOG.info("Artifacts {} uploaded - {} files, {} new, {} from manifest.", name, files, stored, linked);
+        return new JSONObject()
+                .put("name", name)
+                .put("files", files)
+                .put("stored", stored)
+                .put("linked", linked);
+    }
+
+    /**
+     * Returns hashes of files which are not stored yet (i.e. files which have
+     * to be included in the uploaded archive).
+     *
+     * @param hashes SHA-256 hashes of files (lower-case hex)
+     * @return hashes of files which are not stored
+     */
+    @Lock(LockType.READ)
+    public List<String> getMissingFiles(Collection<String> hashes){
+        return store.missing(hashes);
+    }
+
+    /**
+     * Replaces artifacts by staged artifacts.
+     *
+     * @param name artifacts name
+     * @param staging directory with staged artifacts
+     * @throws IOException if artifacts cannot be replaced
+     */
+    private void commit(String name, Path staging) throws IOException{
+        synchronized(commitLock){
+            Path target = context.getArtifactDir(name).toPath();
+            Path old = null;
+            if(Files.exists(target)){
+                old = Files.createTempDirectory(context.getArtifactDir(null).toPath(), OLD_PREFIX).resolve(name);
+                Files.move(target, old, StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+            if(old != null){
+                Utils.delete(old.getParent().toFile());
+            }
+            Utils.delete(context.getArtifactDir(name + Context.ARTIFACTS_ARCHIVE_EXTENSION));
+        }
+    }
+
+    /**
+     * Reads manifest of uploaded archive.
+     *
+     * @param in content of the manifest
+     * @return map path -> hash
+     * @throws IllegalArgumentException if manifest is not valid
+     */
+    private static Map<String, String> readManifest(InputStream in) throws IllegalArgumentException{
+        try{
+            JSONObject o = new JSONObject(new JSONTokener(new InputStreamReader(in, StandardCharsets.UTF_8)));
+            Map<String, String> out = new HashMap<>();
+            for(String path : o.keySet()){
+                out.put(path, o.getString(path));
+            }
+            return out;
+        } catch (JSONException ex){
+            throw new IllegalArgumentException("Invalid manifest - " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Resolves path of the entry of uploaded archive.
+     *
+     * @param dir directory of artifacts
+     * @param entry path of the entry
+     * @return resolved path
+     * @throws IllegalArgumentException if entry is outside of the directory
+     */
+    private static Path resolve(Path dir, String entry) throws IllegalArgumentException{
+        Path p = dir.resolve(entry).normalize();
+        if(!p.startsWith(dir) || p.equals(dir)){
+            throw new IllegalArgumentException("Invalid entry " + entry);
+        }
+        return p;
+    }
+
+    /**
+     * Checks name of artifacts.
+     *
+     * @param name artifacts name
+     * @throws IllegalArgumentException if name is not valid
+     */
+    private static void checkName(String name) throws IllegalArgumentException{
+        if(name == null || name.isEmpty() || name.startsWith(".") || name.contains("/") || name.contains(File.separator)){
+            throw new IllegalArgumentException("Invalid artifacts name " + name);
+        }
     }
 
     /**
@@ -71,12 +309,25 @@ public class WhipperArtifactsService{
         if(name == null || name.isEmpty()){
             return null;
         }
-        File queries = new File(context.getArtifactDir(name), "queries");
-        if(!queries.exists()){
+        File artifacts = context.getArtifacts(name);
+        if(!artifacts.exists()){
+            return null;
+        }
+        try(ArtifactSource as = ArtifactSource.open(artifacts)){
+            Path queries = as.resolve(QUERIES_DIR);
+            if(!Files.isDirectory(queries)){
+                return null;
+            }
+            List<String> out = new ArrayList<>();
+            try(DirectoryStream<Path> ds = Files.newDirectoryStream(queries,
+                    p -> Compression.hasExtension(p.getFileName().toString(), ".xml"))){
+                ds.forEach(p -> out.add(p.getFileName().toString()));
+            }
+            return out;
+        } catch (IOException ex){
+            Utils.LOG.error("Unable to read artifacts " + name, ex);
             return null;
         }
-        return Arrays.stream(queries.listFiles(f -> f.getName().endsWith(".xml")))
-                .map(File::getName).collect(Collectors.toList());
     }
 
     /**
@@ -86,7 +337,10 @@ public class WhipperArtifactsService{
      */
     @Lock(LockType.READ)
     public List<String> listArtifacts(){
-        return Arrays.stream(context.getArtifactDir(null).listFiles(f -> f.isDirectory() && !f.isHidden()))
-                .map(File::getName).collect(Collectors.toList());
+        return Arrays.stream(context.getArtifactDir(null).listFiles(f -> !f.isHidden()
+                    && (f.isDirectory() || (f.isFile() && f.getName().endsWith(Context.ARTIFACTS_ARCHIVE_EXTENSION)))))
+                .map(f -> f.isDirectory() ? f.getName()
+                        : f.getName().substring(0, f.getName().length() - Context.ARTIFACTS_ARCHIVE_EXTENSION.length()))
+                .distinct().collect(Collectors.toList());
     }
 }
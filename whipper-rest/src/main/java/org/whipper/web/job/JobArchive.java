@@ -0,0 +1,193 @@
+package org.whipper.web.job;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.Deflater;
+
+import org.whipper.web.Context;
+import org.whipper.web.Utils;
+
+/**
+ * ZIP archive of the output directory of finished job.
+ * <p>
+ * Archive is streamed directly to the client. First complete archive is stored
+ * to the temporary directory and subsequent requests are served from it.
+ * Cached archive is identified by ID of the job, time when the job finished and
+ * compression level, thus it never becomes stale.
+ * <p>
+ * Archive of the packed job (see {@link WhipperJobRetention}) is not cached,
+ * packed archive is served directly.
+ */
+public class JobArchive{
+
+    /**
+     * System property - compression level of archives (0-9, -1 for default level).
+     */
+    static final String LEVEL_PROP = "whipper.zip.level";
+    private static final int LEVEL = level(Integer.getInteger(LEVEL_PROP, Deflater.DEFAULT_COMPRESSION));
+    private static final String PREFIX = "job_result_";
+
+    private final File source;
+    private final File cache;
+    private final String tag;
+
+    /**
+     * Creates new archive.
+     *
+     * @param id ID of the job
+     * @param source output directory of the job
+     * @param finished time when job finished
+     * @param context application context
+     */
+    JobArchive(String id, File source, long finished, Context context){
+        this.source = source;
+        this.tag = id + "-" + finished + "-" + (LEVEL < 0 ? "d" : Integer.toString(LEVEL));
+        this.cache = context.getTmpDir(PREFIX + tag + ".zip");
+    }
+
+    /**
+     * Creates new archive.
+     *
+     * @param source output directory of the job or {@code null} if archive already exists
+     * @param cache archive
+     * @param tag entity tag of the archive
+     */
+    private JobArchive(File source, File cache, String tag){
+        this.source = source;
+        this.cache = cache;
+        this.tag = tag;
+    }
+
+    /**
+     * Creates archive of the job which has been packed by {@link WhipperJobRetention}.
+     * Packed archive is served as it is.
+     *
+     * @param id ID of the job
+     * @param packed archive with packed output directory of the job
+     * @param finished time when job finished
+     * @return archive
+     */
+    static JobArchive packed(String id, File packed, long finished){
+        return new JobArchive(null, packed, id + "-" + finished + "-p");
+    }
+
+    /**
+     * Returns valid compression level.
+     *
+     * @param level configured level
+     * @return {@code level} or default level if {@code level} is not valid
+     */
+    private static int level(int level){
+        if(level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION){
+            Utils.LOG.warn("Invalid compression level {}. Using default level.", level);
+            return Deflater.DEFAULT_COMPRESSION;
+        }
+        return level;
+    }
+
+    /**
+     * Returns entity tag of the archive.
+     *
+     * @return entity tag
+     */
+    public String getTag(){
+        return tag;
+    }
+
+    /**
+     * Returns cached archive.
+     *
+     * @return cached archive or {@code null} if archive has not been cached yet
+     */
+    public File getCached(){
+        return cache.isFile() ? cache : null;
+    }
+
+    /**
+     * Writes archive to the output stream. If archive is not cached yet, it is
+     * created and written to the output stream and to the cache at the same time.
+     *
+     * @param out output stream
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeTo(OutputStream out) throws IOException{
+        File cached = getCached();
+        if(cached != null){
+            Files.copy(cached.toPath(), out);
+            return;
+        }
+        if(source == null){
+            throw new FileNotFoundException("Archive " + cache + " does not exist.");
+        }
+        File tmp = File.createTempFile(PREFIX, ".part", cache.getParentFile());
+        boolean ok = false;
+        try{
+            try(FileOutputStream fos = new FileOutputStream(tmp)){
+                Utils.zip(source, new TeeOutputStream(out, fos), LEVEL);
+            }
+            Files.move(tmp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            ok = true;
+        } finally {
+            if(!ok){
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * Deletes all cached archives of the job.
+     *
+     * @param id ID of the job
+     * @param context application context
+     */
+    static void deleteCached(String id, Context context){
+        File[] cached = context.getTmpDir(null).listFiles((dir, name) -> name.startsWith(PREFIX + id + "-"));
+        if(cached != null){
+            for(File f : cached){
+                f.delete();
+            }
+        }
+    }
+
+    /**
+     * Output stream which writes to two output streams.
+     */
+    private static class TeeOutputStream extends OutputStream{
+        private final OutputStream first;
+        private final OutputStream second;
+
+        /**
+         * Creates new stream.
+         *
+         * @param first first output stream
+         * @param second second output stream
+         */
+        private TeeOutputStream(OutputStream first, OutputStream second){
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void write(int b) throws IOException{
+            first.write(b);
+            second.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException{
+            first.write(b, off, len);
+            second.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException{
+            first.flush();
+            second.flush();
+        }
+    }
+}
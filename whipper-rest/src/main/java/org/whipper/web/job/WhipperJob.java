@@ -1,20 +1,39 @@
 package org.whipper.web.job;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
-import org.json.JSONString;
+import org.json.JSONException;
+import org.json.JSONWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.whipper.ProgressMonitor;
+import org.whipper.ArtifactCache;
+import org.whipper.AsyncProgressMonitor;
 import org.whipper.Query;
 import org.whipper.Query.QueryResult;
 import org.whipper.QuerySet;
@@ -23,13 +42,27 @@ import org.whipper.Suite;
 import org.whipper.Whipper;
 import org.whipper.WhipperProperties;
 import org.whipper.WhipperResult;
+import org.whipper.utils.ArtifactSource;
+import org.whipper.utils.Compression;
 import org.whipper.web.Context;
-import org.whipper.web.Utils;
 
 /**
  * Class which represents one whipper job (i.e. one test run).
+ * <p>
+ * Job is notified asynchronously and can miss some progress events if it does not keep up
+ * with the test. Progress is therefore approximate until the job finishes.
+ * <p>
+ * Progress is updated without locks by the single thread which delivers progress events.
+ * Readers get an immutable snapshot of the progress which is rebuilt at most once
+ * per {@link #SNAPSHOT_INTERVAL_MS} and only if the progress has changed.
+ * <p>
+ * Every change of the progress increments version of the progress. Clients which know
+ * some version can ask only for changes since that version (see {@link #deltaToJson(long)}).
+ * Version restarts in every instance of the job, thus clients get token of the progress
+ * (epoch of the instance and version, see {@link #progressToken(long)}) which is converted
+ * back to version by {@link #parseProgressToken(String)}.
  */
-public class WhipperJob implements ProgressMonitor{
+public class WhipperJob implements AsyncProgressMonitor{
 
     private static final Logger LOG = LoggerFactory.getLogger(WhipperJob.class);
     private static final String ID = "id";
@@ -38,20 +71,73 @@ public class WhipperJob implements ProgressMonitor{
     private static final String SUITES = "suites";
     private static final String QUERY_SETS = "querySets";
     private static final String QUERIES = "queries";
+    private static final String RUNNING_META_QUERY_SET = "runningMetaQuerySet";
+    private static final String RUNNING_META_QUERY = "runningMetaQuery";
+    /**
+     * Name of the property which holds version of the progress.
+     */
+    public static final String VERSION = "version";
+    /**
+     * Name of the property which holds token of the progress (see {@link #progressToken(long)}).
+     */
+    public static final String TOKEN = "token";
+    private static final String FULL = "full";
+    private static final String FINISHED = "finished";
+    private static final String ALL = "all";
+    private static final String PASS = "pass";
+    private static final String FAIL = "fail";
+    private static final String SKIP = "skip";
+    private static final String ERROR = "error";
+    /**
+     * Fields of scenarios, suites, query sets and queries which can be selected
+     * (see {@link #getResult(int, Set)}).
+     */
+    public static final Set<String> RESULT_FIELDS = Collections.unmodifiableSet(
+            new TreeSet<>(Arrays.asList(ID, ALL, PASS, FAIL, SKIP, ERROR)));
+
+    /**
+     * Directory of error files written by compare result mode (see {@code CompareResultMode}).
+     */
+    private static final String COMPARE_ERRORS_DIR = "errors_for_COMPARE";
+
+    /**
+     * Minimal age of the snapshot of the progress before it can be rebuilt.
+     */
+    static final long SNAPSHOT_INTERVAL_MS = 500;
+    private static final AtomicLong INSTANCES = new AtomicLong();
 
     private final String id;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36) + "." + Long.toString(INSTANCES.incrementAndGet(), 36);
     private final WhipperProperties props;
     private final WhipperJobInfo jobInfo;
+    private volatile File packed;
     private Whipper whipper;
+    private volatile ArtifactCache artifactCache;
     private volatile boolean finished;
+    private final Object runLock = new Object();
+    private Thread runner;
+    private boolean queued;
+    private boolean done;
+    private boolean cancelled;
+    private volatile boolean failed;
+    private final AtomicInteger nodes = new AtomicInteger();
+
+    private volatile List<String> scenarioNames = Collections.emptyList();
+    private volatile ConcurrentMap<String, Holder> scenarios = new ConcurrentSkipListMap<>();
+    private volatile String runningMetaQS;
+    private volatile String runningMetaQ;
+    private final AtomicLong version = new AtomicLong();
+    private final Object changeLock = new Object();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private volatile long resetVersion;
+    private final AtomicBoolean building = new AtomicBoolean();
+    private volatile Snapshot snapshot = new Snapshot(-1, Collections.<Node>emptyList(), null, null);
 
-    private final Map<String, Holder> scenarios = new TreeMap<>();
+    // accessed only by the thread which delivers progress events
     private Holder currentScenario;
     private Holder currentSuite;
     private Holder currentQuerySet;
     private Holder currentQuery;
-    private String runningMetaQS;
-    private String runningMetaQ;
 
     /**
      * Creates new job.
@@ -99,48 +185,176 @@ public class WhipperJob implements ProgressMonitor{
     }
 
     /**
-     * Starts job.
+     * Returns time when this job started or -1 if it has not started yet.
+     *
+     * @return start time of this job
+     */
+    long getStarted(){
+        return jobInfo.getStarted();
+    }
+
+    /**
+     * Marks job as queued.
+     */
+    void queued(){
+        synchronized (runLock) {
+            queued = true;
+        }
+        jobInfo.jobQueued();
+    }
+
+    /**
+     * Sets cache of artifacts shared with other jobs (e.g. jobs submitted in one batch).
+     * Job releases the cache once it starts.
+     *
+     * @param artifactCache artifact cache
+     */
+    void setArtifactCache(ArtifactCache artifactCache){
+        this.artifactCache = artifactCache;
+    }
+
+    /**
+     * Runs job in calling thread. Does nothing if job has been cancelled.
+     */
+    void run(){
+        ArtifactCache cache = artifactCache;
+        artifactCache = null;
+        synchronized (runLock) {
+            if(cancelled){
+                return;
+            }
+            runner = Thread.currentThread();
+        }
+        try{
+            File outDir = props.getOutputDir();
+            if(!outDir.exists() && !outDir.mkdirs()){
+                LOG.warn("Cannot create output directory {}", outDir);
+            } else if(!outDir.isDirectory()){
+                LOG.warn("Output directory {} is not a directory.", outDir);
+            }
+            finished = false;
+            whipper = new Whipper(this.props);
+            whipper.registerProgressMonitor(this);
+            whipper.setArtifactCache(cache);
+            jobInfo.jobStarted();
+            jobInfo.dumpToDir(outDir);
+            whipper.start(false);
+        } finally {
+            synchronized (runLock) {
+                runner = null;
+                done = true;
+                // do not leak interruption to the next job run by this thread
+                Thread.interrupted();
+            }
+            // finished event is delivered before start returns, thus job which
+            // has not finished failed before the test started
+            if(!finished){
+                failed = true;
+                jobInfo.jobFailed();
+                dumpTerminalState();
+                reset();
+            }
+        }
+    }
+
+    /**
+     * Writes state of the job which has not run the test (cancelled or failed job)
+     * to the output directory, thus the job can be read after restart (see {@link #fromDir(String, File)}).
      */
-    public void start(){
+    private void dumpTerminalState(){
         File outDir = props.getOutputDir();
-        if(!outDir.exists() && !outDir.mkdirs()){
+        if(!outDir.isDirectory() && !outDir.mkdirs()){
             LOG.warn("Cannot create output directory {}", outDir);
-        } else if(!outDir.isDirectory()){
-            LOG.warn("Output directory {} is not a directory.", outDir);
-        }
-        finished = false;
-        whipper = new Whipper(this.props);
-        whipper.registerProgressMonitor(this);
-        whipper.start(true);
-        jobInfo.jobStarted();
+            return;
+        }
+        if(WhipperProperties.fromOutputDir(outDir) == null){
+            props.dumpPropertiesToOutputDir();
+        }
+        if(WhipperResult.fromDir(outDir.toPath()) == null){
+            new WhipperResult().dumpToDir(outDir);
+        }
         jobInfo.dumpToDir(outDir);
     }
 
     /**
-     * Stops job.
+     * Stops job. Running job is interrupted, queued job is cancelled.
      */
     public void stop(){
-        if(whipper != null){
-            whipper.stop();
+        synchronized (runLock) {
+            if(runner != null){
+                runner.interrupt();
+            } else if(!finished && !cancelled){
+                cancelled = true;
+                artifactCache = null;
+                jobInfo.jobCancelled();
+                dumpTerminalState();
+                reset();
+            }
         }
     }
 
     /**
-     * Returns result of this job as a JSON object.
+     * Returns {@code true} if this job has been cancelled before it started.
      *
-     * @return result as a JSON object
+     * @return whether this job has been cancelled
      */
-    public synchronized JSONObject resultToJson(){
-        JSONObject o = getJsonObject();
-        JSONArray ar = new JSONArray(scenarios.values());
-        o.put(SCENARIOS, ar);
-        if(runningMetaQS != null){
-            o.put("runningMetaQuerySet", runningMetaQS);
-            if(runningMetaQ != null){
-                o.put("runningMetaQuery", runningMetaQ);
-            }
+    boolean isCancelled(){
+        synchronized (runLock) {
+            return cancelled;
         }
-        return o;
+    }
+
+    /**
+     * Returns {@code true} if this job will not change anymore - it has finished,
+     * it has been cancelled before it started or it has failed before the test started.
+     *
+     * @return whether this job is in terminal state
+     */
+    public boolean isDone(){
+        return finished || failed || isCancelled();
+    }
+
+    /**
+     * Returns {@code true} if this job is queued or running.
+     *
+     * @return whether this job is active
+     */
+    boolean isActive(){
+        synchronized (runLock) {
+            return runner != null || (queued && !done && !cancelled);
+        }
+    }
+
+    /**
+     * Returns weight of this job - estimate of memory used by the job
+     * (number of scenarios, suites, query sets and queries in the result).
+     *
+     * @return weight of this job
+     */
+    int getWeight(){
+        return 1 + nodes.get();
+    }
+
+    /**
+     * Returns result of this job which can be written to the output stream.
+     * <p>
+     * Result is written directly from the current snapshot of the progress,
+     * no intermediate JSON objects are created.
+     *
+     * @param depth number of levels nested in scenarios to write (0 - only scenarios,
+     *      1 - scenarios and suites, ...), negative for all levels
+     * @param fields fields of scenarios, suites, query sets and queries to write
+     *      (see {@link #RESULT_FIELDS}), {@code null} for all fields
+     * @return result
+     * @throws IllegalArgumentException if {@code fields} contains unknown field
+     */
+    public Result getResult(int depth, Set<String> fields) throws IllegalArgumentException{
+        if(fields != null && !RESULT_FIELDS.containsAll(fields)){
+            Set<String> unknown = new TreeSet<>(fields);
+            unknown.removeAll(RESULT_FIELDS);
+            throw new IllegalArgumentException("Unknown fields " + unknown + ". Known fields are " + RESULT_FIELDS + ".");
+        }
+        return new Result(getSnapshot(), depth < 0 ? Integer.MAX_VALUE : depth, fields);
     }
 
     /**
@@ -151,16 +365,223 @@ public class WhipperJob implements ProgressMonitor{
      *
      * @return brief summary
      */
-    public synchronized JSONObject briefResultToJson(){
+    public JSONObject briefResultToJson(){
+        Snapshot snap = getSnapshot();
         JSONObject o = getJsonObject();
         JSONArray ar = new JSONArray();
         o.put(SCENARIOS, ar);
-        for(Entry<String, Holder> e : scenarios.entrySet()){
-            ar.put(e.getValue().briefSummary());
+        for(Node n : snap.scenarios){
+            if(n != null){
+                ar.put(n.briefSummary());
+            }
         }
         return o;
     }
 
+    /**
+     * Returns snapshot of the progress. Snapshot is rebuilt if the progress has changed
+     * and current snapshot is older than {@link #SNAPSHOT_INTERVAL_MS}. Only one reader
+     * rebuilds the snapshot, concurrent readers get the current one.
+     *
+     * @return snapshot of the progress
+     */
+    private Snapshot getSnapshot(){
+        Snapshot snap = snapshot;
+        long v = version.get();
+        if(snap.version == v
+                || System.currentTimeMillis() - snap.created < SNAPSHOT_INTERVAL_MS
+                || !building.compareAndSet(false, true)){
+            return snap;
+        }
+        try{
+            snap = createSnapshot(v);
+            snapshot = snap;
+            return snap;
+        } finally {
+            building.set(false);
+        }
+    }
+
+    /**
+     * Creates snapshot of the current progress.
+     *
+     * @param v version of the progress
+     * @return new snapshot
+     */
+    private Snapshot createSnapshot(long v){
+        Map<String, Holder> scens = scenarios;
+        List<String> names = scenarioNames;
+        List<Node> nodes = new ArrayList<>(Math.max(names.size(), scens.size()));
+        for(String name : names){
+            Holder h = scens.get(name);
+            nodes.add(h == null ? null : h.snapshot());
+        }
+        for(Entry<String, Holder> e : scens.entrySet()){
+            if(!names.contains(e.getKey())){
+                nodes.add(e.getValue().snapshot());
+            }
+        }
+        return new Snapshot(v, nodes, runningMetaQS, runningMetaQ);
+    }
+
+    /**
+     * Returns epoch of this instance of the job. Version of the progress
+     * starts from zero in every instance (e.g. when job is restored after restart),
+     * thus version is unique only together with the epoch.
+     *
+     * @return epoch of this instance
+     */
+    public String getEpoch(){
+        return epoch;
+    }
+
+    /**
+     * Returns current version of the progress.
+     *
+     * @return version of the progress
+     */
+    public long getVersion(){
+        return version.get();
+    }
+
+    /**
+     * Returns token of specified version of the progress of this instance of the job.
+     *
+     * @param version version of the progress
+     * @return token of the progress
+     */
+    public String progressToken(long version){
+        return epoch + "-" + version;
+    }
+
+    /**
+     * Returns version of the progress from its token (see {@link #progressToken(long)}).
+     *
+     * @param token token of the progress or {@code null}
+     * @return version of the progress or -1 (i.e. whole progress is unknown to the client) if token
+     *      is missing, malformed or belongs to other instance of the job
+     */
+    public long parseProgressToken(String token){
+        if(token == null){
+            return -1;
+        }
+        String t = token.trim();
+        int dash = t.lastIndexOf('-');
+        if(dash <= 0 || !epoch.equals(t.substring(0, dash))){
+            return -1;
+        }
+        try{
+            return Long.parseLong(t.substring(dash + 1));
+        } catch (NumberFormatException ex){
+            return -1;
+        }
+    }
+
+    /**
+     * Returns changes of the progress since specified version as a JSON object.
+     * <p>
+     * Returned object contains only scenarios, suites, query sets and queries which have changed
+     * since {@code since}. Whole progress is returned (and property {@code full} is {@code true})
+     * if {@code since} is negative, unknown or older than the last reset of the progress
+     * (start or finish of the job).
+     *
+     * @param since version of the progress known to the client
+     * @return changes of the progress
+     */
+    public JSONObject deltaToJson(long since){
+        long v = version.get();
+        boolean full = since < resetVersion || since > v;
+        long from = full ? -1 : since;
+        JSONObject o = new JSONObject();
+        o.put(ID, id);
+        o.put(VERSION, v);
+        o.put(TOKEN, progressToken(v));
+        o.put(FULL, full);
+        o.put(FINISHED, finished);
+        if(full){
+            o.put(JOB_INFO, jobInfo.asJson());
+        }
+        JSONArray ar = new JSONArray();
+        for(Holder h : scenarios.values()){
+            if(h.changed > from){
+                ar.put(h.delta(from));
+            }
+        }
+        o.put(SCENARIOS, ar);
+        String metaQS = runningMetaQS;
+        if(metaQS != null){
+            o.put(RUNNING_META_QUERY_SET, metaQS);
+            String metaQ = runningMetaQ;
+            if(metaQ != null){
+                o.put(RUNNING_META_QUERY, metaQ);
+            }
+        }
+        return o;
+    }
+
+    /**
+     * Marks progress as changed. Changed holders are stamped with the new version
+     * before the version is published, thus reader which sees the new version
+     * sees the changed holders as well.
+     *
+     * @param changed changed holders (i.e. holder and all its parents, {@code null}s are ignored)
+     */
+    private void changed(Holder... changed){
+        long v = version.get() + 1;
+        for(Holder h : changed){
+            if(h != null){
+                h.changed = v;
+            }
+        }
+        version.set(v);
+        notifyWaiting();
+    }
+
+    /**
+     * Wakes up readers waiting for the change of the progress (see {@link #awaitChange(long, long)}).
+     */
+    private void notifyWaiting(){
+        if(waiting.get() > 0){
+            synchronized (changeLock) {
+                changeLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits until the progress changes (its version differs from {@code known}),
+     * this job is done or timeout elapses. Waiting reader does not consume CPU,
+     * it is woken up by the thread which updates the progress.
+     *
+     * @param known version of the progress known to the reader
+     * @param timeoutMs maximum time to wait in milliseconds
+     * @return {@code true} if the progress has changed or this job is done
+     * @throws InterruptedException if waiting thread has been interrupted
+     */
+    public boolean awaitChange(long known, long timeoutMs) throws InterruptedException{
+        long end = System.currentTimeMillis() + timeoutMs;
+        waiting.incrementAndGet();
+        try{
+            synchronized (changeLock) {
+                long left;
+                while(version.get() == known && !isDone() && (left = end - System.currentTimeMillis()) > 0){
+                    changeLock.wait(left);
+                }
+            }
+        } finally {
+            waiting.decrementAndGet();
+        }
+        return version.get() != known || isDone();
+    }
+
+    /**
+     * Marks progress as reset (i.e. all holders have been replaced).
+     */
+    private void reset(){
+        resetVersion = version.get() + 1;
+        changed();
+    }
+
     /**
      * Returns basic object. Contains ID and job name.
      *
@@ -174,33 +595,72 @@ public class WhipperJob implements ProgressMonitor{
     }
 
     /**
-     * Returns result of this job as a ZIP input stream.
+     * Returns ZIP archive of this job's output directory.
      *
      * @param context Whipper application context
-     * @return result or {@code null} if job is running
+     * @return archive or {@code null} if job has not finished yet
      * @see #isFinished()
      */
-    public InputStream resultToZip(Context context){
-        if(finished){
+    public JobArchive getArchive(Context context){
+        if(!finished){
             return null;
         }
-        // we assume there is exactly one instance per each job id in the application
-        // otherwise we need a better synchronization
-        synchronized (this) {
-            File f = context.getTmpDir("job_result_ " + id + ".zip");
-            try{
-                if(!f.exists()){
-                    Utils.zip(getFullPathToJob(), f);
+        if(packed != null){
+            return JobArchive.packed(id, packed, jobInfo.getFinished());
+        }
+        return new JobArchive(id, getFullPathToJob(), jobInfo.getFinished(), context);
+    }
+
+    /**
+     * Reads error file of the query written by compare result mode. File is read
+     * from the output directory or from the archive if this job has been packed.
+     *
+     * @param scenario scenario ID
+     * @param suite suite ID
+     * @param query query ID
+     * @param reader reader of the error file (possibly compressed)
+     * @param <T> type of the read content
+     * @return content read by {@code reader} or {@code null} if error file does not exist
+     * @throws IOException if file cannot be read
+     */
+    public <T> T readErrorFile(String scenario, String suite, String query, ErrorFileReader<T> reader) throws IOException{
+        if(!isFileName(scenario) || !isFileName(suite) || !isFileName(query)){
+            return null;
+        }
+        try(ArtifactSource src = packed == null ? ArtifactSource.directory(getFullPathToJob()) : ArtifactSource.open(packed)){
+            Path dir = src.resolve(scenario, COMPARE_ERRORS_DIR);
+            for(String name : Compression.allNames(suite + "_" + query + "_error.xml")){
+                Path f = dir.resolve(name);
+                if(Files.isRegularFile(f)){
+                    return reader.read(f);
                 }
-                return new FileInputStream(f);
-            } catch (IOException ex){
-                Utils.LOG.error("Cannot create ZIP archive.", ex);
-                f.delete();
-                return null;
             }
+            return null;
         }
     }
 
+    /**
+     * Returns {@code true} if output directory of this job has been packed
+     * to the archive (see {@link WhipperJobRetention}).
+     *
+     * @return whether this job is packed
+     */
+    public boolean isPacked(){
+        return packed != null;
+    }
+
+    /**
+     * Returns {@code true} if {@code name} can be used as a name of the file (i.e. it does not
+     * contain path separator and it does not point to the parent directory).
+     *
+     * @param name name
+     * @return whether name is valid file name
+     */
+    private static boolean isFileName(String name){
+        return name != null && !name.isEmpty() && !name.contains("/") && !name.contains(File.separator)
+                && !".".equals(name) && !"..".equals(name);
+    }
+
     /**
      * Returns {@code true} if this job has started and finished,
      * {@code false} otherwise.
@@ -229,14 +689,49 @@ public class WhipperJob implements ProgressMonitor{
      *      proper representation of the job
      */
     static WhipperJob fromDir(String id, File f){
-        WhipperProperties wp = WhipperProperties.fromOutputDir(f);
-        WhipperResult wr = WhipperResult.fromDir(f);
-        WhipperJobInfo wji = WhipperJobInfo.fromDir(f);
+        return fromDir(id, f.toPath());
+    }
+
+    /**
+     * Reads job from archive with packed output directory (see {@link WhipperJobRetention}).
+     *
+     * @param id ID of the job
+     * @param archive ZIP archive with packed output directory
+     * @return new job or {@code null} if archive cannot be read or it does not contain
+     *      proper representation of the job
+     */
+    static WhipperJob fromArchive(String id, File archive){
+        try(ArtifactSource src = ArtifactSource.open(archive)){
+            WhipperJob out = fromDir(id, src.getRoot());
+            if(out != null){
+                out.packed = archive;
+            }
+            return out;
+        } catch (IOException ex){
+            LOG.error("Cannot read job from archive {} - {}", archive, ex.getMessage(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * Reads job from directory. Directory can belong to any file system
+     * (e.g. directory in ZIP archive).
+     *
+     * @param id ID of the job
+     * @param dir directory with this job
+     * @return new job or {@code null} if directory does not contain
+     *      proper representation of the job
+     */
+    private static WhipperJob fromDir(String id, Path dir){
+        WhipperProperties wp = WhipperProperties.fromOutputDir(dir);
+        WhipperResult wr = WhipperResult.fromDir(dir);
+        WhipperJobInfo wji = WhipperJobInfo.fromDir(dir);
         if(wp == null || wr == null || wji == null){
             return null;
         }
         WhipperJob out = new WhipperJob(id, wji, wp);
-        out.finished(wr);
+        // job info of finished job is kept as it is
+        out.setResult(wr);
         return out;
     }
 
@@ -245,19 +740,33 @@ public class WhipperJob implements ProgressMonitor{
     /* **************************** */
 
     @Override
-    public synchronized void starting(List<String> scenariosToRun){
-        scenarios.clear();
-        for(String s : scenariosToRun){
-            scenarios.put(s, null);
-        }
+    public void starting(List<String> scenariosToRun){
+        List<String> names = new ArrayList<>(scenariosToRun);
+        Collections.sort(names);
+        scenarios = new ConcurrentSkipListMap<>();
+        nodes.set(0);
+        scenarioNames = Collections.unmodifiableList(names);
+        reset();
     }
 
     @Override
-    public synchronized void finished(WhipperResult result){
-        scenarios.clear();
+    public void finished(WhipperResult result){
+        jobInfo.jobFinished();
+        setResult(result);
+        jobInfo.dumpToDir(props.getOutputDir());
+    }
+
+    /**
+     * Sets final result of this job.
+     *
+     * @param result result of the job
+     */
+    private void setResult(WhipperResult result){
+        ConcurrentMap<String, Holder> scens = new ConcurrentSkipListMap<>();
+        nodes.set(0);
         for(Entry<String, WhipperResult.Result> sc : result){
             WhipperResult.Result scR = sc.getValue();
-            Holder scH = createAndPut(scenarios, sc.getKey(), SUITES);
+            Holder scH = createAndPut(scens, sc.getKey(), SUITES);
             fillHolder(scH, scR);
             for(Entry<String, WhipperResult.Result> su : scR){
                 WhipperResult.Result suR = su.getValue();
@@ -275,9 +784,14 @@ public class WhipperJob implements ProgressMonitor{
                 }
             }
         }
+        scenarios = scens;
+        scenarioNames = Collections.emptyList();
+        runningMetaQS = null;
+        runningMetaQ = null;
         finished = true;
-        jobInfo.jobFinished();
-        jobInfo.dumpToDir(props.getOutputDir());
+        reset();
+        // final state is published immediately
+        snapshot = createSnapshot(version.get());
     }
 
     /**
@@ -287,9 +801,9 @@ public class WhipperJob implements ProgressMonitor{
      * @param r result
      */
     private void fillHolder(Holder h, WhipperResult.Result r){
-        h.all = r.getAll();
-        h.pass = r.getPass();
-        h.fail = r.getFail();
+        h.all.set(r.getAll());
+        h.pass.set(r.getPass());
+        h.fail.set(r.getFail());
         h.countSkip();
     }
 
@@ -302,162 +816,449 @@ public class WhipperJob implements ProgressMonitor{
      * @return created holder
      */
     private Holder createAndPut(Map<String, Holder> map, String key, String nestedKey){
-        Holder h = new Holder(key, nestedKey);
-        map.put(key, h);
+        Holder h = new Holder(key, nestedKey, version.get() + 1);
+        if(map.put(key, h) == null){
+            nodes.incrementAndGet();
+        }
         return h;
     }
 
     @Override
-    public synchronized void startingScenario(Scenario scen){
+    public void startingScenario(Scenario scen){
         currentScenario = createAndPut(scenarios, scen.getId(), SUITES);
-        currentScenario.all = scen.getNumberOfAllQueries();
-        for(Suite s : scen.getSuites()){
-            currentScenario.nested.put(s.getId(), null);
-        }
+        currentScenario.all.set(scen.getNumberOfAllQueries());
+        changed(currentScenario);
     }
 
     @Override
-    public synchronized void scenarioFinished(Scenario scen){
-        currentScenario.countSkip();
+    public void scenarioFinished(Scenario scen){
+        if(currentScenario != null){
+            currentScenario.countSkip();
+            changed(currentScenario);
+        }
         currentScenario = null;
     }
 
     @Override
-    public synchronized void startingSuite(Suite suite){
-        currentSuite = createAndPut(currentScenario.nested, suite.getId(), QUERY_SETS);
-        currentSuite.all = suite.getNumberOfAllQueries();
-        for(QuerySet qs : suite.getQuerySets()){
-            currentSuite.nested.put(qs.getId(), null);
+    public void startingSuite(Suite suite){
+        if(currentScenario == null){
+            return;
         }
+        currentSuite = createAndPut(currentScenario.nested, suite.getId(), QUERY_SETS);
+        currentSuite.all.set(suite.getNumberOfAllQueries());
+        changed(currentSuite, currentScenario);
     }
 
     @Override
-    public synchronized void suiteFinished(Suite suite){
-        currentSuite.countSkip();
+    public void suiteFinished(Suite suite){
+        if(currentSuite != null){
+            currentSuite.countSkip();
+            changed(currentSuite, currentScenario);
+        }
         currentSuite = null;
     }
 
     @Override
-    public synchronized void startingQuerySet(QuerySet qs){
-        currentQuerySet = createAndPut(currentSuite.nested, qs.getId(), QUERIES);
-        currentQuerySet.all = qs.getNumberOfAllQueries();
-        for(Query q : qs.getQueries()){
-            currentQuerySet.nested.put(q.getId(), null);
+    public void startingQuerySet(QuerySet qs){
+        if(currentSuite == null){
+            return;
         }
+        currentQuerySet = createAndPut(currentSuite.nested, qs.getId(), QUERIES);
+        currentQuerySet.all.set(qs.getNumberOfAllQueries());
+        changed(currentQuerySet, currentSuite, currentScenario);
     }
 
     @Override
-    public synchronized void querySetFinished(QuerySet qs){
-        currentQuerySet.countSkip();
+    public void querySetFinished(QuerySet qs){
+        if(currentQuerySet != null){
+            currentQuerySet.countSkip();
+            changed(currentQuerySet, currentSuite, currentScenario);
+        }
         currentQuerySet = null;
     }
 
     @Override
-    public synchronized void startingQuery(Query q){
+    public void startingQuery(Query q){
+        if(currentQuerySet == null){
+            return;
+        }
         currentQuery = createAndPut(currentQuerySet.nested, q.getId(), null);
-        currentQuery.all = 1;
+        currentQuery.all.set(1);
+        changed(currentQuery, currentQuerySet, currentSuite, currentScenario);
     }
 
     @Override
-    public synchronized void queryFinished(Query q){
+    public void queryFinished(Query q){
+        if(currentQuery == null || currentQuerySet == null || currentSuite == null || currentScenario == null){
+            // starting event has been dropped
+            return;
+        }
         if(!q.isExecuted()){
-            currentQuery.skip++;
-            currentQuerySet.skip++;
-            currentSuite.skip++;
-            currentScenario.skip++;
+            increment(Holder::getSkip);
         } else if(q.getResult().pass()){
-            currentQuery.pass++;
-            currentQuerySet.pass++;
-            currentSuite.pass++;
-            currentScenario.pass++;
+            increment(Holder::getPass);
         } else {
             QueryResult qr = q.getResult();
-            currentQuery.fail++;
-            currentQuerySet.fail++;
-            currentSuite.fail++;
-            currentScenario.fail++;
             currentQuery.err = qr.isError() ? qr.getErrors().get(0) : qr.getException().toString();
+            increment(Holder::getFail);
         }
+        changed(currentQuery, currentQuerySet, currentSuite, currentScenario);
         currentQuery = null;
     }
 
+    /**
+     * Increments counter of current query and all its parents.
+     *
+     * @param counter counter to increment
+     */
+    private void increment(Function<Holder, AtomicInteger> counter){
+        counter.apply(currentQuery).incrementAndGet();
+        counter.apply(currentQuerySet).incrementAndGet();
+        counter.apply(currentSuite).incrementAndGet();
+        counter.apply(currentScenario).incrementAndGet();
+    }
+
     @Override
-    public synchronized void startingMetaQuerySet(QuerySet qs){
+    public void startingMetaQuerySet(QuerySet qs){
         runningMetaQS = qs.getId();
+        changed();
     }
 
     @Override
-    public synchronized void metaQuerySetFinished(QuerySet qs){
+    public void metaQuerySetFinished(QuerySet qs){
         runningMetaQS = null;
+        changed();
     }
 
     @Override
-    public synchronized void startingMetaQuery(Query q){
+    public void startingMetaQuery(Query q){
         runningMetaQ = q.getId();
+        changed();
     }
 
     @Override
-    public synchronized void metaQueryFinished(Query q){
+    public void metaQueryFinished(Query q){
         runningMetaQ = null;
+        changed();
     }
 
     /**
-     * Holder for result of the job.
+     * Live progress of one scenario, suite, query set or query.
      */
-    private static class Holder implements JSONString{
+    private static class Holder{
         private final String nestedKey;
-        private final Map<String, Holder> nested;
+        private final ConcurrentMap<String, Holder> nested;
         private final String id;
-        private int all;
-        private int pass;
-        private int fail;
-        private int skip;
-        private String err;
+        private final AtomicInteger all = new AtomicInteger();
+        private final AtomicInteger pass = new AtomicInteger();
+        private final AtomicInteger fail = new AtomicInteger();
+        private final AtomicInteger skip = new AtomicInteger();
+        private volatile String err;
+        private volatile long changed;
 
         /**
          * Creates new holder.
          *
          * @param id id of the holder
          * @param nestedKey nested key for nested holders (for JSON)
+         * @param changed version of the progress in which the holder has been created
          */
-        private Holder(String id, String nestedKey){
+        private Holder(String id, String nestedKey, long changed){
             this.id = id;
             this.nestedKey = nestedKey;
-            this.nested = this.nestedKey == null ? null : new TreeMap<String, Holder>();
+            this.changed = changed;
+            this.nested = this.nestedKey == null ? null : new ConcurrentSkipListMap<String, Holder>();
         }
 
         /**
          * Calculates and sets number of skipped queries.
          */
         private void countSkip(){
-            skip = all - fail - pass;
+            skip.set(all.get() - fail.get() - pass.get());
+        }
+
+        /**
+         * Returns counter of passed queries.
+         *
+         * @return counter
+         */
+        private AtomicInteger getPass(){
+            return pass;
+        }
+
+        /**
+         * Returns counter of failed queries.
+         *
+         * @return counter
+         */
+        private AtomicInteger getFail(){
+            return fail;
+        }
+
+        /**
+         * Returns counter of skipped queries.
+         *
+         * @return counter
+         */
+        private AtomicInteger getSkip(){
+            return skip;
+        }
+
+        /**
+         * Creates immutable snapshot of this holder and all nested holders.
+         *
+         * @return snapshot
+         */
+        private Node snapshot(){
+            Map<String, Node> n = null;
+            if(nested != null){
+                n = new TreeMap<>();
+                for(Entry<String, Holder> e : nested.entrySet()){
+                    n.put(e.getKey(), e.getValue().snapshot());
+                }
+                n = Collections.unmodifiableMap(n);
+            }
+            return new Node(id, nestedKey, n, all.get(), pass.get(), fail.get(), skip.get(), err);
         }
 
-        @Override
-        public String toJSONString(){
-            JSONObject o = briefSummary();
+        /**
+         * Returns this holder and all nested holders which have changed since specified
+         * version as a JSON object.
+         *
+         * @param since version of the progress
+         * @return changes of this holder
+         */
+        private JSONObject delta(long since){
+            JSONObject o = new JSONObject();
+            o.put(ID, id);
+            o.put(ALL, all.get());
+            o.put(PASS, pass.get());
+            o.put(FAIL, fail.get());
+            o.put(SKIP, skip.get());
+            String e = err;
+            if(e != null){
+                o.put(ERROR, e);
+            }
             if(nested != null){
-                o.put(nestedKey, new JSONObject(nested));
+                JSONObject n = new JSONObject();
+                for(Entry<String, Holder> en : nested.entrySet()){
+                    if(en.getValue().changed > since){
+                        n.put(en.getKey(), en.getValue().delta(since));
+                    }
+                }
+                o.put(nestedKey, n);
             }
+            return o;
+        }
+    }
+
+    /**
+     * Immutable snapshot of progress of the job.
+     */
+    private static final class Snapshot{
+        private final long version;
+        private final long created = System.currentTimeMillis();
+        private final List<Node> scenarios;
+        private final String runningMetaQS;
+        private final String runningMetaQ;
+
+        /**
+         * Creates new snapshot.
+         *
+         * @param version version of the progress
+         * @param scenarios snapshots of scenarios ({@code null} for scenarios which have not started yet)
+         * @param runningMetaQS running meta query set
+         * @param runningMetaQ running meta query
+         */
+        private Snapshot(long version, List<Node> scenarios, String runningMetaQS, String runningMetaQ){
+            this.version = version;
+            this.scenarios = Collections.unmodifiableList(scenarios);
+            this.runningMetaQS = runningMetaQS;
+            this.runningMetaQ = runningMetaQ;
+        }
+    }
+
+    /**
+     * Immutable snapshot of one holder.
+     */
+    private static final class Node{
+        private final String id;
+        private final String nestedKey;
+        private final Map<String, Node> nested;
+        private final int all;
+        private final int pass;
+        private final int fail;
+        private final int skip;
+        private final String err;
+
+        /**
+         * Creates new node.
+         *
+         * @param id id of the node
+         * @param nestedKey nested key for nested nodes (for JSON)
+         * @param nested nested nodes or {@code null}
+         * @param all number of all queries
+         * @param pass number of passed queries
+         * @param fail number of failed queries
+         * @param skip number of skipped queries
+         * @param err error or {@code null}
+         */
+        private Node(String id, String nestedKey, Map<String, Node> nested, int all, int pass, int fail, int skip, String err){
+            this.id = id;
+            this.nestedKey = nestedKey;
+            this.nested = nested;
+            this.all = all;
+            this.pass = pass;
+            this.fail = fail;
+            this.skip = skip;
+            this.err = err;
+        }
+
+        /**
+         * Writes this node and nested nodes.
+         *
+         * @param w writer
+         * @param depth number of nested levels to write
+         * @param fields fields to write or {@code null} for all fields
+         */
+        private void write(JSONWriter w, int depth, Set<String> fields){
+            w.object();
+            writeField(w, fields, ID, id);
+            writeField(w, fields, ALL, all);
+            writeField(w, fields, PASS, pass);
+            writeField(w, fields, FAIL, fail);
+            writeField(w, fields, SKIP, skip);
             if(err != null){
-                o.put("error", err);
+                writeField(w, fields, ERROR, err);
+            }
+            if(nested != null && depth > 0){
+                w.key(nestedKey).object();
+                for(Entry<String, Node> e : nested.entrySet()){
+                    w.key(e.getKey());
+                    e.getValue().write(w, depth - 1, fields);
+                }
+                w.endObject();
+            }
+            w.endObject();
+        }
+
+        /**
+         * Writes field if it is selected.
+         *
+         * @param w writer
+         * @param fields selected fields or {@code null} for all fields
+         * @param key name of the field
+         * @param value value of the field
+         */
+        private static void writeField(JSONWriter w, Set<String> fields, String key, Object value){
+            if(fields == null || fields.contains(key)){
+                w.key(key).value(value);
             }
-            return o.toString();
         }
 
         /**
          * Returns brief summary as a JSON object.
          *
-         * @return brief summary (without nested holders)
+         * @return brief summary (without nested nodes)
          */
         public JSONObject briefSummary(){
             JSONObject o = new JSONObject();
             o.put(ID, id);
-            o.put("all", all);
-            o.put("pass", pass);
-            o.put("fail", fail);
-            o.put("skip", skip);
+            o.put(ALL, all);
+            o.put(PASS, pass);
+            o.put(FAIL, fail);
+            o.put(SKIP, skip);
             return o;
         }
     }
+
+    /**
+     * Reader of the error file.
+     *
+     * @param <T> type of the read content
+     * @see WhipperJob#readErrorFile(String, String, String, ErrorFileReader)
+     */
+    @FunctionalInterface
+    public interface ErrorFileReader<T>{
+
+        /**
+         * Reads error file.
+         *
+         * @param f error file (possibly compressed), it can belong to any file system
+         * @return read content
+         * @throws IOException if file cannot be read
+         */
+        T read(Path f) throws IOException;
+    }
+
+    /**
+     * Result of the job - view of one snapshot of the progress which is written
+     * directly to the output stream.
+     */
+    public final class Result{
+        private final Snapshot snap;
+        private final int depth;
+        private final Set<String> fields;
+
+        /**
+         * Creates new result.
+         *
+         * @param snap snapshot of the progress
+         * @param depth number of nested levels to write
+         * @param fields fields to write or {@code null} for all fields
+         */
+        private Result(Snapshot snap, int depth, Set<String> fields){
+            this.snap = snap;
+            this.depth = depth;
+            this.fields = fields == null ? null : new HashSet<>(fields);
+        }
+
+        /**
+         * Returns version of the progress the result corresponds to (see {@link WhipperJob#getVersion()}).
+         *
+         * @return version of the progress
+         */
+        public long getVersion(){
+            return snap.version;
+        }
+
+        /**
+         * Writes result as a JSON object to the output stream (UTF-8).
+         *
+         * @param out output stream
+         * @throws IOException if an I/O error occurs
+         */
+        public void writeTo(OutputStream out) throws IOException{
+            Writer bw = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            try{
+                JSONWriter w = new JSONWriter(bw);
+                w.object()
+                        .key(ID).value(id)
+                        .key(JOB_INFO).value(jobInfo.asJson())
+                        .key(VERSION).value(snap.version)
+                        .key(SCENARIOS).array();
+                for(Node n : snap.scenarios){
+                    if(n == null){
+                        w.value(null);
+                    } else {
+                        n.write(w, depth, fields);
+                    }
+                }
+                w.endArray();
+                if(snap.runningMetaQS != null){
+                    w.key(RUNNING_META_QUERY_SET).value(snap.runningMetaQS);
+                    if(snap.runningMetaQ != null){
+                        w.key(RUNNING_META_QUERY).value(snap.runningMetaQ);
+                    }
+                }
+                w.endObject();
+            } catch (JSONException ex){
+                if(ex.getCause() instanceof IOException){
+                    throw (IOException)ex.getCause();
+                }
+                throw ex;
+            }
+            bw.flush();
+        }
+    }
 }
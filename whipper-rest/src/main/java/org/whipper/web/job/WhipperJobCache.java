@@ -0,0 +1,214 @@
+package org.whipper.web.job;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import org.json.JSONObject;
+
+/**
+ * Concurrent cache of jobs with least-recently-used eviction.
+ * <p>
+ * Size of the cache is bounded by total weight of cached jobs, where weight of the job
+ * is number of nodes of its result tree (see {@link WhipperJob#getWeight()}).
+ * Queued and running jobs are pinned - they are never evicted. When the weight exceeds
+ * the limit, least recently used jobs are evicted until the weight drops
+ * to {@link #LOW_WATERMARK} of the limit.
+ */
+class WhipperJobCache{
+
+    /**
+     * System property - maximum total weight of cached jobs.
+     */
+    static final String MAX_WEIGHT_PROP = "whipper.jobs.cache.weight";
+    private static final long DEFAULT_MAX_WEIGHT = 2000000;
+    private static final double LOW_WATERMARK = 0.9;
+
+    private final long maxWeight;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates new cache configured from system properties.
+     */
+    WhipperJobCache(){
+        this(Long.getLong(MAX_WEIGHT_PROP, DEFAULT_MAX_WEIGHT));
+    }
+
+    /**
+     * Creates new cache.
+     *
+     * @param maxWeight maximum total weight of cached jobs
+     * @throws IllegalArgumentException if {@code maxWeight} is not positive
+     */
+    WhipperJobCache(long maxWeight) throws IllegalArgumentException{
+        if(maxWeight <= 0){
+            throw new IllegalArgumentException("Maximum weight must be positive - " + maxWeight);
+        }
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Returns cached job or loads it if it is not cached.
+     *
+     * @param id job ID
+     * @param loader loader of the job (can return {@code null})
+     * @return job or {@code null} if job is not cached and cannot be loaded
+     */
+    WhipperJob get(String id, Function<String, WhipperJob> loader){
+        Entry e = entries.get(id);
+        if(e != null){
+            hits.increment();
+            e.lastAccess = clock.incrementAndGet();
+            return e.job;
+        }
+        misses.increment();
+        WhipperJob job = loader.apply(id);
+        if(job == null){
+            return null;
+        }
+        Entry loaded = new Entry(job, clock.incrementAndGet());
+        e = entries.putIfAbsent(id, loaded);
+        if(e != null){
+            // loaded concurrently
+            return e.job;
+        }
+        evictIfNeeded();
+        return job;
+    }
+
+    /**
+     * Puts job into the cache.
+     *
+     * @param id job ID
+     * @param job job
+     */
+    void put(String id, WhipperJob job){
+        entries.put(id, new Entry(job, clock.incrementAndGet()));
+        evictIfNeeded();
+    }
+
+    /**
+     * Removes job from the cache.
+     *
+     * @param id job ID
+     * @return removed job or {@code null}
+     */
+    WhipperJob remove(String id){
+        Entry e = entries.remove(id);
+        return e == null ? null : e.job;
+    }
+
+    /**
+     * Returns all cached jobs.
+     *
+     * @return cached jobs
+     */
+    Collection<WhipperJob> jobs(){
+        List<WhipperJob> out = new ArrayList<>(entries.size());
+        for(Entry e : entries.values()){
+            out.add(e.job);
+        }
+        return out;
+    }
+
+    /**
+     * Evicts least recently used jobs if total weight exceeds limit.
+     * Only one thread evicts at a time, other threads do not wait.
+     */
+    private void evictIfNeeded(){
+        if(!evictionLock.tryLock()){
+            return;
+        }
+        try{
+            long weight = 0;
+            List<Entry> candidates = new ArrayList<>();
+            for(Entry e : entries.values()){
+                weight += e.job.getWeight();
+                if(!isPinned(e.job)){
+                    candidates.add(e);
+                }
+            }
+            if(weight <= maxWeight){
+                return;
+            }
+            long target = (long)(maxWeight * LOW_WATERMARK);
+            candidates.sort(Comparator.comparingLong(e -> e.lastAccess));
+            for(Entry e : candidates){
+                if(weight <= target){
+                    break;
+                }
+                if(entries.remove(e.job.getId(), e)){
+                    weight -= e.job.getWeight();
+                    evictions.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Returns {@code true} if job cannot be evicted (i.e. it is queued or running).
+     *
+     * @param job job
+     * @return whether job is pinned
+     */
+    private static boolean isPinned(WhipperJob job){
+        return job.isActive();
+    }
+
+    /**
+     * Returns statistics of the cache as a JSON object.
+     *
+     * @return statistics
+     */
+    JSONObject statistics(){
+        long weight = 0;
+        int pinned = 0;
+        for(Entry e : entries.values()){
+            weight += e.job.getWeight();
+            if(isPinned(e.job)){
+                pinned++;
+            }
+        }
+        return new JSONObject()
+                .put("size", entries.size())
+                .put("pinned", pinned)
+                .put("weight", weight)
+                .put("maxWeight", maxWeight)
+                .put("hits", hits.sum())
+                .put("misses", misses.sum())
+                .put("evictions", evictions.sum());
+    }
+
+    /**
+     * Cache entry.
+     */
+    private static final class Entry{
+        private final WhipperJob job;
+        private volatile long lastAccess;
+
+        /**
+         * Creates new entry.
+         *
+         * @param job job
+         * @param lastAccess time of the last access
+         */
+        private Entry(WhipperJob job, long lastAccess){
+            this.job = job;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
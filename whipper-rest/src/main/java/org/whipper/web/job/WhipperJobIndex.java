@@ -0,0 +1,266 @@
+package org.whipper.web.job;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.whipper.web.Utils;
+
+/**
+ * Persistent index of brief summaries of finished jobs.
+ * <p>
+ * Index is an append-only log - one JSON record per line. Each record either puts
+ * summary of the job or deletes it. Log is read once on start-up and it is compacted
+ * whenever more than half of its records are obsolete. Listing of jobs is served
+ * from memory and does not touch job directories.
+ */
+class WhipperJobIndex implements Closeable{
+
+    private static final String OP = "op";
+    private static final String PUT = "put";
+    private static final String DELETE = "delete";
+    private static final String ID = "id";
+    private static final String SUMMARY = "summary";
+    private static final int COMPACT_MIN_RECORDS = 64;
+
+    private final File file;
+    // in order of first put
+    private final Map<String, JSONObject> summaries = new LinkedHashMap<>();
+    private List<JSONObject> newestFirst;
+    private int records;
+    private Writer writer;
+
+    /**
+     * Creates new index.
+     *
+     * @param file log file of the index
+     */
+    WhipperJobIndex(File file){
+        this.file = file;
+    }
+
+    /**
+     * Loads index from the log file and compacts the log if needed.
+     *
+     * @return {@code false} if the log file does not exist (i.e. index has to be built),
+     *      {@code true} otherwise
+     */
+    synchronized boolean load(){
+        if(!file.exists()){
+            return false;
+        }
+        try(BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))){
+            String line;
+            while((line = br.readLine()) != null){
+                if(line.isEmpty()){
+                    continue;
+                }
+                try{
+                    apply(new JSONObject(line));
+                    records++;
+                } catch (JSONException ex){
+                    // probably incomplete last record
+                    Utils.LOG.warn("Skipping invalid record of job index - {}", ex.getMessage());
+                }
+            }
+        } catch (IOException ex){
+            Utils.LOG.error("Cannot read job index " + file, ex);
+        }
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * Applies record to in-memory index.
+     *
+     * @param record record
+     */
+    private void apply(JSONObject record){
+        String id = record.getString(ID);
+        if(PUT.equals(record.getString(OP))){
+            summaries.put(id, record.getJSONObject(SUMMARY));
+        } else {
+            summaries.remove(id);
+        }
+        newestFirst = null;
+    }
+
+    /**
+     * Puts summary of the job to the index.
+     *
+     * @param id job ID
+     * @param summary brief summary of the job
+     */
+    synchronized void put(String id, JSONObject summary){
+        append(new JSONObject().put(OP, PUT).put(ID, id).put(SUMMARY, summary));
+    }
+
+    /**
+     * Removes job from the index.
+     *
+     * @param id job ID
+     */
+    synchronized void remove(String id){
+        if(summaries.containsKey(id)){
+            append(new JSONObject().put(OP, DELETE).put(ID, id));
+        }
+    }
+
+    /**
+     * Returns {@code true} if index contains job.
+     *
+     * @param id job ID
+     * @return whether index contains job
+     */
+    synchronized boolean contains(String id){
+        return summaries.containsKey(id);
+    }
+
+    /**
+     * Returns page of summaries, newest first.
+     *
+     * @param offset number of matching summaries to skip
+     * @param limit maximum number of returned summaries
+     * @param filter filter of summaries
+     * @return summaries
+     */
+    synchronized List<JSONObject> page(int offset, int limit, Predicate<JSONObject> filter){
+        if(newestFirst == null){
+            List<JSONObject> all = new ArrayList<>(summaries.values());
+            Collections.reverse(all);
+            newestFirst = all;
+        }
+        List<JSONObject> out = new ArrayList<>(Math.min(limit, summaries.size()));
+        int skip = offset;
+        for(int i = 0; i < newestFirst.size() && out.size() < limit; i++){
+            JSONObject s = newestFirst.get(i);
+            if(filter.test(s)){
+                if(skip > 0){
+                    skip--;
+                } else {
+                    out.add(s);
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns IDs of jobs with matching summaries, oldest first.
+     *
+     * @param filter filter of summaries
+     * @return IDs of jobs
+     */
+    synchronized List<String> ids(Predicate<JSONObject> filter){
+        List<String> out = new ArrayList<>();
+        for(Map.Entry<String, JSONObject> e : summaries.entrySet()){
+            if(filter.test(e.getValue())){
+                out.add(e.getKey());
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Applies record, appends it to the log and compacts the log if needed.
+     *
+     * @param record record
+     */
+    private void append(JSONObject record){
+        apply(record);
+        try{
+            if(writer == null){
+                boolean terminate = !endsWithNewLine();
+                writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+                if(terminate){
+                    // terminate incomplete last record, otherwise new record would be appended to it
+                    writer.write('\n');
+                }
+            }
+            writer.write(record.toString());
+            writer.write('\n');
+            writer.flush();
+            records++;
+        } catch (IOException ex){
+            Utils.LOG.error("Cannot write to job index " + file, ex);
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Checks whether the log file is empty or ends with new line.
+     *
+     * @return {@code true} if the log can be appended without separator
+     * @throws IOException if an I/O error occurs
+     */
+    private boolean endsWithNewLine() throws IOException{
+        if(!file.exists() || file.length() == 0){
+            return true;
+        }
+        try(RandomAccessFile raf = new RandomAccessFile(file, "r")){
+            raf.seek(raf.length() - 1);
+            return raf.read() == '\n';
+        }
+    }
+
+    /**
+     * Compacts the log if more than half of its records are obsolete.
+     */
+    private void compactIfNeeded(){
+        if(records > COMPACT_MIN_RECORDS && records > 2 * summaries.size()){
+            compact();
+        }
+    }
+
+    /**
+     * Rewrites the log so it contains only current summaries.
+     */
+    private void compact(){
+        close();
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try{
+            try(Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))){
+                for(Map.Entry<String, JSONObject> e : summaries.entrySet()){
+                    w.write(new JSONObject().put(OP, PUT).put(ID, e.getKey()).put(SUMMARY, e.getValue()).toString());
+                    w.write('\n');
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            records = summaries.size();
+        } catch (IOException ex){
+            Utils.LOG.error("Cannot compact job index " + file, ex);
+            tmp.delete();
+        }
+    }
+
+    @Override
+    public synchronized void close(){
+        if(writer != null){
+            try{
+                writer.close();
+            } catch (IOException ex){
+                Utils.LOG.warn("Cannot close job index " + file, ex);
+            }
+            writer = null;
+        }
+    }
+}
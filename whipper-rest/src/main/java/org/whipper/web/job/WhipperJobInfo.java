@@ -1,9 +1,12 @@
 package org.whipper.web.job;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -17,18 +20,40 @@ import org.slf4j.LoggerFactory;
 class WhipperJobInfo{
 
     private static final Logger LOG = LoggerFactory.getLogger(WhipperJobInfo.class);
+    private static final String DUMP_FILE = "job-info.json";
     private static final String JOB_NAME = "job_name";
     private static final String STARTED = "started";
     private static final String FINISHED = "finished";
+    private static final String QUEUED = "queued";
+    private static final String STATE = "state";
+    private static final String STATE_CANCELLED = "cancelled";
+    private static final String STATE_FAILED = "failed";
 
     private String jobName;
-    private long started = -1;
-    private long finished = -1;
+    private volatile long queued = -1;
+    private volatile long started = -1;
+    private volatile long finished = -1;
+    private volatile boolean cancelled;
+    private volatile boolean failed;
 
     WhipperJobInfo(String jobName){
         this.jobName = jobName;
     }
 
+    void jobQueued(){
+        queued = System.currentTimeMillis();
+    }
+
+    void jobCancelled(){
+        cancelled = true;
+        finished = System.currentTimeMillis();
+    }
+
+    void jobFailed(){
+        failed = true;
+        finished = System.currentTimeMillis();
+    }
+
     void jobStarted(){
         started = System.currentTimeMillis();
     }
@@ -37,6 +62,25 @@ class WhipperJobInfo{
         finished = System.currentTimeMillis();
     }
 
+    long getQueued(){
+        return queued;
+    }
+
+    String getState(){
+        if(cancelled){
+            return STATE_CANCELLED;
+        } else if(failed){
+            return STATE_FAILED;
+        } else if(finished >= 0){
+            return "finished";
+        } else if(started >= 0){
+            return "running";
+        } else if(queued >= 0){
+            return "queued";
+        }
+        return "created";
+    }
+
     long getStarted(){
         return started;
     }
@@ -55,9 +99,11 @@ class WhipperJobInfo{
 
     JSONObject asJson(){
         return new JSONObject()
-                .append(JOB_NAME, jobName)
-                .append(STARTED, started)
-                .append(FINISHED, finished);
+                .put(JOB_NAME, jobName)
+                .put(STATE, getState())
+                .put(QUEUED, queued)
+                .put(STARTED, started)
+                .put(FINISHED, finished);
     }
 
     void dumpToDir(File dir){
@@ -69,11 +115,18 @@ class WhipperJobInfo{
     }
 
     static WhipperJobInfo fromDir(File dir){
-        try(FileReader fr = new FileReader(getDumpFile(dir))){
-            JSONObject o = new JSONObject(new JSONTokener(fr));
+        return fromDir(dir.toPath());
+    }
+
+    static WhipperJobInfo fromDir(Path dir){
+        try(Reader r = Files.newBufferedReader(dir.resolve(DUMP_FILE), Charset.defaultCharset())){
+            JSONObject o = new JSONObject(new JSONTokener(r));
             WhipperJobInfo out = new WhipperJobInfo(o.getString(JOB_NAME));
+            out.queued = o.optLong(QUEUED, -1);
             out.started = o.getLong(STARTED);
             out.finished = o.getLong(FINISHED);
+            out.cancelled = STATE_CANCELLED.equals(o.optString(STATE));
+            out.failed = STATE_FAILED.equals(o.optString(STATE));
             return out;
         } catch (IOException | JSONException ex){
             LOG.error("Cannot read result from output directory - {}", ex.getMessage(), ex);
@@ -82,6 +135,6 @@ class WhipperJobInfo{
     }
 
     private static File getDumpFile(File dir){
-        return new File(dir, "job-info.json");
+        return new File(dir, DUMP_FILE);
     }
 }
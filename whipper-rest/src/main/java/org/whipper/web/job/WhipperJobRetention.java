@@ -0,0 +1,221 @@
+package org.whipper.web.job;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.Deflater;
+
+import org.json.JSONObject;
+import org.whipper.web.Context;
+import org.whipper.web.Utils;
+
+/**
+ * Retention of finished jobs.
+ * <p>
+ * Output directory of the job consists of many small files. Jobs which finished more than
+ * {@link #COMPACT_DAYS_PROP} days ago are packed - output directory is replaced by single
+ * ZIP archive {@code <id>.zip} in results directory. Packed jobs are still listed
+ * (see {@link WhipperJobIndex}) and their results, error files and archives are read
+ * directly from the packed archive. Jobs which finished more than {@link #TTL_DAYS_PROP}
+ * days ago are deleted.
+ * <p>
+ * Retention runs periodically in the background thread. Jobs are selected by the time
+ * they finished which is read from the job index, thus job directories are not scanned.
+ */
+class WhipperJobRetention{
+
+    /**
+     * System property - number of days after which finished job is packed
+     * (0 or less disables packing).
+     */
+    static final String COMPACT_DAYS_PROP = "whipper.jobs.compact.days";
+    /**
+     * System property - number of days after which finished job is deleted
+     * (0 or less - jobs are never deleted).
+     */
+    static final String TTL_DAYS_PROP = "whipper.jobs.ttl.days";
+    /**
+     * System property - interval between two runs of the retention in minutes.
+     */
+    static final String INTERVAL_PROP = "whipper.jobs.retention.interval";
+    /**
+     * Extension of the archive with packed job.
+     */
+    static final String PACKED_EXTENSION = ".zip";
+    private static final int DEFAULT_COMPACT_DAYS = 7;
+    private static final int DEFAULT_TTL_DAYS = 0;
+    private static final int DEFAULT_INTERVAL = 60;
+    private static final int INITIAL_DELAY = 1;
+    private static final String PACKED_PREFIX = "job_packed_";
+    private static final String JOB_INFO = "job_info";
+    private static final String INFO_FINISHED = "finished";
+
+    private final Context context;
+    private final WhipperJobIndex index;
+    private final Consumer<String> onPacked;
+    private final Consumer<String> expire;
+    private final long compactAfter;
+    private final long ttl;
+    private ScheduledExecutorService executor;
+
+    /**
+     * Creates new retention configured from system properties.
+     *
+     * @param context application context
+     * @param index index of finished jobs
+     * @param onPacked callback invoked after job has been packed
+     * @param expire callback which deletes expired job
+     */
+    WhipperJobRetention(Context context, WhipperJobIndex index, Consumer<String> onPacked, Consumer<String> expire){
+        this.context = context;
+        this.index = index;
+        this.onPacked = onPacked;
+        this.expire = expire;
+        this.compactAfter = TimeUnit.DAYS.toMillis(Integer.getInteger(COMPACT_DAYS_PROP, DEFAULT_COMPACT_DAYS));
+        this.ttl = TimeUnit.DAYS.toMillis(Integer.getInteger(TTL_DAYS_PROP, DEFAULT_TTL_DAYS));
+    }
+
+    /**
+     * Returns archive with packed job.
+     *
+     * @param context application context
+     * @param id ID of the job
+     * @return archive (may not exist)
+     */
+    static File getPacked(Context context, String id){
+        return context.getResultDir(id + PACKED_EXTENSION);
+    }
+
+    /**
+     * Starts periodic runs of the retention. Nothing is started if both packing
+     * and expiration are disabled.
+     */
+    synchronized void start(){
+        if(compactAfter <= 0 && ttl <= 0){
+            Utils.LOG.info("Retention of jobs is disabled.");
+            return;
+        }
+        int interval = Integer.getInteger(INTERVAL_PROP, DEFAULT_INTERVAL);
+        if(interval <= 0){
+            Utils.LOG.warn("Invalid interval of job retention {}. Using default interval.", interval);
+            interval = DEFAULT_INTERVAL;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "whipper-job-retention");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(this::run, INITIAL_DELAY, interval, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Stops periodic runs of the retention.
+     */
+    synchronized void shutdown(){
+        if(executor != null){
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Deletes expired jobs and packs old jobs.
+     */
+    void run(){
+        try{
+            long now = System.currentTimeMillis();
+            int expired = 0;
+            if(ttl > 0){
+                for(String id : index.ids(finishedBefore(now - ttl))){
+                    expire.accept(id);
+                    expired++;
+                }
+            }
+            int packed = 0;
+            if(compactAfter > 0){
+                for(String id : index.ids(finishedBefore(now - compactAfter))){
+                    if(Thread.currentThread().isInterrupted()){
+                        return;
+                    }
+                    if(pack(id)){
+                        packed++;
+                    }
+                }
+            }
+            if(expired > 0 || packed > 0){
+                Utils.LOG.info("Job retention - {} jobs packed, {} jobs deleted.", packed, expired);
+            }
+        } catch (RuntimeException ex){
+            // exception would cancel next runs
+            Utils.LOG.error("Job retention failed.", ex);
+        }
+    }
+
+    /**
+     * Packs output directory of the job. Directory is zipped to the temporary file
+     * which is moved next to the directory once it is complete. Directory is then
+     * moved away and deleted, thus readers find either directory or archive.
+     *
+     * @param id ID of the job
+     * @return {@code true} if job has been packed, {@code false} if it has been packed
+     *      already or if it cannot be packed
+     */
+    boolean pack(String id){
+        File dir = context.getResultDir(id);
+        if(!dir.isDirectory()){
+            return false;
+        }
+        File tmp = null;
+        try{
+            tmp = File.createTempFile(PACKED_PREFIX, ".part", context.getTmpDir(null));
+            try(FileOutputStream fos = new FileOutputStream(tmp)){
+                Utils.zip(dir, fos, Deflater.DEFAULT_COMPRESSION);
+            }
+            File archive = getPacked(context, id);
+            try{
+                Files.move(tmp.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex){
+                Files.move(tmp.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            File trash = context.getTmpDir(PACKED_PREFIX + id);
+            Utils.delete(trash);
+            try{
+                Files.move(dir.toPath(), trash.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex){
+                trash = dir;
+            }
+            onPacked.accept(id);
+            Utils.delete(trash);
+            return true;
+        } catch (IOException ex){
+            Utils.LOG.error("Cannot pack job " + id, ex);
+            return false;
+        } finally {
+            if(tmp != null){
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * Creates filter of brief summaries of jobs which finished before specified time.
+     *
+     * @param time time in milliseconds
+     * @return filter
+     */
+    private static Predicate<JSONObject> finishedBefore(long time){
+        return s -> {
+            JSONObject info = s.optJSONObject(JOB_INFO);
+            long finished = info == null ? -1 : info.optLong(INFO_FINISHED, -1);
+            return finished > 0 && finished < time;
+        };
+    }
+}
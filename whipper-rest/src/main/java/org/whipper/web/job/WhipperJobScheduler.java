@@ -0,0 +1,328 @@
+package org.whipper.web.job;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.whipper.WhipperProperties;
+import org.whipper.web.Utils;
+
+/**
+ * Scheduler of Whipper jobs.
+ * <p>
+ * Submitted jobs are queued and started in order of their priority (higher first)
+ * and submission. At most {@link #WORKERS_PROP} jobs run at the same time and at most
+ * {@link #PER_DATA_SOURCE_PROP} of them use the same data source. Data sources of the job
+ * are JNDI names (see {@link #JNDI_PROP}) or connection URLs of its scenarios
+ * (scenario properties override properties of the job).
+ * Job whose data sources cannot be determined is limited only by number of workers.
+ * Job with saturated data source does not block jobs with lower priority which use other data source.
+ */
+class WhipperJobScheduler{
+
+    /**
+     * System property - maximum number of running jobs.
+     */
+    static final String WORKERS_PROP = "whipper.jobs.workers";
+    /**
+     * System property - maximum number of running jobs per data source.
+     */
+    static final String PER_DATA_SOURCE_PROP = "whipper.jobs.per.datasource";
+    /**
+     * Job property - priority of the job.
+     */
+    static final String PRIORITY_PROP = "job.priority";
+    /**
+     * Job property - JNDI name of the data source (see {@link org.whipper.web.JndiNameConnectionFactory}).
+     */
+    static final String JNDI_PROP = "jndi.name";
+    private static final int DEFAULT_WORKERS = 4;
+    private static final int DEFAULT_PER_DATA_SOURCE = 2;
+
+    private final int workers;
+    private final int perDataSource;
+    private final ExecutorService executor;
+    private final Consumer<WhipperJob> onFinished;
+    private final TreeSet<Entry> queue = new TreeSet<>(
+            Comparator.comparingInt((Entry e) -> e.priority).reversed().thenComparingLong(e -> e.seq));
+    private final Map<String, Integer> runningPerDataSource = new HashMap<>();
+    private int running;
+    private long seq;
+
+    /**
+     * Creates new scheduler configured from system properties.
+     *
+     * @param onFinished callback invoked (in worker thread) after job has run or failed
+     */
+    WhipperJobScheduler(Consumer<WhipperJob> onFinished){
+        this(Integer.getInteger(WORKERS_PROP, DEFAULT_WORKERS), Integer.getInteger(PER_DATA_SOURCE_PROP, DEFAULT_PER_DATA_SOURCE), onFinished);
+    }
+
+    /**
+     * Creates new scheduler.
+     *
+     * @param workers maximum number of running jobs
+     * @param perDataSource maximum number of running jobs per data source
+     * @param onFinished callback invoked (in worker thread) after job has run or failed
+     * @throws IllegalArgumentException if some limit is not positive
+     */
+    WhipperJobScheduler(int workers, int perDataSource, Consumer<WhipperJob> onFinished) throws IllegalArgumentException{
+        if(workers <= 0 || perDataSource <= 0){
+            throw new IllegalArgumentException("Limits must be positive - workers: " + workers + ", per data source: " + perDataSource);
+        }
+        this.workers = workers;
+        this.perDataSource = perDataSource;
+        this.onFinished = onFinished;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "whipper-job-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Queues job. Job is started as soon as limits allow.
+     *
+     * @param job job to be queued
+     * @param props properties of the job
+     */
+    void submit(WhipperJob job, WhipperProperties props){
+        Set<String> ds = dataSources(props);
+        synchronized (this) {
+            enqueue(job, props, ds);
+            dispatch();
+        }
+    }
+
+    /**
+     * Queues several jobs at once. Jobs are started as soon as limits allow.
+     *
+     * @param jobs jobs to be queued mapped to their properties
+     */
+    void submitAll(Map<WhipperJob, WhipperProperties> jobs){
+        Map<WhipperJob, Set<String>> ds = new HashMap<>();
+        for(Map.Entry<WhipperJob, WhipperProperties> e : jobs.entrySet()){
+            ds.put(e.getKey(), dataSources(e.getValue()));
+        }
+        synchronized (this) {
+            for(Map.Entry<WhipperJob, WhipperProperties> e : jobs.entrySet()){
+                enqueue(e.getKey(), e.getValue(), ds.get(e.getKey()));
+            }
+            dispatch();
+        }
+    }
+
+    /**
+     * Adds job to the queue.
+     *
+     * @param job job to be queued
+     * @param props properties of the job
+     * @param dataSources data sources used by the job
+     */
+    private void enqueue(WhipperJob job, WhipperProperties props, Set<String> dataSources){
+        int priority = props.getProperty(PRIORITY_PROP, int.class, 0);
+        queue.add(new Entry(job, priority, dataSources, seq++));
+        job.queued();
+    }
+
+    /**
+     * Returns data sources used by job - {@code jndi:<name>} if JNDI name is set,
+     * {@code url:<url>} otherwise. Scenario files are read the same way as when the job runs,
+     * thus properties of the job are overridden by properties of the scenario.
+     *
+     * @param props properties of the job
+     * @return data sources used by job (empty if they cannot be determined)
+     */
+    static Set<String> dataSources(WhipperProperties props){
+        Set<String> out = new TreeSet<>();
+        File[] scenarios = scenarioFiles(props);
+        if(scenarios.length == 0){
+            addDataSource(out, props);
+        }
+        for(File f : scenarios){
+            try(FileReader fr = new FileReader(f)){
+                Properties scenProps = new Properties();
+                scenProps.load(fr);
+                WhipperProperties p = props.copy();
+                p.addAll(scenProps);
+                p.resolvePlaceholders();
+                addDataSource(out, p);
+            } catch (IOException | RuntimeException ex){
+                Utils.LOG.warn("Cannot read data source of scenario " + f + ".", ex);
+            }
+        }
+        return out.isEmpty() ? Collections.<String>emptySet() : out;
+    }
+
+    /**
+     * Returns scenario files of the job.
+     *
+     * @param props properties of the job
+     * @return scenario files
+     */
+    private static File[] scenarioFiles(WhipperProperties props){
+        File scen = props.getScenario();
+        if(scen == null || !scen.exists()){
+            return new File[0];
+        } else if(scen.isFile()){
+            return new File[]{scen};
+        }
+        File[] out = scen.listFiles(f -> {
+            String name = f.getName().trim();
+            if(!f.isFile() || !name.endsWith(".properties")){
+                return false;
+            }
+            String nameNoExt = name.substring(0, name.length() - ".properties".length());
+            return props.getIncludeScenario().matcher(nameNoExt).matches()
+                    && !props.getExcludeScenario().matcher(nameNoExt).matches();
+        });
+        return out == null ? new File[0] : out;
+    }
+
+    /**
+     * Adds data source defined by properties to the set (if it is defined).
+     *
+     * @param dataSources set of data sources
+     * @param props resolved properties of the scenario
+     */
+    private static void addDataSource(Set<String> dataSources, WhipperProperties props){
+        String jndi = props.getProperty(JNDI_PROP);
+        String url = props.getUrl();
+        if(jndi != null && !jndi.trim().isEmpty()){
+            dataSources.add("jndi:" + jndi.trim());
+        } else if(url != null && !url.trim().isEmpty()){
+            dataSources.add("url:" + url.trim());
+        }
+    }
+
+    /**
+     * Starts queued jobs while limits allow.
+     */
+    private void dispatch(){
+        for(Iterator<Entry> iter = queue.iterator(); iter.hasNext() && running < workers;){
+            Entry e = iter.next();
+            if(e.job.isCancelled()){
+                iter.remove();
+                continue;
+            }
+            if(canRun(e)){
+                iter.remove();
+                running++;
+                for(String ds : e.dataSources){
+                    runningPerDataSource.merge(ds, 1, Integer::sum);
+                }
+                executor.execute(() -> run(e));
+            }
+        }
+    }
+
+    /**
+     * Checks whether all data sources of the job are below the limit.
+     *
+     * @param e queue entry
+     * @return {@code true} if job can run, {@code false} otherwise
+     */
+    private boolean canRun(Entry e){
+        for(String ds : e.dataSources){
+            if(runningPerDataSource.getOrDefault(ds, 0) >= perDataSource){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs job and starts next queued jobs.
+     *
+     * @param e queue entry
+     */
+    private void run(Entry e){
+        try{
+            e.job.run();
+        } catch (RuntimeException ex){
+            Utils.LOG.error("Job " + e.job.getId() + " failed.", ex);
+        } finally {
+            try{
+                onFinished.accept(e.job);
+            } finally {
+                jobFinished(e);
+            }
+        }
+    }
+
+    /**
+     * Releases resources of finished job and starts next queued jobs.
+     *
+     * @param e queue entry
+     */
+    private synchronized void jobFinished(Entry e){
+        running--;
+        for(String ds : e.dataSources){
+            runningPerDataSource.computeIfPresent(ds, (k, v) -> v == 1 ? null : v - 1);
+        }
+        dispatch();
+    }
+
+    /**
+     * Stops scheduler. Running jobs are interrupted, queued jobs are cancelled
+     * (and reported as finished) and discarded.
+     */
+    void shutdown(){
+        List<WhipperJob> queued = new ArrayList<>();
+        synchronized (this) {
+            for(Entry e : queue){
+                queued.add(e.job);
+            }
+            queue.clear();
+            executor.shutdownNow();
+        }
+        for(WhipperJob job : queued){
+            try{
+                job.stop();
+                onFinished.accept(job);
+            } catch (RuntimeException ex){
+                Utils.LOG.error("Cannot cancel job " + job.getId() + ".", ex);
+            }
+        }
+    }
+
+    /**
+     * Queued job.
+     */
+    private static final class Entry{
+        private final WhipperJob job;
+        private final int priority;
+        private final Set<String> dataSources;
+        private final long seq;
+
+        /**
+         * Creates new entry.
+         *
+         * @param job job
+         * @param priority priority of the job
+         * @param dataSources data sources used by the job
+         * @param seq submission sequence number
+         */
+        private Entry(WhipperJob job, int priority, Set<String> dataSources, long seq){
+            this.job = job;
+            this.priority = priority;
+            this.dataSources = dataSources;
+            this.seq = seq;
+        }
+    }
+}
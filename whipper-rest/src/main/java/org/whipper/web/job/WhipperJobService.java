@@ -1,12 +1,18 @@
 package org.whipper.web.job;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
-import java.util.Set;
-import java.util.TreeMap;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.ejb.Lock;
 import javax.ejb.LockType;
 import javax.ejb.Singleton;
@@ -14,6 +20,8 @@ import javax.ejb.Startup;
 import javax.inject.Inject;
 
 import org.json.JSONArray;
+import org.json.JSONObject;
+import org.whipper.ArtifactCache;
 import org.whipper.WhipperProperties;
 import org.whipper.web.Context;
 import org.whipper.web.Utils;
@@ -30,28 +38,151 @@ public class WhipperJobService{
     private static final int ID_LENGTH = 8;
     public static final String ID_PATTERN_STRING = "[" + ID_CHARS_STRING + "]{" + ID_LENGTH + "}";
     private static final Pattern ID_PATTERN = Pattern.compile("^(" + ID_PATTERN_STRING + ")$");
-    private static final int CACHE_LIMIT = 1 << 12;
     private static final String ARTIFACTS_PATH_ABSOLUTE_PROP = "artifacts.path.absolute";
     private static final String SCENARIOS_PATH_ABSOLUTE_PROP = "scenarios.path.absolute";
     private static final String JOB_NAME = "job.name";
+    private static final String JOB_INFO = "job_info";
+    private static final String INFO_JOB_NAME = "job_name";
+    private static final String INFO_STATE = "state";
 
-    private final TreeMap<String, WhipperJob> jobCache = new TreeMap<>();
+    private final WhipperJobCache jobCache = new WhipperJobCache();
     private int[] nextId = new int[ID_LENGTH];
+    private final WhipperJobScheduler scheduler = new WhipperJobScheduler(this::jobFinished);
+    private WhipperJobIndex index;
+    private WhipperJobRetention retention;
     @Inject
     private Context context;
 
     /**
-     * Starts new job.
+     * Loads index of finished jobs. If index does not exist, it is built from
+     * results directory. Starts retention of finished jobs (see {@link WhipperJobRetention}).
+     */
+    @PostConstruct
+    public void init(){
+        index = new WhipperJobIndex(context.getJobIndexFile());
+        if(!index.load()){
+            buildIndex();
+        }
+        retention = new WhipperJobRetention(context, index, this::jobPacked, this::deleteJob);
+        retention.start();
+    }
+
+    /**
+     * Builds index of finished jobs from results directory.
+     */
+    private void buildIndex(){
+        File[] jobDirs = context.getResultDir(null).listFiles();
+        if(jobDirs == null){
+            return;
+        }
+        Utils.LOG.info("Building job index from {} directories.", jobDirs.length);
+        List<WhipperJob> jobs = new ArrayList<>(jobDirs.length);
+        for(File f : jobDirs){
+            WhipperJob wj = null;
+            if(f.isDirectory() && ID_PATTERN.matcher(f.getName()).matches()){
+                wj = WhipperJob.fromDir(f.getName(), f);
+            } else if(f.isFile() && f.getName().endsWith(WhipperJobRetention.PACKED_EXTENSION)){
+                String id = f.getName().substring(0, f.getName().length() - WhipperJobRetention.PACKED_EXTENSION.length());
+                // directory takes precedence if packing has been interrupted
+                if(ID_PATTERN.matcher(id).matches() && !context.getResultDir(id).exists()){
+                    wj = WhipperJob.fromArchive(id, f);
+                }
+            }
+            if(wj != null){
+                jobs.add(wj);
+            }
+        }
+        jobs.sort(Comparator.comparingLong(WhipperJob::getStarted));
+        for(WhipperJob wj : jobs){
+            index.put(wj.getId(), wj.briefResultToJson());
+        }
+    }
+
+    /**
+     * Puts summary of job which has run, failed or has been cancelled into index.
+     *
+     * @param wj job
+     */
+    private void jobFinished(WhipperJob wj){
+        if(wj.isDone()){
+            index.put(wj.getId(), wj.briefResultToJson());
+        }
+    }
+
+    /**
+     * Drops job which has been packed from the cache (cached job reads
+     * the output directory which no longer exists).
+     *
+     * @param id ID of the job
+     */
+    private void jobPacked(String id){
+        jobCache.remove(id);
+        JobArchive.deleteCached(id, context);
+    }
+
+    /**
+     * Queues new job. Job is started by {@link WhipperJobScheduler} as soon as
+     * limits of running jobs allow.
      *
      * @param props properties
      * @return new job's ID
      */
     @Lock(LockType.WRITE)
     public String startNewJob(WhipperProperties props){
+        WhipperJob wj = createJob(props);
+        scheduler.submit(wj, props);
+        // job is pinned in the cache once it is queued
+        jobCache.put(wj.getId(), wj);
+        return wj.getId();
+    }
+
+    /**
+     * Queues several jobs at once. Properties of each job are {@code props} overridden
+     * by one element of {@code overrides}. Jobs share cache of artifacts
+     * (see {@link ArtifactCache}), thus suites are parsed and artifact directories
+     * are listed once for all jobs.
+     *
+     * @param props properties common for all jobs
+     * @param overrides overrides of properties, one for each job
+     * @return IDs of new jobs in the order of {@code overrides}
+     * @throws IllegalArgumentException if there are no overrides
+     */
+    @Lock(LockType.WRITE)
+    public List<String> startNewJobs(WhipperProperties props, List<Properties> overrides) throws IllegalArgumentException{
+        if(overrides == null || overrides.isEmpty()){
+            throw new IllegalArgumentException("No jobs to start.");
+        }
+        ArtifactCache cache = new ArtifactCache();
+        Map<WhipperJob, WhipperProperties> jobs = new LinkedHashMap<>();
+        List<String> ids = new ArrayList<>(overrides.size());
+        for(Properties over : overrides){
+            WhipperProperties jobProps = props.copy();
+            jobProps.addAll(over);
+            WhipperJob wj = createJob(jobProps);
+            wj.setArtifactCache(cache);
+            jobs.put(wj, jobProps);
+            ids.add(wj.getId());
+        }
+        scheduler.submitAll(jobs);
+        // jobs are pinned in the cache once they are queued
+        for(WhipperJob wj : jobs.keySet()){
+            jobCache.put(wj.getId(), wj);
+        }
+        return ids;
+    }
+
+    /**
+     * Creates new job. Job is put into the cache after it has been queued (see {@link WhipperJob#isActive()}),
+     * otherwise it could be evicted before it starts.
+     *
+     * @param props properties of the job
+     * @return new job
+     */
+    private WhipperJob createJob(WhipperProperties props){
         String id = nextFreeId();
         props.setOutputDir(context.getResultDir(id).getAbsolutePath());
         if(!props.getProperty(ARTIFACTS_PATH_ABSOLUTE_PROP, boolean.class, false)){
-            props.setArtifactsDir(context.getArtifactDir(props.getArtifactsDirStr()).getAbsolutePath());
+            props.setArtifactsDir(context.getArtifacts(props.getArtifactsDirStr()).getAbsolutePath());
             props.setProperty(ARTIFACTS_PATH_ABSOLUTE_PROP, null);
         }
         if(!props.getProperty(SCENARIOS_PATH_ABSOLUTE_PROP, boolean.class, false)){
@@ -59,10 +190,31 @@ public class WhipperJobService{
             props.setProperty(SCENARIOS_PATH_ABSOLUTE_PROP, null);
         }
 
-        WhipperJob wj = new WhipperJob(id, props.getProperty(JOB_NAME, String.class), props);
-        storeJob(id, wj);
-        wj.start();
-        return id;
+        return new WhipperJob(id, props.getProperty(JOB_NAME, String.class), props);
+    }
+
+    /**
+     * Stops job. Running job is interrupted, queued job is cancelled
+     * and put into index immediately.
+     *
+     * @param wj job
+     */
+    @Lock(LockType.READ)
+    public void stopJob(WhipperJob wj){
+        wj.stop();
+        if(wj.isCancelled()){
+            jobFinished(wj);
+        }
+    }
+
+    /**
+     * Stops retention of jobs, stops all running jobs and discards queued jobs.
+     */
+    @PreDestroy
+    public void shutdown(){
+        retention.shutdown();
+        scheduler.shutdown();
+        index.close();
     }
 
     /**
@@ -73,11 +225,17 @@ public class WhipperJobService{
      */
     @Lock(LockType.READ)
     public WhipperJob getJob(String id){
-        WhipperJob wj = jobCache.get(id);
-        if(wj == null){
-            wj = readJob(id);
-        }
-        return wj;
+        return jobCache.get(id, this::readJob);
+    }
+
+    /**
+     * Returns statistics of the job cache.
+     *
+     * @return cache statistics
+     */
+    @Lock(LockType.READ)
+    public JSONObject getCacheStatistics(){
+        return jobCache.statistics();
     }
 
     /**
@@ -94,37 +252,82 @@ public class WhipperJobService{
         if(wj != null){
             wj.stop();
             Utils.delete(wj.getFullPathToJob());
+        } else if(index.contains(id)){
+            Utils.delete(context.getResultDir(id));
         }
+        Utils.delete(WhipperJobRetention.getPacked(context, id));
+        index.remove(id);
+        JobArchive.deleteCached(id, context);
     }
 
     /**
-     * Returns array of brief summary of all jobs.
+     * Returns page of brief summaries of jobs. Queued and running jobs go first,
+     * finished jobs follow from the newest one.
+     * <p>
+     * Finished jobs are served from the job index, i.e. job directories are not read.
      *
-     * @return brief summary of all jobs
+     * @param offset number of matching jobs to skip
+     * @param limit maximum number of returned jobs
+     * @param state optional state of the jobs (e.g. running or finished)
+     * @param name optional part of the name of the jobs (ignore case)
+     * @return brief summary of jobs
      */
     @Lock(LockType.READ)
-    public JSONArray getJobsBriefSummary(){
-        File rd = context.getResultDir(null);
-        File[] jobDirs = rd.listFiles();
+    public JSONArray getJobsBriefSummary(int offset, int limit, String state, String name){
+        Predicate<JSONObject> filter = summaryFilter(state, name);
         JSONArray out = new JSONArray();
-        for(WhipperJob wj : jobCache.values()){
-            out.put(wj.briefResultToJson());
-        }
-        if(jobDirs.length != jobCache.size()){
-            for(File f : jobDirs){
-                if(!jobCache.containsKey(f.getName())){
-                    WhipperJob wj = readJob(f.getName());
-                    if(wj != null){
-                        out.put(wj.briefResultToJson());
-                    }
+        int skip = offset;
+        List<WhipperJob> active = new ArrayList<>();
+        for(WhipperJob wj : jobCache.jobs()){
+            if(!index.contains(wj.getId())){
+                active.add(wj);
+            }
+        }
+        active.sort(Comparator.comparing(WhipperJob::getId));
+        for(WhipperJob wj : active){
+            if(out.length() >= limit){
+                return out;
+            }
+            JSONObject s = wj.briefResultToJson();
+            if(filter.test(s)){
+                if(skip > 0){
+                    skip--;
+                } else {
+                    out.put(s);
                 }
             }
         }
+        for(JSONObject s : index.page(skip, limit - out.length(), filter)){
+            out.put(s);
+        }
         return out;
     }
 
     /**
-     * Reads job from results directory.
+     * Creates filter of brief summaries of jobs.
+     *
+     * @param state required state or {@code null}
+     * @param name required part of the name or {@code null}
+     * @return filter
+     */
+    static Predicate<JSONObject> summaryFilter(String state, String name){
+        String n = name == null || name.isEmpty() ? null : name.toLowerCase();
+        String st = state == null || state.isEmpty() ? null : state;
+        if(n == null && st == null){
+            return s -> true;
+        }
+        return s -> {
+            JSONObject info = s.optJSONObject(JOB_INFO);
+            if(info == null){
+                return false;
+            }
+            return (st == null || st.equalsIgnoreCase(info.optString(INFO_STATE)))
+                    && (n == null || info.optString(INFO_JOB_NAME).toLowerCase().contains(n));
+        };
+    }
+
+    /**
+     * Reads job from results directory. Packed job is read from its archive.
      *
      * @param key job id
      * @return new job or {@code null} if job does not exist
@@ -134,34 +337,11 @@ public class WhipperJobService{
             return null;
         }
         File result = context.getResultDir(key);
-        if(!result.exists()){
-            return null;
-        }
-        WhipperJob wj = WhipperJob.fromDir(key, result);
-        if(wj != null){
-            storeJob(key, wj);
-        }
-        return wj;
-    }
-
-    /**
-     * Store job in local cache.
-     *
-     * @param key job key (i.e. ID)
-     * @param job job to be stored
-     */
-    private void storeJob(String key, WhipperJob job){
-        if((jobCache.size() >= CACHE_LIMIT) && !jobCache.containsKey(key)){
-            // clear old jobs
-            Set<String> keys = jobCache.navigableKeySet();
-            int i = 0;
-            int size = keys.size() / 2;
-            for(Iterator<String> iter = keys.iterator(); iter.hasNext() && i < size; i++){
-                iter.next();
-                iter.remove();
-            }
+        if(result.exists()){
+            return WhipperJob.fromDir(key, result);
         }
-        jobCache.put(key, job);
+        File packed = WhipperJobRetention.getPacked(context, key);
+        return packed.isFile() ? WhipperJob.fromArchive(key, packed) : null;
     }
 
     /**
@@ -173,7 +353,7 @@ public class WhipperJobService{
         String id;
         do{
             id = nextId();
-        } while(context.getResultDir(id).exists());
+        } while(context.getResultDir(id).exists() || WhipperJobRetention.getPacked(context, id).exists());
         return id;
     }
 
@@ -0,0 +1,156 @@
+package org.whipper.web.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Single byte range of HTTP range request.
+ */
+class ByteRange{
+
+    /**
+     * Range which cannot be satisfied.
+     */
+    static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+    private static final String BYTES_UNIT = "bytes=";
+
+    private final long first;
+    private final long last;
+
+    /**
+     * Creates new range.
+     *
+     * @param first first byte (inclusive)
+     * @param last last byte (inclusive)
+     */
+    private ByteRange(long first, long last){
+        this.first = first;
+        this.last = last;
+    }
+
+    /**
+     * Parses value of {@code Range} header if {@code If-Range} header matches
+     * current entity tag (see {@link #parse(String, long)}).
+     *
+     * @param header value of the {@code Range} header
+     * @param ifRange value of the {@code If-Range} header or {@code null}
+     * @param tag current entity tag (quoted)
+     * @param length length of the entity
+     * @return range, {@code null} if whole entity should be returned or {@link #UNSATISFIABLE}
+     */
+    static ByteRange parse(String header, String ifRange, String tag, long length){
+        return ifRange == null || ifRange.equals(tag) ? parse(header, length) : null;
+    }
+
+    /**
+     * Parses value of {@code Range} header. Only single range is supported.
+     *
+     * @param header value of the header
+     * @param length length of the entity
+     * @return range, {@code null} if header is missing, malformed or contains multiple ranges
+     *      (i.e. whole entity should be returned) or {@link #UNSATISFIABLE}
+     */
+    static ByteRange parse(String header, long length){
+        if(header == null || !header.startsWith(BYTES_UNIT) || header.indexOf(',') >= 0){
+            return null;
+        }
+        String spec = header.substring(BYTES_UNIT.length()).trim();
+        int dash = spec.indexOf('-');
+        if(dash < 0){
+            return null;
+        }
+        try{
+            String start = spec.substring(0, dash).trim();
+            String end = spec.substring(dash + 1).trim();
+            if(start.isEmpty()){
+                // suffix range
+                long suffix = Long.parseLong(end);
+                if(suffix <= 0 || length == 0){
+                    return UNSATISFIABLE;
+                }
+                return new ByteRange(Math.max(0, length - suffix), length - 1);
+            }
+            long first = Long.parseLong(start);
+            long last = end.isEmpty() ? length - 1 : Math.min(Long.parseLong(end), length - 1);
+            if(first >= length){
+                return UNSATISFIABLE;
+            }
+            if(last < first){
+                return null;
+            }
+            return new ByteRange(first, last);
+        } catch (NumberFormatException ex){
+            return null;
+        }
+    }
+
+    /**
+     * Returns length of the range.
+     *
+     * @return number of bytes in this range
+     */
+    long length(){
+        return last - first + 1;
+    }
+
+    /**
+     * Returns value of {@code Content-Range} header.
+     *
+     * @param length length of the entity
+     * @return content range
+     */
+    String contentRange(long length){
+        return this == UNSATISFIABLE ? "bytes */" + length : "bytes " + first + "-" + last + "/" + length;
+    }
+
+    /**
+     * Returns output which writes this range of the file.
+     *
+     * @param file file
+     * @return streaming output
+     */
+    StreamingOutput of(Path file){
+        return out -> write(file, out);
+    }
+
+    /**
+     * Writes this range of the file to the output stream.
+     *
+     * @param file file
+     * @param out output stream
+     * @throws IOException if an I/O error occurs
+     */
+    private void write(Path file, OutputStream out) throws IOException{
+        try(FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)){
+            WritableByteChannel target = Channels.newChannel(out);
+            ByteBuffer buff = ByteBuffer.allocate(64 * 1024);
+            long pos = first;
+            long remaining = length();
+            while(remaining > 0){
+                buff.clear();
+                if(remaining < buff.capacity()){
+                    buff.limit((int)remaining);
+                }
+                int read = ch.read(buff, pos);
+                if(read < 0){
+                    break;
+                }
+                buff.flip();
+                while(buff.hasRemaining()){
+                    target.write(buff);
+                }
+                pos += read;
+                remaining -= read;
+            }
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.whipper.web.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+
+/**
+ * Output stream which compresses data once their size reaches a threshold.
+ * <p>
+ * Data are buffered until the threshold is reached. Then {@code Content-Encoding}
+ * header is set and data are compressed. If the stream is finished before
+ * the threshold is reached, buffered data are written uncompressed.
+ * Flushing of compressed stream flushes all data compressed so far (sync flush),
+ * thus streamed responses are not delayed by the compressor.
+ */
+class CompressingOutputStream extends OutputStream{
+
+    private final OutputStream out;
+    private final MultivaluedMap<String, Object> headers;
+    private final String encoding;
+    private final int level;
+    private byte[] buffer;
+    private int count;
+    private DeflaterOutputStream compressed;
+    private Deflater deflater;
+    private boolean finished;
+
+    /**
+     * Creates new stream.
+     *
+     * @param out underlying output stream
+     * @param headers headers of the response (not committed yet)
+     * @param encoding content encoding ({@link CompressionInterceptor#GZIP} or {@link CompressionInterceptor#DEFLATE})
+     * @param level compression level
+     * @param threshold minimal number of bytes to compress
+     */
+    CompressingOutputStream(OutputStream out, MultivaluedMap<String, Object> headers, String encoding, int level, int threshold){
+        this.out = out;
+        this.headers = headers;
+        this.encoding = encoding;
+        this.level = level;
+        this.buffer = new byte[threshold];
+    }
+
+    @Override
+    public void write(int b) throws IOException{
+        write(new byte[]{(byte)b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException{
+        if(compressed != null){
+            compressed.write(b, off, len);
+        } else if(count + len < buffer.length){
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        } else {
+            startCompression();
+            compressed.write(b, off, len);
+        }
+    }
+
+    /**
+     * Sets headers and writes buffered data to the compressor.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private void startCompression() throws IOException{
+        headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+        headers.remove(HttpHeaders.CONTENT_LENGTH);
+        deflater = new Deflater(level, !CompressionInterceptor.DEFLATE.equals(encoding)); // GZIP writes its own header
+        compressed = CompressionInterceptor.GZIP.equals(encoding)
+                ? new GZIPOutputStream(out, 8192, true){
+                    {
+                        def.end();
+                        def = deflater;
+                    }
+                }
+                : new DeflaterOutputStream(out, deflater, 8192, true);
+        compressed.write(buffer, 0, count);
+        buffer = null;
+    }
+
+    /**
+     * Flushes compressed data. Buffered data are kept until the threshold is reached
+     * or the stream is finished.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void flush() throws IOException{
+        if(compressed != null){
+            compressed.flush();
+        }
+    }
+
+    /**
+     * Finishes the stream - writes remaining data without closing underlying stream.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void finish() throws IOException{
+        if(finished){
+            return;
+        }
+        finished = true;
+        if(compressed == null){
+            out.write(buffer, 0, count);
+            buffer = null;
+        } else {
+            try{
+                compressed.finish();
+            } finally {
+                deflater.end();
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Releases the compressor. Remaining data are not written, thus this method
+     * should be called after {@link #finish()} or if writing of the response failed.
+     */
+    void end(){
+        if(deflater != null){
+            deflater.end();
+        }
+    }
+
+    @Override
+    public void close() throws IOException{
+        finish();
+        out.close();
+    }
+}
@@ -0,0 +1,150 @@
+package org.whipper.web.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+import javax.annotation.Priority;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.whipper.web.Utils;
+
+/**
+ * Interceptor which compresses textual responses (JSON, XML, text) if client accepts it.
+ * <p>
+ * Response is compressed on the fly (GZIP or deflate). Responses smaller than
+ * {@link #MIN_SIZE_PROP} bytes are sent uncompressed - the beginning of the response
+ * is buffered until it is clear whether compression pays off. Archives and event
+ * streams are never compressed.
+ */
+@Provider
+@Priority(Priorities.HEADER_DECORATOR)
+public class CompressionInterceptor implements WriterInterceptor{
+
+    /**
+     * System property - compression level (1-9, -1 for default level, 0 disables compression).
+     */
+    static final String LEVEL_PROP = "whipper.compression.level";
+    /**
+     * System property - minimal size of the response (in bytes) to be compressed.
+     */
+    static final String MIN_SIZE_PROP = "whipper.compression.min.size";
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+    private static final int LEVEL = level(Integer.getInteger(LEVEL_PROP, Deflater.DEFAULT_COMPRESSION));
+    private static final int MIN_SIZE = Math.max(0, Integer.getInteger(MIN_SIZE_PROP, 1024));
+
+    @Context
+    private HttpServletRequest req;
+
+    /**
+     * Returns valid compression level.
+     *
+     * @param level configured level
+     * @return {@code level} or default level if {@code level} is not valid
+     */
+    private static int level(int level){
+        if(level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION){
+            Utils.LOG.warn("Invalid compression level {}. Using default level.", level);
+            return Deflater.DEFAULT_COMPRESSION;
+        }
+        return level;
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException{
+        if(LEVEL == Deflater.NO_COMPRESSION || !isCompressible(context.getMediaType())
+                || context.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)){
+            context.proceed();
+            return;
+        }
+        context.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        String encoding = selectEncoding(req.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        if(encoding == null){
+            context.proceed();
+            return;
+        }
+        OutputStream original = context.getOutputStream();
+        CompressingOutputStream cos = new CompressingOutputStream(original, context.getHeaders(), encoding, LEVEL, MIN_SIZE);
+        context.setOutputStream(cos);
+        try{
+            context.proceed();
+            cos.finish();
+        } finally {
+            cos.end();
+            context.setOutputStream(original);
+        }
+    }
+
+    /**
+     * Returns {@code true} if response of specified type should be compressed.
+     *
+     * @param type media type of the response
+     * @return whether to compress response
+     */
+    static boolean isCompressible(MediaType type){
+        if(type == null || type.isCompatible(JobProgressStream.EVENT_STREAM_TYPE)){
+            return false;
+        }
+        String sub = type.getSubtype().toLowerCase();
+        if("text".equalsIgnoreCase(type.getType())){
+            return true;
+        }
+        return "application".equalsIgnoreCase(type.getType())
+                && ("json".equals(sub) || "xml".equals(sub) || "javascript".equals(sub)
+                        || sub.endsWith("+json") || sub.endsWith("+xml"));
+    }
+
+    /**
+     * Selects content encoding according to value of {@code Accept-Encoding} header.
+     * GZIP is preferred over deflate.
+     *
+     * @param acceptEncoding value of the header
+     * @return {@link #GZIP}, {@link #DEFLATE} or {@code null} if client does not accept any of them
+     */
+    static String selectEncoding(String acceptEncoding){
+        if(acceptEncoding == null){
+            return null;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double any = 0;
+        for(String part : acceptEncoding.toLowerCase().split(",")){
+            String[] params = part.split(";");
+            String coding = params[0].trim();
+            double q = 1;
+            for(int i = 1; i < params.length; i++){
+                String p = params[i].trim();
+                if(p.startsWith("q=")){
+                    try{
+                        q = Double.parseDouble(p.substring(2).trim());
+                    } catch (NumberFormatException ex){
+                        q = 0;
+                    }
+                }
+            }
+            if(GZIP.equals(coding) || "x-gzip".equals(coding)){
+                gzip = q;
+            } else if(DEFLATE.equals(coding)){
+                deflate = q;
+            } else if("*".equals(coding)){
+                any = q;
+            }
+        }
+        // codings not listed explicitly are acceptable with quality of '*'
+        gzip = gzip < 0 ? any : gzip;
+        deflate = deflate < 0 ? any : deflate;
+        if(gzip > 0 && gzip >= deflate){
+            return GZIP;
+        }
+        return deflate > 0 ? DEFLATE : null;
+    }
+}
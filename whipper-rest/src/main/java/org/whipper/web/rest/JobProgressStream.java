@@ -0,0 +1,143 @@
+package org.whipper.web.rest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.json.JSONObject;
+import org.whipper.web.job.WhipperJob;
+
+/**
+ * Streams progress of the job as server-sent events.
+ * <p>
+ * Each {@code progress} event contains changes since the previous event
+ * (see {@link WhipperJob#deltaToJson(long)}) and its ID is the token of the progress
+ * (see {@link WhipperJob#progressToken(long)}). Client which reconnects with ID
+ * of other instance of the job (e.g. after restart) gets whole progress.
+ * Changes are coalesced - at most one event is sent per {@link #COALESCE_MS}.
+ * Stream ends with {@code finished} event once the job is done (see {@link WhipperJob#isDone()}).
+ * <p>
+ * Every open stream holds one container thread. The thread is parked
+ * until the progress changes (see {@link WhipperJob#awaitChange(long, long)}),
+ * so it does not poll, and number of concurrent streams is limited
+ * by {@link #MAX_STREAMS_PROP}. If the limit is reached, stream contains
+ * only {@code busy} event and client reconnects after the retry delay.
+ */
+class JobProgressStream implements StreamingOutput{
+
+    /**
+     * Media type of server-sent events.
+     */
+    static final String EVENT_STREAM = "text/event-stream";
+    /**
+     * Media type of server-sent events.
+     */
+    static final MediaType EVENT_STREAM_TYPE = new MediaType("text", "event-stream");
+    private static final long COALESCE_MS = 500;
+    private static final long HEARTBEAT_MS = 15000;
+    private static final long RETRY_MS = 3000;
+    /**
+     * System property - maximum number of concurrently open progress streams. Default value is 16.
+     */
+    static final String MAX_STREAMS_PROP = "whipper.progress.streams.max";
+    private static final Semaphore STREAMS = new Semaphore(Math.max(1, Integer.getInteger(MAX_STREAMS_PROP, 16)));
+
+    private final WhipperJob job;
+    private final String lastEventId;
+
+    /**
+     * Creates new stream.
+     *
+     * @param job job
+     * @param lastEventId value of {@code Last-Event-ID} header ({@code null} if none)
+     */
+    JobProgressStream(WhipperJob job, String lastEventId){
+        this.job = job;
+        this.lastEventId = lastEventId;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException, WebApplicationException{
+        Writer w = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        w.write("retry: " + RETRY_MS + "\n\n");
+        w.flush();
+        if(!STREAMS.tryAcquire()){
+            writeEvent(w, lastEventId, "busy", "{}");
+            return;
+        }
+        try{
+            stream(w);
+        } finally {
+            STREAMS.release();
+        }
+    }
+
+    /**
+     * Writes events until the job is done.
+     *
+     * @param w writer
+     * @throws IOException if an I/O error occurs
+     */
+    private void stream(Writer w) throws IOException{
+        long last = job.parseProgressToken(lastEventId);
+        long lastWrite = System.currentTimeMillis();
+        while(true){
+            boolean done = job.isDone();
+            if(job.getVersion() != last){
+                JSONObject delta = job.deltaToJson(last);
+                last = delta.getLong(WhipperJob.VERSION);
+                writeEvent(w, job.progressToken(last), "progress", delta.toString());
+                lastWrite = System.currentTimeMillis();
+            } else if(System.currentTimeMillis() - lastWrite >= HEARTBEAT_MS){
+                w.write(": keep-alive\n\n");
+                w.flush();
+                lastWrite = System.currentTimeMillis();
+            }
+            if(done && last == job.getVersion()){
+                writeEvent(w, job.progressToken(last), "finished", "{}");
+                return;
+            }
+            try{
+                long wait = Math.max(0, HEARTBEAT_MS - (System.currentTimeMillis() - lastWrite));
+                if(job.awaitChange(last, wait) && !job.isDone()){
+                    // coalesce changes which follow immediately
+                    Thread.sleep(COALESCE_MS);
+                }
+            } catch (InterruptedException ex){
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes one event and flushes the stream.
+     *
+     * @param w writer
+     * @param id ID of the event ({@code null} - ID of the last event is not changed)
+     * @param event name of the event
+     * @param data data of the event (single line)
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeEvent(Writer w, String id, String event, String data) throws IOException{
+        if(id != null){
+            w.write("id: ");
+            w.write(id);
+            w.write("\n");
+        }
+        w.write("event: ");
+        w.write(event);
+        w.write("\ndata: ");
+        w.write(data);
+        w.write("\n\n");
+        w.flush();
+    }
+}
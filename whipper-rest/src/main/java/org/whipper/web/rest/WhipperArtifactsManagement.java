@@ -1,13 +1,31 @@
 package org.whipper.web.rest;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.inject.Inject;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
 
 import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.whipper.web.Utils;
 import org.whipper.web.artifact.WhipperArtifactsService;
 
 @Path(WhipperArtifactsManagement.ARTIFACTS_ROOT)
@@ -25,4 +43,60 @@ public class WhipperArtifactsManagement{
         // TODO
         return Response.status(Response.Status.NOT_IMPLEMENTED).build();
     }
+
+    /**
+     * Uploads artifacts as a ZIP archive. Archive is extracted while it is being uploaded.
+     *
+     * @param name artifacts name
+     * @param zip ZIP archive
+     * @return response with summary of the upload
+     */
+    @Path("{name}")
+    @PUT
+    @Consumes({"application/zip", MediaType.APPLICATION_OCTET_STREAM})
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiResponses({
+        @ApiResponse(code = 200, message = "Artifacts have been stored."),
+        @ApiResponse(code = 400, message = "If name or archive is not valid.") })
+    @ApiOperation("Uploads artifacts as a ZIP archive. Archive can contain '" + WhipperArtifactsService.MANIFEST
+            + "' - JSON object which maps paths of files not included in the archive to SHA-256 hashes of already stored files.")
+    public Response upload(@ApiParam(value = "Artifacts name.", name = "name", required = true) @PathParam("name") String name,
+            InputStream zip){
+        try {
+            JSONObject out = whipperArtifactsService.uploadArtifacts(name, zip);
+            return Response.ok(out).build();
+        } catch (IllegalArgumentException ex) {
+            return Response.status(Status.BAD_REQUEST).entity(ex.getMessage()).build();
+        } catch (IOException ex) {
+            Utils.LOG.error("Cannot store artifacts " + name, ex);
+            return Response.serverError().build();
+        }
+    }
+
+    /**
+     * Returns hashes of files which are not stored (i.e. which has to be included in uploaded archive).
+     *
+     * @param hashes JSON array of SHA-256 hashes
+     * @return response with hashes of missing files
+     */
+    @Path("missing")
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiResponses({
+        @ApiResponse(code = 200, message = "Hashes of files which are not stored."),
+        @ApiResponse(code = 400, message = "If request is not JSON array of strings.") })
+    @ApiOperation("Returns SHA-256 hashes of files which are not stored and have to be uploaded.")
+    public Response missing(String hashes){
+        List<String> in = new ArrayList<>();
+        try {
+            JSONArray ar = new JSONArray(hashes);
+            for (int i = 0; i < ar.length(); i++) {
+                in.add(ar.getString(i));
+            }
+        } catch (JSONException ex) {
+            return Response.status(Status.BAD_REQUEST).entity(ex.getMessage()).build();
+        }
+        return Response.ok(new JSONArray(whipperArtifactsService.getMissingFiles(in))).build();
+    }
 }
@@ -1,22 +1,43 @@
 package org.whipper.web.rest;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
 import javax.inject.Inject;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
 import org.whipper.WhipperProperties;
+import org.whipper.web.Utils;
+import org.whipper.web.job.JobArchive;
 import org.whipper.web.job.WhipperJob;
 import org.whipper.web.job.WhipperJobService;
+import org.whipper.xml.ErrorReader;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -33,6 +54,9 @@ import io.swagger.annotations.ResponseHeader;
 public class WhipperJobManagement{
 
     static final String ROOT_RESOURCE_CLASS_PATH = "jobs";
+    private static final String APPLICATION_ZIP = "application/zip";
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1000;
 
     @Inject
     private WhipperJobService runner;
@@ -60,6 +84,56 @@ public class WhipperJobManagement{
         return Response.created(ui.getBaseUriBuilder().path(ROOT_RESOURCE_CLASS_PATH).path(id).build()).build();
     }
 
+    /**
+     * Starts several jobs at once (e.g. same artifacts against several servers).
+     * Request is a JSON object with common properties under key {@code data}
+     * (same as {@link #start(UriInfo, WhipperProperties)}) and array of property
+     * overrides under key {@code overrides}. One job is created for each override.
+     *
+     * @param body request
+     * @return response with IDs of new jobs
+     */
+    @Path("batch")
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiResponses({
+        @ApiResponse(code = 201, message = "Jobs have been successfully created. Response contains IDs of the jobs."),
+        @ApiResponse(code = 400, message = "If request is not valid or it does not contain any overrides.") })
+    @ApiOperation("Creates several Whipper jobs which share common properties and parsed artifacts. "
+            + "One job is created for each element of 'overrides'.")
+    public Response startBatch(String body){
+        WhipperProperties props;
+        List<Properties> overrides = new ArrayList<>();
+        try {
+            JSONObject o = new JSONObject(body);
+            props = new WhipperProperties(toProperties(o.getJSONObject("data")));
+            JSONArray ar = o.getJSONArray("overrides");
+            for (int i = 0; i < ar.length(); i++) {
+                overrides.add(toProperties(ar.getJSONObject(i)));
+            }
+        } catch (JSONException ex) {
+            return Response.status(Status.BAD_REQUEST).entity("Cannot parse JSON object [" + ex.getMessage() + "]").build();
+        }
+        try {
+            return Response.status(Status.CREATED).entity(new JSONArray(runner.startNewJobs(props, overrides))).build();
+        } catch (IllegalArgumentException ex) {
+            return Response.status(Status.BAD_REQUEST).entity(ex.getMessage()).build();
+        }
+    }
+
+    /**
+     * Converts JSON object to properties.
+     *
+     * @param o JSON object
+     * @return properties
+     */
+    private static Properties toProperties(JSONObject o){
+        Properties p = new Properties();
+        p.putAll(o.toMap());
+        return p;
+    }
+
     /**
      * Stops execution of Whipper job.
      *
@@ -78,14 +152,25 @@ public class WhipperJobManagement{
         if (wj == null) {
             return Response.status(Status.NOT_FOUND).build();
         }
-        wj.stop();
+        runner.stopJob(wj);
         return Response.noContent().build();
     }
 
     /**
      * Retrieves result of the job.
+     * <p>
+     * If {@code since} is specified, only changes since that token of the progress are returned
+     * (whole progress is returned if token belongs to other instance of the job).
+     * Otherwise whole result is streamed to the client, optionally limited to {@code depth}
+     * nested levels and selected {@code fields}.
+     * Response is tagged with the version of the progress, thus clients can use
+     * {@code If-None-Match} header to avoid downloading unchanged result.
      *
      * @param id job ID
+     * @param since token of the progress known to the client (see {@link WhipperJob#TOKEN})
+     * @param depth number of levels nested in scenarios
+     * @param fields comma-separated list of fields
+     * @param request request
      * @return response with result
      */
     @Path("{id:" + WhipperJobService.ID_PATTERN_STRING + "}}")
@@ -93,34 +178,255 @@ public class WhipperJobManagement{
     @Produces(MediaType.APPLICATION_JSON)
     @ApiResponses({
         @ApiResponse(code = 200, message = "Result successfully returned."),
+        @ApiResponse(code = 304, message = "If result has not changed."),
+        @ApiResponse(code = 400, message = "If depth or fields are not valid."),
         @ApiResponse(code = 404, message = "If job with specified ID does not exist.") })
     @ApiOperation("Retrieves result of Whipper job.")
-    public Response results(@ApiParam(value = "Job ID.", name = "id", required = true) @PathParam("id") String id){
+    public Response results(@ApiParam(value = "Job ID.", name = "id", required = true) @PathParam("id") String id,
+            @ApiParam(value = "Return only changes since this token of the progress.", name = "since") @QueryParam("since") String since,
+            @ApiParam(value = "Number of levels nested in scenarios (0 - scenarios only, 1 - with suites, ...). All levels if not specified.",
+                    name = "depth") @QueryParam("depth") Integer depth,
+            @ApiParam(value = "Comma-separated fields of scenarios, suites, query sets and queries (id, all, pass, fail, skip, error). All fields if not specified.",
+                    name = "fields") @QueryParam("fields") String fields,
+            @Context Request request){
+        if (depth != null && depth < 0) {
+            return Response.status(Status.BAD_REQUEST).entity("Depth must not be negative.").build();
+        }
+        WhipperJob wj = runner.getJob(id);
+        if (wj == null) {
+            return Response.status(Status.NOT_FOUND).build();
+        }
+        ResponseBuilder notModified = request.evaluatePreconditions(versionTag(wj, wj.getVersion()));
+        if (notModified != null) {
+            return notModified.build();
+        }
+        if (since != null) {
+            JSONObject out = wj.deltaToJson(wj.parseProgressToken(since));
+            return Response.ok(out)
+                    .tag(versionTag(wj, out.getLong(WhipperJob.VERSION)))
+                    .header("Cache-Control", "no-cache")
+                    .build();
+        }
+        WhipperJob.Result result;
+        try {
+            result = wj.getResult(depth == null ? -1 : depth, parseFields(fields));
+        } catch (IllegalArgumentException ex) {
+            return Response.status(Status.BAD_REQUEST).entity(ex.getMessage()).build();
+        }
+        return Response.ok((StreamingOutput)result::writeTo, MediaType.APPLICATION_JSON)
+                .tag(versionTag(wj, result.getVersion()))
+                .header("Cache-Control", "no-cache")
+                .build();
+    }
+
+    /**
+     * Parses comma-separated list of fields.
+     *
+     * @param fields list of fields
+     * @return set of fields or {@code null} if {@code fields} is not specified
+     */
+    private static Set<String> parseFields(String fields){
+        if (fields == null || fields.trim().isEmpty()) {
+            return null;
+        }
+        Set<String> out = new HashSet<>();
+        for (String f : fields.split(",")) {
+            if (!f.trim().isEmpty()) {
+                out.add(f.trim());
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns entity tag for version of the progress of the job. Tag contains
+     * ID and epoch of the job as well, because version is restarted
+     * in every instance of the job (see {@link WhipperJob#getEpoch()}).
+     *
+     * @param wj job
+     * @param version version of the progress
+     * @return entity tag
+     */
+    private static EntityTag versionTag(WhipperJob wj, long version){
+        return new EntityTag(wj.getId() + "-" + wj.getEpoch() + "-" + version);
+    }
+
+    /**
+     * Retrieves summary of the error of the query - query, failures and description of actual
+     * and expected result without rows.
+     *
+     * @param id job ID
+     * @param scenario scenario ID
+     * @param suite suite ID
+     * @param query query ID
+     * @return response with summary of the error
+     */
+    @Path("{id:" + WhipperJobService.ID_PATTERN_STRING + "}/errors/{scenario}/{suite}/{query}")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiResponses({
+        @ApiResponse(code = 200, message = "Summary of the error."),
+        @ApiResponse(code = 404, message = "If job or error of the query does not exist.") })
+    @ApiOperation("Retrieves summary of the comparison error of the query. Rows of the results are not included.")
+    public Response errorSummary(@ApiParam(value = "Job ID.", name = "id", required = true) @PathParam("id") String id,
+            @ApiParam(value = "Scenario ID.", name = "scenario", required = true) @PathParam("scenario") String scenario,
+            @ApiParam(value = "Suite ID.", name = "suite", required = true) @PathParam("suite") String suite,
+            @ApiParam(value = "Query ID.", name = "query", required = true) @PathParam("query") String query){
+        try {
+            JSONObject out = readErrorFile(id, scenario, suite, query, ErrorReader::readSummary);
+            return out == null ? Response.status(Status.NOT_FOUND).build() : Response.ok(out).build();
+        } catch (IOException ex) {
+            Utils.LOG.error("Cannot read error file of query " + scenario + "/" + suite + "/" + query + " of job " + id, ex);
+            return Response.serverError().build();
+        }
+    }
+
+    /**
+     * Retrieves page of rows of actual or expected result of the query error.
+     *
+     * @param id job ID
+     * @param scenario scenario ID
+     * @param suite suite ID
+     * @param query query ID
+     * @param result {@code actual} or {@code expected}
+     * @param offset number of rows to skip
+     * @param limit maximum number of rows
+     * @return response with page of rows
+     */
+    @Path("{id:" + WhipperJobService.ID_PATTERN_STRING + "}/errors/{scenario}/{suite}/{query}/{result:actual|expected}")
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiResponses({
+        @ApiResponse(code = 200, message = "Page of rows."),
+        @ApiResponse(code = 400, message = "If offset or limit is out of range."),
+        @ApiResponse(code = 404, message = "If job or error of the query does not exist.") })
+    @ApiOperation("Retrieves page of rows of actual or expected result of the comparison error of the query.")
+    public Response errorRows(@ApiParam(value = "Job ID.", name = "id", required = true) @PathParam("id") String id,
+            @ApiParam(value = "Scenario ID.", name = "scenario", required = true) @PathParam("scenario") String scenario,
+            @ApiParam(value = "Suite ID.", name = "suite", required = true) @PathParam("suite") String suite,
+            @ApiParam(value = "Query ID.", name = "query", required = true) @PathParam("query") String query,
+            @ApiParam(value = "Actual or expected result.", name = "result", required = true) @PathParam("result") String result,
+            @ApiParam(value = "Number of rows to skip.", name = "offset") @QueryParam("offset") @DefaultValue("0") long offset,
+            @ApiParam(value = "Maximum number of rows (1-" + MAX_LIMIT + ").", name = "limit")
+                    @QueryParam("limit") @DefaultValue("" + DEFAULT_LIMIT) int limit){
+        if (offset < 0 || limit < 1 || limit > MAX_LIMIT) {
+            return Response.status(Status.BAD_REQUEST).entity("Offset must not be negative and limit must be between 1 and " + MAX_LIMIT + ".").build();
+        }
+        String element = "actual".equals(result) ? ErrorReader.ACTUAL_RESULT : ErrorReader.EXPECTED_RESULT;
+        try {
+            JSONObject out = readErrorFile(id, scenario, suite, query, f -> ErrorReader.readRows(f, element, offset, limit));
+            return out == null ? Response.status(Status.NOT_FOUND).build() : Response.ok(out).build();
+        } catch (IOException ex) {
+            Utils.LOG.error("Cannot read error file of query " + scenario + "/" + suite + "/" + query + " of job " + id, ex);
+            return Response.serverError().build();
+        }
+    }
+
+    /**
+     * Reads error file of the query.
+     *
+     * @param id job ID
+     * @param scenario scenario ID
+     * @param suite suite ID
+     * @param query query ID
+     * @param reader reader of the error file
+     * @return read content or {@code null} if job or file does not exist
+     * @throws IOException if file cannot be read
+     */
+    private JSONObject readErrorFile(String id, String scenario, String suite, String query,
+            WhipperJob.ErrorFileReader<JSONObject> reader) throws IOException{
+        WhipperJob wj = runner.getJob(id);
+        return wj == null ? null : wj.readErrorFile(scenario, suite, query, reader);
+    }
+
+    /**
+     * Streams progress of the job as server-sent events.
+     *
+     * @param id job ID
+     * @param lastEventId ID of the last event received by the client
+     * @return response with event stream
+     */
+    @Path("{id:" + WhipperJobService.ID_PATTERN_STRING + "}/events")
+    @GET
+    @Produces(JobProgressStream.EVENT_STREAM)
+    @ApiResponses({
+        @ApiResponse(code = 200, message = "Stream of progress events."),
+        @ApiResponse(code = 404, message = "If job with specified ID does not exist.") })
+    @ApiOperation("Streams changes of progress of Whipper job as server-sent events.")
+    public Response events(@ApiParam(value = "Job ID.", name = "id", required = true) @PathParam("id") String id,
+            @HeaderParam("Last-Event-ID") String lastEventId){
         WhipperJob wj = runner.getJob(id);
         if (wj == null) {
             return Response.status(Status.NOT_FOUND).build();
         }
-        return Response.ok(wj.resultToJson()).build();
+        return Response.ok(new JobProgressStream(wj, lastEventId))
+                .header("Cache-Control", "no-cache")
+                .build();
     }
 
     /**
      * Retrieves result as a ZIP.
+     * <p>
+     * Archive is streamed while it is being created. Once created, archive is cached
+     * and subsequent requests support {@code If-None-Match} and single range requests.
      *
      * @param id job ID
+     * @param range value of {@code Range} header
+     * @param ifRange value of {@code If-Range} header
+     * @param request request
      * @return response with result
      */
     @Path("{id:" + WhipperJobService.ID_PATTERN_STRING + "}/full")
     @GET
-    @Produces("application/zip")
-    public Response resultsAsZip(@PathParam("id") String id){
+    @Produces(APPLICATION_ZIP)
+    @ApiResponses({
+        @ApiResponse(code = 200, message = "Archive of the job's output directory."),
+        @ApiResponse(code = 204, message = "If job has not finished yet."),
+        @ApiResponse(code = 206, message = "Requested range of the archive."),
+        @ApiResponse(code = 304, message = "If archive has not changed."),
+        @ApiResponse(code = 404, message = "If job with specified ID does not exist."),
+        @ApiResponse(code = 416, message = "If requested range cannot be satisfied.") })
+    @ApiOperation("Retrieves output directory of the finished job as a ZIP archive.")
+    public Response resultsAsZip(@ApiParam(value = "Job ID.", name = "id", required = true) @PathParam("id") String id,
+            @HeaderParam("Range") String range, @HeaderParam("If-Range") String ifRange, @Context Request request){
         WhipperJob wj = runner.getJob(id);
         if (wj == null) {
             return Response.status(Status.NOT_FOUND).build();
         }
-        if (wj.isFinished()) {
-            return Response.ok(wj.resultToZip(context)).build();
+        JobArchive archive = wj.getArchive(context);
+        if (archive == null) {
+            return Response.noContent().build();
         }
-        return Response.noContent().build();
+        EntityTag tag = new EntityTag(archive.getTag());
+        ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.build();
+        }
+        String disposition = "attachment; filename=\"" + id + ".zip\"";
+        File cached = archive.getCached();
+        if (cached == null) {
+            // first request - stream archive while it is being created
+            return Response.ok((StreamingOutput)archive::writeTo, APPLICATION_ZIP)
+                    .tag(tag)
+                    .header("Content-Disposition", disposition)
+                    .build();
+        }
+        long length = cached.length();
+        ByteRange br = ByteRange.parse(range, ifRange, tag.toString(), length);
+        if (br == ByteRange.UNSATISFIABLE) {
+            return Response.status(Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header("Content-Range", br.contentRange(length))
+                    .build();
+        }
+        ResponseBuilder rb = br == null
+                ? Response.ok(cached, APPLICATION_ZIP).header("Content-Length", length)
+                : Response.status(Status.PARTIAL_CONTENT).entity(br.of(cached.toPath())).type(APPLICATION_ZIP)
+                        .header("Content-Range", br.contentRange(length))
+                        .header("Content-Length", br.length());
+        return rb.tag(tag)
+                .header("Accept-Ranges", "bytes")
+                .header("Content-Disposition", disposition)
+                .build();
     }
 
     /**
@@ -139,13 +445,41 @@ public class WhipperJobManagement{
     }
 
     /**
-     * Returns brief summary of all jobs.
+     * Returns statistics of the job cache.
      *
-     * @return response with brief summary of all jobs.
+     * @return response with cache statistics
      */
+    @Path("cache")
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response allJobsBriefResults(){
-        return Response.ok(runner.getJobsBriefSummary()).build();
+    @ApiOperation("Returns statistics of the job cache (size, weight, hits, misses, evictions).")
+    public Response cacheStatistics(){
+        return Response.ok(runner.getCacheStatistics()).build();
+    }
+
+    /**
+     * Returns brief summary of jobs.
+     *
+     * @param offset number of jobs to skip
+     * @param limit maximum number of returned jobs
+     * @param state optional state of the jobs
+     * @param name optional part of the name of the jobs
+     * @return response with brief summary of jobs.
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiResponses({
+        @ApiResponse(code = 200, message = "Page of brief summaries of jobs."),
+        @ApiResponse(code = 400, message = "If offset or limit is out of range.") })
+    @ApiOperation("Returns page of brief summaries of jobs.")
+    public Response allJobsBriefResults(
+            @ApiParam(value = "Number of jobs to skip.", name = "offset") @QueryParam("offset") @DefaultValue("0") int offset,
+            @ApiParam(value = "Maximum number of returned jobs.", name = "limit") @QueryParam("limit") @DefaultValue("" + DEFAULT_LIMIT) int limit,
+            @ApiParam(value = "State of jobs (queued, running, finished, cancelled).", name = "state") @QueryParam("state") String state,
+            @ApiParam(value = "Part of the name of jobs.", name = "name") @QueryParam("name") String name){
+        if (offset < 0 || limit <= 0 || limit > MAX_LIMIT) {
+            return Response.status(Status.BAD_REQUEST).entity("Offset must not be negative and limit must be between 1 and " + MAX_LIMIT + ".").build();
+        }
+        return Response.ok(runner.getJobsBriefSummary(offset, limit, state, name)).build();
     }
 }
@@ -6,26 +6,42 @@ import javax.annotation.Priority;
 import javax.ws.rs.Priorities;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.ext.Provider;
 import javax.ws.rs.ext.WriterInterceptor;
 import javax.ws.rs.ext.WriterInterceptorContext;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Interceptor which wraps all JSON objects to new JSON object with exactly
  * one property called {@code data}.
  * <p>
  * Interceptor wraps only JSON object - i.e. if media type of the response
- * is compatible with {@code application/json}.
+ * is compatible with {@code application/json}. Streamed JSON (i.e. {@link StreamingOutput})
+ * is wrapped on the fly - prefix and suffix are written around the streamed entity.
+ * <p>
+ * Interceptor runs after the entity coders, thus it writes to already encoded stream.
  */
 @Provider
-@Priority(Priorities.ENTITY_CODER)
+@Priority(Priorities.ENTITY_CODER + 1)
 public class WrapResponseInterceptor implements WriterInterceptor{
 
+    private static final byte[] PREFIX = "{\"data\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SUFFIX = "}".getBytes(StandardCharsets.UTF_8);
+
     @Override
     public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException{
         if(context.getMediaType().isCompatible(MediaType.APPLICATION_JSON_TYPE)){
             Object original = context.getEntity();
+            if(original instanceof StreamingOutput){
+                OutputStream out = context.getOutputStream();
+                out.write(PREFIX);
+                context.proceed();
+                out.write(SUFFIX);
+                return;
+            }
             if(original != null){
                 JSONObject wrap = new JSONObject();
                 wrap.put("data", original);
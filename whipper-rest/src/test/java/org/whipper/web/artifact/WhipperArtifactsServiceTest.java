@@ -0,0 +1,191 @@
+package org.whipper.web.artifact;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.whipper.web.Context;
+import org.whipper.web.Utils;
+
+public class WhipperArtifactsServiceTest{
+
+    private File base;
+    private File artifacts;
+    private WhipperArtifactsService service;
+
+    @BeforeEach
+    public void createService() throws Exception{
+        base = Files.createTempDirectory("whipper").toFile();
+        artifacts = new File(base, "artifacts");
+        File blobs = new File(base, "blobs");
+        File tmp = new File(base, "tmp");
+        artifacts.mkdirs();
+        blobs.mkdirs();
+        tmp.mkdirs();
+        Context context = Mockito.mock(Context.class);
+        Mockito.when(context.getArtifactDir(Mockito.any())).thenAnswer(inv -> inv.getArguments()[0] == null
+                ? artifacts : new File(artifacts, (String)inv.getArguments()[0]));
+        Mockito.when(context.getArtifacts(Mockito.any())).thenAnswer(inv -> new File(artifacts, (String)inv.getArguments()[0]));
+        Mockito.when(context.getBlobDir(null)).thenReturn(blobs);
+        Mockito.when(context.getTmpDir(null)).thenReturn(tmp);
+        service = new WhipperArtifactsService();
+        Field f = WhipperArtifactsService.class.getDeclaredField("context");
+        f.setAccessible(true);
+        f.set(service, context);
+        service.init();
+    }
+
+    @AfterEach
+    public void deleteBase(){
+        Utils.delete(base);
+    }
+
+    @Test
+    public void deduplicationTest() throws IOException{
+        Map<String, String> files = files("queries/a.xml", "A", "queries/b.xml", "B");
+        JSONObject first = service.uploadArtifacts("x", zip(files, null));
+        Assertions.assertEquals(2, first.getInt("files"), "Files of the first upload");
+        Assertions.assertEquals(2, first.getInt("stored"), "Stored files of the first upload");
+        JSONObject second = service.uploadArtifacts("y", zip(files, null));
+        Assertions.assertEquals(2, second.getInt("files"), "Files of the second upload");
+        Assertions.assertEquals(0, second.getInt("stored"), "Stored files of the second upload");
+        Assertions.assertEquals("A", read(new File(artifacts, "y/queries/a.xml")), "Content of deduplicated file");
+        Assertions.assertEquals(Arrays.asList("a.xml", "b.xml"), sorted(service.getArtifactsQueries("y")), "Suites");
+        Assertions.assertEquals(Arrays.asList("x", "y"), sorted(service.listArtifacts()), "Artifacts");
+    }
+
+    @Test
+    public void manifestTest() throws IOException{
+        service.uploadArtifacts("x", zip(files("queries/a.xml", "A"), null));
+        Assertions.assertTrue(service.getMissingFiles(Collections.singleton(hash("A"))).isEmpty(), "Stored file");
+        Assertions.assertEquals(Collections.singletonList(hash("C")), service.getMissingFiles(Arrays.asList(hash("A"), hash("C"))), "Missing file");
+        Map<String, String> manifest = new LinkedHashMap<>();
+        manifest.put("queries/a.xml", hash("A"));
+        manifest.put("queries/b.xml", hash("A"));
+        JSONObject summary = service.uploadArtifacts("x", zip(files("queries/b.xml", "B", "queries/c.xml", "C"), manifest));
+        Assertions.assertEquals(3, summary.getInt("files"), "Files");
+        Assertions.assertEquals(2, summary.getInt("stored"), "Stored files");
+        Assertions.assertEquals(1, summary.getInt("linked"), "Linked files");
+        Assertions.assertEquals("A", read(new File(artifacts, "x/queries/a.xml")), "File from manifest");
+        Assertions.assertEquals("B", read(new File(artifacts, "x/queries/b.xml")), "File in archive wins over manifest");
+    }
+
+    @Test
+    public void unknownHashTest() throws IOException{
+        service.uploadArtifacts("x", zip(files("queries/a.xml", "A"), null));
+        Map<String, String> manifest = Collections.singletonMap("queries/b.xml", hash("unknown"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> service.uploadArtifacts("x", zip(files("queries/c.xml", "C"), manifest)));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> service.uploadArtifacts("x", zip(files("queries/c.xml", "C"), Collections.singletonMap("queries/d.xml", "../../etc"))));
+        Assertions.assertEquals(Collections.singletonList("a.xml"), service.getArtifactsQueries("x"), "Original artifacts");
+        Assertions.assertEquals(Collections.singletonList("x"), service.listArtifacts(), "No staging directories are listed");
+    }
+
+    @Test
+    public void pathTraversalTest() throws IOException{
+        Assertions.assertThrows(IllegalArgumentException.class, () -> service.uploadArtifacts("x", zip(files("queries/a.xml", "A", "../evil.xml", "E"), null)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> service.uploadArtifacts("x", zip(files("queries/../../evil.xml", "E"), null)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> service.uploadArtifacts("../x", zip(files("queries/a.xml", "A"), null)));
+        Assertions.assertFalse(new File(artifacts, "evil.xml").exists(), "File outside of staging directory");
+        Assertions.assertFalse(new File(base, "evil.xml").exists(), "File outside of artifacts");
+        Assertions.assertTrue(service.listArtifacts().isEmpty(), "No artifacts");
+    }
+
+    @Test
+    public void replaceInUseTest() throws IOException{
+        service.uploadArtifacts("x", zip(files("queries/a.xml", "old"), null));
+        try(InputStream in = new File(artifacts, "x/queries/a.xml").toURI().toURL().openStream()){
+            service.uploadArtifacts("x", zip(files("queries/a.xml", "new", "queries/b.xml", "B"), null));
+            Assertions.assertEquals("new", read(new File(artifacts, "x/queries/a.xml")), "New version");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buff = new byte[16];
+            int n;
+            while((n = in.read(buff)) >= 0){
+                out.write(buff, 0, n);
+            }
+            Assertions.assertEquals("old", new String(out.toByteArray(), StandardCharsets.UTF_8), "Old version is still readable");
+        }
+        Assertions.assertEquals(Arrays.asList("a.xml", "b.xml"), sorted(service.getArtifactsQueries("x")), "Suites of new version");
+        Assertions.assertEquals(Collections.singletonList("x"), service.listArtifacts(), "Artifacts");
+        // old version is not referenced anymore
+        Assertions.assertEquals(Collections.singletonList(hash("old")), service.getMissingFiles(Arrays.asList(hash("old"), hash("new"))), "Collected old file");
+    }
+
+    @Test
+    public void garbageCollectionTest() throws IOException{
+        service.uploadArtifacts("x", zip(files("queries/a.xml", "A", "queries/x.xml", "X"), null));
+        service.uploadArtifacts("y", zip(files("queries/a.xml", "A"), null));
+        service.deleteArtifacts("x");
+        Assertions.assertEquals(Collections.singletonList(hash("X")), service.getMissingFiles(Arrays.asList(hash("A"), hash("X"))), "Collected file");
+        service.deleteArtifacts("y");
+        Assertions.assertEquals(Collections.singletonList(hash("A")), service.getMissingFiles(Collections.singletonList(hash("A"))), "Collected shared file");
+    }
+
+    private static Map<String, String> files(String... pathsAndContents){
+        Map<String, String> out = new LinkedHashMap<>();
+        for(int i = 0; i < pathsAndContents.length; i += 2){
+            out.put(pathsAndContents[i], pathsAndContents[i + 1]);
+        }
+        return out;
+    }
+
+    private static InputStream zip(Map<String, String> files, Map<String, String> manifest) throws IOException{
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try(ZipOutputStream zos = new ZipOutputStream(bos)){
+            if(manifest != null){
+                zos.putNextEntry(new ZipEntry(WhipperArtifactsService.MANIFEST));
+                zos.write(new JSONObject(manifest).toString().getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+            }
+            for(Map.Entry<String, String> e : files.entrySet()){
+                zos.putNextEntry(new ZipEntry(e.getKey()));
+                zos.write(e.getValue().getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+            }
+        }
+        return new ByteArrayInputStream(bos.toByteArray());
+    }
+
+    private static String hash(String content){
+        try{
+            byte[] d = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for(byte b : d){
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (Exception ex){
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String read(File f) throws IOException{
+        return new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static List<String> sorted(List<String> list){
+        List<String> out = new ArrayList<>(list);
+        Collections.sort(out);
+        return out;
+    }
+}
@@ -0,0 +1,95 @@
+package org.whipper.web.job;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+public class WhipperJobCacheTest{
+
+    @Test
+    public void lruEvictionTest(){
+        WhipperJobCache c = new WhipperJobCache(100);
+        for(int i = 0; i < 10; i++){
+            c.put("job" + i, job("job" + i, 10, false));
+        }
+        Assertions.assertEquals(10, c.jobs().size(), "Size before eviction");
+        Assertions.assertNotNull(c.get("job0", id -> null), "job0");
+        c.put("job10", job("job10", 10, false));
+        // 110 > 100, least recently used jobs are evicted down to 90
+        Assertions.assertEquals(9, c.jobs().size(), "Size after eviction");
+        Assertions.assertNotNull(c.get("job0", id -> null), "Recently used job0");
+        Assertions.assertNull(c.get("job1", id -> null), "Evicted job1");
+        Assertions.assertNull(c.get("job2", id -> null), "Evicted job2");
+        for(int i = 3; i <= 10; i++){
+            Assertions.assertNotNull(c.get("job" + i, id -> null), "job" + i);
+        }
+        JSONObject stats = c.statistics();
+        Assertions.assertEquals(90, stats.getLong("weight"), "Weight");
+        Assertions.assertEquals(2, stats.getLong("evictions"), "Evictions");
+    }
+
+    @Test
+    public void pinnedJobsTest(){
+        WhipperJobCache c = new WhipperJobCache(100);
+        WhipperJob queued = job("queued", 30, true);
+        WhipperJob running = job("running", 30, true);
+        c.put("queued", queued);
+        c.put("running", running);
+        c.put("done1", job("done1", 30, false));
+        c.put("done2", job("done2", 30, false));
+        Assertions.assertNull(c.get("done1", id -> null), "Evicted done1");
+        Assertions.assertNotNull(c.get("done2", id -> null), "done2");
+        c.put("queued2", job("queued2", 30, true));
+        Assertions.assertNull(c.get("done2", id -> null), "Evicted done2");
+        c.put("queued3", job("queued3", 30, true));
+        // all jobs are pinned, limit is exceeded
+        Assertions.assertSame(queued, c.get("queued", id -> null), "Pinned queued job");
+        Assertions.assertSame(running, c.get("running", id -> null), "Pinned running job");
+        Assertions.assertNotNull(c.get("queued2", id -> null), "queued2");
+        Assertions.assertNotNull(c.get("queued3", id -> null), "queued3");
+        JSONObject stats = c.statistics();
+        Assertions.assertEquals(4, stats.getInt("size"), "Size");
+        Assertions.assertEquals(4, stats.getInt("pinned"), "Pinned");
+        Assertions.assertEquals(120, stats.getLong("weight"), "Weight");
+        Assertions.assertEquals(2, stats.getLong("evictions"), "Evictions");
+
+        // finished job can be evicted
+        Mockito.when(queued.isActive()).thenReturn(false);
+        c.put("queued4", job("queued4", 1, true));
+        Assertions.assertNull(c.get("queued", id -> null), "Evicted finished job");
+    }
+
+    @Test
+    public void statisticsTest(){
+        WhipperJobCache c = new WhipperJobCache(100);
+        WhipperJob j = job("a", 5, false);
+        Assertions.assertNull(c.get("a", id -> null), "Missing job");
+        Assertions.assertSame(j, c.get("a", id -> j), "Loaded job");
+        Assertions.assertSame(j, c.get("a", id -> {
+            throw new AssertionError("Cached job loaded again");
+        }), "Cached job");
+        JSONObject stats = c.statistics();
+        Assertions.assertEquals(1, stats.getLong("hits"), "Hits");
+        Assertions.assertEquals(2, stats.getLong("misses"), "Misses");
+        Assertions.assertEquals(0, stats.getLong("evictions"), "Evictions");
+        Assertions.assertEquals(1, stats.getInt("size"), "Size");
+        Assertions.assertEquals(5, stats.getLong("weight"), "Weight");
+        Assertions.assertEquals(100, stats.getLong("maxWeight"), "Max weight");
+        Assertions.assertSame(j, c.remove("a"), "Removed job");
+        Assertions.assertTrue(c.jobs().isEmpty(), "Empty cache");
+    }
+
+    @Test
+    public void invalidWeightTest(){
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new WhipperJobCache(0));
+    }
+
+    private static WhipperJob job(String id, int weight, boolean active){
+        WhipperJob j = Mockito.mock(WhipperJob.class);
+        Mockito.when(j.getId()).thenReturn(id);
+        Mockito.when(j.getWeight()).thenReturn(weight);
+        Mockito.when(j.isActive()).thenReturn(active);
+        return j;
+    }
+}
@@ -0,0 +1,148 @@
+package org.whipper.web.job;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class WhipperJobIndexTest{
+
+    private File dir;
+    private File file;
+
+    @BeforeEach
+    public void createDir() throws IOException{
+        dir = Files.createTempDirectory("index").toFile();
+        file = new File(dir, "jobs.jsonl");
+    }
+
+    @AfterEach
+    public void deleteDir(){
+        File[] files = dir.listFiles();
+        if(files != null){
+            for(File f : files){
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void reloadTest(){
+        WhipperJobIndex index = new WhipperJobIndex(file);
+        Assertions.assertFalse(index.load(), "Missing index");
+        index.put("a", summary("a", "finished"));
+        index.put("b", summary("b", "finished"));
+        index.put("c", summary("c", "finished"));
+        index.put("b", summary("b2", "failed"));
+        index.close();
+
+        WhipperJobIndex reloaded = new WhipperJobIndex(file);
+        Assertions.assertTrue(reloaded.load(), "Existing index");
+        Assertions.assertEquals(Arrays.asList("c", "b2", "a"), names(reloaded.page(0, 10, s -> true)), "Reloaded jobs");
+        Assertions.assertEquals(Arrays.asList("a", "b", "c"), reloaded.ids(s -> true), "Reloaded IDs");
+        reloaded.close();
+    }
+
+    @Test
+    public void truncatedLastLineTest() throws IOException{
+        WhipperJobIndex index = new WhipperJobIndex(file);
+        index.put("a", summary("a", "finished"));
+        index.put("b", summary("b", "finished"));
+        index.close();
+        Files.write(file.toPath(), "{\"op\":\"put\",\"id\":\"c\",\"summ".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        WhipperJobIndex reloaded = new WhipperJobIndex(file);
+        Assertions.assertTrue(reloaded.load(), "Existing index");
+        Assertions.assertEquals(Arrays.asList("a", "b"), reloaded.ids(s -> true), "Complete records");
+        reloaded.put("d", summary("d", "finished"));
+        reloaded.close();
+
+        WhipperJobIndex again = new WhipperJobIndex(file);
+        again.load();
+        Assertions.assertEquals(Arrays.asList("a", "b", "d"), again.ids(s -> true), "Record appended after incomplete one");
+        again.close();
+    }
+
+    @Test
+    public void deleteThenReloadTest(){
+        WhipperJobIndex index = new WhipperJobIndex(file);
+        index.put("a", summary("a", "finished"));
+        index.put("b", summary("b", "finished"));
+        index.remove("a");
+        index.remove("x");
+        Assertions.assertFalse(index.contains("a"), "Removed job");
+        index.close();
+
+        WhipperJobIndex reloaded = new WhipperJobIndex(file);
+        reloaded.load();
+        Assertions.assertFalse(reloaded.contains("a"), "Removed job after reload");
+        Assertions.assertTrue(reloaded.contains("b"), "Remaining job after reload");
+        Assertions.assertEquals(Arrays.asList("b"), names(reloaded.page(0, 10, s -> true)), "Jobs after reload");
+        reloaded.close();
+    }
+
+    @Test
+    public void pageTest(){
+        WhipperJobIndex index = new WhipperJobIndex(file);
+        for(int i = 0; i < 10; i++){
+            String name = (i % 2 == 0 ? "nightly " : "smoke ") + i;
+            index.put("j" + i, summary(name, i % 3 == 0 ? "failed" : "finished"));
+        }
+        Assertions.assertEquals(Arrays.asList("smoke 9", "nightly 8", "smoke 7"),
+                names(index.page(0, 3, WhipperJobService.summaryFilter(null, null))), "First page");
+        Assertions.assertEquals(Arrays.asList("smoke 1", "nightly 0"),
+                names(index.page(8, 3, WhipperJobService.summaryFilter("", ""))), "Last page");
+        Assertions.assertEquals(Arrays.asList("smoke 9", "nightly 6"),
+                names(index.page(0, 2, WhipperJobService.summaryFilter("FAILED", null))), "State filter");
+        Assertions.assertEquals(Arrays.asList("smoke 3", "nightly 0"),
+                names(index.page(2, 5, WhipperJobService.summaryFilter("failed", null))), "State filter with offset");
+        Assertions.assertEquals(Arrays.asList("nightly 6", "nightly 4"),
+                names(index.page(1, 2, WhipperJobService.summaryFilter(null, "NIGHT"))), "Name filter");
+        Assertions.assertEquals(Arrays.asList("nightly 8", "nightly 4", "nightly 2"),
+                names(index.page(0, 10, WhipperJobService.summaryFilter("finished", "night"))), "State and name filter");
+        Assertions.assertTrue(index.page(10, 10, s -> true).isEmpty(), "Offset beyond the end");
+        index.close();
+    }
+
+    @Test
+    public void compactionTest() throws IOException{
+        WhipperJobIndex index = new WhipperJobIndex(file);
+        index.put("a", summary("a", "finished"));
+        for(int i = 0; i < 200; i++){
+            index.put("b", summary("b" + i, "finished"));
+        }
+        index.put("c", summary("c", "finished"));
+        long lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).size();
+        Assertions.assertTrue(lines < 100, "Log has been compacted - " + lines);
+        Assertions.assertEquals(Arrays.asList("c", "b199", "a"), names(index.page(0, 10, s -> true)), "Jobs after compaction");
+        index.close();
+
+        WhipperJobIndex reloaded = new WhipperJobIndex(file);
+        reloaded.load();
+        Assertions.assertEquals(Arrays.asList("c", "b199", "a"), names(reloaded.page(0, 10, s -> true)), "Reloaded jobs");
+        reloaded.close();
+    }
+
+    private static JSONObject summary(String name, String state){
+        return new JSONObject().put("job_info", new JSONObject().put("job_name", name).put("state", state));
+    }
+
+    private static List<String> names(List<JSONObject> summaries){
+        List<String> out = new ArrayList<>();
+        for(JSONObject s : summaries){
+            out.add(s.getJSONObject("job_info").getString("job_name"));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,191 @@
+package org.whipper.web.job;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.whipper.WhipperProperties;
+import org.whipper.web.Context;
+import org.whipper.web.Utils;
+
+public class WhipperJobRetentionTest{
+
+    private static final String RESULT = "{\"scenarios\":{\"sc\":{\"id\":\"sc\",\"all\":2,\"pass\":1,\"fail\":1,"
+            + "\"suites\":{\"su\":{\"id\":\"su\",\"all\":2,\"pass\":1,\"fail\":1}}}}}";
+    private static final String ERROR = "<error>packed</error>";
+
+    private File base;
+    private File results;
+    private Context context;
+    private final List<WhipperJobService> services = new ArrayList<>();
+
+    @BeforeEach
+    public void createContext() throws IOException{
+        base = Files.createTempDirectory("whipper").toFile();
+        results = new File(base, "results");
+        File tmp = new File(base, "tmp");
+        results.mkdirs();
+        tmp.mkdirs();
+        context = Mockito.mock(Context.class);
+        Mockito.when(context.getResultDir(Mockito.any())).thenAnswer(inv -> inv.getArguments()[0] == null
+                ? results : new File(results, (String)inv.getArguments()[0]));
+        Mockito.when(context.getTmpDir(Mockito.any())).thenAnswer(inv -> inv.getArguments()[0] == null
+                ? tmp : new File(tmp, (String)inv.getArguments()[0]));
+        Mockito.when(context.getJobIndexFile()).thenReturn(new File(base, "jobs.jsonl"));
+    }
+
+    @AfterEach
+    public void deleteContext(){
+        for(WhipperJobService s : services){
+            s.shutdown();
+        }
+        System.clearProperty(WhipperJobRetention.COMPACT_DAYS_PROP);
+        System.clearProperty(WhipperJobRetention.TTL_DAYS_PROP);
+        Utils.delete(base);
+    }
+
+    @Test
+    public void packTest() throws Exception{
+        createJob("aaaaaaa1", "old", 3);
+        createJob("aaaaaaa2", "new", 0);
+        WhipperJobService service = service(1, 0);
+        JSONObject before = service.getJob("aaaaaaa1").briefResultToJson();
+        retention(service).run();
+
+        Assertions.assertFalse(new File(results, "aaaaaaa1").exists(), "Directory of packed job");
+        Assertions.assertTrue(new File(results, "aaaaaaa1" + WhipperJobRetention.PACKED_EXTENSION).isFile(), "Archive of packed job");
+        Assertions.assertTrue(new File(results, "aaaaaaa2").isDirectory(), "Directory of new job");
+        Assertions.assertFalse(new File(results, "aaaaaaa2" + WhipperJobRetention.PACKED_EXTENSION).exists(), "Archive of new job");
+        Assertions.assertEquals(0, base.toPath().resolve("tmp").toFile().list().length, "Temporary files");
+
+        WhipperJob packed = service.getJob("aaaaaaa1");
+        Assertions.assertTrue(packed.isPacked(), "Job is read from archive");
+        Assertions.assertTrue(before.similar(packed.briefResultToJson()), "Summary of packed job");
+        Assertions.assertEquals(ERROR, readError(packed, "sc", "su", "q1"), "Error file of packed job");
+        Assertions.assertNull(readError(packed, "sc", "su", "q2"), "Missing error file of packed job");
+        Assertions.assertNotNull(packed.getArchive(context), "Archive of packed job");
+        Assertions.assertEquals(Arrays.asList("new", "old"), names(service.getJobsBriefSummary(0, 10, null, null)), "Listed jobs");
+
+        WhipperJob fromArchive = WhipperJob.fromArchive("aaaaaaa1", new File(results, "aaaaaaa1" + WhipperJobRetention.PACKED_EXTENSION));
+        Assertions.assertTrue(before.similar(fromArchive.briefResultToJson()), "Summary read from archive");
+        Assertions.assertEquals(ERROR, readError(fromArchive, "sc", "su", "q1"), "Error file read from archive");
+
+        retention(service).run();
+        Assertions.assertTrue(service.getJob("aaaaaaa1").isPacked(), "Packed job is not packed again");
+    }
+
+    @Test
+    public void expireTest() throws Exception{
+        createJob("aaaaaaa1", "expired", 5);
+        createJob("aaaaaaa2", "packed", 2);
+        createJob("aaaaaaa3", "new", 0);
+        WhipperJobService service = service(1, 3);
+        service.getJob("aaaaaaa1");
+        retention(service).run();
+
+        Assertions.assertFalse(new File(results, "aaaaaaa1").exists(), "Directory of expired job");
+        Assertions.assertFalse(new File(results, "aaaaaaa1" + WhipperJobRetention.PACKED_EXTENSION).exists(), "Archive of expired job");
+        Assertions.assertNull(service.getJob("aaaaaaa1"), "Expired job");
+        Assertions.assertTrue(service.getJob("aaaaaaa2").isPacked(), "Packed job");
+        Assertions.assertEquals(Arrays.asList("new", "packed"), names(service.getJobsBriefSummary(0, 10, null, null)), "Listed jobs");
+        service.shutdown();
+        services.remove(service);
+
+        // index is loaded from the file, packed job expires as well
+        WhipperJobService reloaded = service(1, 1);
+        Assertions.assertEquals(Arrays.asList("new", "packed"), names(reloaded.getJobsBriefSummary(0, 10, null, null)), "Reloaded jobs");
+        retention(reloaded).run();
+        Assertions.assertFalse(new File(results, "aaaaaaa2" + WhipperJobRetention.PACKED_EXTENSION).exists(), "Archive of expired packed job");
+        Assertions.assertNull(reloaded.getJob("aaaaaaa2"), "Expired packed job");
+        Assertions.assertEquals(Arrays.asList("new"), names(reloaded.getJobsBriefSummary(0, 10, null, null)), "Remaining jobs");
+        Assertions.assertEquals(Arrays.asList("aaaaaaa3"), Arrays.asList(results.list()), "Remaining files");
+    }
+
+    @Test
+    public void interruptedPackTest() throws Exception{
+        createJob("aaaaaaa1", "directory", 3);
+        createJob("aaaaaaa2", "archive", 3);
+        File copy = new File(base, "copy");
+        Files.move(new File(results, "aaaaaaa1").toPath(), copy.toPath());
+        createJob("aaaaaaa1", "stale", 3);
+        Utils.zip(new File(results, "aaaaaaa1"), new File(results, "aaaaaaa1" + WhipperJobRetention.PACKED_EXTENSION));
+        Utils.delete(new File(results, "aaaaaaa1"));
+        Files.move(copy.toPath(), new File(results, "aaaaaaa1").toPath());
+        Utils.zip(new File(results, "aaaaaaa2"), new File(results, "aaaaaaa2" + WhipperJobRetention.PACKED_EXTENSION));
+        Utils.delete(new File(results, "aaaaaaa2"));
+
+        // index is built from results directory
+        WhipperJobService service = service(0, 0);
+        Assertions.assertEquals(Arrays.asList("archive", "directory"),
+                sorted(names(service.getJobsBriefSummary(0, 10, null, null))), "Listed jobs");
+        Assertions.assertFalse(service.getJob("aaaaaaa1").isPacked(), "Directory takes precedence");
+        Assertions.assertTrue(service.getJob("aaaaaaa2").isPacked(), "Packed job");
+    }
+
+    /**
+     * Creates finished job in results directory.
+     */
+    private void createJob(String id, String name, int finishedDaysAgo) throws IOException{
+        File dir = new File(results, id);
+        WhipperProperties p = new WhipperProperties();
+        p.setOutputDir(dir.getAbsolutePath());
+        p.dumpPropertiesToOutputDir();
+        long finished = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(finishedDaysAgo) - TimeUnit.MINUTES.toMillis(1);
+        JSONObject info = new JSONObject().put("job_name", name).put("state", "finished")
+                .put("queued", finished - 2000).put("started", finished - 1000).put("finished", finished);
+        Files.write(new File(dir, "job-info.json").toPath(), info.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(dir, "result.json").toPath(), RESULT.getBytes(StandardCharsets.UTF_8));
+        File errors = new File(dir, "sc/errors_for_COMPARE");
+        errors.mkdirs();
+        Files.write(new File(errors, "su_q1_error.xml").toPath(), ERROR.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private WhipperJobService service(int compactDays, int ttlDays) throws Exception{
+        System.setProperty(WhipperJobRetention.COMPACT_DAYS_PROP, Integer.toString(compactDays));
+        System.setProperty(WhipperJobRetention.TTL_DAYS_PROP, Integer.toString(ttlDays));
+        WhipperJobService service = new WhipperJobService();
+        Field f = WhipperJobService.class.getDeclaredField("context");
+        f.setAccessible(true);
+        f.set(service, context);
+        service.init();
+        services.add(service);
+        return service;
+    }
+
+    private static WhipperJobRetention retention(WhipperJobService service) throws Exception{
+        Field f = WhipperJobService.class.getDeclaredField("retention");
+        f.setAccessible(true);
+        return (WhipperJobRetention)f.get(service);
+    }
+
+    private static String readError(WhipperJob job, String scenario, String suite, String query) throws IOException{
+        return job.readErrorFile(scenario, suite, query, f -> new String(Files.readAllBytes(f), StandardCharsets.UTF_8));
+    }
+
+    private static List<String> names(JSONArray summaries){
+        List<String> out = new ArrayList<>();
+        for(int i = 0; i < summaries.length(); i++){
+            out.add(summaries.getJSONObject(i).getJSONObject("job_info").getString("job_name"));
+        }
+        return out;
+    }
+
+    private static List<String> sorted(List<String> list){
+        List<String> out = new ArrayList<>(list);
+        out.sort(null);
+        return out;
+    }
+}
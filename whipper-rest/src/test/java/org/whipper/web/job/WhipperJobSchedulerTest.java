@@ -0,0 +1,225 @@
+package org.whipper.web.job;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.whipper.WhipperProperties;
+
+public class WhipperJobSchedulerTest{
+
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private final Map<String, AtomicInteger> runningPerUrl = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> maxPerUrl = new ConcurrentHashMap<>();
+    private final List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void workersLimitTest() throws Exception{
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(5);
+        WhipperJobScheduler s = new WhipperJobScheduler(2, 5, j -> finished.countDown());
+        try{
+            for(int i = 0; i < 5; i++){
+                s.submit(job("job" + i, "url" + i, release), props("url" + i, 0));
+            }
+            waitFor(() -> running.get() == 2);
+            Thread.sleep(200);
+            Assertions.assertEquals(2, running.get(), "Running jobs");
+            release.countDown();
+            Assertions.assertTrue(finished.await(5, TimeUnit.SECONDS), "All jobs finished");
+            Assertions.assertEquals(2, maxRunning.get(), "Max running jobs");
+            Assertions.assertEquals(5, order.size(), "Executed jobs");
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void perDataSourceLimitTest() throws Exception{
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(4);
+        WhipperJobScheduler s = new WhipperJobScheduler(4, 1, j -> finished.countDown());
+        try{
+            for(int i = 0; i < 3; i++){
+                s.submit(job("a" + i, "urlA", release), props("urlA", 0));
+            }
+            s.submit(job("b", "urlB", release), props("urlB", 0));
+            waitFor(() -> running.get() == 2);
+            Thread.sleep(200);
+            Assertions.assertEquals(2, running.get(), "Running jobs");
+            Assertions.assertTrue(order.contains("b"), "Job with other data source is not blocked");
+            release.countDown();
+            Assertions.assertTrue(finished.await(5, TimeUnit.SECONDS), "All jobs finished");
+            Assertions.assertEquals(1, maxPerUrl.get("urlA").get(), "Max running jobs of urlA");
+            Assertions.assertEquals(4, order.size(), "Executed jobs");
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void priorityOrderTest() throws Exception{
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(5);
+        WhipperJobScheduler s = new WhipperJobScheduler(1, 1, j -> finished.countDown());
+        try{
+            s.submit(job("blocker", "url", release), props("url", 0));
+            waitFor(() -> running.get() == 1);
+            s.submit(job("low", "url", null), props("url", 0));
+            s.submit(job("high1", "url", null), props("url", 5));
+            s.submit(job("mid", "url", null), props("url", 1));
+            s.submit(job("high2", "url", null), props("url", 5));
+            release.countDown();
+            Assertions.assertTrue(finished.await(5, TimeUnit.SECONDS), "All jobs finished");
+            Assertions.assertEquals(Arrays.asList("blocker", "high1", "high2", "mid", "low"), order, "Order of jobs");
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void cancelledJobTest() throws Exception{
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(2);
+        List<WhipperJob> done = Collections.synchronizedList(new ArrayList<>());
+        WhipperJobScheduler s = new WhipperJobScheduler(1, 1, j -> {
+            done.add(j);
+            finished.countDown();
+        });
+        try{
+            s.submit(job("blocker", "url", release), props("url", 0));
+            waitFor(() -> running.get() == 1);
+            WhipperJob cancelled = job("cancelled", "url", null);
+            s.submit(cancelled, props("url", 5));
+            Mockito.when(cancelled.isCancelled()).thenReturn(true);
+            s.submit(job("next", "url", null), props("url", 0));
+            release.countDown();
+            Assertions.assertTrue(finished.await(5, TimeUnit.SECONDS), "All jobs finished");
+            Assertions.assertEquals(Arrays.asList("blocker", "next"), order, "Executed jobs");
+            Assertions.assertFalse(done.contains(cancelled), "Cancelled job finished");
+            Mockito.verify(cancelled, Mockito.never()).run();
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void dataSourcesTest() throws IOException{
+        File dir = Files.createTempDirectory("scenarios").toFile();
+        dir.deleteOnExit();
+        write(new File(dir, "a.properties"), "url=jdbc:test:${db}\ndb=a\n");
+        write(new File(dir, "b.properties"), "other=value\n");
+        write(new File(dir, "c.txt"), "url=jdbc:test:c\n");
+        write(new File(dir, "d.properties"), "jndi.name=java:/ds/d\n");
+        WhipperProperties p = props("jdbc:test:job", 0);
+        Assertions.assertEquals(Collections.singleton("url:jdbc:test:job"), WhipperJobScheduler.dataSources(p), "URL of the job only");
+        p.setScenario(dir.getAbsolutePath());
+        Assertions.assertEquals(new TreeSet<>(Arrays.asList("url:jdbc:test:a", "url:jdbc:test:job", "jndi:java:/ds/d")),
+                WhipperJobScheduler.dataSources(p), "Data sources of scenarios");
+        p.setScenario(new File(dir, "a.properties").getAbsolutePath());
+        Assertions.assertEquals(Collections.singleton("url:jdbc:test:a"), WhipperJobScheduler.dataSources(p), "URL of single scenario");
+        p.setProperty(WhipperJobScheduler.JNDI_PROP, "java:/ds/job");
+        p.setScenario(new File(dir, "b.properties").getAbsolutePath());
+        Assertions.assertEquals(Collections.singleton("jndi:java:/ds/job"), WhipperJobScheduler.dataSources(p), "JNDI name wins over URL");
+        Assertions.assertTrue(WhipperJobScheduler.dataSources(new WhipperProperties()).isEmpty(), "Unknown data source");
+    }
+
+    @Test
+    public void jndiDataSourceLimitTest() throws Exception{
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(3);
+        WhipperJobScheduler s = new WhipperJobScheduler(4, 1, j -> finished.countDown());
+        try{
+            for(int i = 0; i < 2; i++){
+                WhipperProperties p = new WhipperProperties();
+                p.setProperty(WhipperJobScheduler.JNDI_PROP, "java:/ds/a");
+                s.submit(job("a" + i, "java:/ds/a", release), p);
+            }
+            WhipperProperties p = new WhipperProperties();
+            p.setProperty(WhipperJobScheduler.JNDI_PROP, "java:/ds/b");
+            s.submit(job("b", "java:/ds/b", release), p);
+            waitFor(() -> running.get() == 2);
+            Thread.sleep(200);
+            Assertions.assertEquals(2, running.get(), "Running jobs");
+            release.countDown();
+            Assertions.assertTrue(finished.await(5, TimeUnit.SECONDS), "All jobs finished");
+            Assertions.assertEquals(1, maxPerUrl.get("java:/ds/a").get(), "Max running jobs of java:/ds/a");
+            Assertions.assertEquals(3, order.size(), "Executed jobs");
+        } finally {
+            s.shutdown();
+        }
+    }
+
+    @Test
+    public void shutdownCancelsQueuedJobsTest() throws Exception{
+        CountDownLatch release = new CountDownLatch(1);
+        List<WhipperJob> done = Collections.synchronizedList(new ArrayList<>());
+        WhipperJobScheduler s = new WhipperJobScheduler(1, 1, done::add);
+        s.submit(job("running", "url", release), props("url", 0));
+        waitFor(() -> running.get() == 1);
+        WhipperJob queued = job("queued", "url", null);
+        s.submit(queued, props("url", 0));
+        s.shutdown();
+        Mockito.verify(queued).stop();
+        Assertions.assertTrue(done.contains(queued), "Cancelled job reported");
+        Mockito.verify(queued, Mockito.never()).run();
+    }
+
+    private static void write(File f, String content) throws IOException{
+        f.deleteOnExit();
+        Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static WhipperProperties props(String url, int priority){
+        WhipperProperties p = new WhipperProperties();
+        p.setUrl(url);
+        p.setProperty(WhipperJobScheduler.PRIORITY_PROP, Integer.toString(priority));
+        return p;
+    }
+
+    private WhipperJob job(String name, String url, CountDownLatch release){
+        WhipperJob j = Mockito.mock(WhipperJob.class);
+        Mockito.when(j.getId()).thenReturn(name);
+        Mockito.doAnswer(inv -> {
+            order.add(name);
+            AtomicInteger perUrl = runningPerUrl.computeIfAbsent(url, k -> new AtomicInteger());
+            AtomicInteger maxUrl = maxPerUrl.computeIfAbsent(url, k -> new AtomicInteger());
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            maxUrl.accumulateAndGet(perUrl.incrementAndGet(), Math::max);
+            try{
+                if(release != null){
+                    release.await();
+                }
+            } finally {
+                perUrl.decrementAndGet();
+                running.decrementAndGet();
+            }
+            return null;
+        }).when(j).run();
+        return j;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException{
+        long end = System.currentTimeMillis() + 5000;
+        while(!condition.getAsBoolean()){
+            Assertions.assertTrue(System.currentTimeMillis() < end, "Timeout");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.whipper.web.job;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.whipper.WhipperProperties;
+
+public class WhipperJobTest{
+
+    @Test
+    public void progressTokenTest(){
+        WhipperJob job = new WhipperJob("abc", null, new WhipperProperties());
+        WhipperJob reloaded = new WhipperJob("abc", null, new WhipperProperties());
+        String token = job.progressToken(5);
+        Assertions.assertEquals(5, job.parseProgressToken(token), "Own token");
+        Assertions.assertEquals(5, job.parseProgressToken(" " + token + " "), "Own token with spaces");
+        Assertions.assertEquals(-1, reloaded.parseProgressToken(token), "Token of other instance");
+        Assertions.assertEquals(-1, job.parseProgressToken("5"), "Bare version");
+        Assertions.assertEquals(-1, job.parseProgressToken(job.progressToken(0).replace("-0", "-x")), "Malformed version");
+        Assertions.assertEquals(-1, job.parseProgressToken(null), "Missing token");
+    }
+
+    @Test
+    public void deltaOfOtherInstanceTest(){
+        WhipperJob job = new WhipperJob("abc", null, new WhipperProperties());
+        WhipperJob reloaded = new WhipperJob("abc", null, new WhipperProperties());
+        JSONObject full = job.deltaToJson(-1);
+        Assertions.assertTrue(full.getBoolean("full"), "Initial delta");
+        String token = full.getString(WhipperJob.TOKEN);
+        Assertions.assertEquals(job.progressToken(job.getVersion()), token, "Token of the delta");
+        Assertions.assertFalse(job.deltaToJson(job.parseProgressToken(token)).getBoolean("full"), "Delta of the same instance");
+        Assertions.assertTrue(reloaded.deltaToJson(reloaded.parseProgressToken(token)).getBoolean("full"), "Delta of other instance");
+    }
+}
@@ -0,0 +1,67 @@
+package org.whipper.web.rest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ByteRangeTest{
+
+    @Test
+    public void suffixRangeTest(){
+        check("bytes=-100", 1000, "bytes 900-999/1000", 100);
+        check("bytes=-2000", 1000, "bytes 0-999/1000", 1000);
+        Assertions.assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-0", 1000), "Empty suffix");
+        Assertions.assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-10", 0), "Empty entity");
+    }
+
+    @Test
+    public void openEndedRangeTest(){
+        check("bytes=100-", 1000, "bytes 100-999/1000", 900);
+        check("bytes=0-", 1000, "bytes 0-999/1000", 1000);
+    }
+
+    @Test
+    public void closedRangeTest(){
+        check("bytes=0-0", 1000, "bytes 0-0/1000", 1);
+        check("bytes=10-19", 1000, "bytes 10-19/1000", 10);
+        check("bytes= 10 - 19 ", 1000, "bytes 10-19/1000", 10);
+    }
+
+    @Test
+    public void lastBeyondLengthTest(){
+        check("bytes=100-5000", 1000, "bytes 100-999/1000", 900);
+    }
+
+    @Test
+    public void unsatisfiableTest(){
+        Assertions.assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=1000-", 1000), "First equals length");
+        Assertions.assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=2000-3000", 1000), "First beyond length");
+        Assertions.assertEquals("bytes */1000", ByteRange.UNSATISFIABLE.contentRange(1000), "Content range");
+    }
+
+    @Test
+    public void fullResponseTest(){
+        Assertions.assertNull(ByteRange.parse(null, 1000), "Missing header");
+        Assertions.assertNull(ByteRange.parse("items=0-10", 1000), "Unknown unit");
+        Assertions.assertNull(ByteRange.parse("bytes=0-10,20-30", 1000), "Multiple ranges");
+        Assertions.assertNull(ByteRange.parse("bytes=10", 1000), "Missing dash");
+        Assertions.assertNull(ByteRange.parse("bytes=a-10", 1000), "Invalid number");
+        Assertions.assertNull(ByteRange.parse("bytes=20-10", 1000), "Last before first");
+    }
+
+    @Test
+    public void ifRangeTest(){
+        String tag = "\"abc\"";
+        Assertions.assertEquals("bytes 10-19/1000", ByteRange.parse("bytes=10-19", null, tag, 1000).contentRange(1000), "Missing If-Range");
+        Assertions.assertEquals("bytes 10-19/1000", ByteRange.parse("bytes=10-19", tag, tag, 1000).contentRange(1000), "Matching If-Range");
+        Assertions.assertNull(ByteRange.parse("bytes=10-19", "\"old\"", tag, 1000), "Mismatched If-Range");
+        Assertions.assertNull(ByteRange.parse("bytes=2000-", "\"old\"", tag, 1000), "Mismatched If-Range of unsatisfiable range");
+    }
+
+    private static void check(String header, long length, String contentRange, long rangeLength){
+        ByteRange r = ByteRange.parse(header, length);
+        Assertions.assertNotNull(r, header);
+        Assertions.assertNotSame(ByteRange.UNSATISFIABLE, r, header);
+        Assertions.assertEquals(contentRange, r.contentRange(length), header);
+        Assertions.assertEquals(rangeLength, r.length(), header);
+    }
+}
@@ -0,0 +1,115 @@
+package org.whipper.web.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class CompressingOutputStreamTest{
+
+    @Test
+    public void belowThresholdTest() throws IOException{
+        MultivaluedMap<String, Object> headers = headers();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] data = data(1023);
+        CompressingOutputStream cos = new CompressingOutputStream(out, headers, CompressionInterceptor.GZIP, Deflater.DEFAULT_COMPRESSION, 1024);
+        cos.write(data, 0, 500);
+        cos.flush();
+        Assertions.assertEquals(0, out.size(), "Buffered data are not flushed");
+        cos.write(data, 500, data.length - 500);
+        cos.finish();
+        Assertions.assertFalse(headers.containsKey(HttpHeaders.CONTENT_ENCODING), "Content encoding");
+        Assertions.assertEquals("1023", headers.getFirst(HttpHeaders.CONTENT_LENGTH), "Content length");
+        Assertions.assertArrayEquals(data, out.toByteArray(), "Uncompressed data");
+    }
+
+    @Test
+    public void gzipTest() throws IOException{
+        MultivaluedMap<String, Object> headers = headers();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] data = data(10000);
+        CompressingOutputStream cos = new CompressingOutputStream(out, headers, CompressionInterceptor.GZIP, Deflater.BEST_SPEED, 1024);
+        for(int i = 0; i < data.length; i += 100){
+            cos.write(data, i, 100);
+        }
+        cos.finish();
+        Assertions.assertEquals(CompressionInterceptor.GZIP, headers.getFirst(HttpHeaders.CONTENT_ENCODING), "Content encoding");
+        Assertions.assertFalse(headers.containsKey(HttpHeaders.CONTENT_LENGTH), "Content length");
+        Assertions.assertArrayEquals(data, readAll(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))), "Decompressed data");
+    }
+
+    @Test
+    public void deflateTest() throws IOException{
+        MultivaluedMap<String, Object> headers = headers();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] data = data(1024);
+        CompressingOutputStream cos = new CompressingOutputStream(out, headers, CompressionInterceptor.DEFLATE, Deflater.DEFAULT_COMPRESSION, 1024);
+        cos.write(data);
+        cos.finish();
+        Assertions.assertEquals(CompressionInterceptor.DEFLATE, headers.getFirst(HttpHeaders.CONTENT_ENCODING), "Content encoding");
+        Assertions.assertArrayEquals(data, readAll(new InflaterInputStream(new ByteArrayInputStream(out.toByteArray()))), "Decompressed data");
+    }
+
+    @Test
+    public void syncFlushTest() throws Exception{
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] data = data(5000);
+        CompressingOutputStream cos = new CompressingOutputStream(out, headers(), CompressionInterceptor.DEFLATE, Deflater.DEFAULT_COMPRESSION, 1024);
+        cos.write(data);
+        cos.flush();
+        // everything written so far can be decompressed before the stream is finished
+        Inflater inf = new Inflater();
+        try{
+            inf.setInput(out.toByteArray());
+            byte[] decompressed = new byte[data.length + 1];
+            int n = inf.inflate(decompressed);
+            Assertions.assertEquals(data.length, n, "Decompressed bytes");
+            Assertions.assertArrayEquals(data, Arrays.copyOf(decompressed, n), "Decompressed data");
+            Assertions.assertFalse(inf.finished(), "Stream is not finished yet");
+        } finally {
+            inf.end();
+        }
+        cos.finish();
+        Assertions.assertArrayEquals(data, readAll(new InflaterInputStream(new ByteArrayInputStream(out.toByteArray()))), "Decompressed data");
+    }
+
+    private static MultivaluedMap<String, Object> headers(){
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        headers.putSingle(HttpHeaders.CONTENT_LENGTH, "1023");
+        return headers;
+    }
+
+    private static byte[] data(int length){
+        byte[] out = new byte[length];
+        Random r = new Random(length);
+        for(int i = 0; i < length; i++){
+            out[i] = (byte)('a' + r.nextInt(4));
+        }
+        return out;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException{
+        try(InputStream is = in){
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buff = new byte[4096];
+            int read;
+            while((read = is.read(buff)) >= 0){
+                out.write(buff, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.whipper.web.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+public class CompressionInterceptorTest{
+
+    @Test
+    public void selectEncodingTest(){
+        Assertions.assertNull(CompressionInterceptor.selectEncoding(null), "Missing header");
+        Assertions.assertNull(CompressionInterceptor.selectEncoding("identity"), "Identity only");
+        Assertions.assertEquals(CompressionInterceptor.GZIP, CompressionInterceptor.selectEncoding("gzip"), "gzip");
+        Assertions.assertEquals(CompressionInterceptor.GZIP, CompressionInterceptor.selectEncoding("x-gzip"), "x-gzip");
+        Assertions.assertEquals(CompressionInterceptor.DEFLATE, CompressionInterceptor.selectEncoding("deflate"), "deflate");
+        Assertions.assertEquals(CompressionInterceptor.GZIP, CompressionInterceptor.selectEncoding("deflate, gzip"), "gzip preferred");
+        Assertions.assertEquals(CompressionInterceptor.GZIP, CompressionInterceptor.selectEncoding("GZIP;Q=1.0"), "Case insensitive");
+    }
+
+    @Test
+    public void qualityTest(){
+        Assertions.assertNull(CompressionInterceptor.selectEncoding("gzip;q=0"), "gzip refused");
+        Assertions.assertEquals(CompressionInterceptor.DEFLATE, CompressionInterceptor.selectEncoding("gzip;q=0, deflate"), "gzip refused, deflate accepted");
+        Assertions.assertEquals(CompressionInterceptor.DEFLATE, CompressionInterceptor.selectEncoding("gzip;q=0.5, deflate;q=0.8"), "deflate has higher quality");
+        Assertions.assertEquals(CompressionInterceptor.GZIP, CompressionInterceptor.selectEncoding("gzip;q=0.5, deflate;q=0.5"), "gzip wins tie");
+        Assertions.assertNull(CompressionInterceptor.selectEncoding("gzip;q=abc"), "Invalid quality");
+    }
+
+    @Test
+    public void wildcardTest(){
+        Assertions.assertEquals(CompressionInterceptor.GZIP, CompressionInterceptor.selectEncoding("*"), "Any coding");
+        Assertions.assertEquals(CompressionInterceptor.DEFLATE, CompressionInterceptor.selectEncoding("*, gzip;q=0"), "Any except gzip");
+        Assertions.assertEquals(CompressionInterceptor.GZIP, CompressionInterceptor.selectEncoding("*;q=0, gzip"), "gzip only");
+        Assertions.assertNull(CompressionInterceptor.selectEncoding("*;q=0"), "No coding");
+    }
+
+    @Test
+    public void compressibleTest(){
+        Assertions.assertTrue(CompressionInterceptor.isCompressible(MediaType.APPLICATION_JSON_TYPE), "JSON");
+        Assertions.assertTrue(CompressionInterceptor.isCompressible(MediaType.TEXT_PLAIN_TYPE), "Text");
+        Assertions.assertTrue(CompressionInterceptor.isCompressible(new MediaType("application", "problem+json")), "+json");
+        Assertions.assertFalse(CompressionInterceptor.isCompressible(JobProgressStream.EVENT_STREAM_TYPE), "Event stream");
+        Assertions.assertFalse(CompressionInterceptor.isCompressible(new MediaType("application", "zip")), "ZIP");
+        Assertions.assertFalse(CompressionInterceptor.isCompressible(null), "No type");
+    }
+
+    @Test
+    public void failedWriteReleasesCompressorTest() throws Exception{
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        ByteArrayOutputStream original = new ByteArrayOutputStream();
+        AtomicReference<OutputStream> current = new AtomicReference<>(original);
+        WriterInterceptorContext ctx = Mockito.mock(WriterInterceptorContext.class);
+        Mockito.when(ctx.getMediaType()).thenReturn(MediaType.APPLICATION_JSON_TYPE);
+        Mockito.when(ctx.getHeaders()).thenReturn(headers);
+        Mockito.when(ctx.getOutputStream()).thenAnswer(inv -> current.get());
+        Mockito.doAnswer(inv -> {
+            current.set((OutputStream)inv.getArguments()[0]);
+            return null;
+        }).when(ctx).setOutputStream(Mockito.any(OutputStream.class));
+        AtomicReference<OutputStream> used = new AtomicReference<>();
+        Mockito.doAnswer(inv -> {
+            used.set(current.get());
+            current.get().write(new byte[64 * 1024]);
+            throw new IOException("Client disconnected.");
+        }).when(ctx).proceed();
+
+        CompressionInterceptor ci = new CompressionInterceptor();
+        HttpServletRequest req = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(req.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn("gzip");
+        Field f = CompressionInterceptor.class.getDeclaredField("req");
+        f.setAccessible(true);
+        f.set(ci, req);
+
+        Assertions.assertThrows(IOException.class, () -> ci.aroundWriteTo(ctx));
+        Assertions.assertSame(original, current.get(), "Original stream restored");
+        Assertions.assertEquals(CompressionInterceptor.GZIP, headers.getFirst(HttpHeaders.CONTENT_ENCODING), "Content encoding");
+        Field d = CompressingOutputStream.class.getDeclaredField("deflater");
+        d.setAccessible(true);
+        Deflater deflater = (Deflater)d.get(used.get());
+        // ended deflater refuses to work
+        Assertions.assertThrows(NullPointerException.class, deflater::getBytesRead, "Deflater released");
+    }
+}
@@ -0,0 +1,131 @@
+package org.whipper.webapp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLConnection;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Filter which serves precompressed variants of static resources.
+ * <p>
+ * Variants ({@code .br} and {@code .gz} files) are created at build time. If client
+ * accepts the encoding and the variant exists, the variant is sent as is instead
+ * of the original resource. Brotli is preferred over GZIP.
+ */
+@WebFilter("/*")
+public class PrecompressedResourceFilter implements Filter{
+
+    private static final String[][] ENCODINGS = {{"br", ".br"}, {"gzip", ".gz"}};
+    private ServletContext servletContext;
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException{
+        servletContext = filterConfig.getServletContext();
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException{
+        HttpServletRequest req = (HttpServletRequest)request;
+        HttpServletResponse resp = (HttpServletResponse)response;
+        String method = req.getMethod();
+        String path = req.getServletPath() + (req.getPathInfo() == null ? "" : req.getPathInfo());
+        if(("GET".equals(method) || "HEAD".equals(method)) && !path.endsWith("/")){
+            String acceptEncoding = req.getHeader("Accept-Encoding");
+            for(String[] enc : ENCODINGS){
+                URL variant;
+                if(accepts(acceptEncoding, enc[0]) && (variant = servletContext.getResource(path + enc[1])) != null){
+                    serve(variant, path, enc[0], "HEAD".equals(method), resp);
+                    return;
+                }
+            }
+            if(servletContext.getResource(path + ENCODINGS[1][1]) != null){
+                // response differs according to Accept-Encoding
+                resp.addHeader("Vary", "Accept-Encoding");
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * Returns {@code true} if client accepts encoding.
+     *
+     * @param acceptEncoding value of {@code Accept-Encoding} header
+     * @param encoding encoding
+     * @return whether client accepts encoding
+     */
+    static boolean accepts(String acceptEncoding, String encoding){
+        if(acceptEncoding == null){
+            return false;
+        }
+        for(String part : acceptEncoding.toLowerCase().split(",")){
+            String[] params = part.split(";");
+            if(encoding.equals(params[0].trim())){
+                for(int i = 1; i < params.length; i++){
+                    String p = params[i].trim();
+                    if(p.startsWith("q=")){
+                        try{
+                            return Double.parseDouble(p.substring(2).trim()) > 0;
+                        } catch (NumberFormatException ex){
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sends precompressed variant of the resource.
+     *
+     * @param variant precompressed variant
+     * @param path path of the original resource
+     * @param encoding encoding of the variant
+     * @param headOnly whether to send only headers
+     * @param resp response
+     * @throws IOException if an I/O error occurs
+     */
+    private void serve(URL variant, String path, String encoding, boolean headOnly, HttpServletResponse resp) throws IOException{
+        URLConnection conn = variant.openConnection();
+        String type = servletContext.getMimeType(path);
+        if(type != null){
+            resp.setContentType(type);
+        }
+        resp.setHeader("Content-Encoding", encoding);
+        resp.addHeader("Vary", "Accept-Encoding");
+        long length = conn.getContentLengthLong();
+        if(length >= 0){
+            resp.setContentLengthLong(length);
+        }
+        if(conn.getLastModified() > 0){
+            resp.setDateHeader("Last-Modified", conn.getLastModified());
+        }
+        if(headOnly){
+            return;
+        }
+        try(InputStream in = conn.getInputStream()){
+            OutputStream out = resp.getOutputStream();
+            byte[] buff = new byte[8192];
+            int read;
+            while((read = in.read(buff)) != -1){
+                out.write(buff, 0, read);
+            }
+        }
+    }
+
+    @Override
+    public void destroy(){}
+}
@@ -0,0 +1,48 @@
+// Creates precompressed (gzip and brotli) variants of the static assets
+// in the distribution directory. Variants are served as is by the server.
+// Brotli variants are created only if Node.js supports brotli (10.16+, 11.7+).
+
+const fs = require('fs');
+const path = require('path');
+const zlib = require('zlib');
+
+const dir = process.argv[2] || 'dist';
+const minSize = 1024;
+// index.html is filtered during the build, thus it cannot be precompressed
+const skip = ['index.html'];
+const compressible = /\.(js|css|html|json|map|svg|txt|ico|eot|ttf)$/;
+
+function walk(d) {
+  for (const name of fs.readdirSync(d)) {
+    const file = path.join(d, name);
+    if (fs.statSync(file).isDirectory()) {
+      walk(file);
+    } else if (compressible.test(name) && skip.indexOf(name) < 0) {
+      compress(file);
+    }
+  }
+}
+
+function compress(file) {
+  const data = fs.readFileSync(file);
+  if (data.length < minSize) {
+    return;
+  }
+  writeSmaller(file + '.gz', data, zlib.gzipSync(data, {level: zlib.constants.Z_BEST_COMPRESSION}));
+  if (zlib.brotliCompressSync) {
+    writeSmaller(file + '.br', data, zlib.brotliCompressSync(data, {
+      params: {[zlib.constants.BROTLI_PARAM_QUALITY]: zlib.constants.BROTLI_MAX_QUALITY}
+    }));
+  }
+}
+
+function writeSmaller(file, original, compressed) {
+  if (compressed.length < original.length) {
+    fs.writeFileSync(file, compressed);
+  }
+}
+
+if (!zlib.brotliCompressSync) {
+  console.log('Brotli is not supported by Node.js ' + process.version + ', creating only gzip variants.');
+}
+walk(dir);
@@ -1,5 +1,7 @@
 export class JobInfo {
   job_name: string;
+  state: string;
+  queued: number;
   started: number;
   finished: number;
 }
@@ -1,5 +1,6 @@
-import { Injectable } from '@angular/core';
+import { Injectable, NgZone } from '@angular/core';
 import { Http, Headers } from '@angular/http';
+import { Observable } from 'rxjs/Observable';
 
 import 'rxjs/add/operator/toPromise';
 
@@ -10,15 +11,109 @@ export class WhipperRestService {
   private basicUrl = 'http://localhost:9080/whipper-rest/';
   private headers = new Headers({'Accept': 'application/json'});
   private jobs: Job[] = null;
+  private nestedKeys = ['suites', 'querySets', 'queries'];
 
-  constructor(private http: Http) { }
+  constructor(private http: Http, private zone: NgZone) { }
 
-  getJobs(): Promise<Job[]>{
-    return this.http.get(this.basicUrl + 'jobs')
+  getJobs(offset = 0, limit = 100, state?: string, name?: string): Promise<Job[]>{
+    let url = this.basicUrl + 'jobs?offset=' + offset + '&limit=' + limit;
+    if (state) {
+      url += '&state=' + encodeURIComponent(state);
+    }
+    if (name) {
+      url += '&name=' + encodeURIComponent(name);
+    }
+    return this.http.get(url)
       .toPromise()
       .then(resp => resp.json().data as Job[]);
   }
 
+  /**
+   * Returns summary of the comparison error of the query (without rows of the results).
+   */
+  getErrorSummary(id: string, scenario: string, suite: string, query: string): Promise<any>{
+    return this.http.get(this.errorUrl(id, scenario, suite, query), {headers: this.headers})
+      .toPromise()
+      .then(resp => resp.json().data)
+      .catch(error => this.handleError(error, null));
+  }
+
+  /**
+   * Returns page of rows of actual or expected result of the comparison error of the query.
+   */
+  getErrorRows(id: string, scenario: string, suite: string, query: string,
+               result: 'actual' | 'expected', offset = 0, limit = 100): Promise<any>{
+    const url = this.errorUrl(id, scenario, suite, query) + '/' + result + '?offset=' + offset + '&limit=' + limit;
+    return this.http.get(url, {headers: this.headers})
+      .toPromise()
+      .then(resp => resp.json().data)
+      .catch(error => this.handleError(error, null));
+  }
+
+  private errorUrl(id: string, scenario: string, suite: string, query: string): string{
+    return this.basicUrl + 'jobs/' + id + '/errors/' + encodeURIComponent(scenario) + '/'
+      + encodeURIComponent(suite) + '/' + encodeURIComponent(query);
+  }
+
+  /**
+   * Watches progress of the job. Server pushes only changes of the progress
+   * (server-sent events), which are merged into the returned job.
+   * Browser reconnects automatically and resumes from the last received event.
+   */
+  watchJob(id: string): Observable<Job>{
+    return new Observable<Job>(observer => {
+      let job: any = null;
+      const source = new EventSource(this.basicUrl + 'jobs/' + id + '/events');
+      source.addEventListener('progress', (e: MessageEvent) => {
+        const delta = JSON.parse(e.data);
+        job = this.mergeDelta(job, delta);
+        this.zone.run(() => observer.next(job as Job));
+      });
+      source.addEventListener('finished', () => {
+        source.close();
+        this.zone.run(() => observer.complete());
+      });
+      source.onerror = (error) => {
+        if (source.readyState === EventSource.CLOSED) {
+          this.zone.run(() => observer.error(this.handleError(error, error)));
+        }
+      };
+      return () => source.close();
+    });
+  }
+
+  private mergeDelta(job: any, delta: any): any{
+    if (job === null || delta.full) {
+      job = {id: delta.id, job_info: delta.job_info, scenarios: []};
+    }
+    job.finished = delta.finished;
+    job.runningMetaQuerySet = delta.runningMetaQuerySet;
+    job.runningMetaQuery = delta.runningMetaQuery;
+    for (const sc of delta.scenarios) {
+      const idx = job.scenarios.findIndex(s => s !== null && s.id === sc.id);
+      if (idx < 0) {
+        job.scenarios.push(sc);
+      } else {
+        job.scenarios[idx] = this.mergeNode(job.scenarios[idx], sc);
+      }
+    }
+    return job;
+  }
+
+  private mergeNode(node: any, delta: any): any{
+    for (const key of Object.keys(delta)) {
+      if (this.nestedKeys.indexOf(key) < 0 || !node[key]) {
+        node[key] = delta[key];
+      } else {
+        for (const nestedId of Object.keys(delta[key])) {
+          const nested = node[key][nestedId];
+          node[key][nestedId] = nested ? this.mergeNode(nested, delta[key][nestedId]) : delta[key][nestedId];
+        }
+      }
+    }
+    return node;
+  }
+
   private handleError(error:any, toReturn:any): any{
     console.log('ERROR', error);
     return toReturn;
@@ -9,7 +9,6 @@ import java.sql.SQLXML;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
 
@@ -30,6 +29,7 @@ public class ActualResultHolder {
     private List<List<Object>> rows;
     private SQLException originalException;
     private Throwable rootCause;
+    private int releasedRowCount = -1;
 
     /**
      * Decides, whether this holder represents an exception.
@@ -55,7 +55,17 @@ public class ActualResultHolder {
      * @return {@code true} if this holder represents a table, {@code false} otherwise
      */
     public boolean isResult(){
-        return rows != null;
+        return rows != null || isReleased();
+    }
+
+    /**
+     * Decides, whether rows of this holder have been released.
+     *
+     * @return {@code true} if this holder represents a table and its rows have been released
+     * @see #releaseRows()
+     */
+    public boolean isReleased(){
+        return releasedRowCount >= 0;
     }
 
     /**
@@ -107,11 +117,36 @@ public class ActualResultHolder {
      * Returns rows.
      *
      * @return rows or {@code null} if this holder does not represent a table
+     * @throws IllegalStateException if rows have been released
      */
-    public List<List<Object>> getRows() {
+    public List<List<Object>> getRows() throws IllegalStateException{
+        if(isReleased()){
+            throw new IllegalStateException("Rows have been released.");
+        }
         return rows;
     }
 
+    /**
+     * Returns number of rows. Number of rows is available even if rows have been released.
+     *
+     * @return number of rows or {@code -1} if this holder does not represent a table
+     */
+    public int getRowCount(){
+        return isReleased() ? releasedRowCount : rows == null ? -1 : rows.size();
+    }
+
+    /**
+     * Releases rows of the table to free memory. Column labels and types, number
+     * of rows and exception (if any) are kept. Does nothing if this holder
+     * does not represent a table.
+     */
+    public void releaseRows(){
+        if(rows != null){
+            releasedRowCount = rows.size();
+            rows = null;
+        }
+    }
+
     /**
      * Returns class of original exception.
      *
@@ -202,7 +237,7 @@ public class ActualResultHolder {
                 columnLabels.add(md.getColumnLabel(i));
                 columnTypeNames.add(md.getColumnTypeName(i));
             }
-            rows = new LinkedList<>();
+            rows = new ArrayList<>();
             while(rs.next()){
                 List<Object> row = new ArrayList<>(columnCount);
                 for(int i = 1; i <= columnCount; i++){
@@ -253,6 +288,7 @@ public class ActualResultHolder {
         rows = null;
         originalException = null;
         rootCause = null;
+        releasedRowCount = -1;
     }
 
     @Override
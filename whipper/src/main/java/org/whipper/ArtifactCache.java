@@ -0,0 +1,94 @@
+package org.whipper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.whipper.xml.XmlHelper;
+import org.whipper.xml.suite.QuerySuite;
+
+/**
+ * Cache of artifacts which can be shared by several runs of Whipper
+ * (e.g. same artifacts tested against several servers).
+ * <p>
+ * Cache holds parsed suites and listings of directories (test queries and expected results),
+ * thus every suite is parsed once and expected result files are looked up in memory
+ * instead of file system. Entries are keyed by the path of the file including archive,
+ * so artifacts can be opened by every run separately (see {@link org.whipper.utils.ArtifactSource}).
+ * <p>
+ * Cache is never invalidated. It should live only as long as runs which share it.
+ */
+public class ArtifactCache{
+
+    private static final Set<String> NOT_DIRECTORY = Collections.unmodifiableSet(new HashSet<>());
+    private final ConcurrentMap<String, QuerySuite> suites = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<String>> listings = new ConcurrentHashMap<>();
+
+    /**
+     * Returns parsed suite. Suite is parsed only once. Returned suite must not be modified.
+     *
+     * @param f suite file (it can belong to any file system)
+     * @return parsed suite
+     * @throws IOException if suite cannot be parsed
+     * @see XmlHelper#loadQueries(QuerySuite, Scenario, Suite, org.whipper.resultmode.ResultMode)
+     */
+    public QuerySuite getSuite(Path f) throws IOException{
+        try{
+            // concurrent runs wait for the first one instead of parsing the same suite
+            return suites.computeIfAbsent(key(f), k -> {
+                try{
+                    return XmlHelper.readSuite(f);
+                } catch (IOException ex){
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex){
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * Returns names of regular files in the directory. Directory is listed only once.
+     *
+     * @param dir directory (it can belong to any file system)
+     * @return unmodifiable set of names of files or {@code null} if {@code dir} is not a directory
+     * @throws UncheckedIOException if directory cannot be listed
+     */
+    public Set<String> listFiles(Path dir) throws UncheckedIOException{
+        Set<String> out = listings.computeIfAbsent(key(dir), k -> {
+            if(!Files.isDirectory(dir)){
+                return NOT_DIRECTORY;
+            }
+            Set<String> names = new HashSet<>();
+            try(DirectoryStream<Path> ds = Files.newDirectoryStream(dir, Files::isRegularFile)){
+                ds.forEach(p -> names.add(p.getFileName().toString()));
+            } catch (IOException ex){
+                throw new UncheckedIOException("Cannot list directory " + dir, ex);
+            }
+            return Collections.unmodifiableSet(names);
+        });
+        return out == NOT_DIRECTORY ? null : out;
+    }
+
+    /**
+     * Returns key of the path. Key contains location of the archive if
+     * path does not belong to default file system.
+     *
+     * @param p path
+     * @return key of the path
+     */
+    private static String key(Path p){
+        FileSystem fs = p.getFileSystem();
+        String path = p.toAbsolutePath().normalize().toString();
+        return fs == FileSystems.getDefault() ? path : fs + "!" + path;
+    }
+}
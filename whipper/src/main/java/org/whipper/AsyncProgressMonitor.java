@@ -0,0 +1,13 @@
+package org.whipper;
+
+/**
+ * Progress monitor which receives events asynchronously.
+ * <p>
+ * Events are published to {@link ProgressEventBus} and delivered by a dispatcher thread,
+ * so the monitor never delays query execution. Events are delivered in order, but
+ * they can be dropped if the monitor does not keep up (see {@link ProgressEventBus.Overflow}).
+ * Objects passed to the monitor (e.g. queries) can already be in a later state than
+ * when the event was published.
+ */
+public interface AsyncProgressMonitor extends ProgressMonitor{
+}
@@ -4,12 +4,18 @@ import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.whipper.utils.OrderBy;
+import org.whipper.utils.PatternCache;
+import org.whipper.xml.BinaryResultHelper;
 import org.whipper.xml.XmlHelper;
 import org.whipper.xml.result.QueryResultType;
 
@@ -29,17 +35,36 @@ public class ExpectedResultHolder {
     private String exceptionMessage;
     private String exceptionRegex;
     private QueryResultType originalResult;
+    private Supplier<QueryResultType> originalResultSupplier;
 
     /**
-     * Builds holders based on input XML file.
+     * Builds holders based on input file. The file can be either XML file
+     * or binary file (see {@link BinaryResultHelper}).
      *
-     * @param xmlFilePath XMl file with expected result
+     * @param xmlFilePath XMl or binary file with expected result
      * @param q original query
      * @throws IOException if some error occurs or in input file is malformed
      */
     public void buildResult(File xmlFilePath, Query q) throws IOException{
+        buildResult(xmlFilePath.toPath(), q);
+    }
+
+    /**
+     * Builds holders based on input file. The file can be either XML file
+     * or binary file (see {@link BinaryResultHelper}) and it can belong to any
+     * file system (e.g. entry of ZIP archive).
+     *
+     * @param xmlFilePath XMl or binary file with expected result
+     * @param q original query
+     * @throws IOException if some error occurs or in input file is malformed
+     */
+    public void buildResult(Path xmlFilePath, Query q) throws IOException{
         clear();
-        XmlHelper.loadResult(xmlFilePath, this, q);
+        if(BinaryResultHelper.isBinaryResult(xmlFilePath)){
+            BinaryResultHelper.loadResult(xmlFilePath, this, q);
+        } else {
+            XmlHelper.loadResult(xmlFilePath, this, q);
+        }
     }
 
     /**
@@ -94,6 +119,18 @@ public class ExpectedResultHolder {
      */
     public void setOriginalResult(QueryResultType originalResult){
         this.originalResult = originalResult;
+        this.originalResultSupplier = null;
+    }
+
+    /**
+     * Sets supplier of original result. Original result will be created
+     * on first call of {@link #getOriginalResult()}.
+     *
+     * @param originalResultSupplier supplier of original result
+     */
+    public void setOriginalResultSupplier(Supplier<QueryResultType> originalResultSupplier){
+        this.originalResult = null;
+        this.originalResultSupplier = originalResultSupplier;
     }
 
     /**
@@ -152,7 +189,7 @@ public class ExpectedResultHolder {
      * Returns list of comparison errors.
      *
      * @return errors
-     * @see #equals(ActualResultHolder, boolean, BigDecimal)
+     * @see #equals(ActualResultHolder, OrderBy, BigDecimal)
      */
     public List<String> getErrors() {
         return errors;
@@ -173,6 +210,10 @@ public class ExpectedResultHolder {
      * @return original result
      */
     public QueryResultType getOriginalResult() {
+        if(originalResult == null && originalResultSupplier != null){
+            originalResult = originalResultSupplier.get();
+            originalResultSupplier = null;
+        }
         return originalResult;
     }
 
@@ -185,13 +226,30 @@ public class ExpectedResultHolder {
      * @return {@code true} if there were no comparison errors, {@code false} otherwise
      */
     public boolean equals(ActualResultHolder holder, boolean couldSort, BigDecimal allowedDivergence){
+        return equals(holder, couldSort ? null : OrderBy.POSITIONAL, allowedDivergence);
+    }
+
+    /**
+     * Compares actual result with this expected result.
+     * <p>
+     * If {@code orderBy} is {@code null}, rows of both results are sorted before comparison.
+     * If sort items of {@code orderBy} can be resolved to columns, rows are compared
+     * in their original order (which verifies ordering of actual result) and only groups
+     * of rows with equal sort columns are sorted. Otherwise rows are compared positionally.
+     *
+     * @param holder actual result
+     * @param orderBy top-level ORDER BY of the query or {@code null} if result is not ordered
+     * @param allowedDivergence will be used in comparison of {@link BigDecimal}, {@code Double} and {@code Float} values
+     * @return {@code true} if there were no comparison errors, {@code false} otherwise
+     */
+    public boolean equals(ActualResultHolder holder, OrderBy orderBy, BigDecimal allowedDivergence){
         errors.clear();
         if(isException()){
             equalsException(holder);
         } else if(isUpdate()){
             equalsUpdate(holder);
         } else if(isResult()){
-            equalsTable(holder, couldSort, allowedDivergence);
+            equalsTable(holder, orderBy, allowedDivergence);
         } else {
             equalsNoResult(holder);
         }
@@ -212,10 +270,10 @@ public class ExpectedResultHolder {
      * Compares table of actual result and this expected result.
      *
      * @param holder actual result
-     * @param couldSort whether result could be sorted or not
+     * @param orderBy ORDER BY of the query
      * @param allowedDivergence for comparison of real numbers
      */
-    private void equalsTable(ActualResultHolder holder, boolean couldSort, BigDecimal allowedDivergence){
+    private void equalsTable(ActualResultHolder holder, OrderBy orderBy, BigDecimal allowedDivergence){
         if(holder.isUpdate()){
             addError("Expected table but found update.");
         } else if(holder.isException()){
@@ -244,9 +302,17 @@ public class ExpectedResultHolder {
                 if(errors.isEmpty()){
                     List<Row> actualRows = convertToRows(holder.getRows());
                     List<Row> expectedRows = new ArrayList<>(rows);
-                    if(couldSort){
+                    SortKey encoder = new SortKey();
+                    if(orderBy == null){
+                        encodeKeys(actualRows, encoder);
+                        encodeKeys(expectedRows, encoder);
                         Collections.sort(actualRows);
                         Collections.sort(expectedRows);
+                    } else {
+                        int[] sortColumns = orderBy.resolve(columnLabels);
+                        if(sortColumns != null){
+                            sortWithinGroups(expectedRows, actualRows, sortColumns, encoder);
+                        }
                     }
                     for(int i = 0; i < expectedRows.size(); i++){
                         compareRows(expectedRows.get(i), actualRows.get(i), i, allowedDivergence);
@@ -297,7 +363,7 @@ public class ExpectedResultHolder {
                         addError("Expected and actual message are different. Expected: [" + exceptionMessage + "], actual: [" + handler.getRootCauseExceptionMessage() + "].");
                     }
                 }
-                if(exceptionRegex != null && !Pattern.compile(exceptionRegex, Pattern.DOTALL).matcher(handler.getRootCauseExceptionMessage()).matches()){
+                if(exceptionRegex != null && !PatternCache.compile(exceptionRegex, Pattern.DOTALL).matcher(handler.getRootCauseExceptionMessage()).matches()){
                     addError("Message does not match pattern. Message: [" + handler.getRootCauseExceptionMessage() + "], pattern: [" + exceptionRegex + "].");
                 }
             }
@@ -318,6 +384,48 @@ public class ExpectedResultHolder {
         return toReturn;
     }
 
+    /**
+     * Encodes binary sort keys of the rows.
+     *
+     * @param rows rows
+     * @param encoder encoder to use
+     */
+    private void encodeKeys(List<Row> rows, SortKey encoder){
+        for(Row r : rows){
+            r.key = encoder.encode(r.cells);
+            r.exactKey = encoder.isExact();
+        }
+    }
+
+    /**
+     * Sorts groups of consecutive rows which have equal values of sort columns
+     * in expected result. Rows which are not part of any group keep their position.
+     *
+     * @param expectedRows expected rows
+     * @param actualRows actual rows
+     * @param sortColumns indexes of sort columns
+     * @param encoder encoder to use
+     */
+    private void sortWithinGroups(List<Row> expectedRows, List<Row> actualRows, int[] sortColumns, SortKey encoder){
+        int start = 0;
+        byte[] groupKey = expectedRows.isEmpty() ? null : encoder.encode(expectedRows.get(0).cells, sortColumns);
+        for(int i = 1; i <= expectedRows.size(); i++){
+            byte[] key = i == expectedRows.size() ? null : encoder.encode(expectedRows.get(i).cells, sortColumns);
+            if(key == null || !Arrays.equals(groupKey, key)){
+                if(i - start > 1){
+                    List<Row> expectedGroup = expectedRows.subList(start, i);
+                    List<Row> actualGroup = actualRows.subList(start, i);
+                    encodeKeys(expectedGroup, encoder);
+                    encodeKeys(actualGroup, encoder);
+                    Collections.sort(expectedGroup);
+                    Collections.sort(actualGroup);
+                }
+                start = i;
+                groupKey = key;
+            }
+        }
+    }
+
     /**
      * Compare two rows.
      *
@@ -327,6 +435,9 @@ public class ExpectedResultHolder {
      * @param allowedDivergence allowed divergence
      */
     private void compareRows(Row expected, Row actual, int rowNum, BigDecimal allowedDivergence){
+        if(expected.exactKey && actual.exactKey && Arrays.equals(expected.key, actual.key)){
+            return;
+        }
         final String rowId = "[row " + (rowNum + 1) + "; row number in expected result " + expected.idx + "; row number in actual result " + actual.idx + "].";
         for(int i = 0; i < expected.cells.size(); i++){
             final String cellId = "[cell " + (i + 1) + "]" + rowId;
@@ -418,12 +529,17 @@ public class ExpectedResultHolder {
 
     /**
      * Class which represents single row of result.
+     * <p>
+     * Rows are ordered by their binary sort keys (see {@link SortKey}), which
+     * have to be encoded before sorting.
      *
      * @author Juraj Duráni
      */
     private class Row implements Comparable<Row> {
         private final int idx;
         private final List<Object> cells;
+        private byte[] key;
+        private boolean exactKey;
 
         private Row(int idx, List<Object> cells) {
             this.idx = idx;
@@ -432,30 +548,7 @@ public class ExpectedResultHolder {
 
         @Override
         public int compareTo(Row o) {
-            for(int i = 0; i < cells.size(); i++){
-                int comp = compareCells(cells.get(i), o.cells.get(i));
-                if(comp != 0){
-                    return comp;
-                }
-            }
-            return 0;
-        }
-
-        @SuppressWarnings({"unchecked", "rawtypes"})
-        private int compareCells(Object o1, Object o2){
-            if(o1 == o2){
-                return 0;
-            }
-            if(o1 == null){
-                return -1;
-            }
-            if(o2 == null){
-                return 1;
-            }
-            if((o1.getClass() == o2.getClass()) && (o1 instanceof Comparable)){
-                return ((Comparable)o1).compareTo(o2);
-            }
-            return o1.toString().compareTo(o2.toString());
+            return SortKey.compare(key, o.key);
         }
     }
 }
@@ -0,0 +1,318 @@
+package org.whipper;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous dispatcher of progress events.
+ * <p>
+ * Events are published into a bounded lock-free ring buffer and delivered to
+ * the monitors by a single dispatcher thread in order of publication. Publishing
+ * never waits on monitors unless {@link Overflow#BLOCK} policy is used.
+ * <p>
+ * Event {@link #finished(WhipperResult)} is always the last event - bus waits
+ * until all events are delivered and stops dispatcher thread.
+ */
+public class ProgressEventBus implements ProgressMonitor{
+
+    /**
+     * Default capacity of the ring buffer.
+     */
+    public static final int DEFAULT_CAPACITY = 16 * 1024;
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProgressEventBus.class);
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * Policy which is applied when the ring buffer is full.
+     */
+    public enum Overflow{
+        /**
+         * New event is dropped.
+         */
+        DROP,
+        /**
+         * Publisher waits until there is a free space.
+         */
+        BLOCK;
+
+        /**
+         * Returns policy by its name.
+         *
+         * @param name name of the policy (case insensitive) or {@code null}
+         * @return policy or {@link #DROP} if {@code name} is {@code null} or empty
+         * @throws IllegalArgumentException if policy is unknown
+         */
+        public static Overflow forName(String name) throws IllegalArgumentException{
+            if(name == null || name.trim().isEmpty()){
+                return DROP;
+            }
+            for(Overflow o : values()){
+                if(o.name().equalsIgnoreCase(name.trim())){
+                    return o;
+                }
+            }
+            throw new IllegalArgumentException("Unknown overflow policy " + name);
+        }
+    }
+
+    /**
+     * Type of the event.
+     */
+    private enum Type{
+        STARTING, STARTING_SCENARIO, SCENARIO_FINISHED, STARTING_SUITE, SUITE_FINISHED,
+        STARTING_QUERY_SET, QUERY_SET_FINISHED, STARTING_QUERY, QUERY_FINISHED,
+        STARTING_META_QUERY_SET, META_QUERY_SET_FINISHED, STARTING_META_QUERY, META_QUERY_FINISHED
+    }
+
+    private final ProgressMonitors monitors;
+    private final Overflow overflow;
+    private final int mask;
+    private final AtomicReferenceArray<Type> types;
+    private final AtomicReferenceArray<Object> args;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread dispatcher;
+    private long head;
+    private volatile boolean waiting;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new bus and starts dispatcher thread.
+     *
+     * @param name name of the bus (used as a name of the thread)
+     * @param monitors monitors which receive events
+     * @param capacity minimal capacity of the ring buffer (rounded up to power of two)
+     * @param overflow overflow policy
+     */
+    public ProgressEventBus(String name, Collection<? extends ProgressMonitor> monitors, int capacity, Overflow overflow){
+        if(capacity <= 0){
+            throw new IllegalArgumentException("Capacity must be positive - " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if(size < capacity){
+            size <<= 1;
+        }
+        this.monitors = ProgressMonitors.of(monitors);
+        this.overflow = overflow == null ? Overflow.DROP : overflow;
+        this.mask = size - 1;
+        this.types = new AtomicReferenceArray<>(size);
+        this.args = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for(int i = 0; i < size; i++){
+            sequences.set(i, i);
+        }
+        dispatcher = new Thread(this::dispatch, "whipper-progress-" + name);
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Returns number of dropped events.
+     *
+     * @return number of dropped events
+     */
+    public long getDropped(){
+        return dropped.sum();
+    }
+
+    /**
+     * Publishes event.
+     *
+     * @param type type of the event
+     * @param arg argument of the event
+     */
+    private void publish(Type type, Object arg){
+        if(closed){
+            return;
+        }
+        while(true){
+            long t = tail.get();
+            int idx = (int)(t & mask);
+            long seq = sequences.get(idx);
+            if(seq == t){
+                if(tail.compareAndSet(t, t + 1)){
+                    types.set(idx, type);
+                    args.set(idx, arg);
+                    sequences.set(idx, t + 1);
+                    if(waiting){
+                        LockSupport.unpark(dispatcher);
+                    }
+                    return;
+                }
+            } else if(seq < t){
+                // buffer is full
+                if(overflow == Overflow.DROP){
+                    if(dropped.sum() == 0){
+                        LOG.warn("Progress event buffer is full. Events are being dropped.");
+                    }
+                    dropped.increment();
+                    return;
+                }
+                LockSupport.parkNanos(PARK_NANOS / 10);
+            }
+        }
+    }
+
+    /**
+     * Main loop of dispatcher thread.
+     */
+    private void dispatch(){
+        while(true){
+            int idx = (int)(head & mask);
+            if(sequences.get(idx) == head + 1){
+                Type type = types.get(idx);
+                Object arg = args.get(idx);
+                types.set(idx, null);
+                args.set(idx, null);
+                sequences.set(idx, head + mask + 1);
+                head++;
+                try{
+                    deliver(type, arg);
+                } catch (RuntimeException ex){
+                    LOG.error("Progress monitor failed on event {}.", type, ex);
+                }
+            } else if(closed){
+                return;
+            } else {
+                waiting = true;
+                if(sequences.get(idx) != head + 1 && !closed){
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                waiting = false;
+            }
+        }
+    }
+
+    /**
+     * Delivers event to the monitors.
+     *
+     * @param type type of the event
+     * @param arg argument of the event
+     */
+    @SuppressWarnings("unchecked")
+    private void deliver(Type type, Object arg){
+        switch(type){
+            case STARTING: monitors.starting((List<String>)arg); break;
+            case STARTING_SCENARIO: monitors.startingScenario((Scenario)arg); break;
+            case SCENARIO_FINISHED: monitors.scenarioFinished((Scenario)arg); break;
+            case STARTING_SUITE: monitors.startingSuite((Suite)arg); break;
+            case SUITE_FINISHED: monitors.suiteFinished((Suite)arg); break;
+            case STARTING_QUERY_SET: monitors.startingQuerySet((QuerySet)arg); break;
+            case QUERY_SET_FINISHED: monitors.querySetFinished((QuerySet)arg); break;
+            case STARTING_QUERY: monitors.startingQuery((Query)arg); break;
+            case QUERY_FINISHED: monitors.queryFinished((Query)arg); break;
+            case STARTING_META_QUERY_SET: monitors.startingMetaQuerySet((QuerySet)arg); break;
+            case META_QUERY_SET_FINISHED: monitors.metaQuerySetFinished((QuerySet)arg); break;
+            case STARTING_META_QUERY: monitors.startingMetaQuery((Query)arg); break;
+            case META_QUERY_FINISHED: monitors.metaQueryFinished((Query)arg); break;
+            default: throw new IllegalStateException("Unknown event " + type);
+        }
+    }
+
+    /**
+     * Waits until all published events are delivered and stops dispatcher thread.
+     */
+    public void close(){
+        if(closed){
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(dispatcher);
+        boolean interrupted = false;
+        while(dispatcher.isAlive()){
+            try{
+                dispatcher.join();
+            } catch (InterruptedException ex){
+                interrupted = true;
+            }
+        }
+        if(interrupted){
+            Thread.currentThread().interrupt();
+        }
+        if(dropped.sum() > 0){
+            LOG.warn("{} progress events have been dropped.", dropped.sum());
+        }
+    }
+
+    @Override
+    public void starting(List<String> scenariosToRun){
+        publish(Type.STARTING, scenariosToRun);
+    }
+
+    @Override
+    public void finished(WhipperResult result){
+        close();
+        monitors.finished(result);
+    }
+
+    @Override
+    public void startingScenario(Scenario scen){
+        publish(Type.STARTING_SCENARIO, scen);
+    }
+
+    @Override
+    public void scenarioFinished(Scenario scen){
+        publish(Type.SCENARIO_FINISHED, scen);
+    }
+
+    @Override
+    public void startingSuite(Suite suite){
+        publish(Type.STARTING_SUITE, suite);
+    }
+
+    @Override
+    public void suiteFinished(Suite suite){
+        publish(Type.SUITE_FINISHED, suite);
+    }
+
+    @Override
+    public void startingQuerySet(QuerySet qs){
+        publish(Type.STARTING_QUERY_SET, qs);
+    }
+
+    @Override
+    public void querySetFinished(QuerySet qs){
+        publish(Type.QUERY_SET_FINISHED, qs);
+    }
+
+    @Override
+    public void startingQuery(Query q){
+        publish(Type.STARTING_QUERY, q);
+    }
+
+    @Override
+    public void queryFinished(Query q){
+        publish(Type.QUERY_FINISHED, q);
+    }
+
+    @Override
+    public void startingMetaQuerySet(QuerySet qs){
+        publish(Type.STARTING_META_QUERY_SET, qs);
+    }
+
+    @Override
+    public void metaQuerySetFinished(QuerySet qs){
+        publish(Type.META_QUERY_SET_FINISHED, qs);
+    }
+
+    @Override
+    public void startingMetaQuery(Query q){
+        publish(Type.STARTING_META_QUERY, q);
+    }
+
+    @Override
+    public void metaQueryFinished(Query q){
+        publish(Type.META_QUERY_FINISHED, q);
+    }
+}
@@ -0,0 +1,152 @@
+package org.whipper;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable dispatcher of progress events to a set of {@link ProgressMonitor}s.
+ * <p>
+ * One instance is created per run and shared by the scenario and all its suites,
+ * query sets and queries.
+ */
+public final class ProgressMonitors implements ProgressMonitor{
+
+    /**
+     * Dispatcher without monitors.
+     */
+    public static final ProgressMonitors EMPTY = new ProgressMonitors(new ProgressMonitor[0]);
+
+    private final ProgressMonitor[] monitors;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param monitors monitors
+     */
+    private ProgressMonitors(ProgressMonitor[] monitors){
+        this.monitors = monitors;
+    }
+
+    /**
+     * Creates dispatcher for monitors.
+     *
+     * @param monitors monitors or {@code null}
+     * @return dispatcher
+     */
+    public static ProgressMonitors of(Collection<? extends ProgressMonitor> monitors){
+        if(monitors == null || monitors.isEmpty()){
+            return EMPTY;
+        }
+        if(monitors.size() == 1 && monitors.iterator().next() instanceof ProgressMonitors){
+            return (ProgressMonitors)monitors.iterator().next();
+        }
+        return new ProgressMonitors(monitors.toArray(new ProgressMonitor[monitors.size()]));
+    }
+
+    /**
+     * Returns number of monitors.
+     *
+     * @return number of monitors
+     */
+    public int size(){
+        return monitors.length;
+    }
+
+    @Override
+    public void starting(List<String> scenariosToRun){
+        for(ProgressMonitor pm : monitors){
+            pm.starting(scenariosToRun);
+        }
+    }
+
+    @Override
+    public void finished(WhipperResult result){
+        for(ProgressMonitor pm : monitors){
+            pm.finished(result);
+        }
+    }
+
+    @Override
+    public void startingScenario(Scenario scen){
+        for(ProgressMonitor pm : monitors){
+            pm.startingScenario(scen);
+        }
+    }
+
+    @Override
+    public void scenarioFinished(Scenario scen){
+        for(ProgressMonitor pm : monitors){
+            pm.scenarioFinished(scen);
+        }
+    }
+
+    @Override
+    public void startingSuite(Suite suite){
+        for(ProgressMonitor pm : monitors){
+            pm.startingSuite(suite);
+        }
+    }
+
+    @Override
+    public void suiteFinished(Suite suite){
+        for(ProgressMonitor pm : monitors){
+            pm.suiteFinished(suite);
+        }
+    }
+
+    @Override
+    public void startingQuerySet(QuerySet qs){
+        for(ProgressMonitor pm : monitors){
+            pm.startingQuerySet(qs);
+        }
+    }
+
+    @Override
+    public void querySetFinished(QuerySet qs){
+        for(ProgressMonitor pm : monitors){
+            pm.querySetFinished(qs);
+        }
+    }
+
+    @Override
+    public void startingQuery(Query q){
+        for(ProgressMonitor pm : monitors){
+            pm.startingQuery(q);
+        }
+    }
+
+    @Override
+    public void queryFinished(Query q){
+        for(ProgressMonitor pm : monitors){
+            pm.queryFinished(q);
+        }
+    }
+
+    @Override
+    public void startingMetaQuerySet(QuerySet qs){
+        for(ProgressMonitor pm : monitors){
+            pm.startingMetaQuerySet(qs);
+        }
+    }
+
+    @Override
+    public void metaQuerySetFinished(QuerySet qs){
+        for(ProgressMonitor pm : monitors){
+            pm.metaQuerySetFinished(qs);
+        }
+    }
+
+    @Override
+    public void startingMetaQuery(Query q){
+        for(ProgressMonitor pm : monitors){
+            pm.startingMetaQuery(q);
+        }
+    }
+
+    @Override
+    public void metaQueryFinished(Query q){
+        for(ProgressMonitor pm : monitors){
+            pm.metaQueryFinished(q);
+        }
+    }
+}
@@ -4,7 +4,6 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
-import java.util.LinkedList;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -28,8 +27,9 @@ public class Query implements TimeTracker{
     private final String id;
     private final String sql;
     private final ResultMode resultMode;
-    private final ActualResultHolder holder = new ActualResultHolder();
-    private final List<ProgressMonitor> monitors = new LinkedList<>();
+    private ActualResultHolder holder;
+    private ProgressMonitors monitors = ProgressMonitors.EMPTY;
+    private ResultRetention resultRetention;
     private QueryResult result;
     private long startTime = -1L;
     private long endTime = -1L;
@@ -60,10 +60,26 @@ public class Query implements TimeTracker{
      * @param monitors monitors to be set.
      */
     public void setProgressMonitors(List<ProgressMonitor> monitors){
-        this.monitors.clear();
-        if(monitors != null){
-            this.monitors.addAll(monitors);
-        }
+        setProgressMonitors(ProgressMonitors.of(monitors));
+    }
+
+    /**
+     * Sets progress monitors for this query.
+     *
+     * @param monitors shared monitors dispatcher
+     */
+    public void setProgressMonitors(ProgressMonitors monitors){
+        this.monitors = monitors == null ? ProgressMonitors.EMPTY : monitors;
+    }
+
+    /**
+     * Sets retention policy of rows of this query. It overrides policy of the scenario
+     * (e.g. rows of internal query which produces expected result must be kept).
+     *
+     * @param resultRetention retention policy or {@code null} to use policy of the scenario
+     */
+    public void setResultRetention(ResultRetention resultRetention){
+        this.resultRetention = resultRetention;
     }
 
     @Override
@@ -104,7 +120,7 @@ public class Query implements TimeTracker{
                 SQLException ex = new SQLException(type + " failed [" + cause.getMessage() + "]", cause);
                 result.exception = ex;
                 result.pass = false;
-                holder.buildResult(ex);
+                getActualResult().buildResult(ex);
             } finally {
                 runAfterMonitors();
             }
@@ -131,11 +147,11 @@ public class Query implements TimeTracker{
             endTime = System.currentTimeMillis();
             result = new QueryResult();
             if(exception != null){
-                holder.buildResult(exception);
+                getActualResult().buildResult(exception);
                 valid = scenario.isConnectionValid();
             } else {
                 try{
-                    holder.buildResult(s);
+                    getActualResult().buildResult(s);
                 } catch (SQLException | IllegalArgumentException ex){
                     result.exception = new RuntimeException("Unable to build result: " + ex.toString(), ex);
                     result.pass = false;
@@ -166,6 +182,19 @@ public class Query implements TimeTracker{
             }
         } finally {
             runAfterMonitors();
+            applyRetention();
+        }
+    }
+
+    /**
+     * Releases rows of actual result if retention policy of this query
+     * (or of the scenario) does not require to keep them.
+     */
+    private void applyRetention(){
+        ResultRetention rr = resultRetention != null ? resultRetention
+                : scenario == null ? null : scenario.getResultRetention();
+        if(rr != null && result != null && holder != null && !rr.keepRows(result.pass)){
+            holder.releaseRows();
         }
     }
 
@@ -173,12 +202,10 @@ public class Query implements TimeTracker{
      * Runs starting method of all monitors.
      */
     private void runBeforeMonitors(){
-        for(ProgressMonitor pm : monitors){
-            if(querySet.isMeta()){
-                pm.startingMetaQuery(this);
-            } else {
-                pm.startingQuery(this);
-            }
+        if(querySet.isMeta()){
+            monitors.startingMetaQuery(this);
+        } else {
+            monitors.startingQuery(this);
         }
     }
 
@@ -186,21 +213,22 @@ public class Query implements TimeTracker{
      * Runs ending method of all monitors.
      */
     private void runAfterMonitors(){
-        for(ProgressMonitor pm : monitors){
-            if(querySet.isMeta()){
-                pm.metaQueryFinished(this);
-            } else {
-                pm.queryFinished(this);
-            }
+        if(querySet.isMeta()){
+            monitors.metaQueryFinished(this);
+        } else {
+            monitors.queryFinished(this);
         }
     }
 
     /**
-     * Returns actual result of the query.
+     * Returns actual result of the query. Holder is created lazily.
      *
      * @return actual result
      */
     public ActualResultHolder getActualResult(){
+        if(holder == null){
+            holder = new ActualResultHolder();
+        }
         return holder;
     }
 
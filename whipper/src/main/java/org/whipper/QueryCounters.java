@@ -0,0 +1,197 @@
+package org.whipper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counters and indexes of queries of query set, suite or scenario.
+ * <p>
+ * Counters are updated by query set when query finishes and every update is
+ * propagated to the parent (query set to suite, suite to scenario), thus
+ * all counters and indexes are available in O(1) on every level. Indexes are
+ * appended by execution thread and they should not be iterated while queries
+ * are running.
+ */
+class QueryCounters{
+
+    private final AtomicInteger all = new AtomicInteger();
+    private final AtomicInteger executed = new AtomicInteger();
+    private final AtomicInteger passed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final List<Query> executedQueries = new ArrayList<>();
+    private final List<Query> failedQueries = new ArrayList<>();
+    private QueryCounters parent;
+
+    /**
+     * Sets parent counters. Current state of these counters is moved
+     * from previous parent to the new one.
+     *
+     * @param parent parent counters or {@code null}
+     */
+    void setParent(QueryCounters parent){
+        if(this.parent != null){
+            this.parent.remove(this);
+        }
+        this.parent = parent;
+        if(parent != null){
+            parent.add(this);
+        }
+    }
+
+    /**
+     * Counts new query.
+     */
+    void queryAdded(){
+        for(QueryCounters c = this; c != null; c = c.parent){
+            c.all.incrementAndGet();
+        }
+    }
+
+    /**
+     * Counts finished query.
+     *
+     * @param q executed query
+     */
+    void queryFinished(Query q){
+        boolean pass = q.getResult().pass();
+        for(QueryCounters c = this; c != null; c = c.parent){
+            c.executedQueries.add(q);
+            if(pass){
+                c.passed.incrementAndGet();
+            } else {
+                c.failedQueries.add(q);
+                c.failed.incrementAndGet();
+            }
+            c.executed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Resets counters and indexes of executed queries (e.g. before query set is run again).
+     * Reset queries are removed from parents as well.
+     */
+    void reset(){
+        if(executed.get() == 0){
+            return;
+        }
+        if(parent != null){
+            parent.remove(this);
+        }
+        executedQueries.clear();
+        failedQueries.clear();
+        executed.set(0);
+        passed.set(0);
+        failed.set(0);
+        if(parent != null){
+            parent.add(this);
+        }
+    }
+
+    /**
+     * Adds state of the child to these counters and to all parents.
+     *
+     * @param child child counters
+     */
+    private void add(QueryCounters child){
+        for(QueryCounters c = this; c != null; c = c.parent){
+            c.all.addAndGet(child.all.get());
+            c.executed.addAndGet(child.executed.get());
+            c.passed.addAndGet(child.passed.get());
+            c.failed.addAndGet(child.failed.get());
+            c.executedQueries.addAll(child.executedQueries);
+            c.failedQueries.addAll(child.failedQueries);
+        }
+    }
+
+    /**
+     * Removes state of the child from these counters and from all parents.
+     *
+     * @param child child counters
+     */
+    private void remove(QueryCounters child){
+        Set<Query> exec = identitySet(child.executedQueries);
+        Set<Query> fail = identitySet(child.failedQueries);
+        for(QueryCounters c = this; c != null; c = c.parent){
+            c.all.addAndGet(-child.all.get());
+            c.executed.addAndGet(-child.executed.get());
+            c.passed.addAndGet(-child.passed.get());
+            c.failed.addAndGet(-child.failed.get());
+            if(!exec.isEmpty()){
+                c.executedQueries.removeIf(exec::contains);
+            }
+            if(!fail.isEmpty()){
+                c.failedQueries.removeIf(fail::contains);
+            }
+        }
+    }
+
+    /**
+     * Creates identity set of queries.
+     *
+     * @param queries queries
+     * @return identity set
+     */
+    private static Set<Query> identitySet(List<Query> queries){
+        Set<Query> out = Collections.newSetFromMap(new IdentityHashMap<>(queries.size()));
+        out.addAll(queries);
+        return out;
+    }
+
+    /**
+     * Returns number of all queries.
+     *
+     * @return number of all queries
+     */
+    int getAll(){
+        return all.get();
+    }
+
+    /**
+     * Returns number of executed queries.
+     *
+     * @return number of executed queries
+     */
+    int getExecuted(){
+        return executed.get();
+    }
+
+    /**
+     * Returns number of passed queries.
+     *
+     * @return number of passed queries
+     */
+    int getPassed(){
+        return passed.get();
+    }
+
+    /**
+     * Returns number of failed queries.
+     *
+     * @return number of failed queries
+     */
+    int getFailed(){
+        return failed.get();
+    }
+
+    /**
+     * Returns executed queries in order of execution.
+     *
+     * @return unmodifiable view of executed queries
+     */
+    List<Query> getExecutedQueries(){
+        return Collections.unmodifiableList(executedQueries);
+    }
+
+    /**
+     * Returns failed queries in order of execution.
+     *
+     * @return unmodifiable view of failed queries
+     */
+    List<Query> getFailedQueries(){
+        return Collections.unmodifiableList(failedQueries);
+    }
+}
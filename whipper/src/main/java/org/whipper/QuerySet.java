@@ -1,9 +1,8 @@
 package org.whipper;
 
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -23,11 +22,12 @@ public class QuerySet implements TimeTracker{
 
     private static final Logger LOG = LoggerFactory.getLogger(QuerySet.class);
 
-    private final List<Query> queries = new LinkedList<>();
+    private final List<Query> queries = new ArrayList<>();
+    private final QueryCounters counters = new QueryCounters();
     private final String id;
     private final boolean fastFail;
     private final MetaQuerySetResultMode metaQuerySetResultMode;
-    private final List<ProgressMonitor> monitors = new LinkedList<>();
+    private ProgressMonitors monitors = ProgressMonitors.EMPTY;
     private long startTime = -1;
     private long endTime = -1;
     private QuerySet before;
@@ -56,10 +56,17 @@ public class QuerySet implements TimeTracker{
      * @param monitors monitors to be set.
      */
     public void setProgressMonitors(List<ProgressMonitor> monitors){
-        this.monitors.clear();
-        if(monitors != null){
-            this.monitors.addAll(monitors);
-        }
+        setProgressMonitors(ProgressMonitors.of(monitors));
+    }
+
+    /**
+     * Sets progress monitors for this query set and all queries of this set.
+     * Including before and after.
+     *
+     * @param monitors shared monitors dispatcher
+     */
+    public void setProgressMonitors(ProgressMonitors monitors){
+        this.monitors = monitors == null ? ProgressMonitors.EMPTY : monitors;
         for(Query q : queries){
             q.setProgressMonitors(monitors);
         }
@@ -117,9 +124,11 @@ public class QuerySet implements TimeTracker{
             throw new IllegalStateException("Meta-query-set cannot contain before-set.");
         }
         runBeforeMonitors();
+        resetCounters();
         try{
             for(Query q : queries){
                 q.beforeSetFailed(cause, type);
+                queryFinished(q);
             }
             metaQuerySetResultMode.writeErrorsForMainQuerySet(this);
         } finally {
@@ -172,6 +181,7 @@ public class QuerySet implements TimeTracker{
             throw new IllegalArgumentException("Query cannot be null.");
         }
         queries.add(q);
+        counters.queryAdded();
     }
 
     /**
@@ -210,12 +220,14 @@ public class QuerySet implements TimeTracker{
         if(queries.size() > 1){
             LOG.info("Starting query set {}.", id);
         }
+        resetCounters();
         try{
             boolean next = true;
             Iterator<Query> iter = queries.iterator();
             while(next && iter.hasNext()){
                 Query q = iter.next();
                 q.run();
+                queryFinished(q);
                 QueryResult qr = q.getResult();
                 if(!qr.pass()){
                     LOG.warn("Query {} failed [suite: {}, scenario {}].", q.getId(), q.getSuite().getId(), q.getScenario().getId());
@@ -247,12 +259,10 @@ public class QuerySet implements TimeTracker{
      * Runs starting method of all monitors.
      */
     private void runAfterMonitors(){
-        for(ProgressMonitor pm : monitors){
-            if(isMeta()){
-                pm.metaQuerySetFinished(this);
-            } else {
-                pm.querySetFinished(this);
-            }
+        if(isMeta()){
+            monitors.metaQuerySetFinished(this);
+        } else {
+            monitors.querySetFinished(this);
         }
     }
 
@@ -260,12 +270,10 @@ public class QuerySet implements TimeTracker{
      * Runs ending method of all monitors.
      */
     private void runBeforeMonitors(){
-        for(ProgressMonitor pm : monitors){
-            if(isMeta()){
-                pm.startingMetaQuerySet(this);
-            } else {
-                pm.startingQuerySet(this);
-            }
+        if(isMeta()){
+            monitors.startingMetaQuerySet(this);
+        } else {
+            monitors.startingQuerySet(this);
         }
     }
 
@@ -275,7 +283,7 @@ public class QuerySet implements TimeTracker{
      * @return number of queries in this set
      */
     public int getNumberOfAllQueries(){
-        return queries.size();
+        return counters.getAll();
     }
 
     /**
@@ -284,13 +292,7 @@ public class QuerySet implements TimeTracker{
      * @return number of failed queries in this set
      */
     public int getNumberOfFailedQueries(){
-        int num = 0;
-        for(Query qr : queries){
-            if(qr.isExecuted() && !qr.getResult().pass()){
-                num++;
-            }
-        }
-        return num;
+        return counters.getFailed();
     }
 
     /**
@@ -299,13 +301,7 @@ public class QuerySet implements TimeTracker{
      * @return number of passed queries in this set
      */
     public int getNumberOfPassedQueries(){
-        int num = 0;
-        for(Query qr : queries){
-            if(qr.isExecuted() && qr.getResult().pass()){
-                num++;
-            }
-        }
-        return num;
+        return counters.getPassed();
     }
 
     /**
@@ -314,13 +310,36 @@ public class QuerySet implements TimeTracker{
      * @return number of executed queries in this set
      */
     public int getNumberOfExecutedQueries(){
-        int num = 0;
-        for(Query qr : queries){
-            if(qr.isExecuted()){
-                num++;
-            }
+        return counters.getExecuted();
+    }
+
+    /**
+     * Updates counters and indexes of executed and failed queries of this
+     * query set, suite and scenario. Called by execution thread after query
+     * has been finished.
+     *
+     * @param q finished query
+     */
+    private void queryFinished(Query q){
+        if(q.isExecuted()){
+            counters.queryFinished(q);
         }
-        return num;
+    }
+
+    /**
+     * Resets counters and indexes before query set is run.
+     */
+    private void resetCounters(){
+        counters.reset();
+    }
+
+    /**
+     * Returns counters of this query set.
+     *
+     * @return counters
+     */
+    QueryCounters getCounters(){
+        return counters;
     }
 
     /**
@@ -333,32 +352,22 @@ public class QuerySet implements TimeTracker{
     }
 
     /**
-     * Returns failed queries.
+     * Returns failed queries in order of execution. Returned list is a view
+     * and it should not be iterated while query set is running.
      *
      * @return failed queries in this set.
      */
     public List<Query> getFailedQueries(){
-        List<Query> out = new LinkedList<>();
-        for(Query qr : queries){
-            if(qr.isExecuted() && !qr.getResult().pass()){
-                out.add(qr);
-            }
-        }
-        return out;
+        return counters.getFailedQueries();
     }
 
     /**
-     * Returns all executed queries;
+     * Returns all executed queries in order of execution. Returned list is a view
+     * and it should not be iterated while query set is running.
      *
      * @return executed queries.
      */
-    public Collection<? extends Query> getExecutedQueries(){
-        List<Query> out = new LinkedList<>();
-        for(Query q : queries){
-            if(q.isExecuted()){
-                out.add(q);
-            }
-        }
-        return out;
+    public List<Query> getExecutedQueries(){
+        return counters.getExecutedQueries();
     }
 }
@@ -0,0 +1,53 @@
+package org.whipper;
+
+/**
+ * Retention policy of rows of actual results.
+ * <p>
+ * Rows are released after the result has been handled by result mode and progress monitors.
+ * Outcome of the query, errors and result metadata (column labels and types, number of rows)
+ * are always kept.
+ */
+public enum ResultRetention{
+
+    /**
+     * Rows of all queries are kept.
+     */
+    ALL,
+    /**
+     * Rows are kept only for failed queries.
+     */
+    FAILED,
+    /**
+     * Rows are not kept.
+     */
+    NONE;
+
+    /**
+     * Returns retention policy by its name.
+     *
+     * @param name name of the policy (case insensitive) or {@code null}
+     * @return retention policy or {@link #NONE} if {@code name} is {@code null} or empty
+     * @throws IllegalArgumentException if policy is unknown
+     */
+    public static ResultRetention forName(String name) throws IllegalArgumentException{
+        if(name == null || name.trim().isEmpty()){
+            return NONE;
+        }
+        for(ResultRetention rr : values()){
+            if(rr.name().equalsIgnoreCase(name.trim())){
+                return rr;
+            }
+        }
+        throw new IllegalArgumentException("Unknown result retention " + name);
+    }
+
+    /**
+     * Decides whether rows of the query should be kept.
+     *
+     * @param passed {@code true} if query passed
+     * @return {@code true} if rows should be kept
+     */
+    public boolean keepRows(boolean passed){
+        return this == ALL || (this == FAILED && !passed);
+    }
+}
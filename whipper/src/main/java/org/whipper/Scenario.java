@@ -4,6 +4,8 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -11,7 +13,6 @@ import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.ServiceLoader;
 
@@ -22,7 +23,10 @@ import org.whipper.exceptions.DbNotAvailableException;
 import org.whipper.exceptions.ExecutionInterruptedException;
 import org.whipper.exceptions.MaxTimeExceededException;
 import org.whipper.exceptions.ServerNotAvailableException;
+import org.whipper.resultmode.ErrorFileWriter;
 import org.whipper.resultmode.MetaQuerySetResultMode;
+import org.whipper.utils.ArtifactSource;
+import org.whipper.utils.OverrideFileSelector;
 
 /**
  * Class which represents scenario. Scenario consists of one or more suites.
@@ -34,8 +38,9 @@ public class Scenario implements TimeTracker{
     private static final Logger LOG = LoggerFactory.getLogger(Scenario.class);
 
     private final String id;
-    private final List<Suite> suites = new LinkedList<>();
-    private final List<ProgressMonitor> monitors = new LinkedList<>();
+    private final List<Suite> suites = new ArrayList<>();
+    private final QueryCounters counters = new QueryCounters();
+    private ProgressMonitors monitors = ProgressMonitors.EMPTY;
     private final WhipperProperties initialProperties = new WhipperProperties();
 
     private long startTime = -1;
@@ -48,12 +53,16 @@ public class Scenario implements TimeTracker{
     private String afterQuery;
     private long timeForOneQuery;
     private boolean fastFail;
+    private ResultRetention resultRetention = ResultRetention.NONE;
 
     private String expectedResultsDirName;
     private String querysetDirName;
     private File outputDir;
 
     private MetaQuerySetResultMode metaQuerySetResultMode;
+    private ArtifactSource artifactSource;
+    private ArtifactCache artifactCache;
+    private ErrorFileWriter errorWriter;
 
     /**
      * Creates a new scenario.
@@ -70,12 +79,18 @@ public class Scenario implements TimeTracker{
      * @param monitors monitors to be set
      */
     public void setProgressMonitors(List<ProgressMonitor> monitors){
-        this.monitors.clear();
-        if(monitors != null){
-            this.monitors.addAll(monitors);
-        }
+        setProgressMonitors(ProgressMonitors.of(monitors));
+    }
+
+    /**
+     * Sets progress monitors for this scenario and all suites.
+     *
+     * @param monitors shared monitors dispatcher
+     */
+    public void setProgressMonitors(ProgressMonitors monitors){
+        this.monitors = monitors == null ? ProgressMonitors.EMPTY : monitors;
         for(Suite s : suites){
-            s.setProgressMonitors(monitors);
+            s.setProgressMonitors(this.monitors);
         }
     }
 
@@ -118,8 +133,11 @@ public class Scenario implements TimeTracker{
             LOG.warn("Time for one query is set to -1.");
         }
         fastFail =  initialProperties.getQuerySetFastFail();
+        resultRetention = ResultRetention.forName(initialProperties.getResultRetention());
         metaQuerySetResultMode = new MetaQuerySetResultMode(id);
         metaQuerySetResultMode.resetConfiguration(initialProperties);
+        closeErrorWriter();
+        errorWriter = new ErrorFileWriter(id, initialProperties.getErrorQueueSize());
     }
 
     @Override
@@ -156,6 +174,24 @@ public class Scenario implements TimeTracker{
         return metaQuerySetResultMode;
     }
 
+    /**
+     * Returns writer of error files of this scenario.
+     *
+     * @return error file writer or {@code null} if scenario has not been initialized
+     */
+    public ErrorFileWriter getErrorWriter(){
+        return errorWriter;
+    }
+
+    /**
+     * Returns retention policy of rows of actual results.
+     *
+     * @return result retention policy
+     */
+    public ResultRetention getResultRetention(){
+        return resultRetention;
+    }
+
     /**
      * Returns {@code true} if query sets should be set to fast-fail.
      *
@@ -185,6 +221,68 @@ public class Scenario implements TimeTracker{
         return dirs;
     }
 
+    /**
+     * Returns list of expected results directories. If artifact source is set,
+     * directories are resolved in the artifact source (i.e. they can be
+     * directories in ZIP archive).
+     *
+     * @return list of expected results directories
+     * @see #setArtifactSource(ArtifactSource)
+     */
+    public List<Path> getExpectedResultsPaths() {
+        if(artifactSource == null){
+            List<Path> out = new ArrayList<>();
+            for(File f : getExpectedResultsDir()){
+                out.add(f.toPath());
+            }
+            return out;
+        }
+        List<Path> dirs = new ArrayList<>();
+        for(String dirName : expectedResultsDirName.split(",")) {
+            Path dir = artifactSource.resolve(querysetDirName, dirName);
+            if(artifactCache == null ? !Files.isDirectory(dir) : artifactCache.listFiles(dir) == null){
+                throw new IllegalArgumentException("Expected results directory " + dir + " in " + artifactSource +
+                        " either does not exist or is not a directory.");
+            }
+            dirs.add(dir);
+        }
+        return dirs;
+    }
+
+    /**
+     * Sets source of artifacts of this scenario.
+     *
+     * @param artifactSource artifact source
+     */
+    public void setArtifactSource(ArtifactSource artifactSource) {
+        this.artifactSource = artifactSource;
+    }
+
+    /**
+     * Sets cache of artifacts shared with other runs. Cache is used only
+     * if artifact source is set.
+     *
+     * @param artifactCache artifact cache or {@code null}
+     */
+    public void setArtifactCache(ArtifactCache artifactCache) {
+        this.artifactCache = artifactCache;
+    }
+
+    /**
+     * Returns selector of expected result files. If artifact cache is set, expected
+     * result files are looked up in cached listings of expected results directories.
+     *
+     * @return selector of expected result files
+     * @see #getExpectedResultsPaths()
+     */
+    public OverrideFileSelector getExpectedResultSelector() {
+        List<Path> dirs = getExpectedResultsPaths();
+        if(artifactSource == null || artifactCache == null){
+            return OverrideFileSelector.forPaths(dirs);
+        }
+        return OverrideFileSelector.forPaths(dirs, artifactCache::listFiles);
+    }
+
     /**
      * Adds new suite.
      *
@@ -195,6 +293,7 @@ public class Scenario implements TimeTracker{
             throw new IllegalArgumentException("Suite cannot be null.");
         }
         suites.add(s);
+        s.getCounters().setParent(counters);
     }
 
     /**
@@ -258,11 +357,7 @@ public class Scenario implements TimeTracker{
      * @return number of all queries.
      */
     public int getNumberOfAllQueries(){
-        int num = 0;
-        for(Suite s : suites){
-            num += s.getNumberOfAllQueries();
-        }
-        return num;
+        return counters.getAll();
     }
 
     /**
@@ -271,11 +366,7 @@ public class Scenario implements TimeTracker{
      * @return number of passed queries
      */
     public int getNumberOfPassedQueries(){
-        int num = 0;
-        for(Suite s : suites){
-            num += s.getNumberOfPassedQueries();
-        }
-        return num;
+        return counters.getPassed();
     }
 
     /**
@@ -284,24 +375,17 @@ public class Scenario implements TimeTracker{
      * @return number of failed queries
      */
     public int getNumberOfFailedQueries(){
-        int num = 0;
-        for(Suite s : suites){
-            num += s.getNumberOfFailedQueries();
-        }
-        return num;
+        return counters.getFailed();
     }
 
     /**
-     * Returns failed queries in this scenario.
+     * Returns failed queries in this scenario in order of execution. Returned list
+     * is a view and it should not be iterated while scenario is running.
      *
      * @return failed queries
      */
     public List<Query> getFailedQueries(){
-        List<Query> out = new LinkedList<>();
-        for(Suite s : suites){
-            out.addAll(s.getFailedQueries());
-        }
-        return out;
+        return counters.getFailedQueries();
     }
 
     /**
@@ -356,7 +440,11 @@ public class Scenario implements TimeTracker{
         try{
             Collections.sort(suites);
             for(Suite s : suites){
-                s.run(maxEndTime);
+                try{
+                    s.run(maxEndTime);
+                } finally {
+                    flushErrorWriter();
+                }
             }
         } finally {
             endTime = System.currentTimeMillis();
@@ -378,25 +466,48 @@ public class Scenario implements TimeTracker{
         }
         Whipper.close(connection);
         connection = null;
+        closeErrorWriter();
         runMonitorsAfter();
     }
 
+    /**
+     * Waits until all queued error files are written.
+     */
+    private void flushErrorWriter(){
+        if(errorWriter != null){
+            try{
+                errorWriter.flush();
+            } catch (IOException ex){
+                LOG.error("Cannot write error files of scenario {}.", id, ex);
+            }
+        }
+    }
+
+    /**
+     * Writes all queued error files and stops error writer.
+     */
+    private void closeErrorWriter(){
+        if(errorWriter != null){
+            try{
+                errorWriter.close();
+            } catch (IOException ex){
+                LOG.error("Cannot write error files of scenario {}.", id, ex);
+            }
+        }
+    }
+
     /**
      * Runs starting method of all monitors.
      */
     private void runMonitorsBefore(){
-        for(ProgressMonitor pm : monitors){
-            pm.startingScenario(this);
-        }
+        monitors.startingScenario(this);
     }
 
     /**
      * Runs ending method of all monitors.
      */
     private void runMonitorsAfter(){
-        for(ProgressMonitor pm : monitors){
-            pm.scenarioFinished(this);
-        }
+        monitors.scenarioFinished(this);
     }
 
     /**
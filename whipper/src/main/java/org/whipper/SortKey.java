@@ -0,0 +1,252 @@
+package org.whipper;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Encoder of result rows into order-preserving binary keys.
+ * <p>
+ * Each cell is encoded as a type tag followed by self-delimiting value bytes,
+ * so comparing two keys byte by byte (unsigned) orders rows cell by cell.
+ * Nulls are ordered first, numbers are normalized (i.e. {@code 1}, {@code 1L}
+ * and {@code 1.00} produce the same bytes) and strings are stored as UTF-8.
+ */
+final class SortKey{
+
+    private static final int TAG_NULL = 0x00;
+    private static final int TAG_BOOLEAN = 0x10;
+    private static final int TAG_NUMBER = 0x20;
+    private static final int TAG_DATE = 0x30;
+    private static final int TAG_TIME = 0x31;
+    private static final int TAG_TIMESTAMP = 0x32;
+    private static final int TAG_OTHER_DATE = 0x33;
+    private static final int TAG_STRING = 0x40;
+
+    private static final int NUM_NEGATIVE_INFINITY = 0x00;
+    private static final int NUM_NEGATIVE = 0x01;
+    private static final int NUM_ZERO = 0x02;
+    private static final int NUM_POSITIVE = 0x03;
+    private static final int NUM_POSITIVE_INFINITY = 0x04;
+    private static final int NUM_NAN = 0x05;
+
+    private byte[] buff = new byte[256];
+    private int len;
+    private boolean exact;
+
+    /**
+     * Encodes cells of the row.
+     *
+     * @param cells cells of the row
+     * @return binary key of the row
+     */
+    byte[] encode(List<Object> cells){
+        len = 0;
+        exact = true;
+        for(Object cell : cells){
+            encodeCell(cell);
+        }
+        return Arrays.copyOf(buff, len);
+    }
+
+    /**
+     * Encodes selected cells of the row.
+     *
+     * @param cells cells of the row
+     * @param columns zero-based indexes of cells to encode
+     * @return binary key of the selected cells
+     */
+    byte[] encode(List<Object> cells, int[] columns){
+        len = 0;
+        exact = true;
+        for(int c : columns){
+            encodeCell(cells.get(c));
+        }
+        return Arrays.copyOf(buff, len);
+    }
+
+    /**
+     * Returns {@code true} if equal keys of the last encoded row imply equal values.
+     * This is not the case if row contains a regular expression.
+     *
+     * @return whether last encoded key can be used for equality check
+     */
+    boolean isExact(){
+        return exact;
+    }
+
+    /**
+     * Compares two keys as unsigned byte arrays.
+     *
+     * @param k1 first key
+     * @param k2 second key
+     * @return negative number, zero or positive number if {@code k1} is less than,
+     *      equal to or greater than {@code k2}
+     */
+    static int compare(byte[] k1, byte[] k2){
+        int l = Math.min(k1.length, k2.length);
+        for(int i = 0; i < l; i++){
+            int c = (k1[i] & 0xFF) - (k2[i] & 0xFF);
+            if(c != 0){
+                return c;
+            }
+        }
+        return k1.length - k2.length;
+    }
+
+    /**
+     * Encodes single cell.
+     *
+     * @param cell cell value
+     */
+    private void encodeCell(Object cell){
+        if(cell == null){
+            put(TAG_NULL);
+        } else if(cell instanceof Boolean){
+            put(TAG_BOOLEAN);
+            put(((Boolean)cell) ? 1 : 0);
+        } else if(cell instanceof Double || cell instanceof Float){
+            encodeFloatingPoint(((Number)cell).doubleValue());
+        } else if(cell instanceof BigDecimal){
+            encodeNumber((BigDecimal)cell);
+        } else if(cell instanceof BigInteger){
+            encodeNumber(new BigDecimal((BigInteger)cell));
+        } else if(cell instanceof Long || cell instanceof Integer || cell instanceof Short || cell instanceof Byte){
+            encodeNumber(BigDecimal.valueOf(((Number)cell).longValue()));
+        } else if(cell instanceof Timestamp){
+            put(TAG_TIMESTAMP);
+            putLong(((Timestamp)cell).getTime());
+            putInt(((Timestamp)cell).getNanos() % 1000000);
+        } else if(cell instanceof java.sql.Date){
+            put(TAG_DATE);
+            putLong(((Date)cell).getTime());
+        } else if(cell instanceof Time){
+            put(TAG_TIME);
+            putLong(((Date)cell).getTime());
+        } else if(cell instanceof Date){
+            put(TAG_OTHER_DATE);
+            putLong(((Date)cell).getTime());
+        } else {
+            if(cell instanceof Pattern){
+                exact = false;
+            }
+            put(TAG_STRING);
+            putString(cell.toString());
+        }
+    }
+
+    /**
+     * Encodes double or float value.
+     *
+     * @param d value
+     */
+    private void encodeFloatingPoint(double d){
+        if(Double.isNaN(d)){
+            put(TAG_NUMBER);
+            put(NUM_NAN);
+        } else if(d == Double.POSITIVE_INFINITY){
+            put(TAG_NUMBER);
+            put(NUM_POSITIVE_INFINITY);
+        } else if(d == Double.NEGATIVE_INFINITY){
+            put(TAG_NUMBER);
+            put(NUM_NEGATIVE_INFINITY);
+        } else {
+            encodeNumber(new BigDecimal(d));
+        }
+    }
+
+    /**
+     * Encodes finite number. Number is stored as sign, adjusted exponent and
+     * decimal digits without trailing zeros. Bytes of negative numbers are
+     * complemented to reverse their order.
+     *
+     * @param bd number
+     */
+    private void encodeNumber(BigDecimal bd){
+        put(TAG_NUMBER);
+        int sign = bd.signum();
+        if(sign == 0){
+            put(NUM_ZERO);
+            return;
+        }
+        put(sign < 0 ? NUM_NEGATIVE : NUM_POSITIVE);
+        int mask = sign < 0 ? 0xFF : 0x00;
+        String digits = bd.unscaledValue().abs().toString();
+        int end = digits.length();
+        while(end > 1 && digits.charAt(end - 1) == '0'){
+            end--;
+        }
+        int exponent = digits.length() - bd.scale();
+        int e = exponent ^ Integer.MIN_VALUE;
+        put(((e >>> 24) & 0xFF) ^ mask);
+        put(((e >>> 16) & 0xFF) ^ mask);
+        put(((e >>> 8) & 0xFF) ^ mask);
+        put((e & 0xFF) ^ mask);
+        for(int i = 0; i < end; i++){
+            put((digits.charAt(i) - '0' + 1) ^ mask);
+        }
+        put(mask);
+    }
+
+    /**
+     * Encodes string as UTF-8. Zero bytes are escaped and string is terminated
+     * by sequence which is less than any escaped content.
+     *
+     * @param str string
+     */
+    private void putString(String str){
+        byte[] b = str.getBytes(StandardCharsets.UTF_8);
+        for(byte x : b){
+            if(x == 0){
+                put(0x00);
+                put(0xFF);
+            } else {
+                put(x & 0xFF);
+            }
+        }
+        put(0x00);
+        put(0x01);
+    }
+
+    /**
+     * Puts long value with flipped sign bit.
+     *
+     * @param l value
+     */
+    private void putLong(long l){
+        l ^= Long.MIN_VALUE;
+        for(int i = 56; i >= 0; i -= 8){
+            put((int)(l >>> i) & 0xFF);
+        }
+    }
+
+    /**
+     * Puts non-negative int value.
+     *
+     * @param i value
+     */
+    private void putInt(int i){
+        put((i >>> 24) & 0xFF);
+        put((i >>> 16) & 0xFF);
+        put((i >>> 8) & 0xFF);
+        put(i & 0xFF);
+    }
+
+    /**
+     * Puts single byte to the buffer.
+     *
+     * @param b byte
+     */
+    private void put(int b){
+        if(len == buff.length){
+            buff = Arrays.copyOf(buff, len << 1);
+        }
+        buff[len++] = (byte)b;
+    }
+}
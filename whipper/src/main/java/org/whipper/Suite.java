@@ -1,7 +1,7 @@
 package org.whipper;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -25,8 +25,9 @@ public class Suite implements Comparable<Suite>, TimeTracker{
     private static final String AFTER_SET = "after_set";
     private static final String BEFORE_SET = "before_set";
 
-    private final List<QuerySet> querySets = new LinkedList<>();
-    private final List<ProgressMonitor> monitors = new LinkedList<>();
+    private final List<QuerySet> querySets = new ArrayList<>();
+    private final QueryCounters counters = new QueryCounters();
+    private ProgressMonitors monitors = ProgressMonitors.EMPTY;
     private final String id;
     private long startTime = -1;
     private long endTime = -1;
@@ -51,10 +52,17 @@ public class Suite implements Comparable<Suite>, TimeTracker{
      * @param monitors monitors to be set
      */
     public void setProgressMonitors(List<ProgressMonitor> monitors){
-        this.monitors.clear();
-        if(monitors != null){
-            this.monitors.addAll(monitors);
-        }
+        setProgressMonitors(ProgressMonitors.of(monitors));
+    }
+
+    /**
+     * Sets progress monitors for this suite. Including before and after
+     * query sets
+     *
+     * @param monitors shared monitors dispatcher
+     */
+    public void setProgressMonitors(ProgressMonitors monitors){
+        this.monitors = monitors == null ? ProgressMonitors.EMPTY : monitors;
         for(QuerySet qs : querySets){
             qs.setProgressMonitors(monitors);
         }
@@ -132,6 +140,7 @@ public class Suite implements Comparable<Suite>, TimeTracker{
             throw new IllegalArgumentException("QuerySet cannot be null.");
         }
         querySets.add(qs);
+        qs.getCounters().setParent(counters);
     }
 
     /**
@@ -149,11 +158,7 @@ public class Suite implements Comparable<Suite>, TimeTracker{
      * @return number of all queries
      */
     public int getNumberOfAllQueries(){
-        int num = 0;
-        for(QuerySet qs : querySets){
-            num += qs.getNumberOfAllQueries();
-        }
-        return num;
+        return counters.getAll();
     }
 
     /**
@@ -162,11 +167,7 @@ public class Suite implements Comparable<Suite>, TimeTracker{
      * @return number of failed queries
      */
     public int getNumberOfFailedQueries(){
-        int num = 0;
-        for(QuerySet qs : querySets){
-            num += qs.getNumberOfFailedQueries();
-        }
-        return num;
+        return counters.getFailed();
     }
 
     /**
@@ -175,11 +176,7 @@ public class Suite implements Comparable<Suite>, TimeTracker{
      * @return number of passed queries
      */
     public int getNumberOfPassedQueries(){
-        int num = 0;
-        for(QuerySet qs : querySets){
-            num += qs.getNumberOfPassedQueries();
-        }
-        return num;
+        return counters.getPassed();
     }
 
     /**
@@ -188,11 +185,7 @@ public class Suite implements Comparable<Suite>, TimeTracker{
      * @return number of executed queries
      */
     public int getNumberOfExecutedQueries(){
-        int num = 0;
-        for(QuerySet qs : querySets){
-            num += qs.getNumberOfExecutedQueries();
-        }
-        return num;
+        return counters.getExecuted();
     }
 
     /**
@@ -215,9 +208,7 @@ public class Suite implements Comparable<Suite>, TimeTracker{
      */
     public void run(long maxEndTime) throws ServerNotAvailableException, DbNotAvailableException,
                 MaxTimeExceededException, ExecutionInterruptedException{
-        for(ProgressMonitor pm : monitors){
-            pm.startingSuite(this);
-        }
+        monitors.startingSuite(this);
         LOG.info("Starting suite {}.", id);
         startTime = System.currentTimeMillis();
         try{
@@ -251,9 +242,7 @@ public class Suite implements Comparable<Suite>, TimeTracker{
         } finally {
             endTime = System.currentTimeMillis();
             LOG.info("Suite {} finished.", id);
-            for(ProgressMonitor pm : monitors){
-                pm.suiteFinished(this);
-            }
+            monitors.suiteFinished(this);
         }
     }
 
@@ -290,29 +279,32 @@ public class Suite implements Comparable<Suite>, TimeTracker{
     }
 
     /**
-     * Returns failed queries in this suite.
+     * Returns failed queries in this suite in order of execution. Returned list
+     * is a view and it should not be iterated while suite is running.
      *
      * @return failed queries
      */
     public List<Query> getFailedQueries(){
-        List<Query> out = new LinkedList<>();
-        for(QuerySet qs : querySets){
-            out.addAll(qs.getFailedQueries());
-        }
-        return out;
+        return counters.getFailedQueries();
     }
 
     /**
-     * Returns all executed queries in this suite.
+     * Returns all executed queries in this suite in order of execution. Returned list
+     * is a view and it should not be iterated while suite is running.
      *
      * @return executed queries
      */
     public List<Query> getExecutedQueries(){
-        List<Query> out = new LinkedList<>();
-        for(QuerySet qs : querySets){
-            out.addAll(qs.getExecutedQueries());
-        }
-        return out;
+        return counters.getExecutedQueries();
+    }
+
+    /**
+     * Returns counters of this suite.
+     *
+     * @return counters
+     */
+    QueryCounters getCounters(){
+        return counters;
     }
 
     @Override
@@ -2,14 +2,21 @@ package org.whipper;
 
 import java.io.File;
 import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Properties;
 import java.util.ServiceLoader;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
@@ -18,6 +25,10 @@ import org.whipper.exceptions.WhipperException;
 import org.whipper.resultmode.NoneResultMode;
 import org.whipper.resultmode.ResultMode;
 import org.whipper.results.TestResultsWriter;
+import org.whipper.utils.ArtifactSource;
+import org.whipper.utils.Compression;
+import org.whipper.utils.PatternCache;
+import org.whipper.xml.ResultConverter;
 import org.whipper.xml.XmlHelper;
 
 /**
@@ -32,10 +43,13 @@ public class Whipper {
     /**
      * Main method to allow to run Whipper tool from command line.
      *
-     * @param args program arguments (allowed options are -h, --help, -f, --file, -P)
+     * @param args program arguments (allowed options are -h, --help, -f, --file, -P,
+     *      --convert-results, --replace)
      */
     public static void main(String... args){
         File f = null;
+        File convert = null;
+        boolean replace = false;
         Properties p = new Properties();
         if(args != null){
             for(int i = 0; i < args.length; i++){
@@ -45,6 +59,13 @@ public class Whipper {
                         checkHelp(args[i]);
                         f = new File(args[i]);
                     }
+                } else if("--convert-results".equals(args[i])){
+                    if(++i < args.length){
+                        checkHelp(args[i]);
+                        convert = new File(args[i]);
+                    }
+                } else if("--replace".equals(args[i])){
+                    replace = true;
                 } else if(args[i] != null && args[i].startsWith("-P")){
                     String prop = args[i].substring(2);
                     int idx = prop.indexOf("=");
@@ -56,6 +77,15 @@ public class Whipper {
                 }
             }
         }
+        if(convert != null){
+            try{
+                ResultConverter.convertDirectory(convert, replace);
+            } catch (IOException ex){
+                LOG.error("Conversion of expected results failed: " + ex.getMessage(), ex);
+                System.exit(1);
+            }
+            return;
+        }
         try{
             new Whipper(new WhipperProperties(f, p)).start();
         } catch (Throwable t){
@@ -76,12 +106,17 @@ public class Whipper {
             System.out.println("    -P<key>=<value>             define property to add or override");
             System.out.println("                                property from properties file");
             System.out.println("                                (e.g -Pmy.prop=value1");
+            System.out.println("    --convert-results <dir>     convert XML expected results in directory");
+            System.out.println("                                to binary format and exit");
+            System.out.println("    --replace                   delete XML expected results after");
+            System.out.println("                                successful conversion");
             System.exit(0);
         }
     }
 
     private final WhipperProperties properties;
     private final List<ProgressMonitor> monitors = new LinkedList<>();
+    private ArtifactCache artifactCache;
     private WhipperThread executionThread;
     private WhipperResult result;
 
@@ -178,6 +213,21 @@ public class Whipper {
         }
     }
 
+    /**
+     * Sets cache of artifacts for next execution. Cache can be shared by several
+     * instances of Whipper which test the same artifacts, thus suites are parsed
+     * and directories are listed only once.
+     *
+     * @param artifactCache artifact cache or {@code null} if artifacts should not be cached
+     * @throws IllegalStateException if execution of the test has already started
+     */
+    public void setArtifactCache(ArtifactCache artifactCache) throws IllegalStateException{
+        if(executionThread != null){
+            throw new IllegalStateException("Cannot set artifact cache. Whipper is already running.");
+        }
+        this.artifactCache = artifactCache;
+    }
+
     /**
      * Runs test.
      */
@@ -189,8 +239,9 @@ public class Whipper {
         List<TestResultsWriter> trws = getResultWriters(properties);
         List<ScenarioSetUp> sss = new LinkedList<>();
         ServiceLoader.load(ScenarioSetUp.class).forEach(sss::add);
-        ScenarioIterator iter = new ScenarioIterator(properties, resultMode);
-        monitors.forEach(p -> p.starting(iter.getScenarioNames()));
+        ScenarioIterator iter = new ScenarioIterator(properties, resultMode, artifactCache);
+        ProgressMonitors runMonitors = createMonitors(properties);
+        runMonitors.starting(iter.getScenarioNames());
         WhipperResult tmpRes = new WhipperResult();
         try{
             while(iter.hasNext()){
@@ -203,7 +254,7 @@ public class Whipper {
                 while(run && i.hasNext()){
                     run = i.next().setUp(scen);
                 }
-                scen.setProgressMonitors(monitors);
+                scen.setProgressMonitors(runMonitors);
                 resultMode.resetConfiguration(iter.initProps);
                 if(!run){
                     LOG.warn("Skipping scenario {}. One or more set up procedures failed.", scen.getId());
@@ -226,16 +277,38 @@ public class Whipper {
                 }
             }
         } finally {
+            close(iter);
             result = tmpRes;
             result.dumpToDir(properties.getOutputDir());
             resultMode.destroy();
-            for(ProgressMonitor pm : monitors){
-                pm.finished(result);
-            }
+            runMonitors.finished(result);
             for(TestResultsWriter trw : trws){
                 trw.destroy();
             }
+            LOG.debug("Pattern cache statistics: {}.", PatternCache.getStatistics());
+        }
+    }
+
+    /**
+     * Creates dispatcher of registered monitors for one run.
+     * <p>
+     * Instances of {@link AsyncProgressMonitor} are notified via {@link ProgressEventBus},
+     * other monitors are notified synchronously.
+     *
+     * @param props test properties
+     * @return dispatcher of progress events
+     */
+    private ProgressMonitors createMonitors(WhipperProperties props){
+        List<ProgressMonitor> sync = new ArrayList<>();
+        List<ProgressMonitor> async = new ArrayList<>();
+        for(ProgressMonitor pm : monitors){
+            (pm instanceof AsyncProgressMonitor ? async : sync).add(pm);
+        }
+        if(!async.isEmpty()){
+            sync.add(new ProgressEventBus(Integer.toHexString(System.identityHashCode(this)), async,
+                    props.getMonitorQueueSize(), ProgressEventBus.Overflow.forName(props.getMonitorOverflow())));
         }
+        return ProgressMonitors.of(sync);
     }
 
     /**
@@ -303,13 +376,14 @@ public class Whipper {
      *
      * @author Juraj Duráni
      */
-    private static class ScenarioIterator implements Iterator<Scenario>{
+    private static class ScenarioIterator implements Iterator<Scenario>, AutoCloseable{
 
         private final File[] scenarios;
-        private final File artifactsDir;
+        private final ArtifactSource artifacts;
         private final WhipperProperties original;
         private final WhipperProperties initProps = new WhipperProperties();
         private final ResultMode rm;
+        private final ArtifactCache cache;
         private int idx = 0;
 
         /**
@@ -317,9 +391,11 @@ public class Whipper {
          *
          * @param props basic properties for all created scenarios
          * @param rm result mode for all created scenarios
+         * @param cache cache of artifacts or {@code null}
          */
-        private ScenarioIterator(final WhipperProperties props, ResultMode rm) {
+        private ScenarioIterator(final WhipperProperties props, ResultMode rm, ArtifactCache cache) {
             this.rm = rm;
+            this.cache = cache;
             original = props.copy();
             File scen = original.getScenario();
             if(scen == null || !scen.exists()){
@@ -340,10 +416,16 @@ public class Whipper {
             File f = original.getArtifactsDir();
             if(f == null){
                 LOG.warn("Artifacts directory is not set.");
-                artifactsDir = new File("");
-            } else {
-                artifactsDir = f;
+                f = new File("");
+            }
+            ArtifactSource as;
+            try{
+                as = ArtifactSource.open(f);
+            } catch (IOException ex){
+                LOG.error("Unable to open artifacts " + f, ex);
+                as = ArtifactSource.directory(f);
             }
+            artifacts = as;
             if(scenarios.length == 0){
                 LOG.warn("No scenarios to run [{}].", scen);
             } else {
@@ -416,20 +498,28 @@ public class Whipper {
                     LOG.warn("Test queries directory is not defined. Setting to empty string.");
                     tqd = "";
                 }
-                File testQueries = new File(artifactsDir, qsd + File.separator + tqd);
-                File[] suites = testQueries.listFiles((dir, name) -> name.trim().endsWith(".xml"));
-                if(suites == null){
-                    throw new IllegalArgumentException("Cannot load test queries from directory " + testQueries);
-                }
+                scen.setArtifactSource(artifacts);
+                scen.setArtifactCache(cache);
+                Path testQueries = artifacts.resolve(qsd, tqd);
+                List<Path> suites = listSuites(testQueries);
+                // uncompressed suite wins if suite is present in more formats
+                suites.sort(Comparator.comparing(p -> Compression.forFileName(p.getFileName().toString().trim())));
+                Set<String> loaded = new HashSet<>();
                 Pattern includePattern = props.getIncludeSuite();
                 Pattern excludePattern = props.getExcludeSuite();
                 LOG.debug("suite include pattern: {}", includePattern);
                 LOG.debug("suite exclude pattern: {}", excludePattern);
-                for(File f : suites){
-                    String suiteName = removeExtension(f.getName());
-                    if(includePattern.matcher(suiteName).matches() && ! excludePattern.matcher(suiteName).matches()){
+                for(Path f : suites){
+                    String suiteName = removeExtension(Compression.stripExtension(f.getFileName().toString().trim()));
+                    if(!loaded.add(suiteName)){
+                        LOG.warn("Suite {} is defined in more files. Ignoring {}.", suiteName, f);
+                    } else if(includePattern.matcher(suiteName).matches() && ! excludePattern.matcher(suiteName).matches()){
                         Suite suite = new Suite(suiteName);
-                        XmlHelper.loadQueries(f, scen, suite, rm);
+                        if(cache == null){
+                            XmlHelper.loadQueries(f, scen, suite, rm);
+                        } else {
+                            XmlHelper.loadQueries(cache.getSuite(f), scen, suite, rm);
+                        }
                         scen.addSuite(suite);
                     }else{
                         LOG.info("Skipping suite {}", suiteName);
@@ -443,6 +533,42 @@ public class Whipper {
             }
         }
 
+        /**
+         * Lists suite files in test queries directory.
+         *
+         * @param testQueries test queries directory
+         * @return suite files
+         * @throws IllegalArgumentException if directory cannot be listed
+         */
+        private List<Path> listSuites(Path testQueries) throws IllegalArgumentException{
+            List<Path> suites = new ArrayList<>();
+            if(cache != null){
+                Set<String> names = cache.listFiles(testQueries);
+                if(names == null){
+                    throw new IllegalArgumentException("Cannot load test queries from directory " + testQueries + " in " + artifacts
+                            + " - not a directory.");
+                }
+                for(String name : names){
+                    if(Compression.hasExtension(name.trim(), ".xml")){
+                        suites.add(testQueries.resolve(name));
+                    }
+                }
+                return suites;
+            }
+            try(DirectoryStream<Path> ds = Files.newDirectoryStream(testQueries,
+                    p -> Files.isRegularFile(p) && Compression.hasExtension(p.getFileName().toString().trim(), ".xml"))){
+                ds.forEach(suites::add);
+            } catch (IOException ex){
+                throw new IllegalArgumentException("Cannot load test queries from directory " + testQueries + " in " + artifacts, ex);
+            }
+            return suites;
+        }
+
+        @Override
+        public void close() throws IOException{
+            artifacts.close();
+        }
+
         @Override
         public void remove() {
             throw new UnsupportedOperationException("Not supported");
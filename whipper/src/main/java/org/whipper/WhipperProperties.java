@@ -4,8 +4,12 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Reader;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashSet;
 import java.util.Map.Entry;
 import java.util.Properties;
@@ -15,6 +19,7 @@ import java.util.regex.Pattern;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.whipper.resultmode.ErrorFileWriter;
 
 /**
  * Properties holder for Whipper test.
@@ -52,6 +57,11 @@ public class WhipperProperties implements Cloneable{
         String VALID_CONNECTION_SQL = "whipper.scenario.valid.connection.sql";
         String AFTER_QUERY = "whipper.scenario.after.query";
         String QUERY_SET_FAST_FAIL = "whipper.scenario.fastfail";
+        String GENERATE_COMPRESSION = "whipper.generate.compression";
+        String ERROR_QUEUE_SIZE = "whipper.error.queue.size";
+        String RESULT_RETENTION = "whipper.result.retention";
+        String MONITOR_QUEUE_SIZE = "whipper.monitor.queue.size";
+        String MONITOR_OVERFLOW = "whipper.monitor.overflow";
     }
 
     private final Properties props;
@@ -535,6 +545,52 @@ public class WhipperProperties implements Cloneable{
         return getProperty(Keys.QUERY_SET_FAST_FAIL, boolean.class, true);
     }
 
+    /**
+     * Returns compression of files generated in GENERATE result mode
+     * (none, gzip or zstd).
+     *
+     * @return compression of generated files
+     */
+    public String getGenerateCompression(){
+        return getProperty(Keys.GENERATE_COMPRESSION);
+    }
+
+    /**
+     * Returns maximum number of error files waiting to be written.
+     *
+     * @return size of error file queue
+     */
+    public int getErrorQueueSize(){
+        return getProperty(Keys.ERROR_QUEUE_SIZE, int.class, ErrorFileWriter.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns retention policy of rows of actual results (none, failed or all).
+     *
+     * @return result retention policy
+     */
+    public String getResultRetention(){
+        return getProperty(Keys.RESULT_RETENTION);
+    }
+
+    /**
+     * Returns capacity of the buffer of progress events for asynchronous monitors.
+     *
+     * @return size of progress event buffer
+     */
+    public int getMonitorQueueSize(){
+        return getProperty(Keys.MONITOR_QUEUE_SIZE, int.class, ProgressEventBus.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns policy applied when the buffer of progress events is full (drop or block).
+     *
+     * @return overflow policy
+     */
+    public String getMonitorOverflow(){
+        return getProperty(Keys.MONITOR_OVERFLOW);
+    }
+
     /**
      * Sets connection strategy.
      *
@@ -734,6 +790,51 @@ public class WhipperProperties implements Cloneable{
         setProperty(Keys.QUERY_SET_FAST_FAIL, Boolean.toString(value));
     }
 
+    /**
+     * Sets compression of files generated in GENERATE result mode.
+     *
+     * @param value compression (none, gzip or zstd)
+     */
+    public void setGenerateCompression(String value){
+        setProperty(Keys.GENERATE_COMPRESSION, value);
+    }
+
+    /**
+     * Sets maximum number of error files waiting to be written.
+     *
+     * @param value size of error file queue
+     */
+    public void setErrorQueueSize(int value){
+        setProperty(Keys.ERROR_QUEUE_SIZE, Integer.toString(value));
+    }
+
+    /**
+     * Sets retention policy of rows of actual results.
+     *
+     * @param value result retention policy (none, failed or all)
+     */
+    public void setResultRetention(String value){
+        setProperty(Keys.RESULT_RETENTION, value);
+    }
+
+    /**
+     * Sets capacity of the buffer of progress events for asynchronous monitors.
+     *
+     * @param value size of progress event buffer
+     */
+    public void setMonitorQueueSize(int value){
+        setProperty(Keys.MONITOR_QUEUE_SIZE, Integer.toString(value));
+    }
+
+    /**
+     * Sets policy applied when the buffer of progress events is full.
+     *
+     * @param value overflow policy (drop or block)
+     */
+    public void setMonitorOverflow(String value){
+        setProperty(Keys.MONITOR_OVERFLOW, value);
+    }
+
     /**
      * Resolves placeholders in properties.
      * <p>
@@ -884,6 +985,28 @@ public class WhipperProperties implements Cloneable{
         return f.exists() ? new WhipperProperties(f) : null;
     }
 
+    /**
+     * Loads properties from directory. Directory can belong to any file system
+     * (e.g. directory in ZIP archive).
+     *
+     * @param dir directory with properties file
+     * @return loaded properties or {@code null} if file does not exist or cannot be read
+     */
+    public static WhipperProperties fromOutputDir(Path dir){
+        Path f = dir.resolve(DUMP_PROPS_FILE);
+        if(!Files.isRegularFile(f)){
+            return null;
+        }
+        Properties p = new Properties();
+        try(Reader r = Files.newBufferedReader(f, Charset.defaultCharset())){
+            p.load(r);
+        } catch (IOException ex){
+            LOG.error("Cannot load properties from file " + f + ".", ex);
+            return null;
+        }
+        return new WhipperProperties(p);
+    }
+
     /**
      * Returns all placeholders in string.
      *
@@ -1,11 +1,14 @@
 package org.whipper;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
@@ -26,6 +29,8 @@ import org.slf4j.LoggerFactory;
 public class WhipperResult implements Iterable<Entry<String, WhipperResult.Result>>{
 
     private static final Logger LOG = LoggerFactory.getLogger(WhipperResult.class);
+    private static final String DUMP_FILE = "result.json";
+
     private final Result result;
 
     /**
@@ -183,8 +188,21 @@ public class WhipperResult implements Iterable<Entry<String, WhipperResult.Resul
      * in case of I/O error
      */
     public static WhipperResult fromDir(File dir){
-        try(FileReader fr = new FileReader(getDumpFile(dir))){
-            JSONObject o = new JSONObject(new JSONTokener(fr));
+        return fromDir(dir.toPath());
+    }
+
+    /**
+     * Loads result from file in specified directory. Directory can belong
+     * to any file system (e.g. directory in ZIP archive).
+     *
+     * @param dir directory where file with result is located
+     *
+     * @return returns result loaded from the directory or {@code null}
+     * in case of I/O error
+     */
+    public static WhipperResult fromDir(Path dir){
+        try(Reader r = Files.newBufferedReader(dir.resolve(DUMP_FILE), Charset.defaultCharset())){
+            JSONObject o = new JSONObject(new JSONTokener(r));
             return new WhipperResult(Result.fromJson(o, 0));
         } catch (IOException | JSONException ex){
             LOG.error("Cannot read result from output directory - {}", ex.getMessage(), ex);
@@ -200,7 +218,7 @@ public class WhipperResult implements Iterable<Entry<String, WhipperResult.Resul
      * @return result file
      */
     private static File getDumpFile(File dir){
-        return new File(dir, "result.json");
+        return new File(dir, DUMP_FILE);
     }
 
     /**
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.util.Collections;
 
 import org.slf4j.Logger;
@@ -12,7 +13,10 @@ import org.whipper.ExpectedResultHolder;
 import org.whipper.Query;
 import org.whipper.Whipper;
 import org.whipper.WhipperProperties;
+import org.whipper.utils.Compression;
+import org.whipper.utils.OrderBy;
 import org.whipper.utils.OverrideFileSelector;
+import org.whipper.xml.BinaryResultHelper;
 import org.whipper.xml.XmlHelper;
 import org.whipper.xml.result.ObjectFactory;
 import org.whipper.xml.result.QueryResultType;
@@ -58,8 +62,14 @@ public class CompareResultMode implements ResultMode {
         return q.getScenario().getId() + File.separator + "errors_for_" + getName() + File.separator + q.getSuite().getId() + "_" + q.getId();
     }
 
+    /**
+     * Returns name of expected result file without extension.
+     *
+     * @param q query
+     * @return expected result file name
+     */
     private String getExpectedResultFileName(Query q){
-        return q.getSuite().getId() + File.separator + q.getSuite().getId() + "_" + q.getId() + ".xml";
+        return q.getSuite().getId() + "/" + q.getSuite().getId() + "_" + q.getId();
     }
 
     @Override
@@ -70,13 +80,14 @@ public class CompareResultMode implements ResultMode {
     @Override
     public ResultHolder handleResult(Query q){
         ResultHolder out = new ResultHolder();
-        OverrideFileSelector selector = new OverrideFileSelector(q.getScenario().getExpectedResultsDir());
-        File result = selector.getExpectedResultFile(getExpectedResultFileName(q));
-        if (result != null && result.exists()) {
-            String expectedResultDirectoryName = result.getParentFile().getParentFile().getName();
+        OverrideFileSelector selector = q.getScenario().getExpectedResultSelector();
+        String fileName = getExpectedResultFileName(q);
+        Path result = selector.getExpectedResultPath(fileName + BinaryResultHelper.EXTENSION, Compression.allNames(fileName + ".xml"));
+        if (result != null) {
+            String expectedResultDirectoryName = result.getParent().getParent().getFileName().toString();
             try{
                 holder.buildResult(result, q);
-                boolean eq = holder.equals(q.getActualResult(), !q.getSql().toUpperCase().contains(" ORDER BY "), allowedDivergence);
+                boolean eq = holder.equals(q.getActualResult(), OrderBy.parse(q.getSql()), allowedDivergence);
                 if(!eq){
                     writeErrorFile(q, expectedResultDirectoryName);
                     out.setErrors(holder.getErrors());
@@ -102,17 +113,22 @@ public class CompareResultMode implements ResultMode {
     }
 
     /**
-     * Writes compare error to the file.
+     * Writes compare error to the file. Files are written asynchronously by error
+     * writer of the scenario if it is available.
      *
      * @param q query
+     * @param expectedResultDirectoryName directory name used to load expected result
      * @throws IOException if some error occurs
      */
     private void writeErrorFile(Query q, String expectedResultDirectoryName) throws IOException{
         File errorFileXml = getErrorFile(q);
         File errorFileTxt = new File(outputDirectory, getFileName(q) + "_failures.txt");
+        ErrorFileWriter writer = q.getScenario().getErrorWriter();
+        if(writer != null){
+            writer.submitError(q, holder, errorFileXml, errorFileTxt, expectedResultDirectoryName);
+            return;
+        }
         errorFileXml.getParentFile().mkdirs();
-        errorFileXml.createNewFile();
-        errorFileTxt.createNewFile();
         FileWriter fwTxt = null;
         try{
             fwTxt = new FileWriter(errorFileTxt, false);
@@ -0,0 +1,369 @@
+package org.whipper.resultmode;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.whipper.ExpectedResultHolder;
+import org.whipper.Query;
+import org.whipper.utils.Compression;
+import org.whipper.xml.XmlHelper;
+import org.whipper.xml.error.QueryError;
+
+/**
+ * Background writer of error files.
+ * <p>
+ * Error payloads are queued by query execution thread and written by a single
+ * background thread in batches. Queue is bounded - if it is full, the submitting
+ * thread waits until there is a free space (backpressure). Writer thread is started
+ * lazily with the first submitted file.
+ * <p>
+ * Failures of writing are logged and reported by next {@link #flush()}.
+ */
+public class ErrorFileWriter implements Closeable{
+
+    /**
+     * Default capacity of the queue.
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private static final Logger LOG = LoggerFactory.getLogger(ErrorFileWriter.class);
+    private static final int MAX_BATCH_SIZE = 64;
+    private static final Entry STOP = new Entry(null, null, null);
+    private static final long STOP_WAIT = 100;
+
+    private final String name;
+    private final BlockingQueue<Entry> queue;
+    private final Set<File> createdDirs = new HashSet<>();
+    private final List<IOException> failures = new ArrayList<>();
+    private Thread thread;
+    private int waiting;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new writer.
+     *
+     * @param name name of the writer (used as a name of the thread)
+     * @param capacity maximum number of queued files
+     */
+    public ErrorFileWriter(String name, int capacity){
+        if(capacity <= 0){
+            throw new IllegalArgumentException("Capacity must be positive - " + capacity);
+        }
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Content of the file.
+     */
+    @FunctionalInterface
+    public interface Content{
+
+        /**
+         * Writes content to the stream. Stream should not be closed.
+         *
+         * @param out output stream
+         * @throws IOException if some error occurs
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Queues comparison error of the query. Error XML is created immediately,
+     * so {@code exp} can be reused after this method returns.
+     *
+     * @param q query
+     * @param exp expected result with errors
+     * @param errorFileXml file for error XML
+     * @param errorFileTxt file for list of failures or {@code null}
+     * @param expectedResultDirectoryName directory name used to load expected result
+     * @throws IOException if expected result cannot be read or file cannot be written
+     */
+    public void submitError(Query q, ExpectedResultHolder exp, File errorFileXml, File errorFileTxt,
+            String expectedResultDirectoryName) throws IOException{
+        QueryError err = XmlHelper.createError(q, exp, expectedResultDirectoryName);
+        if(errorFileTxt != null){
+            List<String> errors = new ArrayList<>(exp.getErrors());
+            submit(errorFileTxt, out -> {
+                Writer w = new BufferedWriter(new OutputStreamWriter(out, Charset.defaultCharset()));
+                for(String e : errors){
+                    w.write(e);
+                    w.write(System.lineSeparator());
+                }
+                w.flush();
+            });
+        }
+        submit(errorFileXml, out -> XmlHelper.writeError(err, out));
+    }
+
+    /**
+     * Queues file. If the queue is full, this method waits for a free space.
+     * If the thread is interrupted while waiting or writer has been closed,
+     * the file is written immediately.
+     *
+     * @param f file
+     * @param content content of the file
+     * @throws IOException if file is written immediately and some error occurs
+     */
+    public void submit(File f, Content content) throws IOException{
+        Entry e = new Entry(f, content, null);
+        boolean blocked = false;
+        synchronized(this){
+            if(!closed){
+                startThread();
+                if(queue.offer(e)){
+                    return;
+                }
+                // close waits for blocked submitters, thus no file is queued after STOP
+                waiting++;
+                blocked = true;
+            }
+        }
+        if(blocked){
+            try{
+                queue.put(e);
+                return;
+            } catch (InterruptedException ex){
+                Thread.currentThread().interrupt();
+            } finally {
+                synchronized(this){
+                    waiting--;
+                    notifyAll();
+                }
+            }
+        }
+        write(e);
+    }
+
+    /**
+     * Waits until all queued files are written.
+     *
+     * @throws IOException if some file could not be written since last flush
+     */
+    public void flush() throws IOException{
+        boolean running;
+        synchronized(this){
+            running = thread != null;
+        }
+        if(running){
+            CountDownLatch latch = new CountDownLatch(1);
+            boolean interrupted = false;
+            while(true){
+                try{
+                    queue.put(new Entry(null, null, latch));
+                    break;
+                } catch (InterruptedException ex){
+                    interrupted = true;
+                }
+            }
+            while(true){
+                try{
+                    latch.await();
+                    break;
+                } catch (InterruptedException ex){
+                    interrupted = true;
+                }
+            }
+            if(interrupted){
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<IOException> fails;
+        synchronized(failures){
+            if(failures.isEmpty()){
+                return;
+            }
+            fails = new ArrayList<>(failures);
+            failures.clear();
+        }
+        IOException ex = new IOException(fails.size() + " error file(s) could not be written - " + fails.get(0).getMessage(), fails.get(0));
+        for(int i = 1; i < fails.size(); i++){
+            ex.addSuppressed(fails.get(i));
+        }
+        throw ex;
+    }
+
+    /**
+     * Writes all queued files and stops writer thread. Files submitted after
+     * this method is called are written immediately.
+     *
+     * @throws IOException if some file could not be written since last flush
+     */
+    @Override
+    public void close() throws IOException{
+        Thread t;
+        synchronized(this){
+            if(closed){
+                return;
+            }
+            closed = true;
+            t = thread;
+        }
+        try{
+            flush();
+        } finally {
+            if(t != null){
+                stopThread(t);
+            }
+        }
+    }
+
+    /**
+     * Waits until submitters blocked on full queue are done, queues {@link #STOP}
+     * and waits until writer thread writes all queued files and ends.
+     *
+     * @param t writer thread
+     */
+    private void stopThread(Thread t){
+        boolean interrupted = false;
+        synchronized(this){
+            while(waiting > 0 && t.isAlive()){
+                try{
+                    wait(STOP_WAIT);
+                } catch (InterruptedException ex){
+                    interrupted = true;
+                }
+            }
+        }
+        while(t.isAlive()){
+            try{
+                if(queue.offer(STOP, STOP_WAIT, TimeUnit.MILLISECONDS)){
+                    t.join();
+                }
+            } catch (InterruptedException ex){
+                interrupted = true;
+            }
+        }
+        synchronized(this){
+            thread = null;
+        }
+        // flush markers queued by concurrent flush after STOP
+        queue.stream().filter(e -> e.latch != null).forEach(e -> e.latch.countDown());
+        if(interrupted){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Starts writer thread if it is not running.
+     */
+    private synchronized void startThread(){
+        if(thread == null){
+            thread = new Thread(this::writeLoop, "whipper-error-writer-" + name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Main loop of writer thread.
+     */
+    private void writeLoop(){
+        List<Entry> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        try{
+            while(true){
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                boolean stop = false;
+                for(Entry e : batch){
+                    if(e == STOP){
+                        stop = true;
+                    } else if(e.latch != null){
+                        e.latch.countDown();
+                    } else {
+                        try{
+                            write(e);
+                        } catch (IOException | RuntimeException ex){
+                            LOG.error("Cannot write error file {}.", e.file, ex);
+                            synchronized(failures){
+                                failures.add(ex instanceof IOException ? (IOException)ex : new IOException(ex.getMessage(), ex));
+                            }
+                        }
+                    }
+                }
+                if(stop){
+                    return;
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException ex){
+            LOG.warn("Error writer {} has been interrupted.", name);
+            synchronized(this){
+                thread = null;
+            }
+            batch.stream().filter(e -> e.latch != null).forEach(e -> e.latch.countDown());
+            queue.stream().filter(e -> e.latch != null).forEach(e -> e.latch.countDown());
+        }
+    }
+
+    /**
+     * Writes file.
+     *
+     * @param e queued entry
+     * @throws IOException if some error occurs
+     */
+    private void write(Entry e) throws IOException{
+        File dir = e.file.getParentFile();
+        if(dir != null){
+            boolean created;
+            synchronized(createdDirs){
+                created = createdDirs.contains(dir);
+            }
+            if(!created){
+                if(!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()){
+                    throw new IOException("Cannot create directory " + dir);
+                }
+                // directory is remembered only once it exists, failed creation is retried
+                synchronized(createdDirs){
+                    createdDirs.add(dir);
+                }
+            }
+        }
+        try(FileChannel ch = FileChannel.open(e.file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                OutputStream out = Compression.forFileName(e.file.getName()).compress(Channels.newOutputStream(ch))){
+            e.content.writeTo(out);
+        }
+    }
+
+    /**
+     * Queued file or flush marker.
+     */
+    private static class Entry{
+        private final File file;
+        private final Content content;
+        private final CountDownLatch latch;
+
+        /**
+         * Creates new entry.
+         *
+         * @param file file
+         * @param content content of the file
+         * @param latch latch to release when all previous entries are written
+         */
+        private Entry(File file, Content content, CountDownLatch latch){
+            this.file = file;
+            this.content = content;
+            this.latch = latch;
+        }
+    }
+}
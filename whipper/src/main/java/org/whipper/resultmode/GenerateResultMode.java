@@ -5,6 +5,7 @@ import java.io.IOException;
 
 import org.whipper.Query;
 import org.whipper.WhipperProperties;
+import org.whipper.utils.Compression;
 import org.whipper.xml.XmlHelper;
 
 /**
@@ -15,6 +16,7 @@ import org.whipper.xml.XmlHelper;
 public class GenerateResultMode implements ResultMode {
 
     private File rootOutputDir;
+    private Compression compression = Compression.NONE;
 
     @Override
     public void destroy() {}
@@ -25,6 +27,7 @@ public class GenerateResultMode implements ResultMode {
         if(rootOutputDir == null){
             throw new IllegalArgumentException("Output directory is not defined.");
         }
+        compression = Compression.forName(props.getGenerateCompression());
     }
 
     @Override
@@ -50,7 +53,7 @@ public class GenerateResultMode implements ResultMode {
         } else if(!outputDir.exists() && !outputDir.mkdirs()){
             out.setException(new IOException("Cannot generate result: cannot create directory " + outputDir.getAbsolutePath()));
         } else {
-            File outputFile = new File(outputDir, q.getSuite().getId() + "_" + q.getId() + ".xml");
+            File outputFile = new File(outputDir, q.getSuite().getId() + "_" + q.getId() + ".xml" + compression.getExtension());
             try{
                 outputFile.createNewFile();
                 XmlHelper.writeResult(q, outputFile);
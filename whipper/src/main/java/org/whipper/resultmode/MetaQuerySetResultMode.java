@@ -2,6 +2,7 @@ package org.whipper.resultmode;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.Collections;
 
@@ -11,7 +12,9 @@ import org.whipper.ExpectedResultHolder;
 import org.whipper.Query;
 import org.whipper.QuerySet;
 import org.whipper.WhipperProperties;
+import org.whipper.utils.Compression;
 import org.whipper.xml.XmlHelper;
+import org.whipper.xml.error.QuerySetError;
 import org.whipper.xml.result.ObjectFactory;
 import org.whipper.xml.result.QueryResultType;
 
@@ -20,15 +23,13 @@ import org.whipper.xml.result.QueryResultType;
  */
 public class MetaQuerySetResultMode implements ResultMode{
 
-    private static final ExpectedResultHolder EMPTY = new ExpectedResultHolder();
-    private static final Logger LOG = LoggerFactory.getLogger(MetaQuerySetResultMode.class);
+    /**
+     * Suffix of aggregated error file of query set.
+     */
+    public static final String QUERY_SET_ERROR_SUFFIX = "_query_set_error.xml";
 
-    static{
-        ObjectFactory o = new ObjectFactory();
-        QueryResultType qrt = o.createQueryResultType();
-        qrt.setNoResult(o.createQueryResultTypeNoResult());
-        EMPTY.setOriginalResult(qrt);
-    }
+    private static final ObjectFactory OBJECT_FACTORY = new ObjectFactory();
+    private static final Logger LOG = LoggerFactory.getLogger(MetaQuerySetResultMode.class);
 
     private File outputDir;
     private final String scenario;
@@ -65,11 +66,7 @@ public class MetaQuerySetResultMode implements ResultMode{
             File errorFileXml = getErrorFile(q, q.getQuerySet().getMainId());
             try{
                 // TODO add information about main query set
-                if(!errorFileXml.exists()){
-                    errorFileXml.getParentFile().mkdirs();
-                    errorFileXml.createNewFile();
-                }
-                XmlHelper.writeError(q, EMPTY, errorFileXml, null);
+                writeError(q, errorFileXml);
             } catch (IOException ex){
                 out.setException(ex);
             }
@@ -79,25 +76,74 @@ public class MetaQuerySetResultMode implements ResultMode{
 
     /**
      * Writes error for main query set (e.g. if before_* meta query set failed).
+     * <p>
+     * All queries of the query set failed for the same reason, so only one aggregated
+     * error file with list of IDs of affected queries is written. The file is placed
+     * to the error directory of result mode of the queries.
      *
      * @param qs main query set
      */
     public void writeErrorsForMainQuerySet(QuerySet qs){
-        for(Query q : qs.getQueries()){
-            try{
-                File f = q.getResultMode().getErrorFile(q);
-                if(f == null){
-                    LOG.warn("Result mode {} does not support error files.", q.getResultMode().getName());
-                } else {
-                    if(!f.exists()){
-                        f.getParentFile().mkdirs();
-                        f.createNewFile();
-                    }
-                    XmlHelper.writeError(q, EMPTY, f, null);
+        if(qs.getQueries().isEmpty()){
+            return;
+        }
+        Query first = qs.getQueries().get(0);
+        File f = getQuerySetErrorFile(first);
+        if(f == null){
+            LOG.warn("Result mode {} does not support error files.", first.getResultMode().getName());
+            return;
+        }
+        String failure = first.getActualResult().isException()
+                ? first.getActualResult().getOriginalExceptionMessage()
+                : "Queries of query set " + qs.getId() + " have not been run.";
+        QuerySetError err = XmlHelper.createQuerySetError(qs, Collections.singletonList(failure));
+        try{
+            ErrorFileWriter writer = first.getScenario() == null ? null : first.getScenario().getErrorWriter();
+            if(writer != null){
+                writer.submit(f, out -> XmlHelper.writeError(err, out));
+            } else {
+                f.getParentFile().mkdirs();
+                try(OutputStream out = Compression.create(f)){
+                    XmlHelper.writeError(err, out);
                 }
-            } catch (IOException ex){
-                LOG.warn("Cannot write error for query {}", q.getId(), ex);
             }
+        } catch (IOException ex){
+            LOG.warn("Cannot write error for query set {}", qs.getId(), ex);
+        }
+    }
+
+    /**
+     * Returns aggregated error file of the query set of query {@code q}.
+     *
+     * @param q query
+     * @return error file or {@code null} if result mode of the query does not support error files
+     */
+    private File getQuerySetErrorFile(Query q){
+        File f = q.getResultMode().getErrorFile(q);
+        return f == null ? null : new File(f.getParentFile(),
+                q.getSuite().getId() + "_" + q.getQuerySet().getId() + QUERY_SET_ERROR_SUFFIX);
+    }
+
+    /**
+     * Writes error with empty expected result. File is written asynchronously
+     * by error writer of the scenario if it is available.
+     *
+     * @param q query
+     * @param f error file
+     * @throws IOException if some error occurs
+     */
+    private void writeError(Query q, File f) throws IOException{
+        // expected result is modified when error is created, so it cannot be shared
+        ExpectedResultHolder empty = new ExpectedResultHolder();
+        QueryResultType qrt = OBJECT_FACTORY.createQueryResultType();
+        qrt.setNoResult(OBJECT_FACTORY.createQueryResultTypeNoResult());
+        empty.setOriginalResult(qrt);
+        ErrorFileWriter writer = q.getScenario() == null ? null : q.getScenario().getErrorWriter();
+        if(writer != null){
+            writer.submitError(q, empty, f, null, null);
+        } else {
+            f.getParentFile().mkdirs();
+            XmlHelper.writeError(q, empty, f, null);
         }
     }
 
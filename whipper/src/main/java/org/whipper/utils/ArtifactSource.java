@@ -0,0 +1,123 @@
+package org.whipper.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+
+/**
+ * Source of artifacts (test queries and expected results).
+ * <p>
+ * Artifacts can be stored either in a directory or in a ZIP (JAR) archive. Archives
+ * are opened as NIO ZIP file system, so entries are read directly from the archive
+ * without extraction. All paths returned by this source belong to the file system
+ * of the source and are valid until the source is closed.
+ */
+public class ArtifactSource implements Closeable {
+
+    private static final String[] ARCHIVE_EXTENSIONS = {".zip", ".jar"};
+
+    private final Path root;
+    private final FileSystem fileSystem;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param root root of the artifacts
+     * @param fileSystem file system of the archive or {@code null} if artifacts are stored in directory
+     */
+    private ArtifactSource(Path root, FileSystem fileSystem) {
+        this.root = root;
+        this.fileSystem = fileSystem;
+    }
+
+    /**
+     * Opens artifacts. If {@code location} is a file, it is opened as a ZIP archive,
+     * otherwise it is treated as a directory.
+     *
+     * @param location directory or archive with artifacts
+     * @return artifact source
+     * @throws IOException if archive cannot be opened
+     */
+    public static ArtifactSource open(File location) throws IOException {
+        if (location.isFile()) {
+            FileSystem fs = FileSystems.newFileSystem(location.toPath(), (ClassLoader) null);
+            return new ArtifactSource(fs.getRootDirectories().iterator().next(), fs);
+        }
+        return directory(location);
+    }
+
+    /**
+     * Creates artifact source backed by directory.
+     *
+     * @param dir directory with artifacts
+     * @return artifact source
+     */
+    public static ArtifactSource directory(File dir) {
+        return new ArtifactSource(dir.toPath(), null);
+    }
+
+    /**
+     * Decides whether file name denotes an archive with artifacts.
+     *
+     * @param fileName name of the file
+     * @return {@code true} if file has extension of ZIP or JAR archive
+     */
+    public static boolean isArchive(String fileName) {
+        String lower = fileName.toLowerCase();
+        for (String ext : ARCHIVE_EXTENSIONS) {
+            if (lower.endsWith(ext)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns root of the artifacts.
+     *
+     * @return root path
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Resolves path relative to root of the artifacts. Empty and {@code null} names are ignored.
+     *
+     * @param names names of path elements
+     * @return resolved path
+     */
+    public Path resolve(String... names) {
+        Path out = root;
+        for (String n : names) {
+            if (n != null && !n.isEmpty()) {
+                out = out.resolve(n);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns {@code true} if artifacts are read from archive.
+     *
+     * @return whether this source is an archive
+     */
+    public boolean isArchive() {
+        return fileSystem != null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fileSystem != null) {
+            fileSystem.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return isArchive() ? fileSystem.toString() : root.toString();
+    }
+}
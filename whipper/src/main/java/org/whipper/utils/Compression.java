@@ -0,0 +1,233 @@
+package org.whipper.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of artifact and result files. Compression is determined by extension
+ * of the file (e.g. {@code suite.xml.gz}), so compressed files can be used
+ * everywhere where uncompressed files are expected.
+ * <p>
+ * Zstandard requires {@code com.github.luben:zstd-jni} on the class path.
+ */
+public enum Compression {
+
+    /**
+     * No compression.
+     */
+    NONE(""),
+    /**
+     * GZIP compression.
+     */
+    GZIP(".gz"),
+    /**
+     * Zstandard compression.
+     */
+    ZSTD(".zst");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String ZSTD_INPUT = "com.github.luben.zstd.ZstdInputStream";
+    private static final String ZSTD_OUTPUT = "com.github.luben.zstd.ZstdOutputStream";
+
+    private final String extension;
+
+    private Compression(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * Returns file extension of this compression (e.g. {@code .gz}).
+     *
+     * @return extension or empty string if there is no compression
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Returns compression of the file.
+     *
+     * @param fileName name of the file
+     * @return compression of the file
+     */
+    public static Compression forFileName(String fileName) {
+        for (Compression c : values()) {
+            if (c != NONE && fileName.endsWith(c.extension)) {
+                return c;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Returns compression by its name.
+     *
+     * @param name name of the compression (case insensitive) or {@code null}
+     * @return compression or {@link #NONE} if {@code name} is {@code null} or empty
+     * @throws IllegalArgumentException if compression is unknown
+     */
+    public static Compression forName(String name) throws IllegalArgumentException {
+        if (name == null || name.trim().isEmpty()) {
+            return NONE;
+        }
+        for (Compression c : values()) {
+            if (c.name().equalsIgnoreCase(name.trim())) {
+                return c;
+            }
+        }
+        throw new IllegalArgumentException("Unknown compression " + name);
+    }
+
+    /**
+     * Removes compression extension from file name.
+     *
+     * @param fileName name of the file
+     * @return name of the file without compression extension
+     */
+    public static String stripExtension(String fileName) {
+        Compression c = forFileName(fileName);
+        return fileName.substring(0, fileName.length() - c.extension.length());
+    }
+
+    /**
+     * Decides whether file (possibly compressed) has extension {@code ext}.
+     *
+     * @param fileName name of the file
+     * @param ext extension (e.g. {@code .xml})
+     * @return {@code true} if file name without compression extension ends with {@code ext}
+     */
+    public static boolean hasExtension(String fileName, String ext) {
+        return stripExtension(fileName).endsWith(ext);
+    }
+
+    /**
+     * Returns names of the file with all supported compression extensions.
+     *
+     * @param fileName name of uncompressed file
+     * @return names of the file (uncompressed first)
+     */
+    public static String[] allNames(String fileName) {
+        Compression[] cs = values();
+        String[] out = new String[cs.length];
+        for (int i = 0; i < cs.length; i++) {
+            out[i] = fileName + cs[i].extension;
+        }
+        return out;
+    }
+
+    /**
+     * Opens file for reading. Content of the file is decompressed according to its extension.
+     *
+     * @param f file
+     * @return input stream
+     * @throws IOException if some error occurs
+     */
+    public static InputStream open(File f) throws IOException {
+        return open(f.toPath());
+    }
+
+    /**
+     * Opens file for reading. Content of the file is decompressed according to its extension.
+     * File can belong to any file system (e.g. entry of ZIP archive).
+     *
+     * @param p path to the file
+     * @return input stream
+     * @throws IOException if some error occurs
+     */
+    public static InputStream open(Path p) throws IOException {
+        InputStream in = Files.newInputStream(p);
+        try {
+            return forFileName(p.getFileName().toString()).decompress(in);
+        } catch (IOException | RuntimeException ex) {
+            in.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Creates file for writing. Content is compressed according to extension of the file.
+     *
+     * @param f file
+     * @return output stream
+     * @throws IOException if some error occurs
+     */
+    public static OutputStream create(File f) throws IOException {
+        OutputStream out = new FileOutputStream(f);
+        try {
+            return forFileName(f.getName()).compress(out);
+        } catch (IOException | RuntimeException ex) {
+            out.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Wraps input stream with decompressing stream.
+     *
+     * @param in compressed input stream
+     * @return decompressed input stream
+     * @throws IOException if some error occurs
+     */
+    public InputStream decompress(InputStream in) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPInputStream(in, BUFFER_SIZE);
+            case ZSTD:
+                return new BufferedInputStream(zstd(ZSTD_INPUT, InputStream.class, in), BUFFER_SIZE);
+            default:
+                return new BufferedInputStream(in, BUFFER_SIZE);
+        }
+    }
+
+    /**
+     * Wraps output stream with compressing stream.
+     *
+     * @param out output stream
+     * @return compressing output stream
+     * @throws IOException if some error occurs
+     */
+    public OutputStream compress(OutputStream out) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPOutputStream(out, BUFFER_SIZE);
+            case ZSTD:
+                return new BufferedOutputStream(zstd(ZSTD_OUTPUT, OutputStream.class, out), BUFFER_SIZE);
+            default:
+                return new BufferedOutputStream(out, BUFFER_SIZE);
+        }
+    }
+
+    /**
+     * Creates Zstandard stream.
+     *
+     * @param className name of the stream class
+     * @param type type of the stream
+     * @param delegate underlying stream
+     * @return Zstandard stream
+     * @throws IOException if Zstandard is not available or stream cannot be created
+     */
+    private static <T> T zstd(String className, Class<T> type, T delegate) throws IOException {
+        try {
+            return type.cast(Class.forName(className).getConstructor(type).newInstance(delegate));
+        } catch (ClassNotFoundException ex) {
+            throw new IOException("Zstandard compression is not available. Add com.github.luben:zstd-jni to the class path.", ex);
+        } catch (InvocationTargetException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException("Cannot create Zstandard stream - " + ex.getCause(), ex.getCause());
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            throw new IOException("Cannot create Zstandard stream - " + ex.getMessage(), ex);
+        }
+    }
+}
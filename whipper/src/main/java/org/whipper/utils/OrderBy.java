@@ -0,0 +1,388 @@
+package org.whipper.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Top-level ORDER BY clause of the SQL query.
+ * <p>
+ * The query is scanned by a lightweight tokenizer which skips string literals,
+ * quoted identifiers, comments and anything nested in parentheses (i.e. subqueries
+ * and window functions), so only ORDER BY which orders the final result is found.
+ */
+public class OrderBy {
+
+    /**
+     * Ordering which cannot be resolved to any column. Results with this ordering
+     * are compared positionally.
+     */
+    public static final OrderBy POSITIONAL = new OrderBy(Collections.<String>emptyList());
+
+    private static final String[] TERMINATORS = {"LIMIT", "OFFSET", "FETCH", "OPTION", "FOR"};
+
+    private final List<String> sortItems;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param sortItems sort items (expressions) of the clause
+     */
+    private OrderBy(List<String> sortItems) {
+        this.sortItems = Collections.unmodifiableList(sortItems);
+    }
+
+    /**
+     * Finds top-level ORDER BY clause of the query.
+     *
+     * @param sql SQL query
+     * @return ORDER BY clause or {@code null} if query does not contain top-level ORDER BY
+     */
+    public static OrderBy parse(String sql) {
+        if (sql == null) {
+            return null;
+        }
+        List<Token> tokens = tokenize(sql);
+        int by = -1;
+        for (int i = tokens.size() - 2; i >= 0; i--) {
+            if (tokens.get(i).isKeyword("ORDER") && tokens.get(i + 1).isKeyword("BY")) {
+                by = i + 1;
+                break;
+            }
+        }
+        if (by < 0) {
+            return null;
+        }
+        List<String> items = new ArrayList<>();
+        StringBuilder item = new StringBuilder();
+        for (int i = by + 1; i < tokens.size(); i++) {
+            Token t = tokens.get(i);
+            if (t.isTerminator()) {
+                break;
+            }
+            if (t.depth == 0 && ",".equals(t.text)) {
+                addItem(items, item);
+            } else {
+                if (item.length() != 0) {
+                    item.append(' ');
+                }
+                item.append(t.text);
+            }
+        }
+        addItem(items, item);
+        return new OrderBy(items);
+    }
+
+    /**
+     * Returns sort items (expressions without ASC/DESC and NULLS FIRST/LAST).
+     *
+     * @return sort items
+     */
+    public List<String> getSortItems() {
+        return sortItems;
+    }
+
+    /**
+     * Resolves sort items to column indexes.
+     * <p>
+     * Sort item can be either a column position or a (qualified) column name
+     * which matches exactly one column label.
+     *
+     * @param columnLabels labels of the result columns
+     * @return zero-based indexes of sort columns or {@code null} if
+     *      any of the sort items cannot be resolved
+     */
+    public int[] resolve(List<String> columnLabels) {
+        if (sortItems.isEmpty() || columnLabels == null) {
+            return null;
+        }
+        int[] out = new int[sortItems.size()];
+        for (int i = 0; i < out.length; i++) {
+            int idx = resolve(sortItems.get(i), columnLabels);
+            if (idx < 0) {
+                return null;
+            }
+            out[i] = idx;
+        }
+        return out;
+    }
+
+    /**
+     * Resolves single sort item.
+     *
+     * @param item sort item
+     * @param columnLabels column labels
+     * @return zero-based column index or {@code -1}
+     */
+    private static int resolve(String item, List<String> columnLabels) {
+        if (isNumber(item)) {
+            try {
+                int pos = Integer.parseInt(item);
+                return pos >= 1 && pos <= columnLabels.size() ? pos - 1 : -1;
+            } catch (NumberFormatException ex) {
+                return -1;
+            }
+        }
+        String name = item;
+        int dot = lastUnquotedDot(name);
+        if (dot >= 0) {
+            name = name.substring(dot + 1).trim();
+        }
+        name = unquote(name);
+        if (name == null) {
+            return -1;
+        }
+        int found = -1;
+        for (int i = 0; i < columnLabels.size(); i++) {
+            if (name.equalsIgnoreCase(columnLabels.get(i))) {
+                if (found >= 0) {
+                    return -1; // ambiguous
+                }
+                found = i;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns index of the last dot outside of quoted identifier.
+     *
+     * @param name qualified name
+     * @return index of the dot or {@code -1}
+     */
+    private static int lastUnquotedDot(String name) {
+        char quote = 0;
+        int out = -1;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '`') {
+                quote = c;
+            } else if (c == '[') {
+                quote = ']';
+            } else if (c == '.') {
+                out = i;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Removes quotes from the identifier.
+     *
+     * @param name identifier
+     * @return unquoted identifier or {@code null} if {@code name} is not a simple identifier
+     */
+    private static String unquote(String name) {
+        if (name.length() >= 2) {
+            char f = name.charAt(0);
+            char l = name.charAt(name.length() - 1);
+            if ((f == '"' && l == '"') || (f == '`' && l == '`') || (f == '[' && l == ']')) {
+                return name.substring(1, name.length() - 1);
+            }
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '$') {
+                return null;
+            }
+        }
+        return name.isEmpty() ? null : name;
+    }
+
+    /**
+     * Adds item to the list. Removes ordering and null ordering specification.
+     *
+     * @param items list of items
+     * @param item item
+     */
+    private static void addItem(List<String> items, StringBuilder item) {
+        String str = item.toString();
+        item.setLength(0);
+        String upper = str.toUpperCase(Locale.ROOT);
+        for (String suffix : new String[]{" NULLS FIRST", " NULLS LAST"}) {
+            if (upper.endsWith(suffix)) {
+                str = str.substring(0, str.length() - suffix.length());
+                upper = upper.substring(0, upper.length() - suffix.length());
+            }
+        }
+        for (String suffix : new String[]{" ASC", " DESC"}) {
+            if (upper.endsWith(suffix)) {
+                str = str.substring(0, str.length() - suffix.length());
+            }
+        }
+        if (!str.isEmpty()) {
+            items.add(str);
+        }
+    }
+
+    /**
+     * Decides whether string consists of digits only.
+     *
+     * @param str string
+     * @return {@code true} if {@code str} is non-empty and contains only digits
+     */
+    private static boolean isNumber(String str) {
+        if (str.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < str.length(); i++) {
+            if (!Character.isDigit(str.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splits SQL query to tokens. Comments are skipped, string literals and quoted
+     * identifiers are single tokens. Qualified names (e.g. {@code t."c"}) are joined
+     * to a single token.
+     *
+     * @param sql SQL query
+     * @return list of tokens
+     */
+    private static List<Token> tokenize(String sql) {
+        List<Token> out = new ArrayList<>();
+        int depth = 0;
+        int i = 0;
+        int len = sql.length();
+        while (i < len) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '-' && i + 1 < len && sql.charAt(i + 1) == '-') {
+                while (i < len && sql.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '/' && i + 1 < len && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? len : end + 2;
+            } else if (c == '(') {
+                out.add(new Token("(", depth++, false));
+                i++;
+            } else if (c == ')') {
+                depth = Math.max(0, depth - 1);
+                out.add(new Token(")", depth, false));
+                i++;
+            } else if (c == '\'') {
+                int end = skipQuoted(sql, i, '\'');
+                out.add(new Token(sql.substring(i, end), depth, false));
+                i = end;
+            } else if (isNamePart(c) || c == '"' || c == '`' || c == '[') {
+                int start = i;
+                boolean next = true;
+                while (next) {
+                    char x = sql.charAt(i);
+                    if (x == '"' || x == '`') {
+                        i = skipQuoted(sql, i, x);
+                    } else if (x == '[') {
+                        int end = sql.indexOf(']', i);
+                        i = end < 0 ? len : end + 1;
+                    } else {
+                        while (i < len && isNamePart(sql.charAt(i))) {
+                            i++;
+                        }
+                    }
+                    next = i + 1 < len && sql.charAt(i) == '.' && i > start;
+                    if (next) {
+                        i++; // dot
+                    }
+                }
+                out.add(new Token(sql.substring(start, i), depth, true));
+            } else {
+                out.add(new Token(String.valueOf(c), depth, false));
+                i++;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns index right after the quoted sequence (quotes are escaped by doubling).
+     *
+     * @param sql SQL query
+     * @param start index of the opening quote
+     * @param quote quote character
+     * @return end of quoted sequence (exclusive)
+     */
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Decides whether character can be part of unquoted name or number.
+     *
+     * @param c character
+     * @return {@code true} if {@code c} is part of name or number
+     */
+    private static boolean isNamePart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#' || c == '@';
+    }
+
+    @Override
+    public String toString() {
+        return "ORDER BY " + String.join(", ", sortItems);
+    }
+
+    /**
+     * Single token of the SQL query.
+     */
+    private static class Token {
+        private final String text;
+        private final int depth;
+        private final boolean word;
+
+        private Token(String text, int depth, boolean word) {
+            this.text = text;
+            this.depth = depth;
+            this.word = word;
+        }
+
+        /**
+         * Decides whether this token is a top-level keyword.
+         *
+         * @param keyword keyword in upper case
+         * @return {@code true} if this token is top-level {@code keyword}
+         */
+        private boolean isKeyword(String keyword) {
+            return depth == 0 && word && keyword.equalsIgnoreCase(text);
+        }
+
+        /**
+         * Decides whether this token terminates ORDER BY clause.
+         *
+         * @return {@code true} if this is end of ORDER BY clause
+         */
+        private boolean isTerminator() {
+            if (depth != 0) {
+                return false;
+            }
+            if (";".equals(text)) {
+                return true;
+            }
+            for (String t : TERMINATORS) {
+                if (isKeyword(t)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -1,40 +1,138 @@
 package org.whipper.utils;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
 
 /**
  * Class to find expected results file in a list of directories
  */
 public class OverrideFileSelector {
-    private List<File> directories = new ArrayList<>();
+    private List<Path> directories = new ArrayList<>();
+    private Function<Path, Set<String>> listing;
 
     /**
      * @param directories
      *            list of directories containing expected results
      */
     public OverrideFileSelector(List<File> directories) {
-        this.directories = directories;
+        for (File dir : directories) {
+            this.directories.add(dir.toPath());
+        }
         Collections.reverse(this.directories);
     }
 
+    /**
+     * Private constructor for {@link #forPaths(List)}.
+     */
+    private OverrideFileSelector() {
+    }
+
+    /**
+     * Creates selector for list of directories which can belong to any file system
+     * (e.g. directories in ZIP archive).
+     *
+     * @param directories
+     *            list of directories containing expected results
+     * @return new selector
+     */
+    public static OverrideFileSelector forPaths(List<Path> directories) {
+        OverrideFileSelector out = new OverrideFileSelector();
+        out.directories.addAll(directories);
+        Collections.reverse(out.directories);
+        return out;
+    }
+
+    /**
+     * Creates selector for list of directories which can belong to any file system.
+     * Files are looked up in listings of the directories instead of file system.
+     *
+     * @param directories
+     *            list of directories containing expected results
+     * @param listing
+     *            function which returns names of files in the directory
+     *            or {@code null} if it is not a directory
+     * @return new selector
+     */
+    public static OverrideFileSelector forPaths(List<Path> directories, Function<Path, Set<String>> listing) {
+        OverrideFileSelector out = forPaths(directories);
+        out.listing = listing;
+        return out;
+    }
+
     /**
      * This method finds expected results file in a list of directories
-     * 
+     *
      * @param filename
      *            name of file
      * @return found file or null if no file was found
      */
     public File getExpectedResultFile(String filename) {
-        File file;
-        for (File dir : directories) {
-            file = new File(dir, filename);
-            if (file.isFile()) {
+        return getExpectedResultFile(filename, new String[0]);
+    }
+
+    /**
+     * This method finds expected results file in a list of directories.
+     * Within each directory, {@code filename} is preferred over its alternatives.
+     *
+     * @param filename
+     *            name of file
+     * @param alternatives
+     *            alternative names of file
+     * @return found file or null if no file was found
+     * @throws UnsupportedOperationException
+     *             if directories do not belong to default file system
+     */
+    public File getExpectedResultFile(String filename, String... alternatives) {
+        Path p = getExpectedResultPath(filename, alternatives);
+        return p == null ? null : p.toFile();
+    }
+
+    /**
+     * This method finds expected results file in a list of directories.
+     * Within each directory, {@code filename} is preferred over its alternatives.
+     *
+     * @param filename
+     *            name of file
+     * @param alternatives
+     *            alternative names of file
+     * @return path to found file or null if no file was found
+     */
+    public Path getExpectedResultPath(String filename, String... alternatives) {
+        Path file;
+        for (Path dir : directories) {
+            file = dir.resolve(filename);
+            if (exists(file)) {
                 return file;
             }
+            for (String alt : alternatives) {
+                file = dir.resolve(alt);
+                if (exists(file)) {
+                    return file;
+                }
+            }
         }
         return null;
     }
-}
\ No newline at end of file
+
+    /**
+     * Checks whether file exists. If listing is set, file is looked up in
+     * the listing of its parent directory.
+     *
+     * @param file
+     *            file
+     * @return {@code true} if file exists and it is a regular file
+     */
+    private boolean exists(Path file) {
+        if (listing == null) {
+            return Files.isRegularFile(file);
+        }
+        Set<String> files = listing.apply(file.getParent());
+        return files != null && files.contains(file.getFileName().toString());
+    }
+}
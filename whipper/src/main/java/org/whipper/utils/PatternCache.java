@@ -0,0 +1,185 @@
+package org.whipper.utils;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded cache of compiled regular expressions shared by all loaded expected results.
+ * <p>
+ * Patterns are keyed by their source and flags. When the cache grows over its
+ * maximum size, a quarter of the entries is dropped.
+ */
+public final class PatternCache {
+
+    /**
+     * Default maximum number of cached patterns.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private static final ConcurrentMap<Key, Pattern> CACHE = new ConcurrentHashMap<>();
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder EVICTIONS = new LongAdder();
+    private static volatile int maxSize = DEFAULT_MAX_SIZE;
+
+    private PatternCache() {
+    }
+
+    /**
+     * Returns compiled pattern.
+     *
+     * @param regex regular expression
+     * @return compiled pattern
+     * @see Pattern#compile(String)
+     */
+    public static Pattern compile(String regex) {
+        return compile(regex, 0);
+    }
+
+    /**
+     * Returns compiled pattern with given flags.
+     *
+     * @param regex regular expression
+     * @param flags match flags
+     * @return compiled pattern
+     * @see Pattern#compile(String, int)
+     */
+    public static Pattern compile(String regex, int flags) {
+        Key k = new Key(regex, flags);
+        Pattern p = CACHE.get(k);
+        if (p != null) {
+            HITS.increment();
+            return p;
+        }
+        MISSES.increment();
+        p = Pattern.compile(regex, flags);
+        if (maxSize > 0) {
+            if (CACHE.size() >= maxSize) {
+                evict();
+            }
+            Pattern old = CACHE.putIfAbsent(k, p);
+            if (old != null) {
+                return old;
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Drops a quarter of cached patterns.
+     */
+    private static void evict() {
+        int toRemove = Math.max(1, CACHE.size() / 4);
+        Iterator<Key> iter = CACHE.keySet().iterator();
+        while (toRemove > 0 && iter.hasNext()) {
+            iter.next();
+            iter.remove();
+            EVICTIONS.increment();
+            toRemove--;
+        }
+    }
+
+    /**
+     * Sets maximum number of cached patterns. Zero disables caching.
+     *
+     * @param size maximum size
+     */
+    public static void setMaxSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Cache size cannot be negative - " + size);
+        }
+        maxSize = size;
+        while (CACHE.size() > size) {
+            evict();
+        }
+    }
+
+    /**
+     * Removes all patterns and resets metrics.
+     */
+    public static void clear() {
+        CACHE.clear();
+        HITS.reset();
+        MISSES.reset();
+        EVICTIONS.reset();
+    }
+
+    /**
+     * Returns number of cache hits.
+     *
+     * @return cache hits
+     */
+    public static long getHits() {
+        return HITS.sum();
+    }
+
+    /**
+     * Returns number of cache misses (i.e. compiled patterns).
+     *
+     * @return cache misses
+     */
+    public static long getMisses() {
+        return MISSES.sum();
+    }
+
+    /**
+     * Returns number of evicted patterns.
+     *
+     * @return evictions
+     */
+    public static long getEvictions() {
+        return EVICTIONS.sum();
+    }
+
+    /**
+     * Returns number of cached patterns.
+     *
+     * @return size of the cache
+     */
+    public static int size() {
+        return CACHE.size();
+    }
+
+    /**
+     * Returns human readable statistics of the cache.
+     *
+     * @return statistics
+     */
+    public static String getStatistics() {
+        return "size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions();
+    }
+
+    /**
+     * Key of the cache.
+     */
+    private static final class Key {
+        private final String regex;
+        private final int flags;
+
+        private Key(String regex, int flags) {
+            this.regex = Objects.requireNonNull(regex, "regex");
+            this.flags = flags;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * regex.hashCode() + flags;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return flags == other.flags && regex.equals(other.regex);
+        }
+    }
+}
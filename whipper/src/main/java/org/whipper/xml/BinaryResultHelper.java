@@ -0,0 +1,679 @@
+package org.whipper.xml;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.whipper.ExpectedResultHolder;
+import org.whipper.Query;
+import org.whipper.xml.result.ObjectFactory;
+import org.whipper.xml.result.QueryException;
+import org.whipper.xml.result.QueryResultType;
+import org.whipper.xml.result.Result;
+import org.whipper.xml.result.Select;
+import org.whipper.xml.result.Table;
+import org.whipper.xml.result.Update;
+
+/**
+ * Helper class for reading and writing expected results in compact binary format.
+ * <p>
+ * Binary file holds the same information as XML result file. It starts with a header
+ * (magic number, version, kind of the result and its scalar values). Table is stored
+ * in blocks of rows. Each block is compressed independently and stores its cells
+ * column by column - first type tags of all cells of the column, then explicit
+ * element names and finally length-prefixed values. Files are read through
+ * memory-mapped {@link FileChannel}.
+ */
+public class BinaryResultHelper {
+
+    /**
+     * Extension of binary result files.
+     */
+    public static final String EXTENSION = ".wrb";
+
+    private static final int MAGIC = 0x57524231; // WRB1
+    private static final int VERSION = 1;
+    private static final int ROWS_PER_BLOCK = 4096;
+
+    private static final byte KIND_NO_RESULT = 0;
+    private static final byte KIND_UPDATE = 1;
+    private static final byte KIND_EXCEPTION = 2;
+    private static final byte KIND_TABLE = 3;
+    private static final byte KIND_SQL = 4;
+
+    private static final byte CELL_NULL = 0;
+    private static final byte CELL_COLUMN_TYPE = 1;
+    private static final byte CELL_UNPRINTABLE = 2;
+    private static final byte CELL_OTHER = 3;
+
+    private static final ObjectFactory RESULT_OBJECT_FACTORY = new ObjectFactory();
+
+    /**
+     * Decides whether file is a binary result file.
+     *
+     * @param f file
+     * @return {@code true} if {@code f} has binary result extension
+     */
+    public static boolean isBinaryResult(File f){
+        return f != null && isBinaryResult(f.toPath());
+    }
+
+    /**
+     * Decides whether file is a binary result file.
+     *
+     * @param f path to the file
+     * @return {@code true} if {@code f} has binary result extension
+     */
+    public static boolean isBinaryResult(Path f){
+        return f != null && f.getFileName() != null && f.getFileName().toString().endsWith(EXTENSION);
+    }
+
+    /**
+     * Loads result from binary file and stores it in expected result holder.
+     * Original (XML) result is created only if it is requested.
+     *
+     * @param f binary file with result
+     * @param erh expected result holder where result will be stored
+     * @param q original query
+     * @throws IOException if some error occurs
+     */
+    public static void loadResult(File f, ExpectedResultHolder erh, Query q) throws IOException{
+        loadResult(f.toPath(), erh, q);
+    }
+
+    /**
+     * Loads result from binary file and stores it in expected result holder.
+     * File can belong to any file system (e.g. entry of ZIP archive).
+     *
+     * @param f binary file with result
+     * @param erh expected result holder where result will be stored
+     * @param q original query
+     * @throws IOException if some error occurs
+     */
+    public static void loadResult(Path f, ExpectedResultHolder erh, Query q) throws IOException{
+        ResultData data = read(f);
+        erh.setOriginalResultSupplier(() -> {
+            try{
+                return toXml(read(f)).getQueryResult();
+            } catch (IOException ex){
+                throw new UncheckedIOException(ex);
+            }
+        });
+        switch(data.kind){
+            case KIND_UPDATE:
+                erh.setUpdateCount(data.updateCount);
+                break;
+            case KIND_EXCEPTION:
+                erh.setExceptionClass(data.exception[0]);
+                erh.setExceptionMessage(data.exception[2]);
+                erh.setExceptionRegex(data.exception[3]);
+                break;
+            case KIND_TABLE:
+                List<List<Object>> rows = new ArrayList<>(data.values.length);
+                for(int r = 0; r < data.values.length; r++){
+                    List<Object> row = new ArrayList<>(data.labels.size());
+                    for(int c = 0; c < data.labels.size(); c++){
+                        String tag = data.tags[r][c];
+                        row.add(tag == null ? null : XmlHelper.getCellValue(tag, data.values[r][c]));
+                    }
+                    rows.add(row);
+                }
+                erh.setColumnLabels(data.labels);
+                erh.setColumnTypeNames(data.types);
+                erh.setRows(rows);
+                break;
+            case KIND_SQL:
+                XmlHelper.loadSqlResult(data.sql, erh, q);
+                break;
+            default:
+                // no-result
+        }
+    }
+
+    /**
+     * Reads binary result file and converts it to XML result.
+     *
+     * @param f binary file with result
+     * @return result
+     * @throws IOException if some error occurs
+     */
+    public static Result readResult(File f) throws IOException{
+        return toXml(read(f.toPath()));
+    }
+
+    /**
+     * Writes result to binary file.
+     *
+     * @param res result
+     * @param out output file
+     * @throws IOException if result is not valid or some error occurs
+     */
+    public static void writeResult(Result res, File out) throws IOException{
+        write(fromXml(res), out);
+    }
+
+    /**
+     * Converts XML result file to binary result file and verifies that
+     * the binary file holds the same result.
+     *
+     * @param xml XML file with result
+     * @param out output binary file
+     * @throws IOException if some error occurs or verification fails
+     */
+    public static void convert(File xml, File out) throws IOException{
+        ResultData original = fromXml(XmlHelper.readResult(xml));
+        write(original, out);
+        if(!original.equals(read(out.toPath()))){
+            out.delete();
+            throw new IOException("Binary result " + out + " does not match XML result " + xml);
+        }
+    }
+
+    /**
+     * Converts XML result to internal representation.
+     *
+     * @param res XML result
+     * @return result data
+     * @throws IOException if result is not valid
+     */
+    private static ResultData fromXml(Result res) throws IOException{
+        QueryResultType qr = res.getQueryResult();
+        if(qr == null){
+            throw new IOException("Result file does not contain query result.");
+        }
+        ResultData d = new ResultData();
+        d.query = res.getQuery();
+        d.name = qr.getName();
+        if(qr.getUpdate() != null){
+            d.kind = KIND_UPDATE;
+            d.updateCount = qr.getUpdate().getUpdateCount();
+        } else if(qr.getException() != null){
+            QueryException ex = qr.getException();
+            d.kind = KIND_EXCEPTION;
+            d.exception = new String[]{ex.getClazz(), ex.getType(), ex.getMessage(), ex.getMessageRegex(), ex.getStackTrace()};
+        } else if(qr.getSelect() != null){
+            Select s = qr.getSelect();
+            Table t = qr.getTable();
+            if(t == null || s.getDataElement().size() != t.getColumnCount()){
+                throw new IOException("Number of data elements in select is not equal to expected column count.");
+            }
+            if(t.getTableRow().size() != t.getRowCount()){
+                throw new IOException("Number of table rows is not equal to expected row count " + t.getRowCount());
+            }
+            d.kind = KIND_TABLE;
+            d.labels = new ArrayList<>(t.getColumnCount());
+            d.types = new ArrayList<>(t.getColumnCount());
+            for(Select.DataElement de : s.getDataElement()){
+                d.labels.add(de.getValue());
+                d.types.add(de.getType());
+            }
+            d.tags = new String[t.getTableRow().size()][];
+            d.values = new String[t.getTableRow().size()][];
+            int r = 0;
+            for(Table.TableRow tr : t.getTableRow()){
+                if(tr.getTableCell().size() != t.getColumnCount()){
+                    throw new IOException("Number of cells is not equal to expected column count " + t.getColumnCount());
+                }
+                d.tags[r] = new String[t.getColumnCount()];
+                d.values[r] = new String[t.getColumnCount()];
+                int c = 0;
+                for(Table.TableRow.TableCell tc : tr.getTableCell()){
+                    d.tags[r][c] = XmlHelper.getCellTagName(tc.getAny());
+                    d.values[r][c] = d.tags[r][c] == null ? null : XmlHelper.getCellData(tc.getAny());
+                    c++;
+                }
+                r++;
+            }
+        } else if(qr.getSql() != null){
+            d.kind = KIND_SQL;
+            d.sql = qr.getSql();
+        } else if(qr.getNoResult() != null){
+            d.kind = KIND_NO_RESULT;
+        } else {
+            throw new IOException("Unknown result file format.");
+        }
+        return d;
+    }
+
+    /**
+     * Converts internal representation to XML result.
+     *
+     * @param d result data
+     * @return XML result
+     */
+    private static Result toXml(ResultData d){
+        QueryResultType qr = RESULT_OBJECT_FACTORY.createQueryResultType();
+        qr.setName(d.name);
+        switch(d.kind){
+            case KIND_UPDATE:
+                Update u = RESULT_OBJECT_FACTORY.createUpdate();
+                u.setUpdateCount(d.updateCount);
+                qr.setUpdate(u);
+                break;
+            case KIND_EXCEPTION:
+                QueryException ex = RESULT_OBJECT_FACTORY.createQueryException();
+                ex.setClazz(d.exception[0]);
+                ex.setType(d.exception[1]);
+                ex.setMessage(d.exception[2]);
+                ex.setMessageRegex(d.exception[3]);
+                ex.setStackTrace(d.exception[4]);
+                qr.setException(ex);
+                break;
+            case KIND_TABLE:
+                Select s = RESULT_OBJECT_FACTORY.createSelect();
+                for(int i = 0; i < d.labels.size(); i++){
+                    Select.DataElement de = RESULT_OBJECT_FACTORY.createSelectDataElement();
+                    de.setType(d.types.get(i));
+                    de.setValue(d.labels.get(i));
+                    s.getDataElement().add(de);
+                }
+                qr.setSelect(s);
+                Table t = RESULT_OBJECT_FACTORY.createTable();
+                t.setColumnCount(d.labels.size());
+                t.setRowCount((long)d.values.length);
+                for(int r = 0; r < d.values.length; r++){
+                    Table.TableRow tr = RESULT_OBJECT_FACTORY.createTableTableRow();
+                    for(int c = 0; c < d.labels.size(); c++){
+                        Table.TableRow.TableCell tc = RESULT_OBJECT_FACTORY.createTableTableRowTableCell();
+                        if(d.tags[r][c] != null){
+                            tc.setAny(XmlHelper.createCellElement(d.tags[r][c], d.values[r][c]));
+                        }
+                        tr.getTableCell().add(tc);
+                    }
+                    t.getTableRow().add(tr);
+                }
+                qr.setTable(t);
+                break;
+            case KIND_SQL:
+                qr.setSql(d.sql);
+                break;
+            default:
+                qr.setNoResult(RESULT_OBJECT_FACTORY.createQueryResultTypeNoResult());
+        }
+        Result res = RESULT_OBJECT_FACTORY.createResult();
+        res.setQuery(d.query);
+        res.setQueryResult(qr);
+        return res;
+    }
+
+    /**
+     * Writes result data to binary file.
+     *
+     * @param d result data
+     * @param out output file
+     * @throws IOException if some error occurs
+     */
+    private static void write(ResultData d, File out) throws IOException{
+        try(DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(out)))){
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            dos.writeByte(d.kind);
+            writeString(dos, d.query);
+            writeString(dos, d.name);
+            switch(d.kind){
+                case KIND_UPDATE:
+                    dos.writeInt(d.updateCount);
+                    break;
+                case KIND_EXCEPTION:
+                    for(String s : d.exception){
+                        writeString(dos, s);
+                    }
+                    break;
+                case KIND_TABLE:
+                    writeTable(dos, d);
+                    break;
+                case KIND_SQL:
+                    writeString(dos, d.sql);
+                    break;
+                default:
+                    // no-result
+            }
+        }
+    }
+
+    /**
+     * Writes table.
+     *
+     * @param dos output stream
+     * @param d result data
+     * @throws IOException if some error occurs
+     */
+    private static void writeTable(DataOutputStream dos, ResultData d) throws IOException{
+        int columns = d.labels.size();
+        int rows = d.values.length;
+        dos.writeInt(columns);
+        dos.writeInt(rows);
+        for(int c = 0; c < columns; c++){
+            writeString(dos, d.labels.get(c));
+            writeString(dos, d.types.get(c));
+        }
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        DataOutputStream block = new DataOutputStream(raw);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[] buff = new byte[8192];
+        try{
+            for(int start = 0; start < rows; start += ROWS_PER_BLOCK){
+                int end = Math.min(rows, start + ROWS_PER_BLOCK);
+                raw.reset();
+                for(int c = 0; c < columns; c++){
+                    String type = d.types.get(c);
+                    for(int r = start; r < end; r++){
+                        block.writeByte(getCellCode(d.tags[r][c], type));
+                    }
+                    for(int r = start; r < end; r++){
+                        if(getCellCode(d.tags[r][c], type) == CELL_OTHER){
+                            writeVarString(block, d.tags[r][c]);
+                        }
+                    }
+                    for(int r = start; r < end; r++){
+                        if(d.tags[r][c] != null){
+                            writeVarString(block, d.values[r][c]);
+                        }
+                    }
+                }
+                block.flush();
+                byte[] in = raw.toByteArray();
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(in.length / 4 + 16);
+                deflater.reset();
+                deflater.setInput(in);
+                deflater.finish();
+                while(!deflater.finished()){
+                    int n = deflater.deflate(buff);
+                    compressed.write(buff, 0, n);
+                }
+                dos.writeInt(end - start);
+                dos.writeInt(in.length);
+                dos.writeInt(compressed.size());
+                compressed.writeTo(dos);
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Returns code of the cell.
+     *
+     * @param tag name of the cell element
+     * @param columnType type of the column
+     * @return cell code
+     */
+    private static byte getCellCode(String tag, String columnType){
+        if(tag == null){
+            return CELL_NULL;
+        } else if(tag.equals(columnType)){
+            return CELL_COLUMN_TYPE;
+        } else if(XmlHelper.TYPE_UNPRINTABLE.equals(tag)){
+            return CELL_UNPRINTABLE;
+        }
+        return CELL_OTHER;
+    }
+
+    /**
+     * Reads binary result file. Files on default file system are memory-mapped,
+     * other files (e.g. entries of ZIP archive) are read to memory.
+     *
+     * @param f binary result file
+     * @return result data
+     * @throws IOException if file is malformed or some error occurs
+     */
+    private static ResultData read(Path f) throws IOException{
+        try(FileChannel ch = f.getFileSystem() == FileSystems.getDefault() ? FileChannel.open(f, StandardOpenOption.READ) : null){
+            ByteBuffer buf = ch == null ? ByteBuffer.wrap(Files.readAllBytes(f)) : ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if(buf.remaining() < 9 || buf.getInt() != MAGIC){
+                throw new IOException("File " + f + " is not a binary result file.");
+            }
+            int version = buf.getInt();
+            if(version != VERSION){
+                throw new IOException("Unsupported version " + version + " of binary result file " + f);
+            }
+            ResultData d = new ResultData();
+            d.kind = buf.get();
+            d.query = readString(buf);
+            d.name = readString(buf);
+            switch(d.kind){
+                case KIND_UPDATE:
+                    d.updateCount = buf.getInt();
+                    break;
+                case KIND_EXCEPTION:
+                    d.exception = new String[5];
+                    for(int i = 0; i < d.exception.length; i++){
+                        d.exception[i] = readString(buf);
+                    }
+                    break;
+                case KIND_TABLE:
+                    readTable(buf, d);
+                    break;
+                case KIND_SQL:
+                    d.sql = readString(buf);
+                    break;
+                case KIND_NO_RESULT:
+                    break;
+                default:
+                    throw new IOException("Unknown result kind " + d.kind);
+            }
+            return d;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException | DataFormatException ex){
+            throw new IOException("Malformed binary result file " + f + " - " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Reads table.
+     *
+     * @param buf input buffer
+     * @param d result data
+     * @throws IOException if some error occurs
+     * @throws DataFormatException if block is malformed
+     */
+    private static void readTable(ByteBuffer buf, ResultData d) throws IOException, DataFormatException{
+        int columns = buf.getInt();
+        int rows = buf.getInt();
+        if(columns < 0 || rows < 0){
+            throw new DataFormatException("Negative size of the table.");
+        }
+        d.labels = new ArrayList<>(columns);
+        d.types = new ArrayList<>(columns);
+        for(int c = 0; c < columns; c++){
+            d.labels.add(readString(buf));
+            d.types.add(readString(buf));
+        }
+        d.tags = new String[rows][columns];
+        d.values = new String[rows][columns];
+        Inflater inflater = new Inflater();
+        try{
+            int start = 0;
+            while(start < rows){
+                int count = buf.getInt();
+                int rawLength = buf.getInt();
+                int compressedLength = buf.getInt();
+                // corrupt count would loop forever or overflow the table
+                if(count <= 0 || count > rows - start){
+                    throw new DataFormatException("Invalid number of rows in block " + count);
+                }
+                if(rawLength < 0 || compressedLength < 0 || compressedLength > buf.remaining()){
+                    throw new DataFormatException("Invalid length of block.");
+                }
+                byte[] raw = new byte[rawLength];
+                byte[] compressed = new byte[compressedLength];
+                buf.get(compressed);
+                inflater.reset();
+                inflater.setInput(compressed);
+                int n = 0;
+                while(n < raw.length && !inflater.finished()){
+                    int read = inflater.inflate(raw, n, raw.length - n);
+                    if(read == 0 && (inflater.needsInput() || inflater.needsDictionary())){
+                        throw new DataFormatException("Truncated block.");
+                    }
+                    n += read;
+                }
+                // block must inflate to exactly the declared length - zero-filled rest would be read as null cells
+                if(n == raw.length && !inflater.finished() && inflater.inflate(new byte[1]) > 0){
+                    throw new DataFormatException("Block is longer than declared length " + rawLength);
+                }
+                if(n != raw.length || !inflater.finished()){
+                    throw new DataFormatException("Truncated block - inflated " + n + " of " + rawLength + " bytes.");
+                }
+                ByteBuffer block = ByteBuffer.wrap(raw);
+                int end = start + count;
+                byte[] codes = new byte[count];
+                for(int c = 0; c < columns; c++){
+                    String type = d.types.get(c);
+                    block.get(codes);
+                    for(int r = start; r < end; r++){
+                        byte code = codes[r - start];
+                        if(code == CELL_COLUMN_TYPE){
+                            d.tags[r][c] = type;
+                        } else if(code == CELL_UNPRINTABLE){
+                            d.tags[r][c] = XmlHelper.TYPE_UNPRINTABLE;
+                        } else if(code == CELL_OTHER){
+                            d.tags[r][c] = readVarString(block);
+                        } else if(code != CELL_NULL){
+                            throw new IOException("Unknown cell code " + code);
+                        }
+                    }
+                    for(int r = start; r < end; r++){
+                        if(d.tags[r][c] != null){
+                            d.values[r][c] = readVarString(block);
+                        }
+                    }
+                }
+                start = end;
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Writes nullable string prefixed by its length.
+     *
+     * @param dos output stream
+     * @param s string
+     * @throws IOException if some error occurs
+     */
+    private static void writeString(DataOutputStream dos, String s) throws IOException{
+        if(s == null){
+            dos.writeInt(-1);
+        } else {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            dos.writeInt(b.length);
+            dos.write(b);
+        }
+    }
+
+    /**
+     * Reads nullable string.
+     *
+     * @param buf input buffer
+     * @return string
+     */
+    private static String readString(ByteBuffer buf){
+        int len = buf.getInt();
+        if(len < 0){
+            return null;
+        }
+        byte[] b = new byte[len];
+        buf.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes non-null string prefixed by its variable-length encoded length.
+     *
+     * @param dos output stream
+     * @param s string
+     * @throws IOException if some error occurs
+     */
+    private static void writeVarString(DataOutputStream dos, String s) throws IOException{
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        int len = b.length;
+        while((len & ~0x7F) != 0){
+            dos.writeByte((len & 0x7F) | 0x80);
+            len >>>= 7;
+        }
+        dos.writeByte(len);
+        dos.write(b);
+    }
+
+    /**
+     * Reads string prefixed by its variable-length encoded length.
+     *
+     * @param buf input buffer
+     * @return string
+     * @throws IOException if length is malformed
+     */
+    private static String readVarString(ByteBuffer buf) throws IOException{
+        int len = 0;
+        int shift = 0;
+        byte b;
+        do{
+            if(shift > 28){
+                throw new IOException("Malformed string length.");
+            }
+            b = buf.get();
+            len |= (b & 0x7F) << shift;
+            shift += 7;
+        } while((b & 0x80) != 0);
+        String s = new String(buf.array(), buf.arrayOffset() + buf.position(), len, StandardCharsets.UTF_8);
+        buf.position(buf.position() + len);
+        return s;
+    }
+
+    /**
+     * Result as stored in binary file. Cells of the table are stored as names
+     * of their XML elements and their content.
+     */
+    private static class ResultData {
+        private byte kind;
+        private String query;
+        private String name;
+        private int updateCount;
+        private String[] exception;
+        private String sql;
+        private List<String> labels;
+        private List<String> types;
+        private String[][] tags;
+        private String[][] values;
+
+        @Override
+        public int hashCode(){
+            return Objects.hash(kind, query, name, updateCount, sql, labels, types);
+        }
+
+        @Override
+        public boolean equals(Object obj){
+            if(this == obj){
+                return true;
+            }
+            if(!(obj instanceof ResultData)){
+                return false;
+            }
+            ResultData o = (ResultData)obj;
+            return kind == o.kind && updateCount == o.updateCount && Objects.equals(query, o.query)
+                    && Objects.equals(name, o.name) && Arrays.equals(exception, o.exception)
+                    && Objects.equals(sql, o.sql) && Objects.equals(labels, o.labels)
+                    && Objects.equals(types, o.types) && Arrays.deepEquals(tags, o.tags)
+                    && Arrays.deepEquals(values, o.values);
+        }
+    }
+}
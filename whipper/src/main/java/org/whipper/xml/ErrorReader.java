@@ -0,0 +1,283 @@
+package org.whipper.xml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.whipper.utils.Compression;
+
+/**
+ * Reader of error files which does not load whole file to the memory.
+ * <p>
+ * Error files are read sequentially by StAX cursor. Summary of the error does not
+ * contain rows of the tables, rows are read page by page (see {@link #readRows(Path, String, long, int)}).
+ * Files can be compressed (see {@link Compression}).
+ */
+public class ErrorReader {
+
+    /**
+     * Name of the element with actual result.
+     */
+    public static final String ACTUAL_RESULT = "actual-result";
+    /**
+     * Name of the element with expected result.
+     */
+    public static final String EXPECTED_RESULT = "expected-result";
+    private static final String QUERY_ERROR = "query-error";
+    private static final String QUERY_SET_ERROR = "query-set-error";
+    private static final String QUERY = "query";
+    private static final String FAILURES = "failures";
+    private static final String QUERIES = "queries";
+    private static final String SELECT = "select";
+    private static final String TABLE = "table";
+    private static final String TABLE_ROW = "table-row";
+    private static final String ROW_COUNT = "row-count";
+    private static final String COLUMN_COUNT = "column-count";
+    private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+    static{
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        FACTORY.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+    }
+
+    private ErrorReader() {}
+
+    /**
+     * Reads summary of the error file - query, failures and description of actual
+     * and expected result (columns and number of rows, exception, update count, ...).
+     * Rows of the tables are skipped.
+     *
+     * @param f error file (query error or query set error)
+     * @return summary of the error
+     * @throws IOException if file cannot be read or is not valid error file
+     */
+    public static JSONObject readSummary(Path f) throws IOException {
+        try (InputStream in = Compression.open(f)) {
+            XMLStreamReader r = FACTORY.createXMLStreamReader(in);
+            try {
+                r.nextTag();
+                String root = r.getLocalName();
+                if (!QUERY_ERROR.equals(root) && !QUERY_SET_ERROR.equals(root)) {
+                    throw new IOException("Not an error file - " + f);
+                }
+                JSONObject out = new JSONObject();
+                out.put("type", root);
+                putAttributes(r, out);
+                while (r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                    String name = r.getLocalName();
+                    if (QUERY.equals(name)) {
+                        out.put(QUERY, r.getElementText());
+                    } else if (FAILURES.equals(name) || QUERIES.equals(name)) {
+                        out.put(name, readTexts(r));
+                    } else if (ACTUAL_RESULT.equals(name) || EXPECTED_RESULT.equals(name)) {
+                        out.put(name, readResultSummary(r));
+                    } else {
+                        skip(r);
+                    }
+                }
+                return out;
+            } finally {
+                r.close();
+            }
+        } catch (XMLStreamException ex) {
+            throw new IOException("Cannot read error file " + f + " - " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Reads page of rows of actual or expected result. Rows before {@code offset} are skipped
+     * and reading stops once {@code limit} rows have been read.
+     *
+     * @param f error file
+     * @param result {@link #ACTUAL_RESULT} or {@link #EXPECTED_RESULT}
+     * @param offset number of rows to skip
+     * @param limit maximum number of rows to read
+     * @return page of rows - {@code offset}, {@code rowCount} (total number of rows)
+     *      and {@code rows} (array of arrays of cells, cell is string or {@code null})
+     * @throws IllegalArgumentException if {@code result} is not known or {@code offset} or {@code limit} is negative
+     * @throws IOException if file cannot be read or is not valid error file
+     */
+    public static JSONObject readRows(Path f, String result, long offset, int limit) throws IllegalArgumentException, IOException {
+        if (!ACTUAL_RESULT.equals(result) && !EXPECTED_RESULT.equals(result)) {
+            throw new IllegalArgumentException("Unknown result " + result);
+        }
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit must not be negative.");
+        }
+        JSONObject out = new JSONObject();
+        out.put("offset", offset);
+        JSONArray rows = new JSONArray();
+        out.put("rows", rows);
+        out.put("rowCount", 0);
+        try (InputStream in = Compression.open(f)) {
+            XMLStreamReader r = FACTORY.createXMLStreamReader(in);
+            try {
+                r.nextTag();
+                if (!findChild(r, result) || !findChild(r, TABLE)) {
+                    return out;
+                }
+                out.put("rowCount", Long.parseLong(r.getAttributeValue(null, ROW_COUNT)));
+                long skipped = 0;
+                while (rows.length() < limit && r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                    if (!TABLE_ROW.equals(r.getLocalName())) {
+                        skip(r);
+                    } else if (skipped < offset) {
+                        skip(r);
+                        skipped++;
+                    } else {
+                        rows.put(readRow(r));
+                    }
+                }
+                return out;
+            } finally {
+                r.close();
+            }
+        } catch (XMLStreamException | NumberFormatException ex) {
+            throw new IOException("Cannot read error file " + f + " - " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Reads summary of actual or expected result. Reader is positioned on start
+     * of the result element and it is moved to the end of the element.
+     *
+     * @param r reader
+     * @return summary of the result
+     * @throws XMLStreamException if some error occurs
+     * @throws IOException if content of the result is not valid
+     */
+    private static JSONObject readResultSummary(XMLStreamReader r) throws XMLStreamException, IOException {
+        JSONObject out = new JSONObject();
+        putAttributes(r, out);
+        while (r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            String name = r.getLocalName();
+            if (SELECT.equals(name)) {
+                JSONArray columns = new JSONArray();
+                while (r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                    String type = r.getAttributeValue(null, "type");
+                    columns.put(new JSONObject().put("type", type).put("label", r.getElementText()));
+                }
+                out.put("columns", columns);
+            } else if (TABLE.equals(name)) {
+                out.put("rowCount", Long.parseLong(r.getAttributeValue(null, ROW_COUNT)));
+                out.put("columnCount", Integer.parseInt(r.getAttributeValue(null, COLUMN_COUNT)));
+                skip(r);
+            } else if ("update".equals(name)) {
+                out.put("updateCount", Integer.parseInt(r.getAttributeValue(null, "update-count")));
+                skip(r);
+            } else if ("exception".equals(name)) {
+                JSONObject ex = new JSONObject();
+                while (r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                    ex.put(r.getLocalName(), r.getElementText());
+                }
+                out.put("exception", ex);
+            } else if ("sql".equals(name)) {
+                out.put("sql", r.getElementText());
+            } else if ("no-result".equals(name)) {
+                out.put("noResult", true);
+                skip(r);
+            } else {
+                skip(r);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Reads one row. Reader is positioned on start of the row and it is moved
+     * to the end of the row.
+     *
+     * @param r reader
+     * @return cells of the row
+     * @throws XMLStreamException if some error occurs
+     * @throws IOException if cell cannot be decoded
+     */
+    private static JSONArray readRow(XMLStreamReader r) throws XMLStreamException, IOException {
+        JSONArray row = new JSONArray();
+        while (r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            // table-cell - empty for null or with one element (name is type of the cell)
+            if (r.nextTag() == XMLStreamConstants.END_ELEMENT) {
+                row.put(JSONObject.NULL);
+            } else {
+                String type = r.getLocalName();
+                String text = r.getElementText();
+                row.put(XmlHelper.TYPE_UNPRINTABLE.equalsIgnoreCase(type) ? XmlHelper.getCellValue(type, text) : text);
+                r.nextTag();
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Reads texts of all child elements. Reader is positioned on start of the parent
+     * element and it is moved to the end of the element.
+     *
+     * @param r reader
+     * @return texts of child elements
+     * @throws XMLStreamException if some error occurs
+     */
+    private static JSONArray readTexts(XMLStreamReader r) throws XMLStreamException {
+        JSONArray out = new JSONArray();
+        while (r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            out.put(r.getElementText());
+        }
+        return out;
+    }
+
+    /**
+     * Moves reader to the start of the child element with specified name. Preceding
+     * siblings are skipped.
+     *
+     * @param r reader positioned on start of the parent element
+     * @param name local name of the child element
+     * @return {@code true} if child has been found, {@code false} if end of the parent has been reached
+     * @throws XMLStreamException if some error occurs
+     */
+    private static boolean findChild(XMLStreamReader r, String name) throws XMLStreamException {
+        while (r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if (name.equals(r.getLocalName())) {
+                return true;
+            }
+            skip(r);
+        }
+        return false;
+    }
+
+    /**
+     * Skips current element. Reader is moved to the end of the element.
+     *
+     * @param r reader positioned on start of the element
+     * @throws XMLStreamException if some error occurs
+     */
+    private static void skip(XMLStreamReader r) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int e = r.next();
+            if (e == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (e == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Copies attributes of the current element to the JSON object.
+     *
+     * @param r reader positioned on start of the element
+     * @param o JSON object
+     */
+    private static void putAttributes(XMLStreamReader r, JSONObject o) {
+        for (int i = 0; i < r.getAttributeCount(); i++) {
+            o.put(r.getAttributeLocalName(i), r.getAttributeValue(i));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.whipper.xml;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.whipper.utils.Compression;
+
+/**
+ * Converts tree of XML expected results to binary expected results.
+ *
+ * @see BinaryResultHelper
+ */
+public class ResultConverter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResultConverter.class);
+    private static final String XML_EXTENSION = ".xml";
+
+    /**
+     * Converts all XML result files (possibly compressed) in directory {@code dir} (recursively).
+     * Each binary file is written beside the XML file and it is verified,
+     * that it holds the same result as XML file.
+     *
+     * @param dir directory with expected results (e.g. {@code expected.results.dirname} directory)
+     * @param replace whether to delete XML file after successful conversion
+     * @return number of converted files
+     * @throws IOException if directory cannot be read or some of the files could not be converted
+     */
+    public static int convertDirectory(File dir, boolean replace) throws IOException{
+        if(dir == null || !dir.isDirectory()){
+            throw new IOException("Directory " + dir + " does not exist.");
+        }
+        List<Path> xmls;
+        try(Stream<Path> s = Files.walk(dir.toPath())){
+            xmls = s.filter(p -> Compression.hasExtension(p.getFileName().toString(), XML_EXTENSION) && Files.isRegularFile(p))
+                    .collect(Collectors.toList());
+        }
+        int converted = 0;
+        int failed = 0;
+        for(Path xml : xmls){
+            String name = Compression.stripExtension(xml.getFileName().toString());
+            File out = xml.resolveSibling(name.substring(0, name.length() - XML_EXTENSION.length()) + BinaryResultHelper.EXTENSION).toFile();
+            try{
+                BinaryResultHelper.convert(xml.toFile(), out);
+                if(replace){
+                    Files.delete(xml);
+                }
+                converted++;
+            } catch (IOException ex){
+                LOG.error("Unable to convert result file " + xml, ex);
+                failed++;
+            }
+        }
+        LOG.info("Converted {} result files in {} ({} failed).", converted, dir, failed);
+        if(failed > 0){
+            throw new IOException(failed + " result files could not be converted.");
+        }
+        return converted;
+    }
+}
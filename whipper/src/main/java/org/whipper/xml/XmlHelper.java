@@ -1,14 +1,16 @@
 package org.whipper.xml;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
 import java.sql.Date;
 import java.sql.Time;
 import java.sql.Timestamp;
@@ -32,12 +34,16 @@ import org.whipper.ActualResultHolder;
 import org.whipper.ExpectedResultHolder;
 import org.whipper.Query;
 import org.whipper.QuerySet;
+import org.whipper.ResultRetention;
 import org.whipper.Scenario;
 import org.whipper.Suite;
 import org.whipper.exceptions.WhipperException;
 import org.whipper.resultmode.NoneResultMode;
 import org.whipper.resultmode.ResultMode;
+import org.whipper.utils.Compression;
+import org.whipper.utils.PatternCache;
 import org.whipper.xml.error.QueryError;
+import org.whipper.xml.error.QuerySetError;
 import org.whipper.xml.result.QueryException;
 import org.whipper.xml.result.QueryResultType;
 import org.whipper.xml.result.Result;
@@ -78,8 +84,9 @@ public class XmlHelper {
     private static final String TYPE_SHORT = "short";
     private static final String TYPE_BIGINTEGER = "biginteger";
     private static final String TYPE_BIGDECIMAL = "bigdecimal";
-    private static final String TYPE_UNPRINTABLE = "unprintable";
+    static final String TYPE_UNPRINTABLE = "unprintable";
     private static final String TYPE_REGEX = "regex";
+    static final String RESULT_NAMESPACE = Result.class.getPackage().getAnnotation(XmlSchema.class).namespace();
     /* XML I/O */
     private static final Unmarshaller RESULT_UNMARSHALLER;
     private static final Unmarshaller SUITE_UNMARSHALLER;
@@ -119,55 +126,95 @@ public class XmlHelper {
      * @throws IOException if some error occurs
      */
     public static void loadQueries(File f, Scenario scen, Suite suite, ResultMode resultMode) throws IOException{
-        try(FileInputStream fis = new FileInputStream(f)){
-            QuerySuite xmlSuite = (QuerySuite)SUITE_UNMARSHALLER.unmarshal(fis);
-            // load meta queries
-            Map<String, QuerySet> meta = new HashMap<>();
-            if(xmlSuite.getMetaQueries() != null){
-                for(Object o : xmlSuite.getMetaQueries().getQueryOrQuerySet()){
-                    QuerySet qs;
-                    if(o instanceof SimpleMetaQuery){
-                        SimpleMetaQuery smq = (SimpleMetaQuery)o;
-                        qs = new QuerySet(smq.getName(), true, null);
-                        qs.addQuery(new Query(scen, suite, qs, smq.getName(), smq.getValue(), scen.getMetaQuerySetResultMode()));
-                    } else {
-                        MultiMetaQuery mmq = (MultiMetaQuery)o;
-                        qs = new QuerySet(mmq.getName(), true, null);
-                        for(Sql sql : mmq.getSql()){
-                            qs.addQuery(new Query(scen, suite, qs, sql.getName(), sql.getValue(), scen.getMetaQuerySetResultMode()));
-                        }
-                    }
-                    meta.put(qs.getId(), qs);
-                }
+        loadQueries(f.toPath(), scen, suite, resultMode);
+    }
+
+    /**
+     * Loads test queries from file {@code f}. File can belong to any file system
+     * (e.g. entry of ZIP archive).
+     *
+     * @param f XML file with test queries
+     * @param scen scenario
+     * @param suite suite
+     * @param resultMode result mode
+     * @throws IOException if some error occurs
+     */
+    public static void loadQueries(Path f, Scenario scen, Suite suite, ResultMode resultMode) throws IOException{
+        loadQueries(readSuite(f), scen, suite, resultMode);
+    }
+
+    /**
+     * Reads suite file. File can belong to any file system (e.g. entry of ZIP archive).
+     *
+     * @param f XML file with test queries
+     * @return parsed suite
+     * @throws IOException if some error occurs
+     */
+    public static QuerySuite readSuite(Path f) throws IOException{
+        try(InputStream fis = Compression.open(f)){
+            synchronized(SUITE_UNMARSHALLER){
+                return (QuerySuite)SUITE_UNMARSHALLER.unmarshal(fis);
             }
-            // set before/after suite
-            suite.setBeforeEach(getMeta(meta, xmlSuite.getQueries().getBeforeEach()));
-            suite.setAfterEach(getMeta(meta, xmlSuite.getQueries().getAfterEach()));
-            suite.setBeforeSuite(getMeta(meta, xmlSuite.getQueries().getBeforeSuite()));
-            suite.setAfterSuite(getMeta(meta, xmlSuite.getQueries().getAfterSuite()));
-
-            // load queries
-            for(Object o : xmlSuite.getQueries().getQueryOrQuerySet()){
+        } catch (JAXBException ex) {
+            throw new IOException("Cannot read suite file - " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Creates test queries of parsed suite. Parsed suite is only read, thus it can be
+     * shared by several scenarios (see {@link org.whipper.ArtifactCache}).
+     *
+     * @param xmlSuite parsed suite
+     * @param scen scenario
+     * @param suite suite
+     * @param resultMode result mode
+     * @throws IOException if suite refers to meta-query-set which does not exist
+     */
+    public static void loadQueries(QuerySuite xmlSuite, Scenario scen, Suite suite, ResultMode resultMode) throws IOException{
+        // load meta queries
+        Map<String, QuerySet> meta = new HashMap<>();
+        if(xmlSuite.getMetaQueries() != null){
+            for(Object o : xmlSuite.getMetaQueries().getQueryOrQuerySet()){
                 QuerySet qs;
-                if(o instanceof SimpleQuery){
-                    SimpleQuery sq = (SimpleQuery)o;
-                    qs = new QuerySet(sq.getName(), scen.isFastFail(), scen.getMetaQuerySetResultMode());
-                    qs.addQuery(new Query(scen, suite, qs, sq.getName(), sq.getValue(), resultMode));
-                    qs.setBefore(getMeta(meta, sq.getBefore()));
-                    qs.setAfter(getMeta(meta, sq.getAfter()));
+                if(o instanceof SimpleMetaQuery){
+                    SimpleMetaQuery smq = (SimpleMetaQuery)o;
+                    qs = new QuerySet(smq.getName(), true, null);
+                    qs.addQuery(new Query(scen, suite, qs, smq.getName(), smq.getValue(), scen.getMetaQuerySetResultMode()));
                 } else {
-                    MultiQuery mq = (MultiQuery)o;
-                    qs = new QuerySet(mq.getName(), scen.isFastFail(), scen.getMetaQuerySetResultMode());
-                    for(Sql sql : mq.getSql()){
-                        qs.addQuery(new Query(scen, suite, qs, sql.getName(), sql.getValue(), resultMode));
+                    MultiMetaQuery mmq = (MultiMetaQuery)o;
+                    qs = new QuerySet(mmq.getName(), true, null);
+                    for(Sql sql : mmq.getSql()){
+                        qs.addQuery(new Query(scen, suite, qs, sql.getName(), sql.getValue(), scen.getMetaQuerySetResultMode()));
                     }
-                    qs.setBefore(getMeta(meta, mq.getBefore()));
-                    qs.setAfter(getMeta(meta, mq.getAfter()));
                 }
-                suite.addQuerySet(qs);
+                meta.put(qs.getId(), qs);
             }
-        } catch (JAXBException ex) {
-            throw new IOException("Cannot read suite file - " + ex.getMessage(), ex);
+        }
+        // set before/after suite
+        suite.setBeforeEach(getMeta(meta, xmlSuite.getQueries().getBeforeEach()));
+        suite.setAfterEach(getMeta(meta, xmlSuite.getQueries().getAfterEach()));
+        suite.setBeforeSuite(getMeta(meta, xmlSuite.getQueries().getBeforeSuite()));
+        suite.setAfterSuite(getMeta(meta, xmlSuite.getQueries().getAfterSuite()));
+
+        // load queries
+        for(Object o : xmlSuite.getQueries().getQueryOrQuerySet()){
+            QuerySet qs;
+            if(o instanceof SimpleQuery){
+                SimpleQuery sq = (SimpleQuery)o;
+                qs = new QuerySet(sq.getName(), scen.isFastFail(), scen.getMetaQuerySetResultMode());
+                qs.addQuery(new Query(scen, suite, qs, sq.getName(), sq.getValue(), resultMode));
+                qs.setBefore(getMeta(meta, sq.getBefore()));
+                qs.setAfter(getMeta(meta, sq.getAfter()));
+            } else {
+                MultiQuery mq = (MultiQuery)o;
+                qs = new QuerySet(mq.getName(), scen.isFastFail(), scen.getMetaQuerySetResultMode());
+                for(Sql sql : mq.getSql()){
+                    qs.addQuery(new Query(scen, suite, qs, sql.getName(), sql.getValue(), resultMode));
+                }
+                qs.setBefore(getMeta(meta, mq.getBefore()));
+                qs.setAfter(getMeta(meta, mq.getAfter()));
+            }
+            suite.addQuerySet(qs);
         }
     }
 
@@ -201,9 +248,21 @@ public class XmlHelper {
      * @throws IOException if some error occurs
      */
     public static void loadResult(File f, ExpectedResultHolder erh, Query q) throws IOException{
-        try(FileInputStream fis = new FileInputStream(f)){
-            Result res = (Result)RESULT_UNMARSHALLER.unmarshal(fis);
-            QueryResultType qr = res.getQueryResult();
+        loadResult(f.toPath(), erh, q);
+    }
+
+    /**
+     * Loads result from file and stores it in expected result holder. File can belong
+     * to any file system (e.g. entry of ZIP archive).
+     *
+     * @param f file with result
+     * @param erh expected result holder where result will be stored
+     * @param q original query
+     * @throws IOException if some error occurs
+     */
+    public static void loadResult(Path f, ExpectedResultHolder erh, Query q) throws IOException{
+        try{
+            QueryResultType qr = readResult(f).getQueryResult();
             erh.setOriginalResult(qr);
             if(qr.getUpdate() != null){
                 erh.setUpdateCount(qr.getUpdate().getUpdateCount());
@@ -241,29 +300,68 @@ public class XmlHelper {
                 erh.setColumnTypeNames(types);
                 erh.setRows(rows);
             } else if(qr.getSql() != null){
-                Query sql = new Query(q.getScenario(), q.getSuite(), q.getQuerySet(), q.getId() + "_expected_result", qr.getSql(), NONE);
-                sql.run();
-                ActualResultHolder sqlArh = sql.getActualResult();
-                if(sqlArh.isResult()){
-                    erh.setColumnLabels(sqlArh.getColumnLabels());
-                    erh.setColumnTypeNames(sqlArh.getColumnTypeNames());
-                    erh.setRows(sqlArh.getRows());
-                } else if(sqlArh.isException()){
-                    erh.setExceptionClass(sqlArh.getOriginalExceptionClass().getName());
-                    erh.setExceptionMessage(sqlArh.getRootCauseExceptionMessage());
-                } else if(sqlArh.isUpdate()){
-                    erh.setUpdateCount(sqlArh.getUpdateCount());
-                }
+                loadSqlResult(qr.getSql(), erh, q);
             } else if (qr.getNoResult() != null){
                 // OK, 'no-result' in the XML file
             } else {
                 throw new WhipperException("Unknown result file format.");
             }
-        } catch (JAXBException | WhipperException ex){
+        } catch (WhipperException ex){
+            throw new IOException("Cannot read result file - " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Reads result file.
+     *
+     * @param f XML file with result
+     * @return result
+     * @throws IOException if some error occurs
+     */
+    public static Result readResult(File f) throws IOException{
+        return readResult(f.toPath());
+    }
+
+    /**
+     * Reads result file. File can belong to any file system (e.g. entry of ZIP archive).
+     *
+     * @param f XML file with result
+     * @return result
+     * @throws IOException if some error occurs
+     */
+    public static Result readResult(Path f) throws IOException{
+        try(InputStream fis = Compression.open(f)){
+            return (Result)RESULT_UNMARSHALLER.unmarshal(fis);
+        } catch (JAXBException ex){
             throw new IOException("Cannot read result file - " + ex.getMessage(), ex);
         }
     }
 
+    /**
+     * Runs SQL query which produces expected result and stores its result in expected result holder.
+     *
+     * @param sqlQuery SQL query
+     * @param erh expected result holder where result will be stored
+     * @param q original query
+     */
+    static void loadSqlResult(String sqlQuery, ExpectedResultHolder erh, Query q){
+        Query sql = new Query(q.getScenario(), q.getSuite(), q.getQuerySet(), q.getId() + "_expected_result", sqlQuery, NONE);
+        // rows are copied to expected result after the query finishes
+        sql.setResultRetention(ResultRetention.ALL);
+        sql.run();
+        ActualResultHolder sqlArh = sql.getActualResult();
+        if(sqlArh.isResult()){
+            erh.setColumnLabels(sqlArh.getColumnLabels());
+            erh.setColumnTypeNames(sqlArh.getColumnTypeNames());
+            erh.setRows(sqlArh.getRows());
+        } else if(sqlArh.isException()){
+            erh.setExceptionClass(sqlArh.getOriginalExceptionClass().getName());
+            erh.setExceptionMessage(sqlArh.getRootCauseExceptionMessage());
+        } else if(sqlArh.isUpdate()){
+            erh.setUpdateCount(sqlArh.getUpdateCount());
+        }
+    }
+
     /**
      * Returns object of which string representation is written in element {@code cell}.
      *
@@ -275,8 +373,18 @@ public class XmlHelper {
         if(cell == null){
             return null;
         }
-        String tagName = cell.getTagName();
-        String data = cell.getTextContent();
+        return getCellValue(cell.getTagName(), cell.getTextContent());
+    }
+
+    /**
+     * Returns object of which string representation is {@code data}.
+     *
+     * @param tagName name of the cell element (i.e. type of the cell)
+     * @param data string representation of the object
+     * @return object
+     * @throws IOException if some error occurs
+     */
+    static Object getCellValue(String tagName, String data) throws IOException{
         try{
             if(TYPE_UNPRINTABLE.equalsIgnoreCase(tagName)){
                 return decodeToString(data);
@@ -310,12 +418,12 @@ public class XmlHelper {
             } else if(TYPE_BIGDECIMAL.equalsIgnoreCase(tagName)){
                 return new BigDecimal(data);
             } else if (TYPE_REGEX.equalsIgnoreCase(tagName)) {
-                return Pattern.compile(data);
+                return PatternCache.compile(data);
             } else { // String, Object and any other
                 return data;
             }
         } catch (Exception ex){
-            throw new IOException("Unable to read data of element " + cell + " - " + ex.getMessage(), ex);
+            throw new IOException("Unable to read data of element " + tagName + " - " + ex.getMessage(), ex);
         }
     }
 
@@ -395,10 +503,30 @@ public class XmlHelper {
      * @throws IOException if some error occurs
      */
     public static void writeError(Query q, ExpectedResultHolder exp, File out, String expectedResultDirectoryName) throws IOException{
+        marshal(ERROR_MARSHALLER, out, createError(q, exp, expectedResultDirectoryName));
+    }
+
+    /**
+     * Creates comparison error for query {@code q}. Returned object does not depend
+     * on the state of {@code q} or {@code exp}, so it can be written later.
+     *
+     * @param q query
+     * @param exp expected result
+     * @param expectedResultDirectoryName directory name used to load expected result
+     * @return comparison error
+     * @throws IOException if expected result cannot be read
+     */
+    public static QueryError createError(Query q, ExpectedResultHolder exp, String expectedResultDirectoryName) throws IOException{
         QueryError err = ERROR_OBJECT_FACTORY.createQueryError();
         err.setQuery(q.getSql());
-        if(exp.getOriginalResult() != null) {
-            err.setExpectedResult(exp.getOriginalResult());
+        QueryResultType original;
+        try{
+            original = exp.getOriginalResult();
+        } catch (UncheckedIOException ex){
+            throw ex.getCause();
+        }
+        if(original != null) {
+            err.setExpectedResult(original);
             err.getExpectedResult().setDirectory(expectedResultDirectoryName);
             err.getExpectedResult().setSuite(q.getSuite().getId());
         } else {
@@ -408,6 +536,56 @@ public class XmlHelper {
         err.setActualResult(produceQueryResult(q.getActualResult(), q.getId(), true));
         err.setFailures(ERROR_OBJECT_FACTORY.createQueryErrorFailures());
         err.getFailures().getFailure().addAll(exp.getErrors());
+        return err;
+    }
+
+    /**
+     * Writes comparison error to the stream. Stream is not closed.
+     *
+     * @param err comparison error
+     * @param out output stream
+     * @throws IOException if some error occurs
+     */
+    public static void writeError(QueryError err, OutputStream out) throws IOException{
+        marshal(ERROR_MARSHALLER, out, err);
+    }
+
+    /**
+     * Creates aggregated error for all queries of the query set {@code qs} which
+     * failed for the same reason (e.g. before-set failed). Actual result
+     * of the first query is used as an actual result of the error.
+     *
+     * @param qs query set
+     * @param failures failures
+     * @return query set error
+     * @throws IllegalArgumentException if query set does not contain any query
+     */
+    public static QuerySetError createQuerySetError(QuerySet qs, List<String> failures) throws IllegalArgumentException{
+        if(qs.getQueries().isEmpty()){
+            throw new IllegalArgumentException("Query set " + qs.getId() + " does not contain any query.");
+        }
+        Query first = qs.getQueries().get(0);
+        QuerySetError err = ERROR_OBJECT_FACTORY.createQuerySetError();
+        err.setSuite(first.getSuite().getId());
+        err.setQuerySet(qs.getId());
+        err.setFailures(ERROR_OBJECT_FACTORY.createQuerySetErrorFailures());
+        err.getFailures().getFailure().addAll(failures);
+        err.setActualResult(produceQueryResult(first.getActualResult(), first.getId(), true));
+        err.setQueries(ERROR_OBJECT_FACTORY.createQuerySetErrorQueries());
+        for(Query q : qs.getQueries()){
+            err.getQueries().getQueryId().add(q.getId());
+        }
+        return err;
+    }
+
+    /**
+     * Writes aggregated query set error to the stream. Stream is not closed.
+     *
+     * @param err query set error
+     * @param out output stream
+     * @throws IOException if some error occurs
+     */
+    public static void writeError(QuerySetError err, OutputStream out) throws IOException{
         marshal(ERROR_MARSHALLER, out, err);
     }
 
@@ -460,16 +638,11 @@ public class XmlHelper {
                     Table.TableRow.TableCell c = RESULT_OBJECT_FACTORY.createTableTableRowTableCell();
                     if(cell != null){
                         String cellStr = cell.toString();
-                        QName tagName;
-                        String ns = Result.class.getPackage().getAnnotation(XmlSchema.class).namespace();
                         if(isPrintable(cellStr)){
-                            tagName = new QName(ns, types.get(i));
+                            c.setAny(createCellElement(types.get(i), cellStr));
                         } else {
-                            tagName = new QName(ns, TYPE_UNPRINTABLE);
-                            cellStr = encode(cellStr);
+                            c.setAny(createCellElement(TYPE_UNPRINTABLE, encode(cellStr)));
                         }
-                        JAXBElement<String> elem = new JAXBElement<>(tagName, String.class, cellStr);
-                        c.setAny(elem);
                     }
                     r.getTableCell().add(c);
                     i++;
@@ -483,6 +656,48 @@ public class XmlHelper {
         return qr;
     }
 
+    /**
+     * Creates cell element.
+     *
+     * @param tagName name of the element (i.e. type of the cell)
+     * @param data content of the element
+     * @return cell element
+     */
+    static JAXBElement<String> createCellElement(String tagName, String data){
+        return new JAXBElement<>(new QName(RESULT_NAMESPACE, tagName), String.class, data);
+    }
+
+    /**
+     * Returns name of the cell element.
+     *
+     * @param cell cell element (either DOM element or JAXB element)
+     * @return name of the element or {@code null} if {@code cell} is {@code null}
+     */
+    static String getCellTagName(Object cell){
+        if(cell instanceof Element){
+            Element e = (Element)cell;
+            return e.getLocalName() == null ? e.getTagName() : e.getLocalName();
+        } else if(cell instanceof JAXBElement){
+            return ((JAXBElement<?>)cell).getName().getLocalPart();
+        }
+        return null;
+    }
+
+    /**
+     * Returns content of the cell element.
+     *
+     * @param cell cell element (either DOM element or JAXB element)
+     * @return content of the element or {@code null} if {@code cell} is {@code null}
+     */
+    static String getCellData(Object cell){
+        if(cell instanceof Element){
+            return ((Element)cell).getTextContent();
+        } else if(cell instanceof JAXBElement){
+            return String.valueOf(((JAXBElement<?>)cell).getValue());
+        }
+        return null;
+    }
+
     /**
      * Stores object into file.
      *
@@ -492,10 +707,30 @@ public class XmlHelper {
      * @throws IOException if some error occurs
      */
     private static void marshal(Marshaller m, File out, Object o) throws IOException{
-        try(FileOutputStream fos = new FileOutputStream(out)){
-            m.marshal(o, fos);
+        try(OutputStream fos = Compression.create(out)){
+            synchronized(m){
+                m.marshal(o, fos);
+            }
         } catch (JAXBException  ex){
             throw new IOException("Cannot write object to file - " + ex.getMessage(), ex);
         }
     }
+
+    /**
+     * Writes object to the stream. Stream is not closed.
+     *
+     * @param m marshaller
+     * @param out output stream
+     * @param o object to be written
+     * @throws IOException if some error occurs
+     */
+    private static void marshal(Marshaller m, OutputStream out, Object o) throws IOException{
+        try{
+            synchronized(m){
+                m.marshal(o, out);
+            }
+        } catch (JAXBException ex){
+            throw new IOException("Cannot write object to stream - " + ex.getMessage(), ex);
+        }
+    }
 }
@@ -0,0 +1,100 @@
+package org.whipper;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.whipper.utils.ArtifactSource;
+import org.whipper.utils.OverrideFileSelector;
+import org.whipper.xml.suite.QuerySuite;
+
+public class ArtifactCacheTest{
+
+    private static final String SUITE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<query-suite xmlns=\"http://xml.whipper.org/suite\">\n"
+            + "    <queries>\n"
+            + "        <query name=\"q1\">SELECT 1</query>\n"
+            + "        <query-set name=\"qs\"><sql name=\"qs_1\">SELECT 2</sql></query-set>\n"
+            + "    </queries>\n"
+            + "</query-suite>\n";
+
+    private static File createArchive() throws IOException{
+        File zip = File.createTempFile("artifacts", ".zip");
+        zip.deleteOnExit();
+        try(ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip))){
+            zos.putNextEntry(new ZipEntry("qs/test_queries/suite.xml"));
+            zos.write(SUITE.getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+            zos.putNextEntry(new ZipEntry("qs/expected/suite/suite_q1.xml"));
+            zos.write("<result/>".getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+        }
+        return zip;
+    }
+
+    @Test
+    public void listFilesTest() throws IOException{
+        File dir = Files.createTempDirectory("artifacts").toFile();
+        File a = new File(dir, "a.xml");
+        File sub = new File(dir, "sub");
+        File b = new File(dir, "b.xml");
+        try{
+            Files.write(a.toPath(), new byte[0]);
+            Assertions.assertTrue(sub.mkdir());
+            ArtifactCache cache = new ArtifactCache();
+            Set<String> names = cache.listFiles(dir.toPath());
+            Assertions.assertEquals(Collections.singleton("a.xml"), names);
+            Assertions.assertNull(cache.listFiles(dir.toPath().resolve("missing")));
+            // listing is not refreshed
+            Files.write(b.toPath(), new byte[0]);
+            Assertions.assertSame(names, cache.listFiles(dir.toPath()));
+        } finally {
+            a.delete();
+            b.delete();
+            sub.delete();
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void sharedBetweenSourcesTest() throws IOException{
+        File zip = createArchive();
+        ArtifactCache cache = new ArtifactCache();
+        QuerySuite first;
+        try(ArtifactSource as = ArtifactSource.open(zip)){
+            first = cache.getSuite(as.resolve("qs", "test_queries", "suite.xml"));
+            Assertions.assertEquals(2, first.getQueries().getQueryOrQuerySet().size());
+        }
+        try(ArtifactSource as = ArtifactSource.open(zip)){
+            Assertions.assertSame(first, cache.getSuite(as.resolve("qs", "test_queries", "suite.xml")));
+            OverrideFileSelector selector = OverrideFileSelector.forPaths(
+                    Collections.singletonList(as.resolve("qs", "expected")), cache::listFiles);
+            Path found = selector.getExpectedResultPath("suite/suite_q1.wrb", "suite/suite_q1.xml");
+            Assertions.assertNotNull(found);
+            Assertions.assertTrue(Files.isRegularFile(found));
+            Assertions.assertNull(selector.getExpectedResultPath("suite/suite_q2.wrb", "suite/suite_q2.xml"));
+            Assertions.assertNull(selector.getExpectedResultPath("other/other_q1.xml"));
+        }
+    }
+
+    @Test
+    public void invalidSuiteTest() throws IOException{
+        File f = File.createTempFile("suite", ".xml");
+        f.deleteOnExit();
+        Files.write(f.toPath(), "<query-suite".getBytes(StandardCharsets.UTF_8));
+        ArtifactCache cache = new ArtifactCache();
+        Assertions.assertThrows(IOException.class, () -> cache.getSuite(f.toPath()));
+        // failure is not cached
+        Files.write(f.toPath(), SUITE.getBytes(StandardCharsets.UTF_8));
+        Assertions.assertNotNull(cache.getSuite(f.toPath()));
+    }
+}
@@ -0,0 +1,64 @@
+package org.whipper;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.whipper.utils.ArtifactSource;
+import org.whipper.utils.OverrideFileSelector;
+import org.whipper.xml.XmlHelper;
+
+public class ArtifactSourceTest{
+
+    @Test
+    public void directoryTest() throws IOException{
+        File dir = Files.createTempDirectory("artifacts").toFile();
+        dir.deleteOnExit();
+        try(ArtifactSource as = ArtifactSource.open(dir)){
+            Assertions.assertAll(() -> Assertions.assertFalse(as.isArchive(), "Not archive"),
+                    () -> Assertions.assertEquals(dir.toPath().resolve("a").resolve("b"), as.resolve("a", "", null, "b"), "Resolve"));
+        }
+    }
+
+    @Test
+    public void zipTest() throws IOException{
+        ActualResultHolder arh = Mockito.mock(ActualResultHolder.class);
+        Mockito.doReturn(true).when(arh).isResult();
+        Mockito.doReturn(-1).when(arh).getUpdateCount();
+        Mockito.doReturn(Collections.singletonList("integer")).when(arh).getColumnTypeNames();
+        Mockito.doReturn(Collections.singletonList("a")).when(arh).getColumnLabels();
+        Mockito.doReturn(Collections.singletonList(Collections.singletonList(1))).when(arh).getRows();
+        Query q = Mockito.mock(Query.class);
+        Mockito.doReturn(arh).when(q).getActualResult();
+        Mockito.doReturn("q").when(q).getId();
+        File xml = File.createTempFile("result", ".xml");
+        xml.deleteOnExit();
+        XmlHelper.writeResult(q, xml);
+
+        File zip = File.createTempFile("artifacts", ".zip");
+        zip.deleteOnExit();
+        try(ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip))){
+            zos.putNextEntry(new ZipEntry("qs/expected/suite/suite_q.xml"));
+            zos.write(Files.readAllBytes(xml.toPath()));
+            zos.closeEntry();
+        }
+        try(ArtifactSource as = ArtifactSource.open(zip)){
+            Path result = OverrideFileSelector.forPaths(Collections.singletonList(as.resolve("qs", "expected")))
+                    .getExpectedResultPath("suite/suite_q.wrb", "suite/suite_q.xml");
+            Assertions.assertNotNull(result, "Result found in archive");
+            ExpectedResultHolder erh = new ExpectedResultHolder();
+            erh.buildResult(result, q);
+            Assertions.assertAll(() -> Assertions.assertTrue(as.isArchive(), "Archive"),
+                    () -> Assertions.assertTrue(erh.equals(arh, false, BigDecimal.ZERO), "Result loaded from archive"));
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package org.whipper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.whipper.xml.BinaryResultHelper;
+import org.whipper.xml.ResultConverter;
+import org.whipper.xml.XmlHelper;
+import org.whipper.xml.result.QueryResultType;
+
+public class BinaryResultHelperTest{
+
+    private File dir;
+
+    @BeforeEach
+    public void createDir() throws IOException{
+        dir = Files.createTempDirectory("binary_result").toFile();
+    }
+
+    @AfterEach
+    public void deleteDir(){
+        delete(dir);
+    }
+
+    @Test
+    public void tableRoundTripTest() throws IOException{
+        List<List<Object>> rows = new ArrayList<>();
+        for(int i = 0; i < 4500; i++){
+            rows.add(Arrays.asList(i, i % 3 == 0 ? null : "value " + i, "x\u0001" + i));
+        }
+        ActualResultHolder arh = getMockTable(Arrays.asList("a", "b", "c"), Arrays.asList("integer", "string", "string"), rows);
+        File xml = new File(dir, "s_q.xml");
+        File bin = new File(dir, "s_q" + BinaryResultHelper.EXTENSION);
+        XmlHelper.writeResult(getMockQuery(arh), xml);
+        BinaryResultHelper.convert(xml, bin);
+
+        ExpectedResultHolder fromXml = new ExpectedResultHolder();
+        fromXml.buildResult(xml, null);
+        ExpectedResultHolder fromBin = new ExpectedResultHolder();
+        fromBin.buildResult(bin, null);
+        QueryResultType original = fromBin.getOriginalResult();
+        Assertions.assertAll(() -> Assertions.assertTrue(fromXml.equals(arh, false, BigDecimal.ZERO), "XML result"),
+                () -> Assertions.assertTrue(fromBin.equals(arh, false, BigDecimal.ZERO), "Binary result"),
+                () -> Assertions.assertEquals(4500, original.getTable().getRowCount(), "Original result - rows"),
+                () -> Assertions.assertEquals("q", original.getName(), "Original result - name"),
+                () -> Assertions.assertTrue(bin.length() < xml.length(), "Binary file is smaller"));
+    }
+
+    @Test
+    public void updateAndExceptionTest() throws IOException{
+        ActualResultHolder update = Mockito.mock(ActualResultHolder.class);
+        Mockito.doReturn(true).when(update).isUpdate();
+        Mockito.doReturn(5).when(update).getUpdateCount();
+        File xml = new File(dir, "u.xml");
+        File bin = new File(dir, "u" + BinaryResultHelper.EXTENSION);
+        XmlHelper.writeResult(getMockQuery(update), xml);
+        BinaryResultHelper.convert(xml, bin);
+        ExpectedResultHolder erh = new ExpectedResultHolder();
+        erh.buildResult(bin, null);
+        Assertions.assertAll(() -> Assertions.assertTrue(erh.equals(update, false, null), "Update"),
+                () -> Assertions.assertEquals(5, (int)BinaryResultHelper.readResult(bin).getQueryResult().getUpdate().getUpdateCount(), "Read result"));
+    }
+
+    @Test
+    public void malformedFileTest() throws IOException{
+        File bin = new File(dir, "m" + BinaryResultHelper.EXTENSION);
+        Files.write(bin.toPath(), new byte[]{1, 2, 3});
+        Assertions.assertThrows(IOException.class, () -> new ExpectedResultHolder().buildResult(bin, null));
+    }
+
+    @Test
+    public void corruptBlockTest() throws IOException{
+        // count, raw length, compressed length
+        int[][] blocks = {{0, 0, 0}, {3, 0, 0}, {-1, 0, 0}, {2, -1, 0}, {2, 0, -1}, {2, 0, 1000}};
+        for(int[] b : blocks){
+            File bin = new File(dir, "c" + BinaryResultHelper.EXTENSION);
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try(DataOutputStream dos = new DataOutputStream(bos)){
+                dos.writeInt(0x57524231);
+                dos.writeInt(1);
+                dos.writeByte(3); // table
+                dos.writeInt(-1); // query
+                dos.writeInt(-1); // name
+                dos.writeInt(1); // columns
+                dos.writeInt(2); // rows
+                dos.writeInt(-1); // label
+                dos.writeInt(-1); // type
+                for(int i : b){
+                    dos.writeInt(i);
+                }
+            }
+            Files.write(bin.toPath(), bos.toByteArray());
+            Assertions.assertThrows(IOException.class, () -> BinaryResultHelper.readResult(bin), Arrays.toString(b));
+        }
+    }
+
+    @Test
+    public void truncatedBlockTest() throws IOException{
+        // two null cells
+        byte[] raw = new byte[]{0, 0};
+        Deflater def = new Deflater(Deflater.BEST_SPEED);
+        byte[] compressed = new byte[64];
+        int length;
+        try{
+            def.setInput(raw);
+            def.finish();
+            length = def.deflate(compressed);
+        } finally {
+            def.end();
+        }
+        // declared raw length, compressed length
+        int[][] blocks = {{10, length}, {1, length}, {2, length - 4}};
+        for(int[] b : blocks){
+            File bin = new File(dir, "t" + BinaryResultHelper.EXTENSION);
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try(DataOutputStream dos = new DataOutputStream(bos)){
+                dos.writeInt(0x57524231);
+                dos.writeInt(1);
+                dos.writeByte(3); // table
+                dos.writeInt(-1); // query
+                dos.writeInt(-1); // name
+                dos.writeInt(1); // columns
+                dos.writeInt(2); // rows
+                dos.writeInt(-1); // label
+                dos.writeInt(-1); // type
+                dos.writeInt(2); // rows in block
+                dos.writeInt(b[0]);
+                dos.writeInt(b[1]);
+                dos.write(compressed, 0, b[1]);
+            }
+            Files.write(bin.toPath(), bos.toByteArray());
+            Assertions.assertThrows(IOException.class, () -> BinaryResultHelper.readResult(bin), Arrays.toString(b));
+        }
+    }
+
+    @Test
+    public void convertDirectoryTest() throws IOException{
+        File suite = new File(dir, "suite");
+        suite.mkdirs();
+        ActualResultHolder arh = getMockTable(Arrays.asList("a"), Arrays.asList("integer"), Arrays.asList(Arrays.asList((Object)1)));
+        XmlHelper.writeResult(getMockQuery(arh), new File(suite, "suite_q1.xml"));
+        XmlHelper.writeResult(getMockQuery(arh), new File(suite, "suite_q2.xml"));
+        Assertions.assertAll(() -> Assertions.assertEquals(2, ResultConverter.convertDirectory(dir, true), "Converted files"),
+                () -> Assertions.assertTrue(new File(suite, "suite_q1" + BinaryResultHelper.EXTENSION).isFile(), "Binary file 1"),
+                () -> Assertions.assertTrue(new File(suite, "suite_q2" + BinaryResultHelper.EXTENSION).isFile(), "Binary file 2"),
+                () -> Assertions.assertFalse(new File(suite, "suite_q1.xml").exists(), "Replaced XML file"));
+    }
+
+    private Query getMockQuery(ActualResultHolder arh){
+        Query q = Mockito.mock(Query.class);
+        Mockito.doReturn(arh).when(q).getActualResult();
+        Mockito.doReturn("q").when(q).getId();
+        Mockito.doReturn("SELECT 1").when(q).getSql();
+        return q;
+    }
+
+    private ActualResultHolder getMockTable(List<String> labels, List<String> types, List<List<Object>> rows){
+        ActualResultHolder arh = Mockito.mock(ActualResultHolder.class);
+        Mockito.doReturn(true).when(arh).isResult();
+        Mockito.doReturn(-1).when(arh).getUpdateCount();
+        Mockito.doReturn(types).when(arh).getColumnTypeNames();
+        Mockito.doReturn(labels).when(arh).getColumnLabels();
+        Mockito.doReturn(rows).when(arh).getRows();
+        return arh;
+    }
+
+    private void delete(File f){
+        File[] files = f.listFiles();
+        if(files != null){
+            for(File x : files){
+                delete(x);
+            }
+        }
+        f.delete();
+    }
+}
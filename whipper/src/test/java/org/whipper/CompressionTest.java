@@ -0,0 +1,76 @@
+package org.whipper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.whipper.utils.Compression;
+import org.whipper.xml.XmlHelper;
+
+public class CompressionTest{
+
+    @Test
+    public void fileNameTest(){
+        Assertions.assertAll(() -> Assertions.assertEquals(Compression.GZIP, Compression.forFileName("a.xml.gz"), "gzip"),
+                () -> Assertions.assertEquals(Compression.ZSTD, Compression.forFileName("a.xml.zst"), "zstd"),
+                () -> Assertions.assertEquals(Compression.NONE, Compression.forFileName("a.xml"), "none"),
+                () -> Assertions.assertEquals("a.xml", Compression.stripExtension("a.xml.gz"), "Strip extension"),
+                () -> Assertions.assertTrue(Compression.hasExtension("a.xml.gz", ".xml"), "Compressed XML"),
+                () -> Assertions.assertFalse(Compression.hasExtension("a.txt.gz", ".xml"), "Compressed text"),
+                () -> Assertions.assertEquals(Arrays.asList("a.xml", "a.xml.gz", "a.xml.zst"), Arrays.asList(Compression.allNames("a.xml")), "All names"));
+    }
+
+    @Test
+    public void forNameTest(){
+        Assertions.assertAll(() -> Assertions.assertEquals(Compression.NONE, Compression.forName(null), "Null"),
+                () -> Assertions.assertEquals(Compression.GZIP, Compression.forName(" GZip "), "gzip"),
+                () -> Assertions.assertThrows(IllegalArgumentException.class, () -> Compression.forName("lz4"), "Unknown"));
+    }
+
+    @Test
+    public void gzipRoundTripTest() throws IOException{
+        File f = File.createTempFile("compression", ".txt.gz");
+        f.deleteOnExit();
+        byte[] data = "some data".getBytes(StandardCharsets.UTF_8);
+        try(OutputStream os = Compression.create(f)){
+            os.write(data);
+        }
+        byte[] read = new byte[data.length + 1];
+        int n;
+        try(InputStream is = Compression.open(f)){
+            n = is.read(read);
+        }
+        byte[] raw = Files.readAllBytes(f.toPath());
+        Assertions.assertAll(() -> Assertions.assertEquals(data.length, n, "Length"),
+                () -> Assertions.assertArrayEquals(data, Arrays.copyOf(read, n), "Data"),
+                () -> Assertions.assertEquals((byte)0x1f, raw[0], "GZIP magic"));
+    }
+
+    @Test
+    public void compressedResultTest() throws IOException{
+        File f = File.createTempFile("compression", ".xml.gz");
+        f.deleteOnExit();
+        ActualResultHolder arh = Mockito.mock(ActualResultHolder.class);
+        Mockito.doReturn(true).when(arh).isResult();
+        Mockito.doReturn(-1).when(arh).getUpdateCount();
+        Mockito.doReturn(Collections.singletonList("integer")).when(arh).getColumnTypeNames();
+        Mockito.doReturn(Collections.singletonList("a")).when(arh).getColumnLabels();
+        Mockito.doReturn(Collections.singletonList(Collections.singletonList(1))).when(arh).getRows();
+        Query q = Mockito.mock(Query.class);
+        Mockito.doReturn(arh).when(q).getActualResult();
+        Mockito.doReturn("q").when(q).getId();
+        XmlHelper.writeResult(q, f);
+        ExpectedResultHolder erh = new ExpectedResultHolder();
+        erh.buildResult(f, q);
+        Assertions.assertTrue(erh.equals(arh, false, BigDecimal.ZERO), "Compressed result");
+    }
+}
@@ -0,0 +1,165 @@
+package org.whipper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.whipper.resultmode.ErrorFileWriter;
+
+public class ErrorFileWriterTest{
+
+    @Test
+    public void writeAndFlushTest() throws IOException{
+        File dir = Files.createTempDirectory("errors").toFile();
+        dir.deleteOnExit();
+        try(ErrorFileWriter w = new ErrorFileWriter("test", 4)){
+            for(int i = 0; i < 100; i++){
+                byte[] data = ("error " + i).getBytes(StandardCharsets.UTF_8);
+                w.submit(new File(dir, "sub" + File.separator + i + ".txt"), out -> out.write(data));
+            }
+            w.flush();
+            for(int i = 0; i < 100; i++){
+                File f = new File(dir, "sub" + File.separator + i + ".txt");
+                f.deleteOnExit();
+                Assertions.assertEquals("error " + i, new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8), "File " + i);
+            }
+        }
+    }
+
+    @Test
+    public void backpressureTest() throws Exception{
+        File dir = Files.createTempDirectory("errors").toFile();
+        dir.deleteOnExit();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger written = new AtomicInteger();
+        int files = 200;
+        try(ErrorFileWriter w = new ErrorFileWriter("test", 1)){
+            ErrorFileWriter.Content blocking = out -> {
+                try{
+                    release.await();
+                } catch (InterruptedException ex){
+                    throw new IOException(ex);
+                }
+                written.incrementAndGet();
+            };
+            // writer thread is blocked by the first file, so the queue fills up
+            Thread t = new Thread(() -> {
+                try{
+                    for(int i = 0; i < files; i++){
+                        File f = new File(dir, i + ".txt");
+                        f.deleteOnExit();
+                        w.submit(f, blocking);
+                    }
+                } catch (IOException ex){
+                    throw new RuntimeException(ex);
+                }
+            });
+            try{
+                t.start();
+                t.join(500);
+                Assertions.assertTrue(t.isAlive(), "Submitting thread should wait.");
+                Assertions.assertEquals(0, written.get(), "Written files before release");
+            } finally {
+                release.countDown();
+            }
+            t.join(5000);
+            Assertions.assertFalse(t.isAlive(), "Submitting thread should finish.");
+            w.flush();
+            Assertions.assertEquals(files, written.get(), "Written files");
+        }
+    }
+
+    @Test
+    public void failureTest() throws IOException{
+        File notDir = File.createTempFile("errors", ".txt");
+        notDir.deleteOnExit();
+        ErrorFileWriter w = new ErrorFileWriter("test", 4);
+        w.submit(new File(notDir, "a.txt"), out -> out.write(1));
+        IOException ex = Assertions.assertThrows(IOException.class, w::flush, "Flush should report failure");
+        Assertions.assertTrue(ex.getMessage().startsWith("1 error file(s)"), ex.getMessage());
+        w.flush();
+        w.close();
+        File f = new File(notDir.getParentFile(), notDir.getName() + ".closed");
+        f.deleteOnExit();
+        w.submit(f, out -> out.write('x'));
+        Assertions.assertEquals("x", new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8), "Written after close");
+    }
+
+    @Test
+    public void closeWithBlockedSubmitterTest() throws Exception{
+        File dir = Files.createTempDirectory("errors").toFile();
+        dir.deleteOnExit();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger written = new AtomicInteger();
+        int files = 20;
+        ErrorFileWriter w = new ErrorFileWriter("test", 1);
+        ErrorFileWriter.Content blocking = out -> {
+            try{
+                release.await();
+            } catch (InterruptedException ex){
+                throw new IOException(ex);
+            }
+            written.incrementAndGet();
+        };
+        Thread submitter = new Thread(() -> {
+            try{
+                for(int i = 0; i < files; i++){
+                    File f = new File(dir, i + ".txt");
+                    f.deleteOnExit();
+                    w.submit(f, blocking);
+                }
+            } catch (IOException ex){
+                throw new RuntimeException(ex);
+            }
+        });
+        Thread closer = new Thread(() -> {
+            try{
+                w.close();
+            } catch (IOException ex){
+                throw new RuntimeException(ex);
+            }
+        });
+        try{
+            submitter.start();
+            submitter.join(200);
+            // submitter is blocked on the full queue while the writer is closed
+            closer.start();
+            closer.join(200);
+            Assertions.assertTrue(closer.isAlive(), "Close should wait for queued files.");
+        } finally {
+            release.countDown();
+        }
+        submitter.join(5000);
+        closer.join(5000);
+        Assertions.assertAll(() -> Assertions.assertFalse(submitter.isAlive(), "Submitting thread should finish."),
+                () -> Assertions.assertFalse(closer.isAlive(), "Close should finish."),
+                () -> Assertions.assertEquals(files, written.get(), "Written files"));
+    }
+
+    @Test
+    public void directoryCreationRetryTest() throws IOException{
+        File blocker = File.createTempFile("errors", "");
+        File f = new File(blocker, "a.txt");
+        try(ErrorFileWriter w = new ErrorFileWriter("test", 4)){
+            w.submit(f, out -> out.write('a'));
+            Assertions.assertThrows(IOException.class, w::flush, "Directory cannot be created");
+            Assertions.assertTrue(blocker.delete());
+            w.submit(f, out -> out.write('b'));
+            w.flush();
+            Assertions.assertEquals("b", new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8));
+        } finally {
+            f.delete();
+            blocker.delete();
+        }
+    }
+
+    @Test
+    public void invalidCapacityTest(){
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ErrorFileWriter("test", 0));
+    }
+}
@@ -0,0 +1,106 @@
+package org.whipper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.whipper.utils.Compression;
+import org.whipper.xml.ErrorReader;
+
+public class ErrorReaderTest{
+
+    private static Path writeError(String name, int rows) throws IOException{
+        File f = new File(Files.createTempDirectory("errors").toFile(), name);
+        f.deleteOnExit();
+        f.getParentFile().deleteOnExit();
+        try(OutputStream out = Compression.create(f); Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8)){
+            w.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+                    + "<query-error xmlns=\"http://xml.whipper.org/error\" xmlns:ns2=\"http://xml.whipper.org/result\">\n"
+                    + "    <query>SELECT * FROM t</query>\n"
+                    + "    <failures>\n"
+                    + "        <failure>Row count is different</failure>\n"
+                    + "    </failures>\n"
+                    + "    <actual-result name=\"q1\" suite=\"s1\">\n"
+                    + "        <ns2:select>\n"
+                    + "            <ns2:data-element type=\"integer\">ID</ns2:data-element>\n"
+                    + "            <ns2:data-element type=\"string\">NAME</ns2:data-element>\n"
+                    + "        </ns2:select>\n"
+                    + "        <ns2:table row-count=\"" + rows + "\" column-count=\"2\">\n");
+            for(int i = 0; i < rows; i++){
+                w.write("            <ns2:table-row>\n"
+                        + "                <ns2:table-cell><integer>" + i + "</integer></ns2:table-cell>\n"
+                        + (i % 2 == 0 ? "                <ns2:table-cell/>\n"
+                                : "                <ns2:table-cell><string>name " + i + "</string></ns2:table-cell>\n")
+                        + "            </ns2:table-row>\n");
+            }
+            w.write("        </ns2:table>\n"
+                    + "    </actual-result>\n"
+                    + "    <expected-result name=\"q1\" suite=\"s1\" directory=\"exp\">\n"
+                    + "        <ns2:exception>\n"
+                    + "            <ns2:type>SQLException</ns2:type>\n"
+                    + "            <ns2:message>failed</ns2:message>\n"
+                    + "            <ns2:class>java.sql.SQLException</ns2:class>\n"
+                    + "        </ns2:exception>\n"
+                    + "    </expected-result>\n"
+                    + "</query-error>\n");
+        }
+        return f.toPath();
+    }
+
+    @Test
+    public void summaryTest() throws IOException{
+        JSONObject s = ErrorReader.readSummary(writeError("q_error.xml", 1000));
+        Assertions.assertEquals("query-error", s.getString("type"));
+        Assertions.assertEquals("SELECT * FROM t", s.getString("query"));
+        Assertions.assertEquals("Row count is different", s.getJSONArray("failures").getString(0));
+        JSONObject actual = s.getJSONObject(ErrorReader.ACTUAL_RESULT);
+        Assertions.assertEquals(1000, actual.getLong("rowCount"));
+        Assertions.assertEquals(2, actual.getInt("columnCount"));
+        Assertions.assertEquals("NAME", actual.getJSONArray("columns").getJSONObject(1).getString("label"));
+        Assertions.assertEquals("string", actual.getJSONArray("columns").getJSONObject(1).getString("type"));
+        Assertions.assertFalse(actual.has("rows"));
+        JSONObject expected = s.getJSONObject(ErrorReader.EXPECTED_RESULT);
+        Assertions.assertEquals("exp", expected.getString("directory"));
+        Assertions.assertEquals("failed", expected.getJSONObject("exception").getString("message"));
+    }
+
+    @Test
+    public void rowsTest() throws IOException{
+        for(String name : new String[]{"q_error.xml", "q_error.xml.gz"}){
+            Path f = writeError(name, 100);
+            JSONObject page = ErrorReader.readRows(f, ErrorReader.ACTUAL_RESULT, 10, 5);
+            Assertions.assertEquals(100, page.getLong("rowCount"), name);
+            Assertions.assertEquals(10, page.getLong("offset"), name);
+            JSONArray rows = page.getJSONArray("rows");
+            Assertions.assertEquals(5, rows.length(), name);
+            Assertions.assertEquals("10", rows.getJSONArray(0).getString(0), name);
+            Assertions.assertTrue(rows.getJSONArray(0).isNull(1), name);
+            Assertions.assertEquals("name 11", rows.getJSONArray(1).getString(1), name);
+            Assertions.assertEquals(3, ErrorReader.readRows(f, ErrorReader.ACTUAL_RESULT, 97, 10).getJSONArray("rows").length(), name);
+            Assertions.assertEquals(0, ErrorReader.readRows(f, ErrorReader.ACTUAL_RESULT, 200, 10).getJSONArray("rows").length(), name);
+        }
+    }
+
+    @Test
+    public void rowsOfResultWithoutTableTest() throws IOException{
+        JSONObject page = ErrorReader.readRows(writeError("q_error.xml", 3), ErrorReader.EXPECTED_RESULT, 0, 10);
+        Assertions.assertEquals(0, page.getLong("rowCount"));
+        Assertions.assertEquals(0, page.getJSONArray("rows").length());
+    }
+
+    @Test
+    public void invalidArgumentsTest() throws IOException{
+        Path f = writeError("q_error.xml", 3);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ErrorReader.readRows(f, "other-result", 0, 10));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ErrorReader.readRows(f, ErrorReader.ACTUAL_RESULT, -1, 10));
+    }
+}
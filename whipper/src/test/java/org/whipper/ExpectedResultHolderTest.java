@@ -1,9 +1,16 @@
 package org.whipper;
 
+import java.io.File;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLDataException;
 import java.sql.SQLException;
 import java.sql.SQLNonTransientException;
+import java.sql.Statement;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -12,9 +19,47 @@ import java.util.regex.Pattern;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.whipper.utils.OrderBy;
 
 public class ExpectedResultHolderTest{
 
+    @Test
+    public void sqlResultWithDefaultRetentionTest() throws Exception{
+        File xml = File.createTempFile("s_q", ".xml");
+        xml.deleteOnExit();
+        Files.write(xml.toPath(), ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<result xmlns=\"http://xml.whipper.org/result\">\n"
+                + "    <query>SELECT a FROM t</query>\n"
+                + "    <query-result name=\"q\" suite=\"s\"><sql>SELECT 1 AS a</sql></query-result>\n"
+                + "</result>\n").getBytes(StandardCharsets.UTF_8));
+        ResultSetMetaData md = Mockito.mock(ResultSetMetaData.class);
+        Mockito.doReturn(1).when(md).getColumnCount();
+        Mockito.doReturn("a").when(md).getColumnLabel(1);
+        Mockito.doReturn("integer").when(md).getColumnTypeName(1);
+        ResultSet rs = Mockito.mock(ResultSet.class);
+        Mockito.doReturn(md).when(rs).getMetaData();
+        Mockito.when(rs.next()).thenReturn(true, false);
+        Mockito.doReturn(1).when(rs).getObject(1);
+        Statement st = Mockito.mock(Statement.class);
+        Mockito.doReturn(rs).when(st).getResultSet();
+        Connection c = Mockito.mock(Connection.class);
+        Mockito.doReturn(st).when(c).createStatement();
+        Scenario scen = Mockito.mock(Scenario.class);
+        Mockito.doReturn(c).when(scen).getConnection();
+        Mockito.doReturn(ResultRetention.NONE).when(scen).getResultRetention();
+        Query q = Mockito.mock(Query.class);
+        Mockito.doReturn(scen).when(q).getScenario();
+        Mockito.doReturn(Mockito.mock(Suite.class)).when(q).getSuite();
+        Mockito.doReturn(Mockito.mock(QuerySet.class)).when(q).getQuerySet();
+        Mockito.doReturn("q").when(q).getId();
+
+        ExpectedResultHolder exp = new ExpectedResultHolder();
+        exp.buildResult(xml, q);
+        ActualResultHolder act = getMockTable(Collections.singletonList("integer"), Collections.singletonList("a"),
+                Collections.singletonList(Collections.singletonList(1)));
+        Assertions.assertTrue(exp.equals(act, false, null), "SQL expected result: " + exp.getErrors());
+    }
+
     @Test
     public void equalsNoExpResTest(){
         Assertions.assertFalse(new ExpectedResultHolder().equals(getMockUpdate(0), false, null), "Expected result is none of update, exception, table.");
@@ -116,6 +161,25 @@ public class ExpectedResultHolderTest{
                     false, BigDecimal.ZERO), "Table exp - table act - regex should not match"));
     }
 
+    @Test
+    public void orderedTableTest(){
+        List<String> labels = Arrays.asList("a", "b");
+        List<String> types = Arrays.asList("integer", "string");
+        ExpectedResultHolder exp = new ExpectedResultHolder();
+        exp.setColumnLabels(labels);
+        exp.setColumnTypeNames(types);
+        exp.setRows(Arrays.asList(Arrays.asList(1, "x"), Arrays.asList(1, "y"), Arrays.asList(2, "z")));
+        OrderBy orderBy = OrderBy.parse("SELECT a, b FROM t ORDER BY t.a DESC");
+        Assertions.assertAll(() -> Assertions.assertTrue(exp.equals(getMockTable(types, labels,
+                        Arrays.asList(Arrays.asList(1, "y"), Arrays.asList(1, "x"), Arrays.asList(2, "z"))), orderBy, BigDecimal.ZERO), "Ties in any order"),
+                () -> Assertions.assertFalse(exp.equals(getMockTable(types, labels,
+                        Arrays.asList(Arrays.asList(2, "z"), Arrays.asList(1, "x"), Arrays.asList(1, "y"))), orderBy, BigDecimal.ZERO), "Wrong order"),
+                () -> Assertions.assertTrue(exp.equals(getMockTable(types, labels,
+                        Arrays.asList(Arrays.asList(2, "z"), Arrays.asList(1, "y"), Arrays.asList(1, "x"))), null, BigDecimal.ZERO), "Unordered"),
+                () -> Assertions.assertFalse(exp.equals(getMockTable(types, labels,
+                        Arrays.asList(Arrays.asList(1, "y"), Arrays.asList(1, "x"), Arrays.asList(2, "z"))), OrderBy.POSITIONAL, BigDecimal.ZERO), "Positional"));
+    }
+
     private ActualResultHolder getMockUpdate(int uc){
         ActualResultHolder arh = getMock();
         Mockito.doReturn(true).when(arh).isUpdate();
@@ -0,0 +1,97 @@
+package org.whipper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.whipper.resultmode.MetaQuerySetResultMode;
+import org.whipper.resultmode.NoneResultMode;
+import org.whipper.resultmode.ResultMode;
+
+/**
+ * Measures heap used by the scenario model (scenario, suites, query sets and queries).
+ * <p>
+ * This is not a unit test. Run it manually, e.g.
+ * {@code java -cp <test-classpath> org.whipper.ModelMemoryBenchmark [queries] [monitors]}.
+ */
+public class ModelMemoryBenchmark{
+
+    private static final int QUERIES_PER_SUITE = 1000;
+
+    public static void main(String[] args){
+        int queries = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int numMonitors = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        List<ProgressMonitor> monitors = new ArrayList<>();
+        for(int i = 0; i < numMonitors; i++){
+            monitors.add(new NoopMonitor());
+        }
+        long before = usedMemory();
+        Scenario scen = build(queries);
+        scen.setProgressMonitors(monitors);
+        long after = usedMemory();
+        long used = after - before;
+        System.out.printf("Queries: %d, monitors: %d, model size: %.2f MB, per query: %d B%n",
+                scen.getNumberOfAllQueries(), numMonitors, used / (1024.0 * 1024.0), used / queries);
+    }
+
+    /**
+     * Builds scenario with one query per query set.
+     *
+     * @param queries number of queries
+     * @return scenario
+     */
+    static Scenario build(int queries){
+        Scenario scen = new Scenario("benchmark");
+        MetaQuerySetResultMode mqsrm = new MetaQuerySetResultMode(scen.getId());
+        ResultMode rm = new NoneResultMode();
+        Suite suite = null;
+        for(int i = 0; i < queries; i++){
+            if(i % QUERIES_PER_SUITE == 0){
+                suite = new Suite("suite" + i);
+                scen.addSuite(suite);
+            }
+            String id = "query" + i;
+            QuerySet qs = new QuerySet(id, true, mqsrm);
+            qs.addQuery(new Query(scen, suite, qs, id, "SELECT " + i, rm));
+            suite.addQuerySet(qs);
+        }
+        return scen;
+    }
+
+    /**
+     * Returns used heap after garbage collection.
+     *
+     * @return used heap in bytes
+     */
+    private static long usedMemory(){
+        Runtime rt = Runtime.getRuntime();
+        for(int i = 0; i < 5; i++){
+            System.gc();
+            try{
+                Thread.sleep(50);
+            } catch (InterruptedException ex){
+                Thread.currentThread().interrupt();
+            }
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /**
+     * Monitor which does nothing.
+     */
+    private static class NoopMonitor implements ProgressMonitor{
+        @Override public void starting(List<String> scenariosToRun){}
+        @Override public void finished(WhipperResult result){}
+        @Override public void startingScenario(Scenario scen){}
+        @Override public void scenarioFinished(Scenario scen){}
+        @Override public void startingSuite(Suite suite){}
+        @Override public void suiteFinished(Suite suite){}
+        @Override public void startingQuerySet(QuerySet qs){}
+        @Override public void querySetFinished(QuerySet qs){}
+        @Override public void startingQuery(Query q){}
+        @Override public void queryFinished(Query q){}
+        @Override public void startingMetaQuerySet(QuerySet qs){}
+        @Override public void metaQuerySetFinished(QuerySet qs){}
+        @Override public void startingMetaQuery(Query q){}
+        @Override public void metaQueryFinished(Query q){}
+    }
+}
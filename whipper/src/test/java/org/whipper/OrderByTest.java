@@ -0,0 +1,44 @@
+package org.whipper;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.whipper.utils.OrderBy;
+
+public class OrderByTest{
+
+    @Test
+    public void noTopLevelOrderByTest(){
+        Assertions.assertAll(() -> Assertions.assertNull(OrderBy.parse("SELECT a FROM t"), "No ORDER BY"),
+                () -> Assertions.assertNull(OrderBy.parse("SELECT a FROM (SELECT a FROM t ORDER BY a LIMIT 5) x"), "Subquery"),
+                () -> Assertions.assertNull(OrderBy.parse("SELECT ROW_NUMBER() OVER (ORDER BY a) FROM t"), "Window function"),
+                () -> Assertions.assertNull(OrderBy.parse("SELECT 'order by a' FROM t"), "String literal"),
+                () -> Assertions.assertNull(OrderBy.parse("SELECT a FROM t -- ORDER BY a"), "Line comment"),
+                () -> Assertions.assertNull(OrderBy.parse("SELECT a FROM t /* ORDER BY a */"), "Block comment"),
+                () -> Assertions.assertNull(OrderBy.parse("SELECT \"order\" by_ FROM t"), "Quoted identifier"));
+    }
+
+    @Test
+    public void sortItemsTest(){
+        Assertions.assertAll(() -> Assertions.assertEquals(Arrays.asList("a", "t.b", "2"),
+                        OrderBy.parse("select a, b from t\norder  by a desc nulls last, t.b, 2 ASC limit 10").getSortItems(), "Simple items"),
+                () -> Assertions.assertEquals(Arrays.asList("f ( a , b )", "c"),
+                        OrderBy.parse("SELECT a FROM t ORDER BY f(a, b), c;").getSortItems(), "Function"),
+                () -> Assertions.assertEquals(Collections.singletonList("a"),
+                        OrderBy.parse("SELECT a FROM t UNION SELECT b FROM (SELECT b FROM u ORDER BY b) x ORDER BY a").getSortItems(), "Union"));
+    }
+
+    @Test
+    public void resolveTest(){
+        List<String> labels = Arrays.asList("a", "B", "c", "c");
+        Assertions.assertAll(() -> Assertions.assertArrayEquals(new int[]{1, 0, 1},
+                        OrderBy.parse("SELECT * FROM t ORDER BY b, t.\"a\", 2").resolve(labels), "Resolvable"),
+                () -> Assertions.assertNull(OrderBy.parse("SELECT * FROM t ORDER BY c").resolve(labels), "Ambiguous"),
+                () -> Assertions.assertNull(OrderBy.parse("SELECT * FROM t ORDER BY 5").resolve(labels), "Out of range"),
+                () -> Assertions.assertNull(OrderBy.parse("SELECT * FROM t ORDER BY a + b").resolve(labels), "Expression"),
+                () -> Assertions.assertNull(OrderBy.POSITIONAL.resolve(labels), "Positional"));
+    }
+}
@@ -0,0 +1,49 @@
+package org.whipper;
+
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.whipper.utils.PatternCache;
+
+public class PatternCacheTest{
+
+    @BeforeEach
+    public void clear(){
+        PatternCache.clear();
+    }
+
+    @AfterEach
+    public void reset(){
+        PatternCache.setMaxSize(PatternCache.DEFAULT_MAX_SIZE);
+        PatternCache.clear();
+    }
+
+    @Test
+    public void cachedTest(){
+        Pattern p1 = PatternCache.compile("a+");
+        Pattern p2 = PatternCache.compile("a+");
+        Pattern p3 = PatternCache.compile("a+", Pattern.DOTALL);
+        Assertions.assertAll(() -> Assertions.assertSame(p1, p2, "Same pattern"),
+                () -> Assertions.assertNotSame(p1, p3, "Different flags"),
+                () -> Assertions.assertEquals(Pattern.DOTALL, p3.flags(), "Flags"),
+                () -> Assertions.assertEquals(1, PatternCache.getHits(), "Hits"),
+                () -> Assertions.assertEquals(2, PatternCache.getMisses(), "Misses"),
+                () -> Assertions.assertEquals(2, PatternCache.size(), "Size"));
+    }
+
+    @Test
+    public void boundedTest(){
+        PatternCache.setMaxSize(8);
+        for(int i = 0; i < 100; i++){
+            PatternCache.compile("a{" + i + "}");
+        }
+        Assertions.assertAll(() -> Assertions.assertTrue(PatternCache.size() <= 8, "Size"),
+                () -> Assertions.assertTrue(PatternCache.getEvictions() >= 92, "Evictions"));
+        PatternCache.setMaxSize(0);
+        Assertions.assertAll(() -> Assertions.assertEquals(0, PatternCache.size(), "Disabled - size"),
+                () -> Assertions.assertNotSame(PatternCache.compile("b"), PatternCache.compile("b"), "Disabled - not cached"));
+    }
+}
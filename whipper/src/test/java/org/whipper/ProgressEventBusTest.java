@@ -0,0 +1,69 @@
+package org.whipper;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.whipper.ProgressEventBus.Overflow;
+
+public class ProgressEventBusTest{
+
+    @Test
+    public void overflowForNameTest(){
+        Assertions.assertAll(() -> Assertions.assertEquals(Overflow.DROP, Overflow.forName(null), "Null"),
+                () -> Assertions.assertEquals(Overflow.DROP, Overflow.forName(" "), "Empty"),
+                () -> Assertions.assertEquals(Overflow.BLOCK, Overflow.forName("block"), "Block"),
+                () -> Assertions.assertThrows(IllegalArgumentException.class, () -> Overflow.forName("unknown"), "Unknown"));
+    }
+
+    @Test
+    public void deliveryOrderTest(){
+        ProgressMonitor pm = Mockito.mock(ProgressMonitor.class);
+        ProgressEventBus bus = new ProgressEventBus("test", Collections.singletonList(pm), 4, Overflow.BLOCK);
+        Query[] qs = new Query[100];
+        for(int i = 0; i < qs.length; i++){
+            qs[i] = Mockito.mock(Query.class);
+            bus.startingQuery(qs[i]);
+            bus.queryFinished(qs[i]);
+        }
+        WhipperResult res = new WhipperResult();
+        bus.finished(res);
+        InOrder order = Mockito.inOrder(pm);
+        for(Query q : qs){
+            order.verify(pm).startingQuery(q);
+            order.verify(pm).queryFinished(q);
+        }
+        order.verify(pm).finished(res);
+        Assertions.assertEquals(0, bus.getDropped(), "Dropped events");
+    }
+
+    @Test
+    public void dropTest() throws Exception{
+        CountDownLatch delivering = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ProgressMonitor pm = Mockito.mock(ProgressMonitor.class);
+        Mockito.doAnswer(inv -> {
+            delivering.countDown();
+            release.await();
+            return null;
+        }).when(pm).startingScenario(Mockito.any(Scenario.class));
+        ProgressEventBus bus = new ProgressEventBus("test", Collections.singletonList(pm), 2, Overflow.DROP);
+        try{
+            bus.startingScenario(Mockito.mock(Scenario.class));
+            Assertions.assertTrue(delivering.await(10, TimeUnit.SECONDS), "Dispatcher has not started.");
+            Query q = Mockito.mock(Query.class);
+            for(int i = 0; i < 5; i++){
+                bus.startingQuery(q);
+            }
+            Assertions.assertEquals(3, bus.getDropped(), "Dropped events");
+        } finally {
+            release.countDown();
+        }
+        bus.close();
+        Mockito.verify(pm, Mockito.times(2)).startingQuery(Mockito.any(Query.class));
+    }
+}
@@ -0,0 +1,51 @@
+package org.whipper;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+public class ProgressMonitorsTest{
+
+    @Test
+    public void emptyTest(){
+        Assertions.assertAll(() -> Assertions.assertSame(ProgressMonitors.EMPTY, ProgressMonitors.of(null), "Null"),
+                () -> Assertions.assertSame(ProgressMonitors.EMPTY, ProgressMonitors.of(Collections.emptyList()), "Empty"),
+                () -> Assertions.assertEquals(0, ProgressMonitors.EMPTY.size(), "Size"));
+    }
+
+    @Test
+    public void dispatchTest(){
+        ProgressMonitor pm1 = Mockito.mock(ProgressMonitor.class);
+        ProgressMonitor pm2 = Mockito.mock(ProgressMonitor.class);
+        ProgressMonitors pms = ProgressMonitors.of(Arrays.asList(pm1, pm2));
+        Query q = Mockito.mock(Query.class);
+        pms.startingQuery(q);
+        pms.queryFinished(q);
+        InOrder order = Mockito.inOrder(pm1, pm2);
+        order.verify(pm1).startingQuery(q);
+        order.verify(pm2).startingQuery(q);
+        order.verify(pm1).queryFinished(q);
+        order.verify(pm2).queryFinished(q);
+        Assertions.assertSame(pms, ProgressMonitors.of(Collections.singletonList(pms)), "Dispatcher is not wrapped.");
+    }
+
+    @Test
+    public void sharedDispatcherTest(){
+        Scenario scen = new Scenario("scen");
+        Suite suite = new Suite("suite");
+        QuerySet qs = new QuerySet("qs", true, null);
+        Query q = new Query(scen, suite, qs, "q", "SELECT 1", null);
+        qs.addQuery(q);
+        suite.addQuerySet(qs);
+        scen.addSuite(suite);
+        ProgressMonitor pm = Mockito.mock(ProgressMonitor.class);
+        scen.setProgressMonitors(Collections.singletonList(pm));
+        q.beforeSetFailed(new Exception(), "before_set");
+        Mockito.verify(pm).startingMetaQuery(q);
+        Mockito.verify(pm).metaQueryFinished(q);
+    }
+}
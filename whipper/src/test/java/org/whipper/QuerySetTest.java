@@ -1,10 +1,15 @@
 package org.whipper;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.xml.bind.JAXBContext;
+
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -13,6 +18,8 @@ import org.whipper.exceptions.DbNotAvailableException;
 import org.whipper.exceptions.ExecutionInterruptedException;
 import org.whipper.exceptions.ServerNotAvailableException;
 import org.whipper.resultmode.MetaQuerySetResultMode;
+import org.whipper.resultmode.ResultMode;
+import org.whipper.xml.error.QuerySetError;
 
 public class QuerySetTest{
 
@@ -111,6 +118,22 @@ public class QuerySetTest{
         Mockito.verify(q3).run();
     }
 
+    @Test
+    public void rerunCountersTest() throws Exception{
+        QuerySet qs = new QuerySet("", false, null);
+        Query q1 = getQuery(true, null);
+        Query q2 = getQuery(false, null);
+        qs.addQuery(q1);
+        qs.addQuery(q2);
+        qs.runQueries();
+        qs.runQueries();
+        Assertions.assertAll(() -> Assertions.assertEquals(2, qs.getNumberOfExecutedQueries(), "Executed"),
+                () -> Assertions.assertEquals(1, qs.getNumberOfFailedQueries(), "Failed"),
+                () -> Assertions.assertEquals(1, qs.getNumberOfPassedQueries(), "Passed"),
+                () -> Assertions.assertEquals(Arrays.asList(q1, q2), qs.getExecutedQueries(), "Executed queries"),
+                () -> Assertions.assertEquals(Collections.singletonList(q2), qs.getFailedQueries(), "Failed queries"));
+    }
+
     @Test
     public void serverNotAvailableTest() throws Exception{
         QuerySet qs = new QuerySet("", true, null);
@@ -162,6 +185,40 @@ public class QuerySetTest{
         Mockito.verify(q3).beforeSetFailed(Mockito.same(ex), Mockito.same(type));
     }
 
+    @Test
+    public void beforeFailedAggregatedErrorTest() throws Exception{
+        File dir = Files.createTempDirectory("qs_error").toFile();
+        dir.deleteOnExit();
+        WhipperProperties props = new WhipperProperties();
+        props.setOutputDir(dir.getAbsolutePath());
+        MetaQuerySetResultMode mqsrm = new MetaQuerySetResultMode("scen");
+        mqsrm.resetConfiguration(props);
+        ResultMode rm = Mockito.mock(ResultMode.class);
+        Mockito.doAnswer(invocation -> new File(dir, ((Query)invocation.getArguments()[0]).getId() + "_error.xml"))
+                .when(rm).getErrorFile(Mockito.any(Query.class));
+        Suite suite = Mockito.mock(Suite.class);
+        Mockito.doReturn("suite").when(suite).getId();
+        Scenario scen = Mockito.mock(Scenario.class);
+        QuerySet qs = new QuerySet("set", true, mqsrm);
+        for(int i = 0; i < 3; i++){
+            qs.addQuery(new Query(scen, suite, qs, "q" + i, "SELECT " + i, rm));
+        }
+        qs.beforeFailed(new Exception("cause"), "before_suite");
+        File[] files = dir.listFiles();
+        Arrays.stream(files).forEach(File::deleteOnExit);
+        Assertions.assertEquals(1, files.length, "Number of error files.");
+        Assertions.assertEquals("suite_set" + MetaQuerySetResultMode.QUERY_SET_ERROR_SUFFIX, files[0].getName(), "Error file name.");
+        QuerySetError err = (QuerySetError)JAXBContext.newInstance(QuerySetError.class).createUnmarshaller().unmarshal(files[0]);
+        Assertions.assertAll(() -> Assertions.assertEquals("suite", err.getSuite(), "Suite."),
+                () -> Assertions.assertEquals("set", err.getQuerySet(), "Query set."),
+                () -> Assertions.assertEquals(Arrays.asList("q0", "q1", "q2"), err.getQueries().getQueryId(), "Query IDs."),
+                () -> Assertions.assertEquals(1, err.getFailures().getFailure().size(), "Failures."),
+                () -> Assertions.assertTrue(err.getFailures().getFailure().get(0).contains("cause"), err.getFailures().getFailure().get(0)),
+                () -> Assertions.assertNotNull(err.getActualResult().getException(), "Exception."),
+                () -> Assertions.assertEquals(3, qs.getNumberOfFailedQueries(), "Failed queries."),
+                () -> Assertions.assertEquals(3, qs.getNumberOfExecutedQueries(), "Executed queries."));
+    }
+
     @Test
     public void setMainIdFailOnNonMetaTest(){
         Assertions.assertThrows(IllegalStateException.class, () -> new QuerySet("", true, Mockito.mock(MetaQuerySetResultMode.class)).setMainId(""));
@@ -193,6 +193,34 @@ public class QueryTest{
                 () -> Assertions.assertNull(qr.getErrors(), "Query result - errors"));
     }
 
+    @Test
+    public void resultRetentionTest() throws SQLException{
+        Query passNone = getQuery(getEmptyTable(), getResultHandler(false, false, false, null, null), true);
+        Mockito.doReturn(ResultRetention.NONE).when(passNone.getScenario()).getResultRetention();
+        Query passFailed = getQuery(getEmptyTable(), getResultHandler(false, false, false, null, null), true);
+        Mockito.doReturn(ResultRetention.FAILED).when(passFailed.getScenario()).getResultRetention();
+        Query failFailed = getQuery(getEmptyTable(), getResultHandler(true, true, false, null, "error"), true);
+        Mockito.doReturn(ResultRetention.FAILED).when(failFailed.getScenario()).getResultRetention();
+        passNone.run();
+        passFailed.run();
+        failFailed.run();
+        Assertions.assertAll(() -> Assertions.assertTrue(passNone.getActualResult().isReleased(), "Released [none]."),
+                () -> Assertions.assertTrue(passNone.getActualResult().isResult(), "Is result [none]."),
+                () -> Assertions.assertEquals(0, passNone.getActualResult().getRowCount(), "Row count [none]."),
+                () -> Assertions.assertEquals(Collections.singletonList("label1"), passNone.getActualResult().getColumnLabels(), "Labels [none]."),
+                () -> Assertions.assertThrows(IllegalStateException.class, passNone.getActualResult()::getRows, "Rows [none]."),
+                () -> Assertions.assertTrue(passFailed.getActualResult().isReleased(), "Released [failed, pass]."),
+                () -> Assertions.assertFalse(failFailed.getActualResult().isReleased(), "Released [failed, fail]."),
+                () -> Assertions.assertEquals(Collections.emptyList(), failFailed.getActualResult().getRows(), "Rows [failed, fail]."));
+    }
+
+    @Test
+    public void resultRetentionForNameTest(){
+        Assertions.assertAll(() -> Assertions.assertEquals(ResultRetention.NONE, ResultRetention.forName(null), "Null"),
+                () -> Assertions.assertEquals(ResultRetention.FAILED, ResultRetention.forName(" failed "), "Failed"),
+                () -> Assertions.assertThrows(IllegalArgumentException.class, () -> ResultRetention.forName("some"), "Unknown"));
+    }
+
     private Query getQuery(Connection con, ResultHolder rh, boolean valid){
         Scenario sc = Mockito.mock(Scenario.class);
         Mockito.doReturn(con).when(sc).getConnection();
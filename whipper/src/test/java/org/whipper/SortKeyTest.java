@@ -0,0 +1,83 @@
+package org.whipper;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SortKeyTest{
+
+    @Test
+    public void normalizedNumbersTest(){
+        Assertions.assertAll(() -> Assertions.assertEquals(0, compare(1, 1L), "Integer - Long"),
+                () -> Assertions.assertEquals(0, compare(new BigDecimal("1.00"), (short)1), "BigDecimal - Short"),
+                () -> Assertions.assertEquals(0, compare(BigInteger.TEN, 10.0d), "BigInteger - Double"),
+                () -> Assertions.assertEquals(0, compare(-0.0d, 0), "Negative zero - zero"),
+                () -> Assertions.assertEquals(0, compare(Double.NaN, Float.NaN), "NaN"));
+    }
+
+    @Test
+    public void numberOrderTest(){
+        Object[] ordered = {Double.NEGATIVE_INFINITY, -1000L, -12.5d, -12, -1.25f, -1, new BigDecimal("-0.5"),
+                0, new BigDecimal("0.05"), 0.5d, 1, new BigDecimal("1.25"), 12, 12.5d, 1000L,
+                Double.POSITIVE_INFINITY, Double.NaN};
+        for(int i = 1; i < ordered.length; i++){
+            Assertions.assertTrue(compare(ordered[i - 1], ordered[i]) < 0, ordered[i - 1] + " < " + ordered[i]);
+            Assertions.assertTrue(compare(ordered[i], ordered[i - 1]) > 0, ordered[i] + " > " + ordered[i - 1]);
+        }
+    }
+
+    @Test
+    public void stringOrderTest(){
+        Assertions.assertAll(() -> Assertions.assertTrue(compare("a", "ab") < 0, "Prefix"),
+                () -> Assertions.assertTrue(compare("ab", "b") < 0, "Lexicographic"),
+                () -> Assertions.assertTrue(compare("a\u0000", "a") > 0, "Zero character"),
+                () -> Assertions.assertTrue(compare("á", "z") > 0, "Multi-byte character"),
+                () -> Assertions.assertEquals(0, compare('c', "c"), "Character - String"));
+    }
+
+    @Test
+    public void nullFirstTest(){
+        Assertions.assertAll(() -> Assertions.assertTrue(compare(null, "") < 0, "Null - String"),
+                () -> Assertions.assertTrue(compare(null, Double.NEGATIVE_INFINITY) < 0, "Null - Number"),
+                () -> Assertions.assertEquals(0, compare(null, null), "Null - Null"));
+    }
+
+    @Test
+    public void cellByCellTest(){
+        SortKey sk = new SortKey();
+        byte[] k1 = sk.encode(Arrays.asList("a", 2));
+        byte[] k2 = sk.encode(Arrays.asList("ab", 1));
+        byte[] k3 = sk.encode(Arrays.asList("a", 10));
+        Assertions.assertAll(() -> Assertions.assertTrue(SortKey.compare(k1, k2) < 0, "First cell decides"),
+                () -> Assertions.assertTrue(SortKey.compare(k1, k3) < 0, "Second cell decides"));
+    }
+
+    @Test
+    public void timestampTest(){
+        Timestamp t1 = new Timestamp(1000L);
+        Timestamp t2 = new Timestamp(1000L);
+        t2.setNanos(1);
+        Assertions.assertAll(() -> Assertions.assertTrue(compare(t1, t2) < 0, "Nanos"),
+                () -> Assertions.assertTrue(compare(new Timestamp(-1L), t1) < 0, "Before epoch"));
+    }
+
+    @Test
+    public void exactTest(){
+        SortKey sk = new SortKey();
+        sk.encode(Arrays.asList(1, "a"));
+        Assertions.assertTrue(sk.isExact(), "Without pattern");
+        sk.encode(Arrays.asList(1, Pattern.compile("a+")));
+        Assertions.assertFalse(sk.isExact(), "With pattern");
+    }
+
+    private int compare(Object o1, Object o2){
+        SortKey sk = new SortKey();
+        return Integer.signum(SortKey.compare(sk.encode(Collections.singletonList(o1)), sk.encode(Collections.singletonList(o2))));
+    }
+}
@@ -1,6 +1,8 @@
 package org.whipper;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -10,6 +12,7 @@ import org.whipper.exceptions.DbNotAvailableException;
 import org.whipper.exceptions.ExecutionInterruptedException;
 import org.whipper.exceptions.MaxTimeExceededException;
 import org.whipper.exceptions.ServerNotAvailableException;
+import org.whipper.resultmode.MetaQuerySetResultMode;
 
 public class SuiteTest{
 
@@ -50,42 +53,64 @@ public class SuiteTest{
 
     @Test
     public void getNumOfAllQueriesTest() throws Exception{
-        Suite s = new Suite("");
-        s.addQuerySet(getQuerySet(2, 0, 2, 2, null));
-        s.addQuerySet(getQuerySet(3, 1, 2, 1, null));
-        s.addQuerySet(getQuerySet(1, 0, 0, 0, null));
-
+        Suite s = getSuite();
         Assertions.assertEquals(6, s.getNumberOfAllQueries(), "All");
     }
 
     @Test
     public void getNumOfExecutedQueriesTest() throws Exception{
-        Suite s = new Suite("");
-        s.addQuerySet(getQuerySet(2, 0, 2, 2, null));
-        s.addQuerySet(getQuerySet(3, 1, 2, 1, null));
-        s.addQuerySet(getQuerySet(1, 0, 0, 0, null));
-
-        Assertions.assertEquals(4, s.getNumberOfExecutedQueries(), "Executed");
+        Suite s = getSuite();
+        Assertions.assertEquals(0, s.getNumberOfExecutedQueries(), "Executed before run");
+        s.run(-1);
+        Assertions.assertEquals(5, s.getNumberOfExecutedQueries(), "Executed");
     }
 
     @Test
     public void getNumOfPassedQueriesTest() throws Exception{
-        Suite s = new Suite("");
-        s.addQuerySet(getQuerySet(2, 0, 2, 2, null));
-        s.addQuerySet(getQuerySet(3, 1, 2, 1, null));
-        s.addQuerySet(getQuerySet(1, 0, 0, 0, null));
-
-        Assertions.assertEquals(3, s.getNumberOfPassedQueries(), "Passed");
+        Suite s = getSuite();
+        s.run(-1);
+        Assertions.assertEquals(4, s.getNumberOfPassedQueries(), "Passed");
     }
 
     @Test
     public void getNumOfFailedQueriesTest() throws Exception{
+        Suite s = getSuite();
+        s.run(-1);
+        Assertions.assertEquals(1, s.getNumberOfFailedQueries(), "Failed");
+    }
+
+    @Test
+    public void executedAndFailedQueriesTest() throws Exception{
+        Query q1 = getQuery(true);
+        Query q2 = getQuery(false);
+        Query q3 = getQuery(true);
         Suite s = new Suite("");
-        s.addQuerySet(getQuerySet(2, 0, 2, 2, null));
-        s.addQuerySet(getQuerySet(3, 1, 2, 1, null));
-        s.addQuerySet(getQuerySet(1, 0, 0, 0, null));
+        s.addQuerySet(getRealQuerySet(false, q1, q2));
+        s.addQuerySet(getRealQuerySet(false, q3));
+        s.run(-1);
+        // rerun must not count queries twice
+        s.run(-1);
+        Assertions.assertAll(() -> Assertions.assertEquals(Arrays.asList(q1, q2, q3), s.getExecutedQueries(), "Executed queries"),
+                () -> Assertions.assertEquals(Collections.singletonList(q2), s.getFailedQueries(), "Failed queries"),
+                () -> Assertions.assertEquals(3, s.getNumberOfExecutedQueries(), "Executed"));
+    }
 
-        Assertions.assertEquals(1, s.getNumberOfFailedQueries(), "Failed");
+    @Test
+    public void scenarioCountersTest() throws Exception{
+        Scenario scen = new Scenario("scen");
+        Suite s1 = getSuite();
+        Suite s2 = new Suite("s2");
+        Query failed = getQuery(false);
+        s2.addQuerySet(getRealQuerySet(false, failed, getQuery(true)));
+        scen.addSuite(s1);
+        scen.addSuite(s2);
+        Assertions.assertEquals(8, scen.getNumberOfAllQueries(), "All before run");
+        s1.run(-1);
+        s2.run(-1);
+        Assertions.assertAll(() -> Assertions.assertEquals(8, scen.getNumberOfAllQueries(), "All"),
+                () -> Assertions.assertEquals(5, scen.getNumberOfPassedQueries(), "Passed"),
+                () -> Assertions.assertEquals(2, scen.getNumberOfFailedQueries(), "Failed"),
+                () -> Assertions.assertEquals(failed, scen.getFailedQueries().get(1), "Failed queries"));
     }
 
     @Test
@@ -328,8 +353,42 @@ public class SuiteTest{
         Mockito.verify(after).runQueries();
     }
 
+    // 6 queries - 5 of them are executed, 4 pass and 1 fails
+    private Suite getSuite(){
+        Suite s = new Suite("s1");
+        s.addQuerySet(getRealQuerySet(false, getQuery(true), getQuery(true)));
+        s.addQuerySet(getRealQuerySet(true, getQuery(true), getQuery(false), getQuery(true)));
+        s.addQuerySet(getRealQuerySet(false, getQuery(true)));
+        return s;
+    }
+
+    private QuerySet getRealQuerySet(boolean fastFail, Query... queries){
+        QuerySet qs = new QuerySet("qs", fastFail, Mockito.mock(MetaQuerySetResultMode.class));
+        for(Query q : queries){
+            qs.addQuery(q);
+        }
+        return qs;
+    }
+
+    private Query getQuery(boolean pass){
+        AtomicBoolean executed = new AtomicBoolean();
+        QueryResult qr = Mockito.mock(QueryResult.class);
+        Mockito.doReturn(pass).when(qr).pass();
+        Query q = Mockito.mock(Query.class);
+        Mockito.doReturn(qr).when(q).getResult();
+        Mockito.doAnswer(invocation -> executed.get()).when(q).isExecuted();
+        Mockito.doAnswer(invocation -> {
+            executed.set(true);
+            return null;
+        }).when(q).run();
+        Mockito.doReturn(Mockito.mock(Scenario.class)).when(q).getScenario();
+        Mockito.doReturn(Mockito.mock(Suite.class)).when(q).getSuite();
+        return q;
+    }
+
     private QuerySet getQuerySet(int all, int failed, int executed, int passed, Class<? extends Exception> toThrow) throws Exception{
         QuerySet qs = Mockito.mock(QuerySet.class);
+        Mockito.doReturn(new QueryCounters()).when(qs).getCounters();
         Mockito.doReturn(all).when(qs).getNumberOfAllQueries();
         Mockito.doReturn(executed).when(qs).getNumberOfExecutedQueries();
         Mockito.doReturn(failed).when(qs).getNumberOfFailedQueries();
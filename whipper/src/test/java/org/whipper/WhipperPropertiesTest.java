@@ -1,8 +1,11 @@
 package org.whipper;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.file.Files;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -11,9 +14,12 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
 import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.whipper.utils.ArtifactSource;
 
 public class WhipperPropertiesTest{
 
@@ -289,6 +295,33 @@ public class WhipperPropertiesTest{
         }
     }
 
+    @Test
+    public void fromOutputDirInArchiveTest() throws IOException{
+        File dir = Files.createTempDirectory("whipper_props").toFile();
+        File zip = new File(dir, "job.zip");
+        try{
+            WhipperProperties p = new WhipperProperties();
+            p.setOutputDir(dir.getAbsolutePath());
+            p.setProperty("a.b", "c");
+            p.dumpPropertiesToOutputDir();
+            try(ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip))){
+                zos.putNextEntry(new ZipEntry("initial.properties"));
+                Files.copy(new File(dir, "initial.properties").toPath(), zos);
+                zos.closeEntry();
+            }
+            try(ArtifactSource as = ArtifactSource.open(zip)){
+                WhipperProperties loaded = WhipperProperties.fromOutputDir(as.getRoot());
+                Assertions.assertNotNull(loaded);
+                Assertions.assertEquals("c", loaded.getProperty("a.b"));
+                Assertions.assertNull(WhipperProperties.fromOutputDir(as.resolve("missing")));
+            }
+        } finally {
+            new File(dir, "initial.properties").delete();
+            zip.delete();
+            dir.delete();
+        }
+    }
+
     private class KeyValue{
         private String key;
         private String value;